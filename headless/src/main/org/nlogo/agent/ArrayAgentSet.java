@@ -337,66 +337,13 @@ public final strictfp class ArrayAgentSet
     }
   }
 
-  /// shuffling iterator = shufflerator! (Google hits: 0)
-  /// Update: Now 5 Google hits, the first 4 of which are NetLogo related,
-  /// and the last one is a person named "SHUFFLER, Ator", which Google thought
-  /// was close enough!  ;-)  ~Forrest (10/3/2008)
-
   @Override
   public AgentIterator shufflerator(org.nlogo.util.MersenneTwisterFast random) {
     // note it at the moment (and this should probably be fixed)
     // Job.runExclusive() counts on this making a copy of the
     // contents of the agentset - ST 12/15/05
-    return new Shufflerator(random);
-  }
-
-  private class Shufflerator extends Iterator {
-    private int i = 0;
-    private final Agent[] copy = new Agent[size];
-    private Agent next;
-    private final org.nlogo.util.MersenneTwisterFast random;
-
-    Shufflerator(org.nlogo.util.MersenneTwisterFast random) {
-      this.random = random;
-      System.arraycopy(agents, 0, copy, 0, size);
-      while (i < copy.length && copy[i] == null) {
-        i++;
-      }
-      fetch();
-    }
-
-    @Override
-    public boolean hasNext() {
-      return next != null;
-    }
-
-    @Override
-    public Agent next() {
-      Agent result = next;
-      fetch();
-      return result;
-    }
-
-    private void fetch() {
-      if (i >= copy.length) {
-        next = null;
-      } else {
-        if (i < copy.length - 1) {
-          int r = i + random.nextInt(copy.length - i);
-          next = copy[r];
-          copy[r] = copy[i];
-        } else {
-          next = copy[i];
-        }
-        i++;
-        // we could have a bunch of different Shufflerator subclasses
-        // the same way we have Iterator subclasses in order to avoid
-        // having to do both checks, but I'm not
-        // sure it's really worth the effort - ST 3/15/06
-        if (next == null || next.id == -1) {
-          fetch();
-        }
-      }
-    }
+    Agent[] copy = Shufflerator.borrow(size);
+    System.arraycopy(agents, 0, copy, 0, size);
+    return new Shufflerator(copy, size, random);
   }
 }
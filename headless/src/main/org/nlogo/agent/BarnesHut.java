@@ -0,0 +1,250 @@
+// (C) Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.agent;
+
+import java.util.Arrays;
+import org.nlogo.util.MersenneTwisterFast;
+
+/**
+ * The repulsion part of layout-spring, approximated with the Barnes-Hut method so that it takes
+ * O(n log n) time instead of O(n^2).  The nodes go in a quadtree (an octree in 3D), and a cell
+ * that's far enough away pushes on a node as if its nodes were all at their center.  theta says
+ * what's far enough: a cell of width w at distance d counts as one node if w / d < theta, so 0
+ * means exact and larger is faster but rougher.  Nodes in the same leaf push each other exactly
+ * as in Layouts.spring2D and Layouts3D.spring3D.  Nodes in the same place push each other off in
+ * a random direction, as there: one direction for each pair, so the pushes are equal and opposite.
+ *
+ * The exact repulsion between two nodes is divided by their mean degree (at least 1), which can't
+ * be added up over a cell, so a cell stands in with the mean degree of its nodes.
+ */
+final strictfp class BarnesHut {
+
+  // cells this deep aren't split any further; the nodes in them are just kept in a list
+  private static final int MAX_DEPTH = 40;
+
+  private final int dims;
+  private final double[][] pos;
+  private final int[] degree;
+  private final double rep;
+  private final double theta;
+  private final MersenneTwisterFast random;
+  // from the node being pushed to whatever's pushing it
+  private final double[] delta;
+
+  private final class Cell {
+    final double[] min;
+    final double size;
+    int count = 0;
+    double degreeSum = 0;
+    // the sum of the nodes' positions; divided by count, their center
+    final double[] sum = new double[dims];
+    // null if this is a leaf
+    Cell[] children = null;
+    // the nodes in a leaf
+    int[] nodes = new int[1];
+    int nodeCount = 0;
+
+    Cell(double[] min, double size) {
+      this.min = min;
+      this.size = size;
+    }
+
+    boolean contains(int i) {
+      for (int d = 0; d < dims; d++) {
+        if (pos[d][i] < min[d] || pos[d][i] > min[d] + size) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    Cell child(int i) {
+      double half = size / 2;
+      int which = 0;
+      for (int d = 0; d < dims; d++) {
+        if (pos[d][i] >= min[d] + half) {
+          which |= 1 << d;
+        }
+      }
+      if (children[which] == null) {
+        double[] childMin = new double[dims];
+        for (int d = 0; d < dims; d++) {
+          childMin[d] = min[d] + (((which >> d) & 1) == 0 ? 0 : half);
+        }
+        children[which] = new Cell(childMin, half);
+      }
+      return children[which];
+    }
+
+    void insert(int i, int depth) {
+      count++;
+      degreeSum += degree[i];
+      for (int d = 0; d < dims; d++) {
+        sum[d] += pos[d][i];
+      }
+      if (children != null) {
+        child(i).insert(i, depth + 1);
+      } else if (nodeCount == 0 || depth >= MAX_DEPTH || samePlace(nodes[0], i)) {
+        if (nodeCount == nodes.length) {
+          nodes = Arrays.copyOf(nodes, nodeCount * 2);
+        }
+        nodes[nodeCount++] = i;
+      } else {
+        children = new Cell[1 << dims];
+        for (int k = 0; k < nodeCount; k++) {
+          child(nodes[k]).insert(nodes[k], depth + 1);
+        }
+        nodes = null;
+        nodeCount = 0;
+        child(i).insert(i, depth + 1);
+      }
+    }
+  }
+
+  private BarnesHut(double[][] pos, int[] degree, double rep, double theta,
+                    MersenneTwisterFast random) {
+    this.dims = pos.length;
+    this.pos = pos;
+    this.degree = degree;
+    this.rep = rep;
+    this.theta = theta;
+    this.random = random;
+    delta = new double[dims];
+  }
+
+  /**
+   * Adds the repulsion on each node to force.  pos and force have an array for each dimension
+   * (x, y, and z if it's 3D), indexed by node.
+   */
+  static void repel(double[][] pos, int[] degree, double rep, double theta,
+                    MersenneTwisterFast random, double[][] force) {
+    int n = degree.length;
+    if (n < 2) {
+      return;
+    }
+    new BarnesHut(pos, degree, rep, theta, random).run(n, force);
+  }
+
+  private void run(int n, double[][] force) {
+    // the root is a cube, so that all the cells are
+    double[] min = new double[dims];
+    double size = 0;
+    for (int d = 0; d < dims; d++) {
+      double lo = Double.POSITIVE_INFINITY;
+      double hi = Double.NEGATIVE_INFINITY;
+      for (int i = 0; i < n; i++) {
+        lo = StrictMath.min(lo, pos[d][i]);
+        hi = StrictMath.max(hi, pos[d][i]);
+      }
+      min[d] = lo;
+      size = StrictMath.max(size, hi - lo);
+    }
+    Cell root = new Cell(min, size);
+    for (int i = 0; i < n; i++) {
+      root.insert(i, 0);
+    }
+    pushOff(root, force);
+    double[] f = new double[dims];
+    for (int i = 0; i < n; i++) {
+      Arrays.fill(f, 0);
+      push(root, i, f);
+      for (int d = 0; d < dims; d++) {
+        force[d][i] += f[d];
+      }
+    }
+  }
+
+  // adds to f the push on node i from the nodes in cell
+  private void push(Cell cell, int i, double[] f) {
+    if (cell.children == null) {
+      for (int k = 0; k < cell.nodeCount; k++) {
+        int j = cell.nodes[k];
+        if (j != i) {
+          double distSquared = 0;
+          for (int d = 0; d < dims; d++) {
+            delta[d] = pos[d][j] - pos[d][i];
+            distSquared += delta[d] * delta[d];
+          }
+          // pushOff took care of nodes in the same place
+          if (distSquared != 0) {
+            pushApart(i, distSquared, 1, degree[j], f);
+          }
+        }
+      }
+      return;
+    }
+    double distSquared = 0;
+    for (int d = 0; d < dims; d++) {
+      delta[d] = cell.sum[d] / cell.count - pos[d][i];
+      distSquared += delta[d] * delta[d];
+    }
+    if (cell.size * cell.size < theta * theta * distSquared && !cell.contains(i)) {
+      pushApart(i, distSquared, cell.count, cell.degreeSum / cell.count, f);
+    } else {
+      for (Cell child : cell.children) {
+        if (child != null) {
+          push(child, i, f);
+        }
+      }
+    }
+  }
+
+  // adds to f the push on node i from count nodes with the given mean degree, which are
+  // delta away.  (a cell's center is never where node i is, since then the cell would contain i.)
+  private void pushApart(int i, double distSquared, int count, double otherDegree, double[] f) {
+    double div = StrictMath.max((degree[i] + otherDegree) / 2.0, 1.0);
+    // repulse according to an inverse square function
+    double dist = StrictMath.sqrt(distSquared);
+    double magnitude = count * rep / distSquared / div;
+    for (int d = 0; d < dims; d++) {
+      f[d] -= magnitude * delta[d] / dist;
+    }
+  }
+
+  // nodes in the same place always end up in the same leaf.  each such pair gets the same random
+  // push off as in the exact layouts, which moves the two in opposite directions.
+  private void pushOff(Cell cell, double[][] force) {
+    if (cell.children != null) {
+      for (Cell child : cell.children) {
+        if (child != null) {
+          pushOff(child, force);
+        }
+      }
+      return;
+    }
+    for (int k = 0; k < cell.nodeCount; k++) {
+      for (int l = k + 1; l < cell.nodeCount; l++) {
+        int i = cell.nodes[k];
+        int j = cell.nodes[l];
+        if (samePlace(i, j)) {
+          double div = StrictMath.max((degree[i] + degree[j]) / 2.0, 1.0);
+          double ang = 360 * random.nextDouble();
+          if (dims == 2) {
+            delta[0] = -(rep / div * StrictMath.sin(StrictMath.toRadians(ang)));
+            delta[1] = -(rep / div * StrictMath.cos(StrictMath.toRadians(ang)));
+          } else {
+            double zVal = rep * (2 * random.nextDouble() - 1.0);
+            double repFlat = StrictMath.sqrt(rep * rep - zVal * zVal);
+            delta[0] = -(repFlat * StrictMath.sin(StrictMath.toRadians(ang)));
+            delta[1] = -(repFlat * StrictMath.cos(StrictMath.toRadians(ang)));
+            delta[2] = -zVal;
+          }
+          for (int d = 0; d < dims; d++) {
+            force[d][i] += delta[d];
+            force[d][j] -= delta[d];
+          }
+        }
+      }
+    }
+  }
+
+  private boolean samePlace(int i, int j) {
+    for (int d = 0; d < dims; d++) {
+      if (pos[d][i] != pos[d][j]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+}
@@ -82,207 +82,168 @@ final strictfp class Box
   @Override
   void diffuse(double diffuseparam, int vn)
       throws AgentException, PatchException {
+    diffuseInPasses(diffuseparam, vn, false);
+  }
+
+  @Override
+  void diffuseRows(double[][] scratch, double[][] scratch2, double diffuseparam,
+                   int firstRow, int endRow) {
     int xx = world.worldWidth();
     int yy = world.worldHeight();
-    double[][] scratch = world.getPatchScratch();
-    double[][] scratch2 = new double[xx][yy];
-    int x = 0, y = 0;
-    int minx = world.minPxcor();
-    int miny = world.minPycor();
-
-    try {
-      for (y = 0; y < yy; y++) {
-        for (x = 0; x < xx; x++) {
-          scratch[x][y] =
-              ((Double) world.fastGetPatchAt(x + minx, y + miny)
-                  .getPatchVariable(vn))
-                  .doubleValue();
-          scratch2[x][y] = 0;
-        }
-      }
-    } catch (ClassCastException ex) {
-      throw new PatchException(world.fastGetPatchAt
-          ((int) wrapX(x), (int) wrapY(y)));
-    }
+    int x, y;
 
     for (y = 0; y < yy; y++) {
+      if (!feedsRows(y, yy, firstRow, endRow)) {
+        continue;
+      }
       for (x = 0; x < xx; x++) {
 
         double diffuseVal = (scratch[x][y] / 8) * diffuseparam;
         if (y > 0 && y < yy - 1 && x > 0 && x < xx - 1) {
-          scratch2[x][y] += scratch[x][y] - (8 * diffuseVal);
-          scratch2[x - 1][y - 1] += diffuseVal;
-          scratch2[x - 1][y] += diffuseVal;
-          scratch2[x - 1][y + 1] += diffuseVal;
-          scratch2[x][y + 1] += diffuseVal;
-          scratch2[x][y - 1] += diffuseVal;
-          scratch2[x + 1][y - 1] += diffuseVal;
-          scratch2[x + 1][y] += diffuseVal;
-          scratch2[x + 1][y + 1] += diffuseVal;
+          addInRows(scratch2, x, y, scratch[x][y] - (8 * diffuseVal), firstRow, endRow);
+          addInRows(scratch2, x - 1, y - 1, diffuseVal, firstRow, endRow);
+          addInRows(scratch2, x - 1, y, diffuseVal, firstRow, endRow);
+          addInRows(scratch2, x - 1, y + 1, diffuseVal, firstRow, endRow);
+          addInRows(scratch2, x, y + 1, diffuseVal, firstRow, endRow);
+          addInRows(scratch2, x, y - 1, diffuseVal, firstRow, endRow);
+          addInRows(scratch2, x + 1, y - 1, diffuseVal, firstRow, endRow);
+          addInRows(scratch2, x + 1, y, diffuseVal, firstRow, endRow);
+          addInRows(scratch2, x + 1, y + 1, diffuseVal, firstRow, endRow);
         } else if (y > 0 && y < yy - 1) {
           if (x == 0) {
-            scratch2[x][y] += scratch[x][y] - (5 * diffuseVal);
-            scratch2[x][y + 1] += diffuseVal;
-            scratch2[x][y - 1] += diffuseVal;
-            scratch2[x + 1][y - 1] += diffuseVal;
-            scratch2[x + 1][y] += diffuseVal;
-            scratch2[x + 1][y + 1] += diffuseVal;
+            addInRows(scratch2, x, y, scratch[x][y] - (5 * diffuseVal), firstRow, endRow);
+            addInRows(scratch2, x, y + 1, diffuseVal, firstRow, endRow);
+            addInRows(scratch2, x, y - 1, diffuseVal, firstRow, endRow);
+            addInRows(scratch2, x + 1, y - 1, diffuseVal, firstRow, endRow);
+            addInRows(scratch2, x + 1, y, diffuseVal, firstRow, endRow);
+            addInRows(scratch2, x + 1, y + 1, diffuseVal, firstRow, endRow);
           } else {
-            scratch2[x][y] += scratch[x][y] - (5 * diffuseVal);
-            scratch2[x][y + 1] += diffuseVal;
-            scratch2[x][y - 1] += diffuseVal;
-            scratch2[x - 1][y - 1] += diffuseVal;
-            scratch2[x - 1][y] += diffuseVal;
-            scratch2[x - 1][y + 1] += diffuseVal;
+            addInRows(scratch2, x, y, scratch[x][y] - (5 * diffuseVal), firstRow, endRow);
+            addInRows(scratch2, x, y + 1, diffuseVal, firstRow, endRow);
+            addInRows(scratch2, x, y - 1, diffuseVal, firstRow, endRow);
+            addInRows(scratch2, x - 1, y - 1, diffuseVal, firstRow, endRow);
+            addInRows(scratch2, x - 1, y, diffuseVal, firstRow, endRow);
+            addInRows(scratch2, x - 1, y + 1, diffuseVal, firstRow, endRow);
           }
         } else if (x > 0 && x < xx - 1) {
           if (y == 0) {
-            scratch2[x][y] += scratch[x][y] - (5 * diffuseVal);
-            scratch2[x - 1][y] += diffuseVal;
-            scratch2[x - 1][y + 1] += diffuseVal;
-            scratch2[x][y + 1] += diffuseVal;
-            scratch2[x + 1][y] += diffuseVal;
-            scratch2[x + 1][y + 1] += diffuseVal;
+            addInRows(scratch2, x, y, scratch[x][y] - (5 * diffuseVal), firstRow, endRow);
+            addInRows(scratch2, x - 1, y, diffuseVal, firstRow, endRow);
+            addInRows(scratch2, x - 1, y + 1, diffuseVal, firstRow, endRow);
+            addInRows(scratch2, x, y + 1, diffuseVal, firstRow, endRow);
+            addInRows(scratch2, x + 1, y, diffuseVal, firstRow, endRow);
+            addInRows(scratch2, x + 1, y + 1, diffuseVal, firstRow, endRow);
           } else {
-            scratch2[x][y] += scratch[x][y] - (5 * diffuseVal);
-            scratch2[x - 1][y] += diffuseVal;
-            scratch2[x - 1][y - 1] += diffuseVal;
-            scratch2[x][y - 1] += diffuseVal;
-            scratch2[x + 1][y] += diffuseVal;
-            scratch2[x + 1][y - 1] += diffuseVal;
+            addInRows(scratch2, x, y, scratch[x][y] - (5 * diffuseVal), firstRow, endRow);
+            addInRows(scratch2, x - 1, y, diffuseVal, firstRow, endRow);
+            addInRows(scratch2, x - 1, y - 1, diffuseVal, firstRow, endRow);
+            addInRows(scratch2, x, y - 1, diffuseVal, firstRow, endRow);
+            addInRows(scratch2, x + 1, y, diffuseVal, firstRow, endRow);
+            addInRows(scratch2, x + 1, y - 1, diffuseVal, firstRow, endRow);
           }
         } else if (x == 0) {
           if (y == 0) {
-            scratch2[x][y] += scratch[x][y] - (3 * diffuseVal);
-            scratch2[x][y + 1] += diffuseVal;
-            scratch2[x + 1][y] += diffuseVal;
-            scratch2[x + 1][y + 1] += diffuseVal;
+            addInRows(scratch2, x, y, scratch[x][y] - (3 * diffuseVal), firstRow, endRow);
+            addInRows(scratch2, x, y + 1, diffuseVal, firstRow, endRow);
+            addInRows(scratch2, x + 1, y, diffuseVal, firstRow, endRow);
+            addInRows(scratch2, x + 1, y + 1, diffuseVal, firstRow, endRow);
           } else {
-            scratch2[x][y] += scratch[x][y] - (3 * diffuseVal);
-            scratch2[x][y - 1] += diffuseVal;
-            scratch2[x + 1][y] += diffuseVal;
-            scratch2[x + 1][y - 1] += diffuseVal;
+            addInRows(scratch2, x, y, scratch[x][y] - (3 * diffuseVal), firstRow, endRow);
+            addInRows(scratch2, x, y - 1, diffuseVal, firstRow, endRow);
+            addInRows(scratch2, x + 1, y, diffuseVal, firstRow, endRow);
+            addInRows(scratch2, x + 1, y - 1, diffuseVal, firstRow, endRow);
           }
         } else {
           if (y == 0) {
-            scratch2[x][y] += scratch[x][y] - (3 * diffuseVal);
-            scratch2[x][y + 1] += diffuseVal;
-            scratch2[x - 1][y] += diffuseVal;
-            scratch2[x - 1][y + 1] += diffuseVal;
+            addInRows(scratch2, x, y, scratch[x][y] - (3 * diffuseVal), firstRow, endRow);
+            addInRows(scratch2, x, y + 1, diffuseVal, firstRow, endRow);
+            addInRows(scratch2, x - 1, y, diffuseVal, firstRow, endRow);
+            addInRows(scratch2, x - 1, y + 1, diffuseVal, firstRow, endRow);
           } else {
-            scratch2[x][y] += scratch[x][y] - (3 * diffuseVal);
-            scratch2[x][y - 1] += diffuseVal;
-            scratch2[x - 1][y] += diffuseVal;
-            scratch2[x - 1][y - 1] += diffuseVal;
+            addInRows(scratch2, x, y, scratch[x][y] - (3 * diffuseVal), firstRow, endRow);
+            addInRows(scratch2, x, y - 1, diffuseVal, firstRow, endRow);
+            addInRows(scratch2, x - 1, y, diffuseVal, firstRow, endRow);
+            addInRows(scratch2, x - 1, y - 1, diffuseVal, firstRow, endRow);
           }
         }
       }
     }
-
-    for (y = 0; y < yy; y++) {
-      for (x = 0; x < xx; x++) {
-        if (scratch2[x][y] != scratch[x][y]) {
-          world.getPatchAtWrap(x + minx, y + miny)
-              .setPatchVariable(vn, Double.valueOf(scratch2[x][y]));
-        }
-      }
-    }
   }
 
   @Override
   void diffuse4(double diffuseparam, int vn)
       throws AgentException, PatchException {
+    diffuseInPasses(diffuseparam, vn, true);
+  }
+
+  @Override
+  void diffuse4Rows(double[][] scratch, double[][] scratch2, double diffuseparam,
+                    int firstRow, int endRow) {
     int xx = world.worldWidth();
     int yy = world.worldHeight();
-    double[][] scratch = world.getPatchScratch();
-    double[][] scratch2 = new double[xx][yy];
-    int x = 0, y = 0;
-    int minx = world.minPxcor();
-    int miny = world.minPycor();
-
-    try {
-      for (y = 0; y < yy; y++) {
-        for (x = 0; x < xx; x++) {
-          scratch[x][y] =
-              ((Double) world.fastGetPatchAt(x + minx, y + miny)
-                  .getPatchVariable(vn))
-                  .doubleValue();
-          scratch2[x][y] = 0;
-        }
-      }
-    } catch (ClassCastException ex) {
-      throw new PatchException(world.fastGetPatchAt
-          ((int) wrapX(x), (int) wrapY(y)));
-    }
+    int x, y;
 
     for (y = 0; y < yy; y++) {
+      if (!feedsRows(y, yy, firstRow, endRow)) {
+        continue;
+      }
       for (x = 0; x < xx; x++) {
 
         double diffuseVal = (scratch[x][y] / 4) * diffuseparam;
 
         if (y > 0 && y < yy - 1 && x > 0 && x < xx - 1) {
-          scratch2[x][y] += scratch[x][y] - (4 * diffuseVal);
-          scratch2[x - 1][y] += diffuseVal;
-          scratch2[x][y + 1] += diffuseVal;
-          scratch2[x][y - 1] += diffuseVal;
-          scratch2[x + 1][y] += diffuseVal;
+          addInRows(scratch2, x, y, scratch[x][y] - (4 * diffuseVal), firstRow, endRow);
+          addInRows(scratch2, x - 1, y, diffuseVal, firstRow, endRow);
+          addInRows(scratch2, x, y + 1, diffuseVal, firstRow, endRow);
+          addInRows(scratch2, x, y - 1, diffuseVal, firstRow, endRow);
+          addInRows(scratch2, x + 1, y, diffuseVal, firstRow, endRow);
         } else if (y > 0 && y < yy - 1) {
           if (x == 0) {
-            scratch2[x][y] += scratch[x][y] - (3 * diffuseVal);
-            scratch2[x][y + 1] += diffuseVal;
-            scratch2[x][y - 1] += diffuseVal;
-            scratch2[x + 1][y] += diffuseVal;
+            addInRows(scratch2, x, y, scratch[x][y] - (3 * diffuseVal), firstRow, endRow);
+            addInRows(scratch2, x, y + 1, diffuseVal, firstRow, endRow);
+            addInRows(scratch2, x, y - 1, diffuseVal, firstRow, endRow);
+            addInRows(scratch2, x + 1, y, diffuseVal, firstRow, endRow);
           } else {
-            scratch2[x][y] += scratch[x][y] - (3 * diffuseVal);
-            scratch2[x][y + 1] += diffuseVal;
-            scratch2[x][y - 1] += diffuseVal;
-            scratch2[x - 1][y] += diffuseVal;
+            addInRows(scratch2, x, y, scratch[x][y] - (3 * diffuseVal), firstRow, endRow);
+            addInRows(scratch2, x, y + 1, diffuseVal, firstRow, endRow);
+            addInRows(scratch2, x, y - 1, diffuseVal, firstRow, endRow);
+            addInRows(scratch2, x - 1, y, diffuseVal, firstRow, endRow);
           }
         } else if (x > 0 && x < xx - 1) {
           if (y == 0) {
-            scratch2[x][y] += scratch[x][y] - (3 * diffuseVal);
-            scratch2[x - 1][y] += diffuseVal;
-            scratch2[x][y + 1] += diffuseVal;
-            scratch2[x + 1][y] += diffuseVal;
+            addInRows(scratch2, x, y, scratch[x][y] - (3 * diffuseVal), firstRow, endRow);
+            addInRows(scratch2, x - 1, y, diffuseVal, firstRow, endRow);
+            addInRows(scratch2, x, y + 1, diffuseVal, firstRow, endRow);
+            addInRows(scratch2, x + 1, y, diffuseVal, firstRow, endRow);
           } else {
-            scratch2[x][y] += scratch[x][y] - (3 * diffuseVal);
-            scratch2[x - 1][y] += diffuseVal;
-            scratch2[x][y - 1] += diffuseVal;
-            scratch2[x + 1][y] += diffuseVal;
+            addInRows(scratch2, x, y, scratch[x][y] - (3 * diffuseVal), firstRow, endRow);
+            addInRows(scratch2, x - 1, y, diffuseVal, firstRow, endRow);
+            addInRows(scratch2, x, y - 1, diffuseVal, firstRow, endRow);
+            addInRows(scratch2, x + 1, y, diffuseVal, firstRow, endRow);
           }
         } else if (x == 0) {
           if (y == 0) {
-            scratch2[x][y] += scratch[x][y] - (2 * diffuseVal);
-            scratch2[x][y + 1] += diffuseVal;
-            scratch2[x + 1][y] += diffuseVal;
+            addInRows(scratch2, x, y, scratch[x][y] - (2 * diffuseVal), firstRow, endRow);
+            addInRows(scratch2, x, y + 1, diffuseVal, firstRow, endRow);
+            addInRows(scratch2, x + 1, y, diffuseVal, firstRow, endRow);
           } else {
-            scratch2[x][y] += scratch[x][y] - (2 * diffuseVal);
-            scratch2[x][y - 1] += diffuseVal;
-            scratch2[x + 1][y] += diffuseVal;
+            addInRows(scratch2, x, y, scratch[x][y] - (2 * diffuseVal), firstRow, endRow);
+            addInRows(scratch2, x, y - 1, diffuseVal, firstRow, endRow);
+            addInRows(scratch2, x + 1, y, diffuseVal, firstRow, endRow);
           }
         } else {
           if (y == 0) {
-            scratch2[x][y] += scratch[x][y] - (2 * diffuseVal);
-            scratch2[x][y + 1] += diffuseVal;
-            scratch2[x - 1][y] += diffuseVal;
+            addInRows(scratch2, x, y, scratch[x][y] - (2 * diffuseVal), firstRow, endRow);
+            addInRows(scratch2, x, y + 1, diffuseVal, firstRow, endRow);
+            addInRows(scratch2, x - 1, y, diffuseVal, firstRow, endRow);
           } else {
-            scratch2[x][y] += scratch[x][y] - (2 * diffuseVal);
-            scratch2[x][y - 1] += diffuseVal;
-            scratch2[x - 1][y] += diffuseVal;
+            addInRows(scratch2, x, y, scratch[x][y] - (2 * diffuseVal), firstRow, endRow);
+            addInRows(scratch2, x, y - 1, diffuseVal, firstRow, endRow);
+            addInRows(scratch2, x - 1, y, diffuseVal, firstRow, endRow);
           }
         }
       }
     }
-
-    for (y = 0; y < yy; y++) {
-      for (x = 0; x < xx; x++) {
-        if (scratch2[x][y] != scratch[x][y]) {
-          world.getPatchAtWrap(x + minx, y + miny)
-              .setPatchVariable(vn, Double.valueOf(scratch2[x][y]));
-        }
-      }
-    }
-
   }
 
   @Override
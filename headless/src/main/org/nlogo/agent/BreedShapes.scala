@@ -41,4 +41,18 @@ class BreedShapes(genericBreedName: String) {
     }
   }
 
+  // for World.fork
+  def copyFrom(other: BreedShapes) {
+    val otherShapes = other.copyOfShapes
+    lock.synchronized {
+      shapes.clear()
+      shapes ++= otherShapes
+    }
+  }
+
+  private def copyOfShapes =
+    lock.synchronized {
+      shapes.toMap
+    }
+
 }
@@ -0,0 +1,61 @@
+// (C) Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.agent;
+
+import org.nlogo.api.AgentChanges;
+
+import java.util.BitSet;
+
+// Records which agents have changed in ways a view could show, for World.drainAgentChanges.
+// The agents call in here from their setters, but only once something has asked for changes,
+// since until then World.changeTracker is null.  Everything is changed to begin with, and again
+// whenever the world is cleared or resized, since then the agents come and go wholesale instead
+// of one at a time.
+//
+// None of this is synchronized, so nothing that can run on several threads at once (the bands of
+// a parallel diffuse, say) may set anything that records a change while we're on.
+
+strictfp final class ChangeTracker {
+
+  private boolean everything = true;
+  private BitSet patches = new BitSet();
+  private BitSet turtles = new BitSet();
+  private boolean links = false;
+
+  void patchChanged(long id) {
+    if (!everything) {
+      patches.set((int) id);
+    }
+  }
+
+  void turtleChanged(long who) {
+    if (!everything) {
+      // a BitSet can't hold who numbers this big, but we'll never really see them
+      if (who > Integer.MAX_VALUE) {
+        everythingChanged();
+      } else {
+        turtles.set((int) who);
+      }
+    }
+  }
+
+  void linkChanged() {
+    links = true;
+  }
+
+  void everythingChanged() {
+    everything = true;
+    patches.clear();
+    turtles.clear();
+  }
+
+  AgentChanges drain() {
+    AgentChanges result = new AgentChanges(everything, patches, turtles, links || everything);
+    everything = false;
+    patches = new BitSet();
+    turtles = new BitSet();
+    links = false;
+    return result;
+  }
+
+}
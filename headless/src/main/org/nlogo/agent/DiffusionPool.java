@@ -0,0 +1,103 @@
+// (C) Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.agent;
+
+import org.nlogo.api.AgentException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+// Runs the passes of a diffusion (see Topology.diffuseInPasses) over bands of rows of the patch
+// grid in parallel.  Each World gets its own pool, sized by World.diffusionThreads(int).
+
+strictfp final class DiffusionPool {
+
+  interface Pass {
+    // does the work for rows firstRow (inclusive) to endRow (exclusive)
+    void run(int firstRow, int endRow)
+        throws AgentException, PatchException;
+  }
+
+  private final int threads;
+  private final ExecutorService executor;
+
+  DiffusionPool(int threads) {
+    this.threads = threads;
+    executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "NetLogo diffusion");
+        // don't keep the JVM alive just for us
+        t.setDaemon(true);
+        return t;
+      }
+    });
+  }
+
+  int threads() {
+    return threads;
+  }
+
+  void shutdown() {
+    executor.shutdown();
+  }
+
+  // Splits rows 0 (inclusive) to rows (exclusive) into one band per thread and waits for all of
+  // them to finish.  If any bands failed, the exception from the lowest band is rethrown, which is
+  // the same exception a serial pass over the rows would have run into first.
+  void run(int rows, final Pass pass)
+      throws AgentException, PatchException {
+    int bands = StrictMath.min(threads, rows);
+    List<Future<Void>> futures = new ArrayList<Future<Void>>(bands);
+    for (int i = 0; i < bands; i++) {
+      final int firstRow = (int) ((long) rows * i / bands);
+      final int endRow = (int) ((long) rows * (i + 1) / bands);
+      futures.add(executor.submit(new Callable<Void>() {
+        public Void call()
+            throws AgentException, PatchException {
+          pass.run(firstRow, endRow);
+          return null;
+        }
+      }));
+    }
+    // we wait for every band even if interrupted, since bands that are still running may be
+    // writing to patches; the interrupt is passed along once they are all done
+    boolean interrupted = false;
+    Throwable failure = null;
+    for (Future<Void> future : futures) {
+      while (true) {
+        try {
+          future.get();
+          break;
+        } catch (InterruptedException ex) {
+          interrupted = true;
+        } catch (ExecutionException ex) {
+          if (failure == null) {
+            failure = ex.getCause();
+          }
+          break;
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    if (failure instanceof AgentException) {
+      throw (AgentException) failure;
+    } else if (failure instanceof PatchException) {
+      throw (PatchException) failure;
+    } else if (failure instanceof RuntimeException) {
+      throw (RuntimeException) failure;
+    } else if (failure instanceof Error) {
+      throw (Error) failure;
+    } else if (failure != null) {
+      throw new IllegalStateException(failure);
+    }
+  }
+
+}
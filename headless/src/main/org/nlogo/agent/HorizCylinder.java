@@ -92,137 +92,97 @@ final strictfp class HorizCylinder
   @Override
   void diffuse(double diffuseparam, int vn)
       throws AgentException, PatchException {
+    diffuseInPasses(diffuseparam, vn, false);
+  }
+
+  @Override
+  void diffuseRows(double[][] scratch, double[][] scratch2, double diffuseparam,
+                   int firstRow, int endRow) {
     int xx = world.worldWidth();
     int yy = world.worldHeight();
     int xx2 = xx * 2;
     int yy2 = yy * 2;
-    double[][] scratch = world.getPatchScratch();
-    double[][] scratch2 = new double[xx][yy];
-    int x = 0, y = 0;
-    int minx = world.minPxcor();
-    int miny = world.minPycor();
-
-    try {
-      for (y = 0; y < yy; y++) {
-        for (x = 0; x < xx; x++) {
-          scratch[x][y] =
-              ((Double) world.fastGetPatchAt(x + minx, y + miny)
-                  .getPatchVariable(vn))
-                  .doubleValue();
-          scratch2[x][y] = 0;
-        }
-      }
-    } catch (ClassCastException ex) {
-      throw new PatchException(world.fastGetPatchAt
-          ((int) wrapX(x), (int) wrapY(y)));
-    }
+    int x, y;
 
     for (y = yy; y < yy2; y++) {
+      if (!feedsRows(y - yy, yy, firstRow, endRow)) {
+        continue;
+      }
       for (x = xx; x < xx2; x++) {
 
         double diffuseVal = (scratch[x - xx][y - yy] / 8) * diffuseparam;
 
         if (x > xx && x < xx2 - 1) {
-          scratch2[x - xx][y - yy] += scratch[x - xx][y - yy] - (8 * diffuseVal);
-          scratch2[(x - 1) % xx][(y - 1) % yy] += diffuseVal;
-          scratch2[(x - 1) % xx][y % yy] += diffuseVal;
-          scratch2[(x - 1) % xx][(y + 1) % yy] += diffuseVal;
-          scratch2[x % xx][(y + 1) % yy] += diffuseVal;
-          scratch2[x % xx][(y - 1) % yy] += diffuseVal;
-          scratch2[(x + 1) % xx][(y - 1) % yy] += diffuseVal;
-          scratch2[(x + 1) % xx][y % yy] += diffuseVal;
-          scratch2[(x + 1) % xx][(y + 1) % yy] += diffuseVal;
+          addInRows(scratch2, x - xx, y - yy, scratch[x - xx][y - yy] - (8 * diffuseVal), firstRow, endRow);
+          addInRows(scratch2, (x - 1) % xx, (y - 1) % yy, diffuseVal, firstRow, endRow);
+          addInRows(scratch2, (x - 1) % xx, y % yy, diffuseVal, firstRow, endRow);
+          addInRows(scratch2, (x - 1) % xx, (y + 1) % yy, diffuseVal, firstRow, endRow);
+          addInRows(scratch2, x % xx, (y + 1) % yy, diffuseVal, firstRow, endRow);
+          addInRows(scratch2, x % xx, (y - 1) % yy, diffuseVal, firstRow, endRow);
+          addInRows(scratch2, (x + 1) % xx, (y - 1) % yy, diffuseVal, firstRow, endRow);
+          addInRows(scratch2, (x + 1) % xx, y % yy, diffuseVal, firstRow, endRow);
+          addInRows(scratch2, (x + 1) % xx, (y + 1) % yy, diffuseVal, firstRow, endRow);
         } else if (x == xx) {
-          scratch2[x - xx][y - yy] += scratch[x - xx][y - yy] - (5 * diffuseVal);
-          scratch2[x % xx][(y + 1) % yy] += diffuseVal;
-          scratch2[x % xx][(y - 1) % yy] += diffuseVal;
-          scratch2[(x + 1) % xx][(y - 1) % yy] += diffuseVal;
-          scratch2[(x + 1) % xx][y % yy] += diffuseVal;
-          scratch2[(x + 1) % xx][(y + 1) % yy] += diffuseVal;
+          addInRows(scratch2, x - xx, y - yy, scratch[x - xx][y - yy] - (5 * diffuseVal), firstRow, endRow);
+          addInRows(scratch2, x % xx, (y + 1) % yy, diffuseVal, firstRow, endRow);
+          addInRows(scratch2, x % xx, (y - 1) % yy, diffuseVal, firstRow, endRow);
+          addInRows(scratch2, (x + 1) % xx, (y - 1) % yy, diffuseVal, firstRow, endRow);
+          addInRows(scratch2, (x + 1) % xx, y % yy, diffuseVal, firstRow, endRow);
+          addInRows(scratch2, (x + 1) % xx, (y + 1) % yy, diffuseVal, firstRow, endRow);
         } else {
-          scratch2[x - xx][y - yy] += scratch[x - xx][y - yy] - (5 * diffuseVal);
-          scratch2[x % xx][(y + 1) % yy] += diffuseVal;
-          scratch2[x % xx][(y - 1) % yy] += diffuseVal;
-          scratch2[(x - 1) % xx][(y - 1) % yy] += diffuseVal;
-          scratch2[(x - 1) % xx][y % yy] += diffuseVal;
-          scratch2[(x - 1) % xx][(y + 1) % yy] += diffuseVal;
-        }
-      }
-    }
-
-    for (y = 0; y < yy; y++) {
-      for (x = 0; x < xx; x++) {
-        if (scratch2[x][y] != scratch[x][y]) {
-          world.getPatchAtWrap(x + minx, y + miny)
-              .setPatchVariable(vn, Double.valueOf(scratch2[x][y]));
+          addInRows(scratch2, x - xx, y - yy, scratch[x - xx][y - yy] - (5 * diffuseVal), firstRow, endRow);
+          addInRows(scratch2, x % xx, (y + 1) % yy, diffuseVal, firstRow, endRow);
+          addInRows(scratch2, x % xx, (y - 1) % yy, diffuseVal, firstRow, endRow);
+          addInRows(scratch2, (x - 1) % xx, (y - 1) % yy, diffuseVal, firstRow, endRow);
+          addInRows(scratch2, (x - 1) % xx, y % yy, diffuseVal, firstRow, endRow);
+          addInRows(scratch2, (x - 1) % xx, (y + 1) % yy, diffuseVal, firstRow, endRow);
         }
       }
     }
-
   }
 
   @Override
   void diffuse4(double diffuseparam, int vn)
       throws AgentException, PatchException {
+    diffuseInPasses(diffuseparam, vn, true);
+  }
+
+  @Override
+  void diffuse4Rows(double[][] scratch, double[][] scratch2, double diffuseparam,
+                    int firstRow, int endRow) {
     int xx = world.worldWidth();
     int yy = world.worldHeight();
     int xx2 = xx * 2;
     int yy2 = yy * 2;
-    double[][] scratch = world.getPatchScratch();
-    double[][] scratch2 = new double[xx][yy];
-    int x = 0, y = 0;
-    int minx = world.minPxcor();
-    int miny = world.minPycor();
-
-    try {
-      for (y = 0; y < yy; y++) {
-        for (x = 0; x < xx; x++) {
-          scratch[x][y] =
-              ((Double) world.fastGetPatchAt(x + minx, y + miny)
-                  .getPatchVariable(vn))
-                  .doubleValue();
-          scratch2[x][y] = 0;
-        }
-      }
-    } catch (ClassCastException ex) {
-      throw new PatchException(world.fastGetPatchAt
-          ((int) wrapX(x), (int) wrapY(y)));
-    }
+    int x, y;
 
     for (y = yy; y < yy2; y++) {
+      if (!feedsRows(y - yy, yy, firstRow, endRow)) {
+        continue;
+      }
       for (x = xx; x < xx2; x++) {
 
         double diffuseVal = (scratch[x - xx][y - yy] / 4) * diffuseparam;
 
         if (x > 0 && x < xx - 1) {
-          scratch2[x - xx][y - yy] += scratch[x - xx][y - yy] - (4 * diffuseVal);
-          scratch2[(x - 1) % xx][y] += diffuseVal;
-          scratch2[x % xx][(y + 1) % yy] += diffuseVal;
-          scratch2[x % xx][(y - 1) % yy] += diffuseVal;
-          scratch2[(x + 1) % xx][y % yy] += diffuseVal;
+          addInRows(scratch2, x - xx, y - yy, scratch[x - xx][y - yy] - (4 * diffuseVal), firstRow, endRow);
+          addInRows(scratch2, (x - 1) % xx, y, diffuseVal, firstRow, endRow);
+          addInRows(scratch2, x % xx, (y + 1) % yy, diffuseVal, firstRow, endRow);
+          addInRows(scratch2, x % xx, (y - 1) % yy, diffuseVal, firstRow, endRow);
+          addInRows(scratch2, (x + 1) % xx, y % yy, diffuseVal, firstRow, endRow);
         } else if (x == xx) {
-          scratch2[x - xx][y - yy] += scratch[x - xx][y - yy] - (3 * diffuseVal);
-          scratch2[x % xx][(y + 1) % yy] += diffuseVal;
-          scratch2[x % xx][(y - 1) % yy] += diffuseVal;
-          scratch2[(x + 1) % xx][y % yy] += diffuseVal;
+          addInRows(scratch2, x - xx, y - yy, scratch[x - xx][y - yy] - (3 * diffuseVal), firstRow, endRow);
+          addInRows(scratch2, x % xx, (y + 1) % yy, diffuseVal, firstRow, endRow);
+          addInRows(scratch2, x % xx, (y - 1) % yy, diffuseVal, firstRow, endRow);
+          addInRows(scratch2, (x + 1) % xx, y % yy, diffuseVal, firstRow, endRow);
         } else {
-          scratch2[x - xx][y - yy] += scratch[x - xx][y - yy] - (3 * diffuseVal);
-          scratch2[x % xx][(y + 1) % yy] += diffuseVal;
-          scratch2[x % xx][(y - 1) % yy] += diffuseVal;
-          scratch2[(x - 1) % xx][y % yy] += diffuseVal;
-        }
-      }
-    }
-
-    for (y = 0; y < yy; y++) {
-      for (x = 0; x < xx; x++) {
-        if (scratch2[x][y] != scratch[x][y]) {
-          world.getPatchAtWrap(x + minx, y + miny)
-              .setPatchVariable(vn, Double.valueOf(scratch2[x][y]));
+          addInRows(scratch2, x - xx, y - yy, scratch[x - xx][y - yy] - (3 * diffuseVal), firstRow, endRow);
+          addInRows(scratch2, x % xx, (y + 1) % yy, diffuseVal, firstRow, endRow);
+          addInRows(scratch2, x % xx, (y - 1) % yy, diffuseVal, firstRow, endRow);
+          addInRows(scratch2, (x - 1) % xx, y % yy, diffuseVal, firstRow, endRow);
         }
       }
     }
-
   }
 
   @Override
@@ -39,6 +39,18 @@ public strictfp class InRadiusOrCone {
       startY = startPatch.pycor;
     }
 
+    if (world.turtleGrid != null && sourceSet.kind() == AgentKindJ.Turtle()) {
+      List<Turtle> candidates = new ArrayList<Turtle>();
+      world.turtleGrid.candidates(startX, startY, radius, candidates);
+      for (Turtle turtle : candidates) {
+        if (world.protractor().distance(turtle.xcor(), turtle.ycor(), startX, startY, wrap) <= radius &&
+            includes(sourceSet, turtle)) {
+          result.add(turtle);
+        }
+      }
+      return result;
+    }
+
     int dxmin = 0;
     int dxmax = 0;
     int dymin = 0;
@@ -154,6 +166,30 @@ public strictfp class InRadiusOrCone {
     List<Agent> result = new ArrayList<Agent>();
     Patch startPatch = startTurtle.getPatchHere();
     double half = angle / 2;
+
+    if (world.turtleGrid != null && sourceSet.kind() == AgentKindJ.Turtle()) {
+      // the grid's stencils already go all the way around the world if the radius calls for it,
+      // so every turtle shows up once; the world copies are still needed for the cone test
+      List<Turtle> candidates = new ArrayList<Turtle>();
+      world.turtleGrid.candidates(startTurtle.xcor(), startTurtle.ycor(), radius, candidates);
+      for (Turtle turtle : candidates) {
+        if (includes(sourceSet, turtle)) {
+          outer:
+          for (int worldOffsetX = -m; worldOffsetX <= m; worldOffsetX++) {
+            for (int worldOffsetY = -n; worldOffsetY <= n; worldOffsetY++) {
+              if (isInCone(turtle.xcor() + worldWidth * worldOffsetX,
+                  turtle.ycor() + worldHeight * worldOffsetY,
+                  startTurtle.xcor(), startTurtle.ycor(),
+                  radius, half, startTurtle.heading())) {
+                result.add(turtle);
+                break outer;
+              }
+            }
+          }
+        }
+      }
+      return result;
+    }
     // these four variables determine which patches we will check.
     // the patches we check always form a rectangle.  usually it
     // will be a square, but if the radius is large enough, then
@@ -261,6 +297,16 @@ public strictfp class InRadiusOrCone {
     return result;
   }
 
+  private boolean includes(AgentSet sourceSet, Turtle turtle) {
+    // any turtle set with a non-null print name is either
+    // the set of all turtles, or a breed agentset
+    return sourceSet == world.turtles() ||
+        (sourceSet.printName() != null &&
+            sourceSet == turtle.getBreed()) ||
+        (sourceSet.printName() == null &&
+            sourceSet.contains(turtle));
+  }
+
   // helper method for inCone().
   // check if (x, y) is in the cone with center (cx, cy) , radius r, half-angle half, and central
   // line of the cone having heading h.
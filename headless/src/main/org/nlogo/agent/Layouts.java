@@ -67,11 +67,18 @@ public final strictfp class Layouts {
   public static void spring(AgentSet nodeset, AgentSet linkset,
                             double spr, double len, double rep,
                             org.nlogo.util.MersenneTwisterFast random) {
+    spring(nodeset, linkset, spr, len, rep, 0, random);
+  }
+
+  // if theta is more than 0, the repulsion is approximated (see BarnesHut)
+  public static void spring(AgentSet nodeset, AgentSet linkset,
+                            double spr, double len, double rep, double theta,
+                            org.nlogo.util.MersenneTwisterFast random) {
     World world = nodeset.world();
     if (world.program().is3D()) {
-      Layouts3D.spring3D(nodeset, linkset, spr, len, rep, random);
+      Layouts3D.spring3D(nodeset, linkset, spr, len, rep, theta, random);
     } else {
-      spring2D(nodeset, linkset, spr, len, rep, random);
+      spring2D(nodeset, linkset, spr, len, rep, theta, random);
     }
   }
 
@@ -79,7 +86,7 @@ public final strictfp class Layouts {
   // GOOD CHANCE THAT ANY EDITS MADE HERE SHOULD BE MADE THERE
   // AS WELL.  ~Forrest (12/5/2006)
   public static void spring2D(AgentSet nodeset, AgentSet linkset,
-                              double spr, double len, double rep,
+                              double spr, double len, double rep, double theta,
                               org.nlogo.util.MersenneTwisterFast random) {
     World world = nodeset.world();
     int nodeCount = nodeset.count();
@@ -158,29 +165,40 @@ public final strictfp class Layouts {
       }
     }
 
-    for (i = 0; i < nodeCount; i++) {
-      Turtle t1 = agt[i];
-      for (int j = i + 1; j < nodeCount; j++) {
-        Turtle t2 = agt[j];
-        double dx = 0.0;
-        double dy = 0.0;
-        double div = (degCount[i] + degCount[j]) / 2.0;
-        div = StrictMath.max(div, 1.0);
-
-        if (t2.xcor() == t1.xcor() && t2.ycor() == t1.ycor()) {
-          double ang = 360 * random.nextDouble();
-          dx = -(rep / div * StrictMath.sin(StrictMath.toRadians(ang)));
-          dy = -(rep / div * StrictMath.cos(StrictMath.toRadians(ang)));
-        } else {
-          double dist = world.protractor().distance(t1, t2, false);
-          double f = rep / (dist * dist) / div;
-          dx = -(f * (t2.xcor() - t1.xcor()) / dist);
-          dy = -(f * (t2.ycor() - t1.ycor()) / dist);
+    if (theta > 0) {
+      double[] xs = new double[nodeCount];
+      double[] ys = new double[nodeCount];
+      for (i = 0; i < nodeCount; i++) {
+        xs[i] = agt[i].xcor();
+        ys[i] = agt[i].ycor();
+      }
+      BarnesHut.repel(new double[][]{xs, ys}, degCount, rep, theta, random,
+          new double[][]{ax, ay});
+    } else {
+      for (i = 0; i < nodeCount; i++) {
+        Turtle t1 = agt[i];
+        for (int j = i + 1; j < nodeCount; j++) {
+          Turtle t2 = agt[j];
+          double dx = 0.0;
+          double dy = 0.0;
+          double div = (degCount[i] + degCount[j]) / 2.0;
+          div = StrictMath.max(div, 1.0);
+
+          if (t2.xcor() == t1.xcor() && t2.ycor() == t1.ycor()) {
+            double ang = 360 * random.nextDouble();
+            dx = -(rep / div * StrictMath.sin(StrictMath.toRadians(ang)));
+            dy = -(rep / div * StrictMath.cos(StrictMath.toRadians(ang)));
+          } else {
+            double dist = world.protractor().distance(t1, t2, false);
+            double f = rep / (dist * dist) / div;
+            dx = -(f * (t2.xcor() - t1.xcor()) / dist);
+            dy = -(f * (t2.ycor() - t1.ycor()) / dist);
+          }
+          ax[i] += dx;
+          ay[i] += dy;
+          ax[j] -= dx;
+          ay[j] -= dy;
         }
-        ax[i] += dx;
-        ay[i] += dy;
-        ax[j] -= dx;
-        ay[j] -= dy;
       }
     }
 
@@ -28,7 +28,7 @@ public final strictfp class Layouts3D {
   // GOOD CHANCE THAT ANY EDITS MADE HERE SHOULD BE MADE THERE
   // AS WELL.  ~Forrest (12/5/2006)
   public static void spring3D(AgentSet nodeset, AgentSet linkset,
-                              double spr, double len, double rep,
+                              double spr, double len, double rep, double theta,
                               org.nlogo.util.MersenneTwisterFast random) {
     World3D world = (World3D) nodeset.world();
     int nodeCount = nodeset.count();
@@ -115,38 +115,51 @@ public final strictfp class Layouts3D {
       }
     }
 
-    for (i = 0; i < nodeCount; i++) {
-      Turtle3D t1 = agt[i];
-      for (int j = i + 1; j < nodeCount; j++) {
-        Turtle3D t2 = agt[j];
-        double dx = 0.0;
-        double dy = 0.0;
-        double dz = 0.0;
-        double div = (degCount[i] + degCount[j]) / 2.0;
-        div = StrictMath.max(div, 1.0);
-
-        if (t2.xcor() == t1.xcor() && t2.ycor() == t1.ycor() && t2.zcor() == t1.zcor()) {
-          // push off in random direction
-          double ang = 360 * random.nextDouble();
-          double zVal = rep * (2 * random.nextDouble() - 1.0);
-          double repFlat = StrictMath.sqrt(rep * rep - zVal * zVal);
-          dx = -(repFlat * StrictMath.sin(StrictMath.toRadians(ang)));
-          dy = -(repFlat * StrictMath.cos(StrictMath.toRadians(ang)));
-          dz = -zVal;
-        } else {
-          double dist = world.protractor().distance(t1, t2, false);
-          // repulse according to an inverse square function
-          double f = rep / (dist * dist) / div;
-          dx = -(f * (t2.xcor() - t1.xcor()) / dist);
-          dy = -(f * (t2.ycor() - t1.ycor()) / dist);
-          dz = -(f * (t2.zcor() - t1.zcor()) / dist);
+    if (theta > 0) {
+      double[] xs = new double[nodeCount];
+      double[] ys = new double[nodeCount];
+      double[] zs = new double[nodeCount];
+      for (i = 0; i < nodeCount; i++) {
+        xs[i] = agt[i].xcor();
+        ys[i] = agt[i].ycor();
+        zs[i] = agt[i].zcor();
+      }
+      BarnesHut.repel(new double[][]{xs, ys, zs}, degCount, rep, theta, random,
+          new double[][]{ax, ay, az});
+    } else {
+      for (i = 0; i < nodeCount; i++) {
+        Turtle3D t1 = agt[i];
+        for (int j = i + 1; j < nodeCount; j++) {
+          Turtle3D t2 = agt[j];
+          double dx = 0.0;
+          double dy = 0.0;
+          double dz = 0.0;
+          double div = (degCount[i] + degCount[j]) / 2.0;
+          div = StrictMath.max(div, 1.0);
+
+          if (t2.xcor() == t1.xcor() && t2.ycor() == t1.ycor() && t2.zcor() == t1.zcor()) {
+            // push off in random direction
+            double ang = 360 * random.nextDouble();
+            double zVal = rep * (2 * random.nextDouble() - 1.0);
+            double repFlat = StrictMath.sqrt(rep * rep - zVal * zVal);
+            dx = -(repFlat * StrictMath.sin(StrictMath.toRadians(ang)));
+            dy = -(repFlat * StrictMath.cos(StrictMath.toRadians(ang)));
+            dz = -zVal;
+          } else {
+            double dist = world.protractor().distance(t1, t2, false);
+            // repulse according to an inverse square function
+            double f = rep / (dist * dist) / div;
+            dx = -(f * (t2.xcor() - t1.xcor()) / dist);
+            dy = -(f * (t2.ycor() - t1.ycor()) / dist);
+            dz = -(f * (t2.zcor() - t1.zcor()) / dist);
+          }
+          ax[i] += dx;
+          ay[i] += dy;
+          az[i] += dz;
+          ax[j] -= dx;
+          ay[j] -= dy;
+          az[j] -= dz;
         }
-        ax[i] += dx;
-        ay[i] += dy;
-        az[i] += dz;
-        ax[j] -= dx;
-        ay[j] -= dy;
-        az[j] -= dz;
       }
     }
 
@@ -96,6 +96,7 @@ public strictfp class Link
 
     variables[VAR_BREED] = breed;
     world.links().add(this);
+    changed();
 
     if (breed != world.links()) {
       breed.add(this);
@@ -117,6 +118,15 @@ public strictfp class Link
     }
     world.linkManager.cleanup(this);
     id = -1;
+    changed();
+  }
+
+  // tells World.changeTracker, if there is one, that the view may need to show this link
+  // differently (or not at all, if it just died)
+  private void changed() {
+    if (world.changeTracker != null) {
+      world.changeTracker.linkChanged();
+    }
   }
 
   ///
@@ -463,6 +473,7 @@ public strictfp class Link
 
   public void lineThickness(Double value) {
     variables[VAR_THICKNESS] = value;
+    changed();
   }
 
   public boolean isDirectedLink() {
@@ -483,6 +494,7 @@ public strictfp class Link
 
   public void shape(String shape) {
     variables[VAR_SHAPE] = shape;
+    changed();
   }
 
   public static final String MODE_NONE = "none";
@@ -517,10 +529,12 @@ public strictfp class Link
       boxedColor = Double.valueOf(c);
     }
     variables[VAR_COLOR] = boxedColor;
+    changed();
   }
 
   public void colorDoubleUnchecked(Double boxedColor) {
     variables[VAR_COLOR] = boxedColor;
+    changed();
   }
 
   public void color(LogoList rgb)
@@ -530,6 +544,7 @@ public strictfp class Link
     if(rgb.size() > 3) {
       world.mayHavePartiallyTransparentObjects = true;
     }
+    changed();
   }
 
   public AgentSet bothEnds() {
@@ -561,6 +576,7 @@ public strictfp class Link
 
   public void label(Object label) {
     variables[VAR_LABEL] = label;
+    changed();
   }
 
   public boolean hidden() {
@@ -569,6 +585,7 @@ public strictfp class Link
 
   public void hidden(boolean hidden) {
     variables[VAR_HIDDEN] = hidden ? Boolean.TRUE : Boolean.FALSE;
+    changed();
   }
 
   public AgentSet getBreed() {
@@ -581,12 +598,14 @@ public strictfp class Link
 
   public void labelColor(double labelColor) {
     variables[VAR_LABELCOLOR] = Double.valueOf(Color.modulateDouble(labelColor));
+    changed();
   }
 
   public void labelColor(LogoList rgb)
       throws AgentException {
     validRGBList(rgb, true);
     variables[VAR_LABELCOLOR] = rgb;
+    changed();
   }
 
   @Override
@@ -6,11 +6,8 @@ package org.nlogo.agent;
  * LinkManager -- Keeps track of links.
  */
 
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import org.nlogo.api.AgentKindJ;
 
 public strictfp class LinkManager {
@@ -23,44 +20,177 @@ public strictfp class LinkManager {
 
   ///
 
-  // Use LinkedHashMap not HashMap for these so model results are
-  // reproducible. - ST 12/21/05, 3/15/06, 7/20/07
-  final Map<Turtle, List<Link>> srcMap =
-      new LinkedHashMap<Turtle, List<Link>>();
-  final Map<Turtle, List<Link>> destMap =
-      new LinkedHashMap<Turtle, List<Link>>();
+  // each turtle's links are kept on the turtle itself, in the order they were made, so model
+  // results are reproducible.  we don't key them by who number, since that changes when a turtle
+  // dies, and is handed out again after clear-turtles.
+  static final class Adjacency {
+    private static final Link[] NONE = new Link[0];
+    // links from the turtle (it's end1)
+    Link[] out = NONE;
+    int outCount = 0;
+    // links to the turtle (it's end2)
+    Link[] in = NONE;
+    int inCount = 0;
+    // once a turtle has more than SCAN_LIMIT links out, its out links by their end2, so that
+    // findLinkFrom doesn't have to go through them all.  there's usually one link to each end2,
+    // but there may be one of each breed.  keyed by identity, since who numbers change.
+    IdentityHashMap<Turtle, Link[]> outByEnd2 = null;
+
+    void addOut(Link link) {
+      if (outCount == out.length) {
+        out = Arrays.copyOf(out, Math.max(4, outCount * 2));
+      }
+      out[outCount++] = link;
+      if (outByEnd2 != null) {
+        index(link);
+      } else if (outCount > SCAN_LIMIT) {
+        outByEnd2 = new IdentityHashMap<Turtle, Link[]>();
+        for (int i = 0; i < outCount; i++) {
+          index(out[i]);
+        }
+      }
+    }
 
-  private void bless(Link link) {
-    Turtle end1 = link.end1();
-    Turtle end2 = link.end2();
-    // add to source map
-    if (srcMap.containsKey(end1)) {
-      srcMap.get(end1).add(link);
-    } else {
-      ArrayList<Link> recList =
-          new ArrayList<Link>();
-      recList.add(link);
-      srcMap.put(end1, recList);
-    }
-    // add to destination map
-    if (destMap.containsKey(end2)) {
-      destMap.get(end2).add(link);
-    } else {
-      List<Link> recList =
-          new ArrayList<Link>();
-      recList.add(link);
-      destMap.put(end2, recList);
+    private void index(Link link) {
+      Link[] links = outByEnd2.get(link.end2());
+      if (links == null) {
+        outByEnd2.put(link.end2(), new Link[]{link});
+      } else {
+        links = Arrays.copyOf(links, links.length + 1);
+        links[links.length - 1] = link;
+        outByEnd2.put(link.end2(), links);
+      }
+    }
+
+    void addIn(Link link) {
+      if (inCount == in.length) {
+        in = Arrays.copyOf(in, Math.max(4, inCount * 2));
+      }
+      in[inCount++] = link;
+    }
+
+    void removeOut(Link link) {
+      outCount = remove(out, outCount, link);
+      if (outByEnd2 != null) {
+        Link[] links = outByEnd2.get(link.end2());
+        if (links != null) {
+          int count = remove(links, links.length, link);
+          if (count == 0) {
+            outByEnd2.remove(link.end2());
+          } else if (count < links.length) {
+            outByEnd2.put(link.end2(), Arrays.copyOf(links, count));
+          }
+        }
+      }
+    }
+
+    void removeIn(Link link) {
+      inCount = remove(in, inCount, link);
+    }
+
+    boolean isEmpty() {
+      return outCount == 0 && inCount == 0;
+    }
+
+    // the link from the turtle to dest, or null; only once outByEnd2 is there
+    Link outTo(Turtle dest, AgentSet breed) {
+      Link[] links = outByEnd2.get(dest);
+      if (links != null) {
+        for (Link link : links) {
+          if (link.getBreed() == breed) {
+            return link;
+          }
+        }
+      }
+      return null;
     }
+
+    // shifts down the rest, rather than moving the last one in, to keep the order
+    private static int remove(Link[] links, int count, Link link) {
+      for (int i = count - 1; i >= 0; i--) {
+        if (links[i] == link) {
+          System.arraycopy(links, i + 1, links, i, count - i - 1);
+          links[count - 1] = null;
+          return count - 1;
+        }
+      }
+      return count;
+    }
+  }
+
+  private static Adjacency adjacency(Turtle turtle) {
+    if (turtle.adjacency == null) {
+      turtle.adjacency = new Adjacency();
+    }
+    return turtle.adjacency;
+  }
+
+  private void bless(Link link) {
+    adjacency(link.end1()).addOut(link);
+    adjacency(link.end2()).addIn(link);
     if (link.getBreed() == world.links()) {
       countUnbreededLinks++;
     }
   }
 
+  /// iterating over a turtle's links without making an agentset
+
+  public int outLinkCount(Turtle turtle) {
+    return turtle.adjacency == null ? 0 : turtle.adjacency.outCount;
+  }
+
+  public Link outLink(Turtle turtle, int i) {
+    return turtle.adjacency.out[i];
+  }
+
+  public int inLinkCount(Turtle turtle) {
+    return turtle.adjacency == null ? 0 : turtle.adjacency.inCount;
+  }
+
+  public Link inLink(Turtle turtle, int i) {
+    return turtle.adjacency.in[i];
+  }
+
+  // the sizes of findLinksFrom, findLinksTo and findLinksWith, for count and any?
+
+  public int countLinksFrom(Turtle src, AgentSet breed) {
+    int count = outLinkCount(src);
+    if (breed == world.links()) {
+      return count;
+    }
+    int result = 0;
+    for (int i = 0; i < count; i++) {
+      if (outLink(src, i).getBreed() == breed) {
+        result++;
+      }
+    }
+    return result;
+  }
+
+  public int countLinksTo(Turtle target, AgentSet breed) {
+    int count = inLinkCount(target);
+    if (breed == world.links()) {
+      return count;
+    }
+    int result = 0;
+    for (int i = 0; i < count; i++) {
+      if (inLink(target, i).getBreed() == breed) {
+        result++;
+      }
+    }
+    return result;
+  }
+
+  public int countLinksWith(Turtle target, AgentSet breed) {
+    return countLinksFrom(target, breed) + countLinksTo(target, breed);
+  }
+
   ///
 
   public void reset() {
-    srcMap.clear();
-    destMap.clear();
+    for (AgentIterator iter = world.turtles().iterator(); iter.hasNext();) {
+      ((Turtle) iter.next()).adjacency = null;
+    }
     world.tieManager.reset();
     countUnbreededLinks = 0;
     resetLinkDirectedness();
@@ -100,18 +230,24 @@ public strictfp class LinkManager {
     }
   }
 
+  // past this many links, going through a turtle's links to find one is slower than hashing
+  private static final int SCAN_LIMIT = 32;
+
   public Link findLinkFrom(Turtle src, Turtle dest, AgentSet breed, boolean includeAllLinks) {
     if (src == null || dest == null) {
       return null;
     }
-    Link link = (Link) world.links().getAgent(new DummyLink
-        (world, src, dest, breed));
+    Adjacency from = src.adjacency;
+    Adjacency to = dest.adjacency;
+    if (from == null || to == null) {
+      return null;
+    }
+    Link link = findLink(from, to, src, dest, breed);
     if (link == null && includeAllLinks && breed == world.links()) {
       scala.collection.Iterator<String> iter =
         world.program().linkBreeds().keys().iterator();
       while(iter.hasNext()) {
-        AgentSet agents = world.linkBreedAgents.get(iter.next());
-        link = (Link) world.links().getAgent(new DummyLink(world, src, dest, agents));
+        link = findLink(from, to, src, dest, world.linkBreedAgents.get(iter.next()));
         if (link != null) {
           return link;
         }
@@ -120,6 +256,36 @@ public strictfp class LinkManager {
     return link;
   }
 
+  private static Link findLink(Adjacency from, Adjacency to, Turtle src, Turtle dest,
+                               AgentSet breed) {
+    return Math.min(from.outCount, to.inCount) <= SCAN_LIMIT
+        ? scanForLink(from, to, src, dest, breed)
+        : from.outTo(dest, breed);
+  }
+
+  // goes through whichever end has fewer links
+  private static Link scanForLink(Adjacency from, Adjacency to, Turtle src, Turtle dest,
+                                  AgentSet breed) {
+    if (from.outCount <= to.inCount) {
+      Link[] links = from.out;
+      for (int i = 0; i < from.outCount; i++) {
+        Link link = links[i];
+        if (link.end2() == dest && link.getBreed() == breed) {
+          return link;
+        }
+      }
+    } else {
+      Link[] links = to.in;
+      for (int i = 0; i < to.inCount; i++) {
+        Link link = links[i];
+        if (link.end1() == src && link.getBreed() == breed) {
+          return link;
+        }
+      }
+    }
+    return null;
+  }
+
   public Link findLinkEitherWay(Turtle src, Turtle dest, AgentSet breed, boolean includeAllLinks) {
     Link link = findLinkFrom(src, dest, breed, includeAllLinks);
     if (link == null) {
@@ -129,44 +295,37 @@ public strictfp class LinkManager {
   }
 
   public AgentSet findLinkedFrom(Turtle src, AgentSet sourceSet) {
-    List<Link> fromList = srcMap.get(src);
-    if (fromList != null) {
-      AgentSet nodeset =
-        new ArrayAgentSet(AgentKindJ.Turtle(), fromList.size(), false, world);
-      addLinkNeighborsFrom(nodeset, fromList, sourceSet, true);
-      return nodeset;
-    } else {
+    int count = outLinkCount(src);
+    if (count == 0) {
       return world.noTurtles();
     }
+    AgentSet nodeset =
+      new ArrayAgentSet(AgentKindJ.Turtle(), count, false, world);
+    addLinkNeighborsFrom(nodeset, src.adjacency.out, count, sourceSet, true);
+    return nodeset;
   }
 
   public AgentSet findLinkedTo(Turtle target, AgentSet sourceSet) {
-    List<Link> fromList = destMap.get(target);
-    if (fromList != null) {
-      AgentSet nodeset =
-        new ArrayAgentSet(AgentKindJ.Turtle(), fromList.size(), false, world);
-      addLinkNeighborsTo(nodeset, fromList, sourceSet, true);
-      return nodeset;
-    } else {
+    int count = inLinkCount(target);
+    if (count == 0) {
       return world.noTurtles();
     }
+    AgentSet nodeset =
+      new ArrayAgentSet(AgentKindJ.Turtle(), count, false, world);
+    addLinkNeighborsTo(nodeset, target.adjacency.in, count, sourceSet, true);
+    return nodeset;
   }
 
   public AgentSet findLinkedWith(Turtle target, AgentSet sourceSet) {
-    List<Link> toList = destMap.get(target);
-    List<Link> fromList = srcMap.get(target);
-    int size = (fromList == null ? 0 : fromList.size()) + (toList == null ? 0 : toList.size());
-    if (size == 0) {
+    int inCount = inLinkCount(target);
+    int outCount = outLinkCount(target);
+    if (inCount + outCount == 0) {
       return world.noTurtles();
     }
     AgentSet nodeset =
-      new ArrayAgentSet(AgentKindJ.Turtle(), size, false, world);
-    if (toList != null) {
-      addLinkNeighborsTo(nodeset, toList, sourceSet, false);
-    }
-    if (fromList != null) {
-      addLinkNeighborsFrom(nodeset, fromList, sourceSet, false);
-    }
+      new ArrayAgentSet(AgentKindJ.Turtle(), inCount + outCount, false, world);
+    addLinkNeighborsTo(nodeset, target.adjacency.in, inCount, sourceSet, false);
+    addLinkNeighborsFrom(nodeset, target.adjacency.out, outCount, sourceSet, false);
     return nodeset;
   }
 
@@ -176,13 +335,18 @@ public strictfp class LinkManager {
   // sourceSet will always be a breed. but layout-radial also uses it
   // and it might be any agentset.  ev 4/6/07
   private void addLinkNeighborsFrom(AgentSet nodeset,
-                                    List<Link> links,
+                                    Link[] links,
+                                    int count,
                                     AgentSet sourceSet,
                                     boolean directed) {
+    if (count == 0) {
+      return;
+    }
     boolean isBreed = sourceSet.printName() != null;
     boolean isAllLinks = sourceSet == world.links();
     boolean unbreededLinks = checkBreededCompatibility(true);
-    for (Link link : links) {
+    for (int i = 0; i < count; i++) {
+      Link link = links[i];
       if ((!isBreed && sourceSet.contains(link)) ||
           (isAllLinks && (unbreededLinks ||
               (directed == link.getBreed().isDirected()
@@ -194,9 +358,13 @@ public strictfp class LinkManager {
   }
 
   private void addLinkNeighborsTo(AgentSet nodeset,
-                                  List<Link> links,
+                                  Link[] links,
+                                  int count,
                                   AgentSet sourceSet,
                                   boolean directed) {
+    if (count == 0) {
+      return;
+    }
     boolean isBreed = sourceSet.printName() != null;
     boolean isAllLinks = sourceSet == world.links();
     // if we have unbreeded links we know that there is only one possible link
@@ -204,7 +372,8 @@ public strictfp class LinkManager {
     // in the nodeset, which is slow. so only models that use breeds && link-neighbors
     // will take a performance hit ev 6/15/07
     boolean unbreededLinks = checkBreededCompatibility(true);
-    for (Link link : links) {
+    for (int i = 0; i < count; i++) {
+      Link link = links[i];
       if ((!isBreed && sourceSet.contains(link)) ||
           (isAllLinks && (unbreededLinks ||
               (directed == link.getBreed().isDirected()
@@ -226,54 +395,60 @@ public strictfp class LinkManager {
   }
 
   public AgentSet findLinksFrom(Turtle src, AgentSet breed) {
-    List<Link> fromList = srcMap.get(src);
-    AgentSet linkset =
-      new ArrayAgentSet(AgentKindJ.Link(), 1, false, world);
-    boolean isAllLinks = breed == world.links();
-    if (fromList != null) {
-      for (Link link : fromList) {
-        if (isAllLinks || link.getBreed() == breed) {
-          linkset.add(link);
-        }
-      }
-    }
-    return linkset;
+    Adjacency adjacency = src.adjacency;
+    return adjacency == null
+        ? linkset(null, 0, null, 0, breed)
+        : linkset(adjacency.out, adjacency.outCount, null, 0, breed);
   }
 
   public AgentSet findLinksTo(Turtle target, AgentSet breed) {
-    List<Link> fromList = destMap.get(target);
-    AgentSet linkset =
-      new ArrayAgentSet(AgentKindJ.Link(), 1, false, world);
-    boolean isAllLinks = breed == world.links();
-    if (fromList != null) {
-      for (Link link : fromList) {
-        if (isAllLinks || link.getBreed() == breed) {
-          linkset.add(link);
-        }
-      }
-    }
-    return linkset;
+    Adjacency adjacency = target.adjacency;
+    return adjacency == null
+        ? linkset(null, 0, null, 0, breed)
+        : linkset(adjacency.in, adjacency.inCount, null, 0, breed);
   }
 
   public AgentSet findLinksWith(Turtle target, AgentSet breed) {
-    List<Link> fromList = destMap.get(target);
-    List<Link> toList = srcMap.get(target);
-    List<Link> totalList = new ArrayList<Link>();
-    if (fromList != null) {
-      totalList.addAll(fromList);
+    Adjacency adjacency = target.adjacency;
+    return adjacency == null
+        ? linkset(null, 0, null, 0, breed)
+        : linkset(adjacency.in, adjacency.inCount, adjacency.out, adjacency.outCount, breed);
+  }
+
+  // the links of the given breed from the two arrays, in order, counted first so the
+  // agentset is made the right size
+  private AgentSet linkset(Link[] links1, int count1, Link[] links2, int count2,
+                           AgentSet breed) {
+    boolean isAllLinks = breed == world.links();
+    int size = isAllLinks
+        ? count1 + count2
+        : countOfBreed(links1, count1, breed) + countOfBreed(links2, count2, breed);
+    if (size == 0) {
+      return new ArrayAgentSet(AgentKindJ.Link(), 1, false, world);
     }
-    if (toList != null) {
-      totalList.addAll(toList);
+    Agent[] agents = new Agent[size];
+    int n = 0;
+    for (int i = 0; i < count1; i++) {
+      if (isAllLinks || links1[i].getBreed() == breed) {
+        agents[n++] = links1[i];
+      }
     }
-    boolean isAllLinks = breed == world.links();
-    AgentSet linkset =
-      new ArrayAgentSet(AgentKindJ.Link(), 1, false, world);
-    for (Link link : totalList) {
-      if (isAllLinks || link.getBreed() == breed) {
-        linkset.add(link);
+    for (int i = 0; i < count2; i++) {
+      if (isAllLinks || links2[i].getBreed() == breed) {
+        agents[n++] = links2[i];
+      }
+    }
+    return new ArrayAgentSet(AgentKindJ.Link(), agents, world);
+  }
+
+  private static int countOfBreed(Link[] links, int count, AgentSet breed) {
+    int result = 0;
+    for (int i = 0; i < count; i++) {
+      if (links[i].getBreed() == breed) {
+        result++;
       }
     }
-    return linkset;
+    return result;
   }
 
   /// cleaning up after dead turtles
@@ -281,22 +456,18 @@ public strictfp class LinkManager {
   void cleanup(Link link) {
     // keep tie bookkeeping up to date
     link.untie();
-    // remove from source map
     Turtle end1 = link.end1();
-    List<Link> list = srcMap.get(end1);
-    if (list != null) {
-      list.remove(link);
-      if (list.isEmpty()) {
-        srcMap.remove(end1);
+    if (end1.adjacency != null) {
+      end1.adjacency.removeOut(link);
+      if (end1.adjacency.isEmpty()) {
+        end1.adjacency = null;
       }
     }
-    // remove from dest map
     Turtle end2 = link.end2();
-    list = destMap.get(end2);
-    if (list != null) {
-      list.remove(link);
-      if (list.isEmpty()) {
-        destMap.remove(end2);
+    if (end2.adjacency != null) {
+      end2.adjacency.removeIn(link);
+      if (end2.adjacency.isEmpty()) {
+        end2.adjacency = null;
       }
     }
     if (link.getBreed() == world.links()) {
@@ -308,24 +479,18 @@ public strictfp class LinkManager {
 
   // Turtle.die() calls this - ST 3/15/06, 7/21/07
   void cleanup(Turtle turtle) {
-    // this part is a bit tricky -- we need to remove the turtle
-    // from the src & dest maps first, so we don't end up in an
-    // infinite loop where a dying node kills a link which tries
-    // to kill the original node.  But we need the map entries
-    // in order to find the links.  Hence the exact ordering
-    // inside each if statement below. - ST 3/15/06
-    if (srcMap.containsKey(turtle)) {
-      List<Link> links = srcMap.get(turtle);
-      srcMap.remove(turtle);
-      for (Link link : links) {
-        link.die();
+    // we take the links off the turtle before killing them, so we don't
+    // end up in an infinite loop where a dying node kills a link which
+    // tries to kill the original node, and so the arrays we're going
+    // through don't change under us
+    Adjacency adjacency = turtle.adjacency;
+    if (adjacency != null) {
+      turtle.adjacency = null;
+      for (int i = 0; i < adjacency.outCount; i++) {
+        adjacency.out[i].die();
       }
-    }
-    if (destMap.containsKey(turtle)) {
-      List<Link> links = destMap.get(turtle);
-      destMap.remove(turtle);
-      for (Link link : links) {
-        link.die();
+      for (int i = 0; i < adjacency.inCount; i++) {
+        adjacency.in[i].die();
       }
     }
   }
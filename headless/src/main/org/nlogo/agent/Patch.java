@@ -238,6 +238,13 @@ public strictfp class Patch
   public void setPatchVariable(int vn, Object value)
       throws AgentException {
     if (vn > LAST_PREDEFINED_VAR) {
+      double[] column = world.patchColumns.column(vn);
+      if (column != null) {
+        if (!(value instanceof Double)) {
+          wrongTypeForVariable(world.patchesOwnNameAt(vn), Double.class, value);
+        }
+        column[(int) id] = ((Double) value).doubleValue();
+      }
       variables[vn] = value;
     } else {
       switch (vn) {
@@ -286,19 +293,36 @@ public strictfp class Patch
       case VAR_PYCOR:
         throw new AgentException(I18N.errorsJ().get("org.nlogo.agent.Patch.cantChangePatchCoordinates"));
       default:
-        throw new IllegalArgumentException(I18N.errorsJ().getN("org.nlogo.agent.Agent.notADoubleVariable", vn));
+        if (vn > LAST_PREDEFINED_VAR) {
+          double[] column = world.patchColumns.column(vn);
+          if (column != null) {
+            column[(int) id] = value;
+            variables[vn] = null;
+          } else {
+            variables[vn] = Double.valueOf(value);
+          }
+        } else {
+          setPatchVariable(vn, (Object) Double.valueOf(value));
+        }
     }
   }
 
   @Override
   public Object getPatchVariable(int vn) {
-    if (vn == VAR_PCOLOR &&
-        variables[VAR_PCOLOR] == null) {
-      variables[VAR_PCOLOR] = Double.valueOf(pcolor);
+    // null means the value lives in a primitive field or column and
+    // hasn't been boxed yet
+    if (variables[vn] == null) {
+      if (vn == VAR_PCOLOR) {
+        variables[VAR_PCOLOR] = Double.valueOf(pcolor);
+      } else {
+        variables[vn] = Double.valueOf(world.patchColumns.column(vn)[(int) id]);
+      }
     }
     return variables[vn];
   }
 
+  // callers other than _patchvariabledouble (e.g. the diffusers) may ask for
+  // any variable, so this throws ClassCastException if the value isn't a number
   public double getPatchVariableDouble(int vn) {
     switch (vn) {
       case VAR_PXCOR:
@@ -306,8 +330,11 @@ public strictfp class Patch
       case VAR_PYCOR:
         return pycor;
       default:
-        throw new IllegalArgumentException(
-            I18N.errorsJ().getN("org.nlogo.agent.Agent.notADoubleVariable", Integer.toString(vn)));
+        double[] column = world.patchColumns.column(vn);
+        if (column != null) {
+          return column[(int) id];
+        }
+        return ((Double) getPatchVariable(vn)).doubleValue();
     }
   }
 
@@ -377,6 +404,7 @@ public strictfp class Patch
       variables[VAR_PCOLOR] = null;
       world.patchColors[(int) id] = Color.getARGBbyPremodulatedColorNumber(pcolor);
       world.patchColorsDirty = true;
+      changed();
       if (pcolor != 0.0) {
         world.patchesAllBlack = false;
       }
@@ -392,6 +420,7 @@ public strictfp class Patch
         variables[VAR_PCOLOR] = null;
         world.patchColors[(int) id] = Color.getARGBbyPremodulatedColorNumber(pcolor);
         world.patchColorsDirty = true;
+        changed();
         if (pcolor != 0.0) {
           world.patchesAllBlack = false;
         }
@@ -401,6 +430,7 @@ public strictfp class Patch
       variables[VAR_PCOLOR] = boxedColor;
       world.patchColors[(int) id] = Color.getARGBbyPremodulatedColorNumber(pcolor);
       world.patchColorsDirty = true;
+      changed();
       if (pcolor != 0.0) {
         world.patchesAllBlack = false;
       }
@@ -414,6 +444,7 @@ public strictfp class Patch
       variables[VAR_PCOLOR] = boxedColor;
       world.patchColors[(int) id] = Color.getARGBbyPremodulatedColorNumber(color);
       world.patchColorsDirty = true;
+      changed();
       if (color != 0.0) {
         world.patchesAllBlack = false;
       }
@@ -436,6 +467,7 @@ public strictfp class Patch
           ((Double) rgb.get(1)).intValue(),
           ((Double) rgb.get(2)).intValue());
       world.patchColorsDirty = true;
+      changed();
       world.patchesAllBlack = false;
       if(rgb.size() > 3) {
         world.mayHavePartiallyTransparentObjects = true;
@@ -482,6 +514,7 @@ public strictfp class Patch
       }
     }
     variables[VAR_PLABEL] = label;
+    changed();
   }
 
   public Object labelColor() {
@@ -490,16 +523,27 @@ public strictfp class Patch
 
   public void labelColor(double labelColor) {
     variables[VAR_PLABELCOLOR] = Double.valueOf(Color.modulateDouble(labelColor));
+    changed();
   }
 
   public void labelColor(Double labelColor) {
     variables[VAR_PLABELCOLOR] = labelColor;
+    changed();
   }
 
   public void labelColor(LogoList rgb, int varIndex)
       throws AgentException {
     validRGBList(rgb, true);
     variables[varIndex] = rgb;
+    changed();
+  }
+
+  // tells World.changeTracker, if there is one, that the view may need to show this patch
+  // differently
+  private void changed() {
+    if (world.changeTracker != null) {
+      world.changeTracker.patchChanged(id);
+    }
   }
 
   @Override
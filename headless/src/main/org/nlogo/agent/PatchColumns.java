@@ -0,0 +1,65 @@
+// (C) Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.agent;
+
+// Columnar storage for the patches-own variables the compiler has proven are always numeric
+// (Program.numericPatchesOwn).  Each such variable gets a double[] indexed by patch id, so
+// diffuse and _patchvariabledouble can work on it without boxing.  Patch.variables still has a
+// slot for the variable, but it's only a cache of the boxed value, the same way pcolor works:
+// null means "not boxed yet".
+
+strictfp final class PatchColumns {
+
+  // indexed by variable number; null for variables that aren't columnar
+  private final double[][] columns;
+
+  PatchColumns() {
+    columns = new double[0][];
+  }
+
+  PatchColumns(World world) {
+    scala.collection.Seq<String> patchesOwn = world.program().patchesOwn();
+    columns = new double[patchesOwn.size()][];
+    int patchCount = world.patches().count();
+    for (int vn = 0; vn < columns.length; vn++) {
+      if (world.program().numericPatchesOwn().contains(patchesOwn.apply(vn))) {
+        columns[vn] = load(world, vn, patchCount);
+      }
+    }
+  }
+
+  // returns null if some patch holds a non-number left over from before the
+  // variable became numeric, in which case the variable just stays boxed
+  private static double[] load(World world, int vn, int patchCount) {
+    double[] column = new double[patchCount];
+    for (AgentIterator iter = world.patches().iterator(); iter.hasNext();) {
+      Patch patch = (Patch) iter.next();
+      Object value = patch.variables[vn];
+      if (!(value instanceof Double)) {
+        return null;
+      }
+      column[(int) patch.id] = ((Double) value).doubleValue();
+    }
+    return column;
+  }
+
+  double[] column(int vn) {
+    return vn < columns.length ? columns[vn] : null;
+  }
+
+  // puts every column value back into Patch.variables, for code that is
+  // about to rearrange the variables arrays (Patch.realloc)
+  void unload(World world) {
+    for (int vn = 0; vn < columns.length; vn++) {
+      if (columns[vn] != null) {
+        for (AgentIterator iter = world.patches().iterator(); iter.hasNext();) {
+          Patch patch = (Patch) iter.next();
+          if (patch.variables[vn] == null) {
+            patch.variables[vn] = Double.valueOf(columns[vn][(int) patch.id]);
+          }
+        }
+      }
+    }
+  }
+
+}
@@ -23,7 +23,7 @@ object Realloc {
     for(breedName <- program.breeds.keys)
       world.breedAgents.put(breedName,
         Option(world.breedAgents.get(breedName)).getOrElse(
-          new TreeAgentSet(api.AgentKind.Turtle, breedName.toUpperCase, world)))
+          new TurtleAgentSet(breedName.toUpperCase, world)))
     for(breedName <- program.linkBreeds.keys)
       world.linkBreedAgents.put(breedName,
         Option(world.linkBreedAgents.get(breedName)).getOrElse(
@@ -42,6 +42,9 @@ object Realloc {
       }
       doomedAgents.foreach(_.asInstanceOf[Turtle].die())
       doomedAgents.clear()
+      // Turtle.realloc() boxed the numeric turtle variables, since which ones are numeric may
+      // have changed; now they can be unboxed again
+      world.turtleNumbers = new TurtleNumbers(world)
     }
     // call Agent.realloc() on all links
     if (world.links != null) {
@@ -57,10 +60,15 @@ object Realloc {
     // call Agent.realloc() on all the patches
     // Note: we only need to realloc() if the patch variables have changed.
     //  ~Forrest ( 5/2/2007)
-    if (world.patches != null && program.patchesOwn != world.oldProgram.patchesOwn) {
+    // Columnar patch variables have to be boxed back into the variables arrays before those get
+    // rearranged, and then reloaded since which variables are numeric may have changed.
+    if (world.patches != null && (program.patchesOwn != world.oldProgram.patchesOwn ||
+                                  program.numericPatchesOwn != world.oldProgram.numericPatchesOwn)) {
+      world.patchColumns.unload(world)
       val iter = world.patches.iterator
       while(iter.hasNext)
         iter.next().realloc(true)
+      world.patchColumns = new PatchColumns(world)
     }
     // call Agent.realloc() on the observer
     world.observer.realloc(true)
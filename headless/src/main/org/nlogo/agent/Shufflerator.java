@@ -0,0 +1,126 @@
+// (C) Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.agent;
+
+import java.util.ArrayList;
+
+/// shuffling iterator = shufflerator! (Google hits: 0)
+/// Update: Now 5 Google hits, the first 4 of which are NetLogo related,
+/// and the last one is a person named "SHUFFLER, Ator", which Google thought
+/// was close enough!  ;-)  ~Forrest (10/3/2008)
+
+// Goes through a copy of an agentset's contents in random order, doing a
+// Fisher-Yates shuffle one step at a time as it goes.  Job.runExclusive()
+// and the like count on the copy, so that agents born during an ask aren't
+// asked, but copying into a new array every time means every ask of a big
+// agentset leaves a big array behind for the garbage collector.  So the
+// copies are made in buffers from borrow(), which go back to be reused once
+// a shufflerator has been all the way through.  (One that's abandoned
+// partway just keeps its buffer.)  Each slot is emptied as the shuffle
+// passes it, so a buffer holds no agents by the time it's given back.
+//
+// Nulls and dead agents are skipped.  Leading nulls are skipped without
+// drawing a random number, and otherwise one number is drawn per slot but
+// the last, so seeded runs come out the same as they always have.
+
+strictfp final class Shufflerator
+    implements AgentIterator {
+
+  // spare buffers for each thread, since jobs on different threads can be
+  // shuffling at the same time, and nested asks on one thread need a buffer
+  // each.  a few spares is enough to cover the usual nesting.
+  private static final int MAX_SPARES = 4;
+  private static final ThreadLocal<ArrayList<Agent[]>> spares =
+      new ThreadLocal<ArrayList<Agent[]>>() {
+        @Override
+        protected ArrayList<Agent[]> initialValue() {
+          return new ArrayList<Agent[]>(MAX_SPARES);
+        }
+      };
+
+  // returns an array of at least the given size, all nulls, which the caller
+  // should fill and pass to the constructor
+  static Agent[] borrow(int size) {
+    ArrayList<Agent[]> buffers = spares.get();
+    for (int i = 0; i < buffers.size(); i++) {
+      if (buffers.get(i).length >= size) {
+        return buffers.remove(i);
+      }
+    }
+    return new Agent[size];
+  }
+
+  private static void giveBack(Agent[] buffer) {
+    ArrayList<Agent[]> buffers = spares.get();
+    if (buffers.size() < MAX_SPARES) {
+      buffers.add(buffer);
+      return;
+    }
+    // keep the biggest ones, since they can stand in for the smaller ones
+    int smallest = 0;
+    for (int i = 1; i < buffers.size(); i++) {
+      if (buffers.get(i).length < buffers.get(smallest).length) {
+        smallest = i;
+      }
+    }
+    if (buffers.get(smallest).length < buffer.length) {
+      buffers.set(smallest, buffer);
+    }
+  }
+
+  private Agent[] copy;
+  private final int size;
+  private int i = 0;
+  private Agent next;
+  private final org.nlogo.util.MersenneTwisterFast random;
+
+  // copy came from borrow(), and holds the agents in its first size slots
+  Shufflerator(Agent[] copy, int size, org.nlogo.util.MersenneTwisterFast random) {
+    this.copy = copy;
+    this.size = size;
+    this.random = random;
+    while (i < size && copy[i] == null) {
+      i++;
+    }
+    fetch();
+  }
+
+  public boolean hasNext() {
+    return next != null;
+  }
+
+  public Agent next() {
+    Agent result = next;
+    fetch();
+    return result;
+  }
+
+  private void fetch() {
+    while (i < size) {
+      Agent result;
+      if (i < size - 1) {
+        int r = i + random.nextInt(size - i);
+        result = copy[r];
+        copy[r] = copy[i];
+      } else {
+        result = copy[i];
+      }
+      copy[i] = null;
+      i++;
+      if (result != null && result.id != -1) {
+        next = result;
+        return;
+      }
+    }
+    next = null;
+    if (copy != null) {
+      giveBack(copy);
+      copy = null;
+    }
+  }
+
+  public void remove() {
+    throw new UnsupportedOperationException
+        ("remove() not supported");
+  }
+}
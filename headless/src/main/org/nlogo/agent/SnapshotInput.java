@@ -0,0 +1,110 @@
+// (C) Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.agent;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads back what SnapshotOutput wrote, from a file mapped into memory.  The file is mapped a
+ * window at a time, so snapshots bigger than a MappedByteBuffer can hold are fine.
+ */
+public final strictfp class SnapshotInput {
+
+  private static final long WINDOW = 1L << 26;
+
+  private final FileChannel channel;
+  private final long size;
+  // where in the file the window starts
+  private long start = 0;
+  private MappedByteBuffer window;
+
+  public SnapshotInput(FileChannel channel)
+      throws IOException {
+    this.channel = channel;
+    size = channel.size();
+    map(0);
+  }
+
+  private void map(long position)
+      throws IOException {
+    start = position;
+    window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+        StrictMath.min(WINDOW, size - position));
+  }
+
+  // makes sure the next bytes are in the window, moving it if they aren't
+  private void need(int bytes)
+      throws IOException {
+    if (window.remaining() < bytes) {
+      long position = start + window.position();
+      if (size - position < bytes) {
+        throw new EOFException("The snapshot ends too soon.");
+      }
+      map(position);
+    }
+  }
+
+  public int readByte()
+      throws IOException {
+    need(1);
+    return window.get();
+  }
+
+  public boolean readBoolean()
+      throws IOException {
+    return readByte() != 0;
+  }
+
+  public int readInt()
+      throws IOException {
+    need(4);
+    return window.getInt();
+  }
+
+  public long readLong()
+      throws IOException {
+    need(8);
+    return window.getLong();
+  }
+
+  public double readDouble()
+      throws IOException {
+    need(8);
+    return window.getDouble();
+  }
+
+  public String readString()
+      throws IOException {
+    int length = readCount();
+    char[] chars = new char[length];
+    for (int i = 0; i < length; i++) {
+      need(2);
+      chars[i] = window.getChar();
+    }
+    return new String(chars);
+  }
+
+  public int[] readInts()
+      throws IOException {
+    int[] values = new int[readCount()];
+    for (int i = 0; i < values.length; i++) {
+      need(4);
+      values[i] = window.getInt();
+    }
+    return values;
+  }
+
+  // a count of things to come, checked so a damaged file can't make us allocate a huge array
+  public int readCount()
+      throws IOException {
+    int count = readInt();
+    if (count < 0 || count > size) {
+      throw new IOException("The snapshot is damaged.");
+    }
+    return count;
+  }
+
+}
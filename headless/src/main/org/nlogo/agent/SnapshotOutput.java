@@ -0,0 +1,87 @@
+// (C) Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.agent;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes the primitive values a snapshot (see WorldSnapshot) is made of to a channel, a buffer
+ * at a time.  Strings are written as their length in chars, then the chars.
+ */
+public final strictfp class SnapshotOutput {
+
+  private final WritableByteChannel channel;
+  private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+
+  public SnapshotOutput(WritableByteChannel channel) {
+    this.channel = channel;
+  }
+
+  private void room(int bytes)
+      throws IOException {
+    if (buffer.remaining() < bytes) {
+      flush();
+    }
+  }
+
+  public void writeByte(int b)
+      throws IOException {
+    room(1);
+    buffer.put((byte) b);
+  }
+
+  public void writeBoolean(boolean b)
+      throws IOException {
+    writeByte(b ? 1 : 0);
+  }
+
+  public void writeInt(int i)
+      throws IOException {
+    room(4);
+    buffer.putInt(i);
+  }
+
+  public void writeLong(long l)
+      throws IOException {
+    room(8);
+    buffer.putLong(l);
+  }
+
+  public void writeDouble(double d)
+      throws IOException {
+    room(8);
+    buffer.putDouble(d);
+  }
+
+  public void writeString(String s)
+      throws IOException {
+    int length = s.length();
+    writeInt(length);
+    for (int i = 0; i < length; i++) {
+      room(2);
+      buffer.putChar(s.charAt(i));
+    }
+  }
+
+  public void writeInts(int[] values, int count)
+      throws IOException {
+    writeInt(count);
+    for (int i = 0; i < count; i++) {
+      room(4);
+      buffer.putInt(values[i]);
+    }
+  }
+
+  // writes out what's in the buffer; doesn't force the channel to disk
+  public void flush()
+      throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+}
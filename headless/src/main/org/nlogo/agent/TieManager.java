@@ -39,21 +39,19 @@ public strictfp class TieManager {
 
   List<Turtle> tiedTurtles(Turtle root) {
     ArrayList<Turtle> myTies = new ArrayList<Turtle>();
-    if (linkManager.srcMap.containsKey(root)) {
-      for (Link link : linkManager.srcMap.get(root)) {
-        if (link.isTied()) {
-          Turtle t = link.end2();
-          myTies.add(t);
-        }
+    for (int i = 0; i < linkManager.outLinkCount(root); i++) {
+      Link link = linkManager.outLink(root, i);
+      if (link.isTied()) {
+        Turtle t = link.end2();
+        myTies.add(t);
       }
     }
-    if (linkManager.destMap.containsKey(root)) {
-      for (Link link : linkManager.destMap.get(root)) {
-        if (!link.getBreed().isDirected()
-            && link.isTied()) {
-          Turtle t = link.end1();
-          myTies.add(t);
-        }
+    for (int i = 0; i < linkManager.inLinkCount(root); i++) {
+      Link link = linkManager.inLink(root, i);
+      if (!link.getBreed().isDirected()
+          && link.isTied()) {
+        Turtle t = link.end1();
+        myTies.add(t);
       }
     }
     return myTies;
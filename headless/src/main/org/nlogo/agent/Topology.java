@@ -121,14 +121,14 @@ abstract strictfp class Topology {
         for (y = miny; y <= maxy; y++) {
           Patch patch = world.fastGetPatchAt(x, y);
 
-          oldval = ((Double) patch.getPatchVariable(vn)).doubleValue();
+          oldval = patch.getPatchVariableDouble(vn);
 
           AgentSet neighbors = patch.getNeighbors();
           int neighborCount = neighbors.count();
           sum = 0;
           for (int a = 0; a < neighborCount; a++) {
             Patch p = (Patch) neighbors.agent(a);
-            sum += (((Double) p.getPatchVariable(vn)).doubleValue() / p.getNeighbors().count());
+            sum += (p.getPatchVariableDouble(vn) / p.getNeighbors().count());
           }
 
           scratchOld[x - minx][y - miny] = oldval;
@@ -140,7 +140,7 @@ abstract strictfp class Topology {
         for (y = miny; y <= maxy; y++) {
           newval = scratchNew[x - minx][y - miny];
           if (newval != scratchOld[x - minx][y - miny]) {
-            world.fastGetPatchAt(x, y).setPatchVariable(vn, Double.valueOf(newval));
+            world.fastGetPatchAt(x, y).setPatchVariable(vn, newval);
           }
         }
       }
@@ -167,15 +167,13 @@ abstract strictfp class Topology {
         for (y = miny; y <= maxy; y++) {
           Patch patch = world.fastGetPatchAt(x, y);
 
-          oldval = ((Double) patch.getPatchVariable(vn)).doubleValue();
+          oldval = patch.getPatchVariableDouble(vn);
 
           AgentSet neighbors = patch.getNeighbors4();
           int neighborCount = neighbors.count();
           sum = 0;
           for (int a = 0; a < neighborCount; a++) {
-            sum += ((Double) ((Patch) neighbors.agent(a))
-                .getPatchVariable(vn))
-                .doubleValue();
+            sum += ((Patch) neighbors.agent(a)).getPatchVariableDouble(vn);
           }
 
           scratchOld[x - minx][y - miny] = oldval;
@@ -187,7 +185,7 @@ abstract strictfp class Topology {
         for (y = miny; y <= maxy; y++) {
           newval = scratchNew[x - minx][y - miny];
           if (newval != scratchOld[x - minx][y - miny]) {
-            world.fastGetPatchAt(x, y).setPatchVariable(vn, Double.valueOf(newval));
+            world.fastGetPatchAt(x, y).setPatchVariable(vn, newval);
           }
         }
       }
@@ -196,6 +194,110 @@ abstract strictfp class Topology {
     }
   }
 
+  // The 2D topologies diffuse in three passes, each of which only touches the rows of the patch
+  // grid it's given, so that World's DiffusionPool can split the grid into bands of rows and run
+  // them in parallel.  scratch[x][y] holds the patch at (x + minPxcor, y + minPycor).
+  //   1. copy the variable into scratch and clear scratch2
+  //   2. compute the new values into scratch2, reading only from scratch (diffuseRows and
+  //      diffuse4Rows)
+  //   3. write back the values that changed
+  // Every cell's new value is summed in the same order however the rows are split, so the
+  // results are the same as diffusing serially.  Passes 1 and 3 go through the patches, so they
+  // only run in parallel for patches-own variables; setting a built-in variable has side effects
+  // on the world.  Pass 3 also stays on this thread while World.changeTracker is on, since
+  // ChangeTracker isn't safe to call from several threads at once.
+
+  abstract void diffuseRows(double[][] scratch, double[][] scratch2, double diffuseparam,
+                            int firstRow, int endRow);
+
+  abstract void diffuse4Rows(double[][] scratch, double[][] scratch2, double diffuseparam,
+                             int firstRow, int endRow);
+
+  final void diffuseInPasses(final double diffuseparam, final int vn, final boolean fourNeighbors)
+      throws AgentException, PatchException {
+    final int xx = world.worldWidth();
+    final int yy = world.worldHeight();
+    final int minx = world.minPxcor();
+    final int miny = world.minPycor();
+    final double[][] scratch = world.getPatchScratch();
+    final double[][] scratch2 = world.getPatchScratch2();
+    DiffusionPool pool = world.diffusionPool();
+    boolean patchesOwn = vn > Patch.LAST_PREDEFINED_VAR;
+
+    runPass(patchesOwn ? pool : null, yy, new DiffusionPool.Pass() {
+      public void run(int firstRow, int endRow)
+          throws PatchException {
+        for (int y = firstRow; y < endRow; y++) {
+          for (int x = 0; x < xx; x++) {
+            Patch patch = world.fastGetPatchAt(x + minx, y + miny);
+            try {
+              scratch[x][y] = patch.getPatchVariableDouble(vn);
+            } catch (ClassCastException ex) {
+              throw new PatchException(patch);
+            }
+            scratch2[x][y] = 0;
+          }
+        }
+      }
+    });
+
+    runPass(pool, yy, new DiffusionPool.Pass() {
+      public void run(int firstRow, int endRow) {
+        if (fourNeighbors) {
+          diffuse4Rows(scratch, scratch2, diffuseparam, firstRow, endRow);
+        } else {
+          diffuseRows(scratch, scratch2, diffuseparam, firstRow, endRow);
+        }
+      }
+    });
+
+    runPass(patchesOwn && world.changeTracker == null ? pool : null, yy, new DiffusionPool.Pass() {
+      public void run(int firstRow, int endRow)
+          throws AgentException {
+        for (int y = firstRow; y < endRow; y++) {
+          for (int x = 0; x < xx; x++) {
+            if (scratch2[x][y] != scratch[x][y]) {
+              world.fastGetPatchAt(x + minx, y + miny)
+                  .setPatchVariable(vn, scratch2[x][y]);
+            }
+          }
+        }
+      }
+    });
+  }
+
+  private static void runPass(DiffusionPool pool, int rows, DiffusionPool.Pass pass)
+      throws AgentException, PatchException {
+    if (pool == null) {
+      pass.run(0, rows);
+    } else {
+      pool.run(rows, pass);
+    }
+  }
+
+  // helpers for diffusers that spread each cell's value out to its neighbors, rather than
+  // gathering from them.  to compute a band of rows, such a diffuser visits every source row
+  // that feeds the band, in the usual order, and only keeps the additions that land in the band.
+
+  // whether source row y can add to any row in [firstRow, endRow) of a grid with
+  // the given number of rows, counting wrapping
+  static boolean feedsRows(int y, int rows, int firstRow, int endRow) {
+    return inRows((y + rows - 1) % rows, firstRow, endRow)
+        || inRows(y % rows, firstRow, endRow)
+        || inRows((y + 1) % rows, firstRow, endRow);
+  }
+
+  static void addInRows(double[][] scratch2, int x, int y, double value,
+                        int firstRow, int endRow) {
+    if (inRows(y, firstRow, endRow)) {
+      scratch2[x][y] += value;
+    }
+  }
+
+  private static boolean inRows(int y, int firstRow, int endRow) {
+    return y >= firstRow && y < endRow;
+  }
+
   // getPatch methods.  These are here so they can be called by
   // subclasses in their implementations of getPN, getPS, etc.
   // They provide the usual torus-style behavior.
@@ -145,29 +145,18 @@ strictfp class Torus
   @Override
   void diffuse(double diffuseparam, int vn)
       throws AgentException, PatchException {
+    diffuseInPasses(diffuseparam, vn, false);
+  }
+
+  @Override
+  void diffuseRows(double[][] scratch, double[][] scratch2, double diffuseparam,
+                   int firstRow, int endRow) {
     int xx = world.worldWidth();
     int xx2 = xx * 2;
     int yy = world.worldHeight();
-    int yy2 = yy * 2;
-    double[][] scratch = world.getPatchScratch();
-    int x = 0, y = 0;
-
-    try {
-      for (y = 0; y < yy; y++) {
-        for (x = 0; x < xx; x++) {
-          scratch[x][y] =
-              ((Double) world.fastGetPatchAt((int) wrapX(x), (int) wrapY(y))
-                  .getPatchVariable(vn))
-                  .doubleValue();
-        }
-      }
-    } catch (ClassCastException ex) {
-      throw new PatchException(world.fastGetPatchAt
-          ((int) wrapX(x), (int) wrapY(y)));
-    }
 
-    for (y = yy; y < yy2; y++) {
-      for (x = xx; x < xx2; x++) {
+    for (int y = yy + firstRow; y < yy + endRow; y++) {
+      for (int x = xx; x < xx2; x++) {
         double sum;
         sum = scratch[(x - 1) % xx][(y - 1) % yy];
         sum += scratch[(x - 1) % xx][(y) % yy];
@@ -178,13 +167,9 @@ strictfp class Torus
         sum += scratch[(x + 1) % xx][(y) % yy];
         sum += scratch[(x + 1) % xx][(y + 1) % yy];
         double oldval = scratch[x - xx][y - yy];
-        double newval =
+        scratch2[x - xx][y - yy] =
             oldval * (1.0 - diffuseparam)
                 + (sum / 8) * diffuseparam;
-        if (newval != oldval) {
-          world.getPatchAt(x - xx, y - yy)
-              .setPatchVariable(vn, Double.valueOf(newval));
-        }
       }
     }
   }
@@ -192,38 +177,24 @@ strictfp class Torus
   @Override
   void diffuse4(double diffuseparam, int vn)
       throws AgentException, PatchException {
+    diffuseInPasses(diffuseparam, vn, true);
+  }
+
+  @Override
+  void diffuse4Rows(double[][] scratch, double[][] scratch2, double diffuseparam,
+                    int firstRow, int endRow) {
     int xx = world.worldWidth();
     int yy = world.worldHeight();
-    double[][] scratch = world.getPatchScratch();
-
-    int x = 0, y = 0;
-    try {
-      for (y = 0; y < yy; y++) {
-        for (x = 0; x < xx; x++) {
-          scratch[x][y] =
-              ((Double) world.fastGetPatchAt((int) wrapX(x),
-                  (int) wrapY(y))
-                  .getPatchVariable(vn))
-                  .doubleValue();
-        }
-      }
-    } catch (ClassCastException ex) {
-      throw new PatchException(world.fastGetPatchAt((int) wrapX(x),
-          (int) wrapY(y)));
-    }
 
-    for (y = 0; y < yy; y++) {
-      for (x = 0; x < xx; x++) {
+    for (int y = firstRow; y < endRow; y++) {
+      for (int x = 0; x < xx; x++) {
         double sum = 0;
         sum += scratch[(x + xx - 1) % xx][(y + yy) % yy];  // left patch
         sum += scratch[(x + xx) % xx][(y + yy + 1) % yy];  // top patch
         sum += scratch[(x + xx + 1) % xx][(y + yy) % yy];  // right patch
         sum += scratch[(x + xx) % xx][(y + yy - 1) % yy];  // bottom patch
 
-        double newval = scratch[x][y] * (1 - diffuseparam) + sum * diffuseparam / 4;
-        if (newval != scratch[x][y]) {
-          world.getPatchAt(x, y).setPatchVariable(vn, Double.valueOf(newval));
-        }
+        scratch2[x][y] = scratch[x][y] * (1 - diffuseparam) + sum * diffuseparam / 4;
       }
     }
   }
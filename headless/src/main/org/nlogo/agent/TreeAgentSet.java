@@ -9,7 +9,8 @@ import org.nlogo.api.LogoList;
 import java.util.Map;
 import java.util.TreeMap;
 
-// Used only for the all-turtles, all-links and the breed agentsets.
+// Used only for the all-links and the link breed agentsets.  (Turtles are
+// kept in TurtleAgentSets.)
 
 public strictfp class TreeAgentSet
     extends AgentSet {
@@ -216,54 +217,16 @@ public strictfp class TreeAgentSet
     return new Iterator();
   }
 
-  /// shuffling iterator = shufflerator! (Google hits: 0)
-
   @Override
   public AgentIterator shufflerator(org.nlogo.util.MersenneTwisterFast random) {
     // note it at the moment (and this should probably be fixed)
     // Job.runExclusive() counts on this making a copy of the
     // contents of the agentset - ST 12/15/05
-    return new Shufflerator(random);
-  }
-
-  private class Shufflerator
-      extends Iterator {
-    private int i = 0;
-    private final Agent[] copy;
-    private Agent next;
-    private final org.nlogo.util.MersenneTwisterFast random;
-
-    Shufflerator(org.nlogo.util.MersenneTwisterFast random) {
-      copy = agents.values().toArray(new Agent[agents.size()]);
-      this.random = random;
-      fetch();
-    }
-
-    @Override
-    public boolean hasNext() {
-      return next != null;
-    }
-
-    @Override
-    public Agent next() {
-      Agent result = next;
-      fetch();
-      return result;
-    }
-
-    private void fetch() {
-      if (i >= copy.length) {
-        next = null;
-      } else {
-        if (i < copy.length - 1) {
-          int r = i + random.nextInt(copy.length - i);
-          next = copy[r];
-          copy[r] = copy[i];
-        } else {
-          next = copy[i];
-        }
-        i++;
-      }
+    Agent[] copy = Shufflerator.borrow(agents.size());
+    int size = 0;
+    for (Agent agent : agents.values()) {
+      copy[size++] = agent;
     }
+    return new Shufflerator(copy, size, random);
   }
 }
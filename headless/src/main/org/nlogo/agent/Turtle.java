@@ -28,6 +28,9 @@ public strictfp class Turtle
   void id(long id) {
     this.id = id;
     variables[VAR_WHO] = Double.valueOf(id);
+    if (id != -1) {
+      changed();
+    }
   }
 
   public AgentKind kind() { return AgentKindJ.Turtle(); }
@@ -49,6 +52,12 @@ public strictfp class Turtle
   public int LAST_PREDEFINED_VAR = VAR_PENMODE;
   public int NUMBER_PREDEFINED_VARS = LAST_PREDEFINED_VAR + 1;
 
+  // the unboxed values of the numeric turtles-own and breed-own variables,
+  // and which variables those are; both null if there aren't any.  see
+  // TurtleNumbers
+  double[] numbers;
+  boolean[] numeric;
+
   public static final String PEN_UP = "up";
   public static final String PEN_DOWN = "down";
   public static final String PEN_ERASE = "erase";
@@ -88,10 +97,17 @@ public strictfp class Turtle
     for (int i = LAST_PREDEFINED_VAR + 1; i < variables.length; i++) {
       variables[i] = World.ZERO;
     }
+    numeric = world.turtleNumbers.slots(breed);
+    if (numeric != null) {
+      numbers = new double[variables.length];
+    }
     if (breed != world.turtles()) {
       breed.add(this);
     }
     getPatchHere().addTurtle(this);
+    if (world.turtleGrid != null) {
+      world.turtleGrid.update(this);
+    }
   }
 
   // creates a turtle that has id id, breed turtle, and is in the turtles agentset in
@@ -114,6 +130,10 @@ public strictfp class Turtle
     child.xcor = xcor;
     child.ycor = ycor;
     child.variables = variables.clone();
+    child.numeric = numeric;
+    if (numbers != null) {
+      child.numbers = numbers.clone();
+    }
     child.id(world.newTurtleId());
     world.turtles().add(child);
     if (breed != getBreed()) {
@@ -123,6 +143,9 @@ public strictfp class Turtle
       getBreed().add(child);
     }
     child.getPatchHere().addTurtle(child);
+    if (world.turtleGrid != null) {
+      world.turtleGrid.update(child);
+    }
     return child;
   }
 
@@ -133,6 +156,10 @@ public strictfp class Turtle
     world.linkManager.cleanup(this);
     Patch patch = getPatchHere();
     patch.removeTurtle(this);
+    if (world.turtleGrid != null) {
+      world.turtleGrid.remove(this);
+    }
+    changed();
     AgentSet breed = getBreed();
     if (breed != world.turtles()) {
       breed.remove(agentKey());
@@ -155,6 +182,21 @@ public strictfp class Turtle
 
   Patch currentPatch = null;
 
+  // where this turtle is in World.turtleGrid, if there is one; -1 means not in it
+  int gridCell = -1;
+  int gridIndex;
+
+  // the links this turtle is an end of, kept by LinkManager; null if there aren't any
+  LinkManager.Adjacency adjacency = null;
+
+  // tells World.changeTracker, if there is one, that the view may need to show this turtle
+  // differently (or not at all, if it just died)
+  private void changed() {
+    if (world.changeTracker != null) {
+      world.changeTracker.turtleChanged(id);
+    }
+  }
+
   @Override
   public Patch getPatchAtOffsets(double dx, double dy)
       throws AgentException {
@@ -179,14 +221,27 @@ public strictfp class Turtle
     }
 
     // stage 0: get ready
+    // (if compiling, which variables are numeric may change, so we box them
+    // all, and Realloc sets up the numbers again afterwards)
+    if (compiling) {
+      unloadNumbers();
+    }
     Object[] oldvars = variables;
+    double[] oldnumbers = numbers;
     variables = new Object[world.getVariablesArraySize(this, getBreed())];
+    numeric = compiling ? null : world.turtleNumbers.slots(getBreed());
+    numbers = numeric == null ? null : new double[variables.length];
     int turtlesOwnSize = world.getVariablesArraySize((Turtle) null, world.turtles());
 
     // stage 1: use arraycopy to copy over as many variables as possible
     // (if compiling it's just the predefined ones, if not compiling it's turtles-own too!)
     int numberToCopyDirectly = compiling ? NUMBER_PREDEFINED_VARS : turtlesOwnSize;
     System.arraycopy(oldvars, 0, variables, 0, numberToCopyDirectly);
+    // a variable is numeric for every breed or for none, so if a value
+    // hasn't been boxed, there are numbers on both sides to copy it between
+    if (numbers != null && oldnumbers != null) {
+      System.arraycopy(oldnumbers, 0, numbers, 0, numberToCopyDirectly);
+    }
 
     // stage 2: shift the turtles-own variables into their new positions
     // (unless we already did turtles-own during stage 1)
@@ -213,12 +268,41 @@ public strictfp class Turtle
       } else {
         variables[i] = oldvars[oldpos];
         oldvars[oldpos] = null;
+        if (numbers != null && oldnumbers != null) {
+          numbers[i] = oldnumbers[oldpos];
+        }
       }
     }
 
     return null;
   }
 
+  // called by TurtleNumbers once the variables are rearranged for a new
+  // program; every value is boxed at that point
+  void loadNumbers(boolean[] numeric) {
+    this.numeric = numeric;
+    numbers = null;
+    if (numeric != null) {
+      numbers = new double[variables.length];
+      for (int vn = 0; vn < numbers.length; vn++) {
+        if (numeric[vn]) {
+          numbers[vn] = ((Double) variables[vn]).doubleValue();
+        }
+      }
+    }
+  }
+
+  // puts every unboxed value back into variables
+  private void unloadNumbers() {
+    if (numeric != null) {
+      for (int vn = 0; vn < numeric.length; vn++) {
+        if (numeric[vn] && variables[vn] == null) {
+          variables[vn] = Double.valueOf(numbers[vn]);
+        }
+      }
+    }
+  }
+
   // note this is very similar to
   // World.getPatchAtDistanceAndHeading() - ST 9/3/03
   public void jump(double distance)
@@ -301,8 +385,13 @@ public strictfp class Turtle
       if (variables[VAR_XCOR] == null) {
         variables[VAR_XCOR] = Double.valueOf(xcor);
       }
-    } else if (vn == VAR_YCOR && variables[VAR_YCOR] == null) {
-      variables[VAR_YCOR] = Double.valueOf(ycor);
+    } else if (vn == VAR_YCOR) {
+      if (variables[VAR_YCOR] == null) {
+        variables[VAR_YCOR] = Double.valueOf(ycor);
+      }
+    } else if (variables[vn] == null) {
+      // a numeric turtles-own or breed-own variable that hasn't been boxed yet
+      variables[vn] = Double.valueOf(numbers[vn]);
     }
 
     return variables[vn];
@@ -323,6 +412,13 @@ public strictfp class Turtle
       case VAR_PENSIZE:
         return penSize();
       default:
+        if (vn > LAST_PREDEFINED_VAR) {
+          if (numeric != null && numeric[vn]) {
+            return numbers[vn];
+          }
+          // throws ClassCastException if the value isn't a number
+          return ((Double) variables[vn]).doubleValue();
+        }
         throw new IllegalArgumentException
             (I18N.errorsJ().getN("org.nlogo.agent.Agent.notADoubleVariable", vn));
     }
@@ -416,7 +512,17 @@ public strictfp class Turtle
       case VAR_WHO:
         throw new AgentException(I18N.errorsJ().get("org.nlogo.agent.Turtle.cantChangeWho"));
       default:
-        throw new IllegalArgumentException(I18N.errorsJ().getN("org.nlogo.agent.Agent.notADoubleVariable", vn));
+        if (vn > LAST_PREDEFINED_VAR) {
+          if (numeric != null && numeric[vn]) {
+            numbers[vn] = value;
+            variables[vn] = null;
+          } else {
+            variables[vn] = Double.valueOf(value);
+          }
+        } else {
+          // label, label-color, and the rest take numbers too, or give the right error if not
+          setTurtleVariable(vn, (Object) Double.valueOf(value));
+        }
     }
   }
 
@@ -424,6 +530,15 @@ public strictfp class Turtle
   public void setTurtleVariable(int vn, Object value)
       throws AgentException {
     if (vn > LAST_PREDEFINED_VAR) {
+      if (numeric != null && numeric[vn]) {
+        if (!(value instanceof Double)) {
+          wrongTypeForVariable(vn < world.program().turtlesOwn().size()
+              ? world.turtlesOwnNameAt(vn)
+              : world.breedsOwnNameAt(getBreed(), vn),
+              Double.class, value);
+        }
+        numbers[vn] = ((Double) value).doubleValue();
+      }
       variables[vn] = value;
     } else {
       switch (vn) {
@@ -596,10 +711,12 @@ public strictfp class Turtle
       boxedColor = Double.valueOf(c);
     }
     variables[VAR_COLOR] = boxedColor;
+    changed();
   }
 
   public void colorDoubleUnchecked(Double boxedColor) {
     variables[VAR_COLOR] = boxedColor;
+    changed();
   }
 
   public void color(LogoList rgb, int varIndex)
@@ -609,6 +726,7 @@ public strictfp class Turtle
     if(rgb.size() > 3) {
       world.mayHavePartiallyTransparentObjects = true;
     }
+    changed();
   }
 
   public void turnRight(double delta) {
@@ -648,6 +766,7 @@ public strictfp class Turtle
     }
     this.heading = heading;
     variables[VAR_HEADING] = null;
+    changed();
     Observer observer = world.observer();
     if (this == observer.targetAgent()) {
       observer.updatePosition();
@@ -669,6 +788,7 @@ public strictfp class Turtle
     } else {
       variables[VAR_HEADING] = null;
     }
+    changed();
     Observer observer = world.observer();
     if (this == observer.targetAgent()) {
       observer.updatePosition();
@@ -793,6 +913,10 @@ public strictfp class Turtle
       originalPatch.removeTurtle(this);
       targetPatch.addTurtle(this);
     }
+    if (world.turtleGrid != null) {
+      world.turtleGrid.update(this);
+    }
+    changed();
     Observer observer = world.observer();
     if (this == observer.targetAgent()) {
       observer.updatePosition();
@@ -825,6 +949,10 @@ public strictfp class Turtle
       originalPatch.removeTurtle(this);
       targetPatch.addTurtle(this);
     }
+    if (world.turtleGrid != null) {
+      world.turtleGrid.update(this);
+    }
+    changed();
     Observer observer = world.observer();
     if (this == observer.targetAgent()) {
       observer.updatePosition();
@@ -858,6 +986,10 @@ public strictfp class Turtle
       originalPatch.removeTurtle(this);
       targetPatch.addTurtle(this);
     }
+    if (world.turtleGrid != null) {
+      world.turtleGrid.update(this);
+    }
+    changed();
     Observer observer = world.observer();
     if (this == observer.targetAgent()) {
       observer.updatePosition();
@@ -888,6 +1020,10 @@ public strictfp class Turtle
       originalPatch.removeTurtle(this);
       targetPatch.addTurtle(this);
     }
+    if (world.turtleGrid != null) {
+      world.turtleGrid.update(this);
+    }
+    changed();
     Observer observer = world.observer();
     if (this == observer.targetAgent()) {
       observer.updatePosition();
@@ -939,6 +1075,10 @@ public strictfp class Turtle
       originalPatch.removeTurtle(this);
       targetPatch.addTurtle(this);
     }
+    if (world.turtleGrid != null) {
+      world.turtleGrid.update(this);
+    }
+    changed();
     Observer observer = world.observer();
     if (this == observer.targetAgent()) {
       observer.updatePosition();
@@ -969,6 +1109,10 @@ public strictfp class Turtle
       originalPatch.removeTurtle(this);
       targetPatch.addTurtle(this);
     }
+    if (world.turtleGrid != null) {
+      world.turtleGrid.update(this);
+    }
+    changed();
     Observer observer = world.observer();
     if (this == observer.targetAgent()) {
       observer.updatePosition();
@@ -990,6 +1134,10 @@ public strictfp class Turtle
       this.ycor = y;
       variables[VAR_XCOR] = p.variables[Patch.VAR_PXCOR];
       variables[VAR_YCOR] = p.variables[Patch.VAR_PYCOR];
+      if (world.turtleGrid != null) {
+        world.turtleGrid.update(this);
+      }
+      changed();
       Observer observer = world.observer();
       if (this == observer.targetAgent()) {
         observer.updatePosition();
@@ -1088,6 +1236,7 @@ public strictfp class Turtle
 
   public void shape(String shape) {
     variables[VAR_SHAPE] = shape;
+    changed();
   }
 
   public Object label() {
@@ -1105,6 +1254,7 @@ public strictfp class Turtle
 
   public void label(Object label) {
     variables[VAR_LABEL] = label;
+    changed();
   }
 
   public Object labelColor() {
@@ -1113,12 +1263,14 @@ public strictfp class Turtle
 
   public void labelColor(double labelColor) {
     variables[VAR_LABELCOLOR] = Double.valueOf(Color.modulateDouble(labelColor));
+    changed();
   }
 
   public void labelColor(LogoList rgb, int valueIndex)
       throws AgentException {
     validRGBList(rgb, true);
     variables[valueIndex] = rgb;
+    changed();
   }
 
   public AgentSet getBreed() {
@@ -1175,6 +1327,7 @@ public strictfp class Turtle
 
   public void hidden(boolean hidden) {
     variables[VAR_HIDDEN] = hidden ? Boolean.TRUE : Boolean.FALSE;
+    changed();
   }
 
   public double size() {
@@ -1183,6 +1336,7 @@ public strictfp class Turtle
 
   public void size(double size) {
     variables[VAR_SIZE] = Double.valueOf(size);
+    changed();
   }
 
   public double penSize() {
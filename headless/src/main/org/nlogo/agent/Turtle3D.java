@@ -108,6 +108,10 @@ public final strictfp class Turtle3D
     child.ycor = ycor;
     child.zcor = zcor;
     child.variables = variables.clone();
+    child.numeric = numeric;
+    if (numbers != null) {
+      child.numbers = numbers.clone();
+    }
     child.id(world.newTurtleId());
     world.turtles().add(child);
     if (breed != getBreed()) {
@@ -278,8 +282,8 @@ public final strictfp class Turtle3D
       case VAR_WHO3D:
         throw new AgentException("you can't change a turtle's who number");
       default:
-        throw new IllegalArgumentException
-            (vn + " is not a double variable");
+        // _setturtlevariable may pass any variable a number
+        setTurtleVariable(vn, (Object) Double.valueOf(value));
     }
   }
 
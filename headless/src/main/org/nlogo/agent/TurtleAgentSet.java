@@ -0,0 +1,393 @@
+// (C) Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.agent;
+
+import org.nlogo.api.AgentKindJ;
+import org.nlogo.api.LogoList;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+// Used only for the all-turtles and the turtle breed agentsets.  (Links
+// are kept in TreeAgentSets, since they come out in order by their ends,
+// not by id.)
+//
+// The turtles have to come out in order by who number regardless of the
+// order they were put in, otherwise we get different results after an
+// import and export.  TreeAgentSet does that with a TreeMap, but then
+// every lookup, add and remove is O(log n), chases pointers, and boxes
+// a Double.  Here the turtles are kept in an array in who number order,
+// with a hash table from who number to array index alongside.  Turtles
+// are nearly always added in who number order, since that's the order
+// they're made in, so adding is usually just appending; when it isn't
+// (importing, or changing breeds), the array is only re-sorted when
+// something next needs the order.  Dying leaves a null behind, and the
+// nulls are squeezed out once they're half the array, or when something
+// needs to index into the array.
+
+public strictfp class TurtleAgentSet
+    extends AgentSet {
+
+  private static final int MIN_CAPACITY = 16;
+
+  private static final Comparator<Agent> BY_ID =
+      new Comparator<Agent>() {
+        public int compare(Agent a1, Agent a2) {
+          return a1.compareTo(a2);
+        }
+      };
+
+  // in who number order, unless !sorted.  removed turtles leave nulls.
+  private Agent[] agents = new Agent[MIN_CAPACITY];
+  // slots used in agents, including the nulls
+  private int size = 0;
+  // turtles in the set
+  private int count = 0;
+  private boolean sorted = true;
+  private long maxId = -1;
+
+  // open addressing hash table, with linear probing, from who number to
+  // index in agents.  slots[i] is -1 if ids[i] is empty.  it's kept at
+  // most half full.
+  private long[] ids;
+  private int[] slots;
+  private int mask;
+
+  public TurtleAgentSet(String printName, World world) {
+    super(AgentKindJ.Turtle(), world, printName, true, false, false);
+    newIndex(MIN_CAPACITY);
+  }
+
+  @Override
+  public int count() {
+    return count;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return count == 0;
+  }
+
+  // This assumes we've already checked that the counts
+  // are equal. - ST 7/6/06
+  @Override
+  public boolean equalAgentSetsHelper(org.nlogo.api.AgentSet otherSet) {
+    for (org.nlogo.api.Agent a : otherSet.agents()) {
+      if (!contains(a)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public Agent agent(long id) {
+    int i = find(id);
+    if (i == -1) {
+      return null;
+    }
+    Agent agent = agents[slots[i]];
+    if (agent.id == -1) {
+      remove(i);
+      return null;
+    }
+    return agent;
+  }
+
+  @Override
+  public Agent getAgent(Object key) {
+    int i = find(((Double) key).longValue());
+    return i == -1 ? null : agents[slots[i]];
+  }
+
+  /**
+   * It is the caller's responsibility not to add an agent that
+   * is already in the set.
+   */
+  @Override
+  public void add(Agent agent) {
+    if (agent.kind() != kind()) {
+      throw new IllegalStateException();
+    }
+    if (size == agents.length) {
+      if (count < size) {
+        compact();
+      } else {
+        agents = Arrays.copyOf(agents, size * 2);
+      }
+    }
+    if (agent.id < maxId) {
+      sorted = false;
+    } else {
+      maxId = agent.id;
+    }
+    agents[size] = agent;
+    insert(agent.id, size);
+    size++;
+    count++;
+  }
+
+  // made public for mutable agentset operations
+  @Override
+  public void remove(Object key) {
+    int i = find(((Double) key).longValue());
+    if (i != -1) {
+      remove(i);
+    }
+  }
+
+  private void remove(int i) {
+    agents[slots[i]] = null;
+    delete(i);
+    count--;
+    if (size > MIN_CAPACITY && count < size / 2) {
+      compact();
+    }
+  }
+
+  @Override
+  public void clear() {
+    agents = new Agent[MIN_CAPACITY];
+    size = 0;
+    count = 0;
+    sorted = true;
+    maxId = -1;
+    newIndex(MIN_CAPACITY);
+  }
+
+  @Override
+  public boolean contains(org.nlogo.api.Agent agent) {
+    if (!(agent instanceof Agent)) {
+      return false;
+    }
+    int i = find(((Agent) agent).id);
+    return i != -1 && agents[slots[i]] == agent;
+  }
+
+  /// keeping the array in order
+
+  // squeezes out the nulls, sorts if need be, and rebuilds the index
+  private void compact() {
+    Agent[] result = new Agent[StrictMath.max(MIN_CAPACITY, count * 2)];
+    int j = 0;
+    for (int i = 0; i < size; i++) {
+      if (agents[i] != null) {
+        result[j++] = agents[i];
+      }
+    }
+    if (!sorted) {
+      Arrays.sort(result, 0, j, BY_ID);
+      sorted = true;
+    }
+    agents = result;
+    size = j;
+    maxId = size == 0 ? -1 : agents[size - 1].id;
+    newIndex(StrictMath.max(MIN_CAPACITY, Integer.highestOneBit(StrictMath.max(1, count)) * 4));
+    for (int i = 0; i < size; i++) {
+      insert(agents[i].id, i);
+    }
+  }
+
+  // for iterating
+  private void ensureSorted() {
+    if (!sorted) {
+      compact();
+    }
+  }
+
+  // for indexing into the array directly
+  private void ensureCompactAndSorted() {
+    if (!sorted || count < size) {
+      compact();
+    }
+  }
+
+  /// the index
+
+  private void newIndex(int capacity) {
+    ids = new long[capacity];
+    slots = new int[capacity];
+    Arrays.fill(slots, -1);
+    mask = capacity - 1;
+  }
+
+  private static int hash(long id) {
+    long h = id * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  private int find(long id) {
+    int i = hash(id) & mask;
+    while (slots[i] != -1) {
+      if (ids[i] == id) {
+        return i;
+      }
+      i = (i + 1) & mask;
+    }
+    return -1;
+  }
+
+  private void insert(long id, int slot) {
+    if (count * 2 >= slots.length) {
+      long[] oldIds = ids;
+      int[] oldSlots = slots;
+      newIndex(slots.length * 2);
+      for (int i = 0; i < oldSlots.length; i++) {
+        if (oldSlots[i] != -1) {
+          insert(oldIds[i], oldSlots[i]);
+        }
+      }
+    }
+    int i = hash(id) & mask;
+    while (slots[i] != -1) {
+      i = (i + 1) & mask;
+    }
+    ids[i] = id;
+    slots[i] = slot;
+  }
+
+  // with linear probing we can't just empty the entry, since that would
+  // cut off the entries after it from their home positions, so those
+  // move back to fill the gap
+  private void delete(int i) {
+    slots[i] = -1;
+    int j = i;
+    while (true) {
+      j = (j + 1) & mask;
+      if (slots[j] == -1) {
+        return;
+      }
+      int home = hash(ids[j]) & mask;
+      boolean staysPut = i <= j
+          ? (i < home && home <= j)
+          : (i < home || home <= j);
+      if (!staysPut) {
+        ids[i] = ids[j];
+        slots[i] = slots[j];
+        slots[j] = -1;
+        i = j;
+      }
+    }
+  }
+
+  // the next few methods take precomputedCount as an argument since
+  // we want to avoid _randomoneof and _randomnof resulting in
+  // more than one total call to count(), since count() can
+  // be O(n) - ST 2/27/03
+
+  @Override
+  public Agent randomOne(int precomputedCount, int random) {
+    ensureCompactAndSorted();
+    return agents[random];
+  }
+
+  // This is used to optimize the special case of randomSubset where
+  // size == 2
+  @Override
+  public Agent[] randomTwo(int precomputedCount, int random1, int random2) {
+    ensureCompactAndSorted();
+    // if random2 >= random1, we need to increment random2 to choose a
+    // later agent, otherwise we swap them so they're in order
+    if (random2 >= random1) {
+      random2++;
+    } else {
+      int tmp = random1;
+      random1 = random2;
+      random2 = tmp;
+    }
+    return new Agent[]{agents[random1], agents[random2]};
+  }
+
+  @Override
+  public Agent[] randomSubsetGeneral(int resultSize, int precomputedCount,
+                                     org.nlogo.util.MersenneTwisterFast randomerator) {
+    ensureCompactAndSorted();
+    Agent result[] = new Agent[resultSize];
+    for (int i = 0, j = 0; j < resultSize; i++) {
+      if (randomerator.nextInt(precomputedCount - i)
+          < resultSize - j) {
+        result[j] = agents[i];
+        j++;
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public LogoList toLogoList() {
+    return LogoList.fromJava(Arrays.asList(toArray()));
+  }
+
+  @Override
+  public Agent[] toArray() {
+    ensureCompactAndSorted();
+    return Arrays.copyOf(agents, size);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder s = new StringBuilder("TurtleAgentSet");
+    s = s.append("\n...... kind: ");
+    s = s.append(kind() == null ? "null" : kind().toString());
+    s = s.append("\n...... count(): " + count());
+    s = s.append("\n...... agents: ");
+    for (AgentIterator iter = iterator(); iter.hasNext();) {
+      s = s.append("\n" + iter.next().toString());
+    }
+    return s.toString();
+  }
+
+  // returns an Iterator object of the appropriate class
+  @Override
+  public AgentIterator iterator() {
+    ensureSorted();
+    return new Iterator();
+  }
+
+  // goes through the array as it was when the iterator was made, skipping
+  // the turtles removed since.  removing nulls out the turtle's slot, but
+  // if the set has been compacted or grown since, that's a different
+  // array than ours, so then we ask the index instead.
+  private class Iterator
+      implements AgentIterator {
+    private final Agent[] array = agents;
+    private final int end = size;
+    private int i = 0;
+
+    public boolean hasNext() {
+      skipRemoved();
+      return i < end;
+    }
+
+    public Agent next() {
+      skipRemoved();
+      if (i >= end) {
+        throw new java.util.NoSuchElementException();
+      }
+      return array[i++];
+    }
+
+    private void skipRemoved() {
+      while (i < end &&
+          (array[i] == null || (array != agents && !contains(array[i])))) {
+        i++;
+      }
+    }
+
+    public void remove() {
+      throw new UnsupportedOperationException
+          ("remove() not supported");
+    }
+  }
+
+  @Override
+  public AgentIterator shufflerator(org.nlogo.util.MersenneTwisterFast random) {
+    // note it at the moment (and this should probably be fixed)
+    // Job.runExclusive() counts on this making a copy of the
+    // contents of the agentset - ST 12/15/05
+    ensureCompactAndSorted();
+    Agent[] copy = Shufflerator.borrow(size);
+    System.arraycopy(agents, 0, copy, 0, size);
+    return new Shufflerator(copy, size, random);
+  }
+}
@@ -0,0 +1,230 @@
+// (C) Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.agent;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// A uniform grid over the world that buckets turtles by position, so in-radius and in-cone on
+// turtle agentsets only have to look at the cells near the asking agent instead of every patch in
+// the bounding square.  The cell size is independent of the patch size; it's rounded so that a
+// whole number of cells fits across the world, which keeps wrapping simple.
+//
+// Turtle keeps the grid up to date incrementally: every method that changes a turtle's xcor or
+// ycor calls update(), and die() calls remove().  Each cell is an unordered array; removal swaps
+// the last turtle in the cell into the hole, so nothing is allocated while turtles move around.
+//
+// The grid is off unless World.turtleGridCellSize(double) is set, since candidates come out in a
+// different order than the patch-by-patch scan, and result order is visible to models (one-of,
+// for example, picks by position).
+
+strictfp final class TurtleGrid {
+
+  private final World world;
+  private final double requestedCellSize;
+  private final int columns;
+  private final int rows;
+  private final double cellWidth;
+  private final double cellHeight;
+  private final double left;
+  private final double bottom;
+
+  private final Turtle[][] cells;
+  private final int[] counts;
+
+  TurtleGrid(World world, double requestedCellSize) {
+    this.world = world;
+    this.requestedCellSize = requestedCellSize;
+    columns = cellsAcross(world.worldWidth(), requestedCellSize);
+    rows = cellsAcross(world.worldHeight(), requestedCellSize);
+    cellWidth = world.worldWidth() / (double) columns;
+    cellHeight = world.worldHeight() / (double) rows;
+    left = world.minPxcor() - 0.5;
+    bottom = world.minPycor() - 0.5;
+    cells = new Turtle[columns * rows][];
+    counts = new int[columns * rows];
+    for (AgentIterator iter = world.turtles().iterator(); iter.hasNext();) {
+      update((Turtle) iter.next());
+    }
+  }
+
+  private static int cellsAcross(int extent, double cellSize) {
+    int n = (int) StrictMath.round(extent / cellSize);
+    return StrictMath.max(1, StrictMath.min(extent, n));
+  }
+
+  double requestedCellSize() {
+    return requestedCellSize;
+  }
+
+  /// maintenance
+
+  private int column(double x) {
+    int i = (int) ((x - left) / cellWidth);
+    // xcor can be a hair under max-pxcor + 0.5, which can round up to the next cell
+    return i < 0 ? 0 : (i >= columns ? columns - 1 : i);
+  }
+
+  private int row(double y) {
+    int j = (int) ((y - bottom) / cellHeight);
+    return j < 0 ? 0 : (j >= rows ? rows - 1 : j);
+  }
+
+  void update(Turtle turtle) {
+    int cell = row(turtle.ycor()) * columns + column(turtle.xcor());
+    if (cell != turtle.gridCell) {
+      remove(turtle);
+      add(turtle, cell);
+    }
+  }
+
+  private void add(Turtle turtle, int cell) {
+    Turtle[] turtles = cells[cell];
+    int count = counts[cell];
+    if (turtles == null) {
+      turtles = new Turtle[4];
+      cells[cell] = turtles;
+    } else if (count == turtles.length) {
+      Turtle[] bigger = new Turtle[count * 2];
+      System.arraycopy(turtles, 0, bigger, 0, count);
+      turtles = bigger;
+      cells[cell] = turtles;
+    }
+    turtles[count] = turtle;
+    counts[cell] = count + 1;
+    turtle.gridCell = cell;
+    turtle.gridIndex = count;
+  }
+
+  void remove(Turtle turtle) {
+    int cell = turtle.gridCell;
+    if (cell == -1) {
+      return;
+    }
+    Turtle[] turtles = cells[cell];
+    int last = counts[cell] - 1;
+    Turtle moved = turtles[last];
+    turtles[turtle.gridIndex] = moved;
+    moved.gridIndex = turtle.gridIndex;
+    turtles[last] = null;
+    counts[cell] = last;
+    turtle.gridCell = -1;
+  }
+
+  // only for when every turtle is going away at once (World.clearTurtles)
+  void clear() {
+    for (int cell = 0; cell < cells.length; cell++) {
+      Turtle[] turtles = cells[cell];
+      for (int i = 0; i < counts[cell]; i++) {
+        turtles[i].gridCell = -1;
+        turtles[i] = null;
+      }
+      counts[cell] = 0;
+    }
+  }
+
+  /// queries
+
+  // Offset stencils, keyed by radius.  A stencil holds (dx, dy) pairs of cell offsets, in row
+  // order, for every cell that could hold a point within the radius of some point in the center
+  // cell.  Along a wrapping axis the offsets never cover more than one lap of the world, so no
+  // cell is visited twice; along a non-wrapping axis they stop where the world could.
+  private final Map<Double, int[]> stencils = new HashMap<Double, int[]>();
+  private boolean stencilsWrapX;
+  private boolean stencilsWrapY;
+
+  // models often ask with a handful of radii; if they ask with lots of different ones, don't
+  // hang onto all of them
+  private static final int MAX_STENCILS = 64;
+
+  private int[] stencil(double radius) {
+    boolean wrapX = world.wrappingAllowedInX();
+    boolean wrapY = world.wrappingAllowedInY();
+    if (wrapX != stencilsWrapX || wrapY != stencilsWrapY || stencils.size() >= MAX_STENCILS) {
+      stencils.clear();
+      stencilsWrapX = wrapX;
+      stencilsWrapY = wrapY;
+    }
+    Double key = Double.valueOf(radius);
+    int[] stencil = stencils.get(key);
+    if (stencil == null) {
+      stencil = makeStencil(radius, wrapX, wrapY);
+      stencils.put(key, stencil);
+    }
+    return stencil;
+  }
+
+  private int[] makeStencil(double radius, boolean wrapX, boolean wrapY) {
+    int[] xs = offsets(radius / cellWidth, columns, wrapX);
+    int[] ys = offsets(radius / cellHeight, rows, wrapY);
+    int[] result = new int[xs.length * ys.length * 2];
+    int n = 0;
+    double rsquared = radius * radius;
+    for (int dy : ys) {
+      double gapY = StrictMath.max(0, StrictMath.abs(dy) - 1) * cellHeight;
+      for (int dx : xs) {
+        double gapX = StrictMath.max(0, StrictMath.abs(dx) - 1) * cellWidth;
+        if (gapX * gapX + gapY * gapY <= rsquared) {
+          result[n++] = dx;
+          result[n++] = dy;
+        }
+      }
+    }
+    int[] trimmed = new int[n];
+    System.arraycopy(result, 0, trimmed, 0, n);
+    return trimmed;
+  }
+
+  // the cell offsets along one axis that might be within reach cells of the center cell
+  private static int[] offsets(double reach, int cells, boolean wrap) {
+    int max = (int) StrictMath.min(StrictMath.floor(reach) + 1, cells);
+    int lo, hi;
+    if (wrap && 2 * max + 1 > cells) {
+      // one full lap around the world, as close to centered as we can get
+      lo = -((cells - 1) / 2);
+      hi = cells / 2;
+    } else if (wrap) {
+      lo = -max;
+      hi = max;
+    } else {
+      lo = -StrictMath.min(max, cells - 1);
+      hi = StrictMath.min(max, cells - 1);
+    }
+    int[] result = new int[hi - lo + 1];
+    for (int i = lo; i <= hi; i++) {
+      result[i - lo] = i;
+    }
+    return result;
+  }
+
+  // Adds every turtle that might be within radius of (x, y) to candidates.  The caller still has
+  // to check the actual distance (or cone), and whether the turtle is in the agentset it wants.
+  void candidates(double x, double y, double radius, List<Turtle> candidates) {
+    int column = column(x);
+    int row = row(y);
+    int[] stencil = stencil(radius);
+    for (int k = 0; k < stencil.length; k += 2) {
+      int i = column + stencil[k];
+      int j = row + stencil[k + 1];
+      if (i < 0 || i >= columns) {
+        if (!stencilsWrapX) {
+          continue;
+        }
+        i = i < 0 ? i + columns : i - columns;
+      }
+      if (j < 0 || j >= rows) {
+        if (!stencilsWrapY) {
+          continue;
+        }
+        j = j < 0 ? j + rows : j - rows;
+      }
+      int cell = j * columns + i;
+      Turtle[] turtles = cells[cell];
+      for (int t = 0, count = counts[cell]; t < count; t++) {
+        candidates.add(turtles[t]);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,81 @@
+// (C) Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.agent;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+// Unboxed storage for the turtles-own and breed-own variables the compiler has proven are always
+// numeric (Program.numericTurtlesOwn).  A turtle with any such variables keeps a double[] beside
+// its variables array, numbered the same way, so _turtlevariabledouble and _setturtlevariable can
+// work on it without boxing.  The variables array still has a slot for the variable, but it's
+// only a cache of the boxed value, the same way xcor works: null means "not boxed yet".
+//
+// This class knows which slots are numeric for each breed.  The turtles of a breed all share the
+// same flags.
+
+strictfp final class TurtleNumbers {
+
+  // by breed name; the flags are indexed by variable number.  breeds
+  // without any numeric variables are left out.
+  private final Map<String, boolean[]> slots = new HashMap<String, boolean[]>();
+
+  TurtleNumbers() { }
+
+  // the variables arrays must already be in their final shape and have everything boxed (as
+  // Turtle.realloc leaves them when compiling)
+  TurtleNumbers(World world) {
+    Set<String> names = new HashSet<String>();
+    for (scala.collection.Iterator<String> iter = world.program().numericTurtlesOwn().iterator();
+         iter.hasNext();) {
+      names.add(iter.next());
+    }
+    if (names.isEmpty()) {
+      return;
+    }
+    // a turtle may hold a non-number left over from before the variable
+    // became numeric, in which case the variable just stays boxed
+    for (AgentIterator iter = world.turtles().iterator(); iter.hasNext();) {
+      Turtle turtle = (Turtle) iter.next();
+      for (int vn = turtle.NUMBER_PREDEFINED_VARS; vn < turtle.variables.length; vn++) {
+        if (!(turtle.variables[vn] instanceof Double)) {
+          names.remove(name(world, turtle.getBreed(), vn));
+        }
+      }
+    }
+    put(world, world.turtles(), names);
+    for (AgentSet breed : world.breedAgents.values()) {
+      put(world, breed, names);
+    }
+    for (AgentIterator iter = world.turtles().iterator(); iter.hasNext();) {
+      Turtle turtle = (Turtle) iter.next();
+      turtle.loadNumbers(slots(turtle.getBreed()));
+    }
+  }
+
+  private void put(World world, AgentSet breed, Set<String> names) {
+    boolean[] flags = new boolean[world.getVariablesArraySize((Turtle) null, breed)];
+    boolean any = false;
+    for (int vn = 0; vn < flags.length; vn++) {
+      flags[vn] = names.contains(name(world, breed, vn));
+      any = any || flags[vn];
+    }
+    if (any) {
+      slots.put(breed.printName(), flags);
+    }
+  }
+
+  private static String name(World world, AgentSet breed, int vn) {
+    return vn < world.program().turtlesOwn().size()
+        ? world.turtlesOwnNameAt(vn)
+        : world.breedsOwnNameAt(breed, vn);
+  }
+
+  // returns null if none of the breed's variables are numeric
+  boolean[] slots(AgentSet breed) {
+    return slots.get(breed.printName());
+  }
+
+}
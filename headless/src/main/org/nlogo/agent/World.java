@@ -2,6 +2,7 @@
 
 package org.nlogo.agent;
 
+import org.nlogo.api.AgentChanges;
 import org.nlogo.api.AgentException;
 import org.nlogo.api.AgentKind;
 import org.nlogo.api.AgentKindJ;
@@ -60,7 +61,7 @@ public strictfp class World
 
   private double patchSize = 12.0; // keep the unzoomed patchSize here
   TrailDrawerInterface trailDrawer;
-  private final Map<Agent, Double> lineThicknesses = new HashMap<Agent, Double>();
+  final Map<Agent, Double> lineThicknesses = new HashMap<Agent, Double>();
   Topology topology;
   RootsTable rootsTable;
   protected Protractor _protractor;
@@ -238,6 +239,9 @@ public strictfp class World
 
   public void setLineThickness(Agent agent, double size) {
     lineThicknesses.put(agent, Double.valueOf(size));
+    if (changeTracker != null && agent instanceof Turtle) {
+      changeTracker.turtleChanged(agent.id);
+    }
   }
 
   public double lineThickness(Agent agent) {
@@ -581,7 +585,7 @@ public strictfp class World
   }
 
   public Turtle getTurtle(long id) {
-    return (Turtle) _turtles.getAgent(Double.valueOf(id));
+    return (Turtle) _turtles.agent(id);
   }
 
   public Link getLink(Object end1, Object end2, AgentSet breed) {
@@ -706,6 +710,7 @@ public strictfp class World
   public void createPatches(int minPxcor, int maxPxcor,
                             int minPycor, int maxPycor) {
     patchScratch = null;
+    patchScratch2 = null;
     _minPxcor = minPxcor;
     _maxPxcor = maxPxcor;
     _minPycor = minPycor;
@@ -729,7 +734,7 @@ public strictfp class World
         agents.clear();
     }
 
-    _turtles = new TreeAgentSet(AgentKindJ.Turtle(), "TURTLES", this);
+    _turtles = new TurtleAgentSet("TURTLES", this);
     _links = new TreeAgentSet(AgentKindJ.Link(), "LINKS", this);
 
     int x = minPxcor;
@@ -753,6 +758,13 @@ public strictfp class World
       patchArray[i] = patch;
     }
     _patches = new ArrayAgentSet(AgentKindJ.Patch(), patchArray, "patches", this);
+    patchColumns = new PatchColumns(this);
+    if (turtleGrid != null) {
+      turtleGrid = new TurtleGrid(this, turtleGrid.requestedCellSize());
+    }
+    if (changeTracker != null) {
+      changeTracker.everythingChanged();
+    }
     patchesWithLabels = 0;
     patchesAllBlack = true;
     mayHavePartiallyTransparentObjects = false;
@@ -834,6 +846,12 @@ public strictfp class World
     for (AgentIterator iter = _patches.iterator(); iter.hasNext();) {
       ((Patch) iter.next()).clearTurtles();
     }
+    if (turtleGrid != null) {
+      turtleGrid.clear();
+    }
+    if (changeTracker != null) {
+      changeTracker.everythingChanged();
+    }
     nextTurtleIndex = 0;
     _observer.updatePosition();
   }
@@ -847,6 +865,9 @@ public strictfp class World
       link.id = -1;
     }
     _links.clear();
+    if (changeTracker != null) {
+      changeTracker.linkChanged();
+    }
     nextLinkIndex = 0;
     linkManager.reset();
   }
@@ -875,8 +896,54 @@ public strictfp class World
   // successful recompilation.
   public void realloc() {
     Realloc.realloc(this);
+    // breed indices may have moved
+    if (changeTracker != null) {
+      changeTracker.everythingChanged();
+    }
   }
 
+  /// forking
+
+  /**
+   * Returns an independent copy of this world, with the same agents, variables, random state,
+   * and ticks (see WorldFork).  The copy has no drawing and isn't attached to a workspace; it's
+   * for holding on to a state so that it can be copied back into a workspace's world later with
+   * forkFrom, any number of times.
+   */
+  public World fork() {
+    World child = new World();
+    child.turtleShapeList().replaceShapes(_turtleShapeList.getShapes());
+    child.linkShapeList().replaceShapes(_linkShapeList.getShapes());
+    child.patchSize(patchSize);
+    child.createPatches(getDimensions());
+    child.program(_program);
+    child.realloc();
+    child.forkFrom(this);
+    return child;
+  }
+
+  /**
+   * Replaces this world's state with a copy of parent's, which must be a world of the same model.
+   * parent is left as it was.
+   */
+  public void forkFrom(World parent) {
+    // even reading the parent can change it (turtles get sorted, for one), so
+    // nothing else may run in it meanwhile
+    synchronized (parent) {
+      WorldFork.copy(parent, this);
+    }
+  }
+
+  /// patch columns
+  //  primitive storage for numeric patches-own variables, see PatchColumns
+
+  PatchColumns patchColumns = new PatchColumns();
+
+  /// turtle numbers
+  //  primitive storage for numeric turtles-own and breed-own variables, see TurtleNumbers
+
+  TurtleNumbers turtleNumbers = new TurtleNumbers();
+
   /// patch scratch
   //  a scratch area that can be used by commands such as _diffuse
 
@@ -889,6 +956,104 @@ public strictfp class World
     return patchScratch;
   }
 
+  // a second one, for diffusers that compute new values from patchScratch
+  double[][] patchScratch2;
+
+  double[][] getPatchScratch2() {
+    if (patchScratch2 == null) {
+      patchScratch2 = new double[_worldWidth][_worldHeight];
+    }
+    return patchScratch2;
+  }
+
+  /// parallel diffusion
+
+  private DiffusionPool diffusionPool = null;
+
+  DiffusionPool diffusionPool() {
+    return diffusionPool;
+  }
+
+  public int diffusionThreads() {
+    return diffusionPool == null ? 1 : diffusionPool.threads();
+  }
+
+  // 1 (the default) means diffuse serially on the job thread
+  public void diffusionThreads(int threads) {
+    if (threads != diffusionThreads()) {
+      if (diffusionPool != null) {
+        diffusionPool.shutdown();
+      }
+      diffusionPool = threads > 1 ? new DiffusionPool(threads) : null;
+    }
+  }
+
+  /// parallel ask
+  //  threads for asks the compiler found to be isolated, see nvm.ParallelJob
+
+  private int askThreads = 1;
+  private java.util.concurrent.ExecutorService askExecutor = null;
+
+  public int askThreads() {
+    return askThreads;
+  }
+
+  public java.util.concurrent.ExecutorService askExecutor() {
+    return askExecutor;
+  }
+
+  // 1 (the default) means every ask runs serially on the job thread
+  public void askThreads(int threads) {
+    if (threads != askThreads) {
+      if (askExecutor != null) {
+        askExecutor.shutdown();
+      }
+      askThreads = StrictMath.max(1, threads);
+      askExecutor = askThreads > 1
+          ? java.util.concurrent.Executors.newFixedThreadPool(askThreads,
+              new java.util.concurrent.ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                  Thread t = new Thread(r, "NetLogo ask");
+                  // don't keep the JVM alive just for us
+                  t.setDaemon(true);
+                  return t;
+                }
+              })
+          : null;
+    }
+  }
+
+  /// turtle grid
+  //  spatial index for in-radius and in-cone on turtles, see TurtleGrid
+
+  TurtleGrid turtleGrid = null;
+
+  // 0 (the default) means no index
+  public double turtleGridCellSize() {
+    return turtleGrid == null ? 0 : turtleGrid.requestedCellSize();
+  }
+
+  public void turtleGridCellSize(double size) {
+    if (size != turtleGridCellSize()) {
+      if (turtleGrid != null) {
+        turtleGrid.clear();
+      }
+      turtleGrid = size > 0 ? new TurtleGrid(this, size) : null;
+    }
+  }
+
+  /// change tracking
+  //  for HubNet view mirroring, see ChangeTracker
+
+  ChangeTracker changeTracker = null;
+
+  public AgentChanges drainAgentChanges() {
+    if (changeTracker == null) {
+      changeTracker = new ChangeTracker();
+    }
+    return changeTracker.drain();
+  }
+
   /// agent-owns
 
   public int indexOfVariable(AgentKind kind, String name) {
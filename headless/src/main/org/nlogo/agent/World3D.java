@@ -2,6 +2,7 @@
 
 package org.nlogo.agent;
 
+import org.nlogo.api.AgentChanges;
 import org.nlogo.api.AgentException;
 import org.nlogo.api.AgentKindJ;
 import org.nlogo.api.Color;
@@ -196,6 +197,17 @@ public final strictfp class World3D
     createPatches(minPxcor, maxPxcor, minPycor, maxPycor, 0, 0);
   }
 
+  // Turtle3D doesn't keep a TurtleGrid up to date, and InRadiusOrCone3D doesn't use one
+  @Override
+  public void turtleGridCellSize(double size) {
+  }
+
+  // the 3D agents don't report their changes, so everything always might have changed
+  @Override
+  public AgentChanges drainAgentChanges() {
+    return new AgentChanges(true, new java.util.BitSet(), new java.util.BitSet(), true);
+  }
+
   @Override
   public Program newProgram() {
     return Program.empty(true);
@@ -235,7 +247,7 @@ public final strictfp class World3D
         agents.clear();
     }
 
-    _turtles = new TreeAgentSet(AgentKindJ.Turtle(), "TURTLES", this);
+    _turtles = new TurtleAgentSet("TURTLES", this);
     _links = new TreeAgentSet(AgentKindJ.Link(), "LINKS", this);
 
     int x = _minPxcor;
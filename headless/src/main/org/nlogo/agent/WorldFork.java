@@ -0,0 +1,193 @@
+// (C) Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.agent;
+
+import org.nlogo.api.AgentException;
+import org.nlogo.api.AgentKindJ;
+import org.nlogo.api.LogoException;
+import org.nlogo.api.LogoList;
+import org.nlogo.api.LogoListBuilder;
+import org.nlogo.api.Nobody$;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Copies one world into another, for World.fork and World.forkFrom.  The copy is independent of
+ * the original: it has its own agents, agentsets, links, random state, and tick counter, so
+ * either one can run on without affecting the other.  Values that can't change (numbers,
+ * strings, and lists without agents in them) are shared rather than copied; agents and agentsets
+ * are replaced with their counterparts in the copy.  Tasks and extension objects are shared as
+ * they are.
+ *
+ * Like WorldSnapshot, a world can only be copied into a world of the same model, and only in 2D.
+ */
+final strictfp class WorldFork {
+
+  private final World parent;
+  private final World child;
+
+  private WorldFork(World parent, World child) {
+    this.parent = parent;
+    this.child = child;
+  }
+
+  static void copy(World parent, World child) {
+    if (parent.program().is3D() || child.program().is3D()) {
+      throw new IllegalStateException("Forking 3D worlds isn't supported.");
+    }
+    if (!WorldSnapshot.variableNames(parent.program()).equals(
+        WorldSnapshot.variableNames(child.program()))) {
+      throw new IllegalArgumentException("Can't fork a world into a world of a different model.");
+    }
+    new WorldFork(parent, child).copy();
+  }
+
+  private void copy() {
+    if (!child.equalDimensions(parent.getDimensions())) {
+      child.createPatches(parent.getDimensions());
+    }
+    child.changeTopology(parent.wrappingAllowedInX(), parent.wrappingAllowedInY());
+    child.clearAll();
+    child.turtleBreedShapes.copyFrom(parent.turtleBreedShapes);
+    child.linkBreedShapes.copyFrom(parent.linkBreedShapes);
+    child.tickCounter.ticks_$eq(parent.tickCounter.ticks());
+    if (parent.links().isDirected()) {
+      child.links().setDirected(true);
+    } else if (parent.links().isUndirected()) {
+      child.links().setDirected(false);
+    }
+
+    copyVariables(parent.observer(), child.observer());
+
+    for (AgentIterator it = parent.turtles().iterator(); it.hasNext();) {
+      Turtle turtle = (Turtle) it.next();
+      Turtle copy = child.getOrCreateTurtle(turtle.id);
+      copy.setBreed(breed(turtle.getBreed()));
+      copyVariables(turtle, copy);
+    }
+    for (AgentIterator it = parent.patches().iterator(); it.hasNext();) {
+      Patch patch = (Patch) it.next();
+      copyVariables(patch, child.getPatch((int) patch.id));
+    }
+    for (AgentIterator it = parent.links().iterator(); it.hasNext();) {
+      Link link = (Link) it.next();
+      copyVariables(link, link(link));
+    }
+
+    for (Map.Entry<Agent, Double> entry : parent.lineThicknesses.entrySet()) {
+      Object agent = value(entry.getKey());
+      if (agent instanceof Agent) {
+        child.setLineThickness((Agent) agent, entry.getValue().doubleValue());
+      }
+    }
+
+    if (parent.trailDrawer != null && child.trailDrawer != null &&
+        !parent.trailDrawer.isBlank() &&
+        parent.trailDrawer.getWidth() == child.trailDrawer.getWidth() &&
+        parent.trailDrawer.getHeight() == child.trailDrawer.getHeight()) {
+      child.trailDrawer.setColors(parent.trailDrawer.colors());
+    }
+
+    Observer observer = parent.observer();
+    child.observer().perspective(observer.perspective());
+    child.observer().followDistance(observer.followDistance());
+    Object target = observer.targetAgent() == null ? null : value(observer.targetAgent());
+    child.observer().targetAgent(target instanceof Agent ? (Agent) target : null);
+
+    child.nextTurtleIndex(parent.nextTurtleIndex());
+    child.mainRNG().load(parent.mainRNG().save());
+    child.auxRNG().load(parent.auxRNG().save());
+  }
+
+  private void copyVariables(Agent from, Agent to) {
+    int count = from.getVariableCount();
+    for (int i = 0; i < count; i++) {
+      if (!WorldSnapshot.isFixed(from, i)) {
+        try {
+          to.setVariable(i, value(from.getVariable(i)));
+        } catch (AgentException ex) {
+          // the value was fine in a world of the same model, so it should be fine here
+          throw new IllegalStateException(ex);
+        } catch (LogoException ex) {
+          throw new IllegalStateException(ex);
+        }
+      }
+    }
+  }
+
+  // the child's counterpart of a value in the parent
+  private Object value(Object value) {
+    if (value instanceof Turtle) {
+      Turtle turtle = (Turtle) value;
+      return turtle.id == -1 ? Nobody$.MODULE$ : child.getOrCreateTurtle(turtle.id);
+    } else if (value instanceof Patch) {
+      return child.getPatch((int) ((Patch) value).id);
+    } else if (value instanceof Link) {
+      Link link = (Link) value;
+      return link.id == -1 ? Nobody$.MODULE$ : link(link);
+    } else if (value instanceof Observer) {
+      return child.observer();
+    } else if (value instanceof AgentSet) {
+      return agentSet((AgentSet) value);
+    } else if (value instanceof LogoList) {
+      return list((LogoList) value);
+    } else {
+      return value;
+    }
+  }
+
+  private Link link(Link link) {
+    return child.getOrCreateLink(child.getOrCreateTurtle(link.end1().id),
+        child.getOrCreateTurtle(link.end2().id), breed(link.getBreed()));
+  }
+
+  private AgentSet agentSet(AgentSet agents) {
+    if (agents.printName() != null) {
+      return breed(agents);
+    }
+    Agent[] copies = new Agent[agents.count()];
+    int count = 0;
+    for (AgentIterator it = agents.iterator(); it.hasNext();) {
+      Object copy = value(it.next());
+      // members that have died are left out, as they would be from the original
+      if (copy instanceof Agent) {
+        copies[count++] = (Agent) copy;
+      }
+    }
+    return new ArrayAgentSet(agents.kind(), Arrays.copyOf(copies, count), child);
+  }
+
+  // the same list if nothing in it changes, so lists without agents in them are shared
+  private LogoList list(LogoList list) {
+    LogoListBuilder copy = new LogoListBuilder();
+    boolean changed = false;
+    for (Iterator<Object> it = list.iterator(); it.hasNext();) {
+      Object item = it.next();
+      Object itemCopy = value(item);
+      changed = changed || itemCopy != item;
+      copy.add(itemCopy);
+    }
+    return changed ? copy.toLogoList() : list;
+  }
+
+  // the child's agentset for a breed, or for all the turtles, patches, links, or observers
+  private AgentSet breed(AgentSet breed) {
+    AgentSet copy;
+    if (breed.kind() == AgentKindJ.Turtle()) {
+      copy = breed == parent.turtles() ? child.turtles() : child.getBreed(breed.printName());
+    } else if (breed.kind() == AgentKindJ.Patch()) {
+      copy = child.patches();
+    } else if (breed.kind() == AgentKindJ.Link()) {
+      copy = breed == parent.links() ? child.links() : child.getLinkBreed(breed.printName());
+    } else {
+      copy = child.observers();
+    }
+    if (copy == null) {
+      throw new IllegalStateException("no breed " + breed.printName());
+    }
+    return copy;
+  }
+
+}
@@ -0,0 +1,464 @@
+// (C) Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.agent;
+
+import org.nlogo.api.AgentException;
+import org.nlogo.api.AgentKind;
+import org.nlogo.api.AgentKindJ;
+import org.nlogo.api.Dump;
+import org.nlogo.api.ImporterUser;
+import org.nlogo.api.LogoException;
+import org.nlogo.api.LogoList;
+import org.nlogo.api.LogoListBuilder;
+import org.nlogo.api.Nobody$;
+import org.nlogo.api.Perspective;
+import org.nlogo.api.Program;
+import org.nlogo.api.WorldDimensions;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A binary alternative to export-world and import-world, for checkpointing long runs.  It
+ * writes the same things Exporter does (the random state, the globals, and every turtle, patch,
+ * and link), plus the drawing, but as binary values rather than CSV text, so there's nothing to
+ * format or parse.  The workspace adds the plots.
+ *
+ * Unlike import-world, restoring doesn't try to match up variables by name, so a snapshot can
+ * only be restored into the same model (the same variables and breeds) it was saved from.  2D
+ * only, for now.
+ */
+public final strictfp class WorldSnapshot {
+
+  // this class is not instantiable
+  private WorldSnapshot() {
+    throw new IllegalStateException();
+  }
+
+  private static final int MAGIC = 0x4E4C534E; // "NLSN"
+  private static final int FORMAT = 1;
+
+  // what kind of value comes next
+  private static final int NOBODY = 0;
+  private static final int NUMBER = 1;
+  private static final int TRUE = 2;
+  private static final int FALSE = 3;
+  private static final int STRING = 4;
+  private static final int LIST = 5;
+  private static final int TURTLE = 6;
+  private static final int PATCH = 7;
+  private static final int LINK = 8;
+  // a breed, or all the turtles, patches, or links
+  private static final int SPECIAL_AGENTSET = 9;
+  private static final int AGENTSET = 10;
+  // anything else (tasks, extension objects) goes as export-world would write it
+  private static final int OTHER = 11;
+
+  /// saving
+
+  public static void save(World world, SnapshotOutput out)
+      throws IOException {
+    if (world.program().is3D()) {
+      throw new IOException("Snapshots of 3D worlds aren't supported.");
+    }
+    out.writeInt(MAGIC);
+    out.writeInt(FORMAT);
+    out.writeString(variableNames(world.program()));
+    out.writeString(world.mainRNG().save());
+    out.writeInt(world.minPxcor());
+    out.writeInt(world.maxPxcor());
+    out.writeInt(world.minPycor());
+    out.writeInt(world.maxPycor());
+    out.writeDouble(world.tickCounter.ticks());
+    out.writeInt(world.observer().perspective().export());
+    Object subject = world.observer().targetAgent();
+    writeValue(out, subject == null ? Nobody$.MODULE$ : subject);
+    out.writeLong(world.nextTurtleIndex());
+    out.writeByte(world.links().isDirected() ? 1 : world.links().isUndirected() ? 2 : 0);
+
+    writeVariables(out, world.observer());
+
+    out.writeInt(world.turtles().count());
+    for (AgentIterator it = world.turtles().iterator(); it.hasNext();) {
+      Turtle turtle = (Turtle) it.next();
+      out.writeLong(turtle.id);
+      out.writeString(turtle.getBreed().printName());
+      writeVariables(out, turtle);
+    }
+
+    out.writeInt(world.patches().count());
+    for (AgentIterator it = world.patches().iterator(); it.hasNext();) {
+      writeVariables(out, it.next());
+    }
+
+    out.writeInt(world.links().count());
+    for (AgentIterator it = world.links().iterator(); it.hasNext();) {
+      Link link = (Link) it.next();
+      out.writeLong(link.end1().id);
+      out.writeLong(link.end2().id);
+      out.writeString(link.getBreed().printName());
+      writeVariables(out, link);
+    }
+
+    if (world.trailDrawer == null || world.trailDrawer.isBlank()) {
+      out.writeBoolean(false);
+    } else {
+      out.writeBoolean(true);
+      out.writeInt(world.trailDrawer.getWidth());
+      out.writeInt(world.trailDrawer.getHeight());
+      out.writeInts(world.trailDrawer.colors(),
+          world.trailDrawer.getWidth() * world.trailDrawer.getHeight());
+    }
+
+    out.writeInt(MAGIC);
+  }
+
+  // the variables and breeds the snapshot has values for
+  static String variableNames(Program program) {
+    return program.globals().mkString(" ") + "\n" +
+        program.turtlesOwn().mkString(" ") + "\n" +
+        program.patchesOwn().mkString(" ") + "\n" +
+        program.linksOwn().mkString(" ") + "\n" +
+        program.breeds().values().mkString(" ") + "\n" +
+        program.linkBreeds().values().mkString(" ");
+  }
+
+  // variables that were already taken care of when the agent was made
+  static boolean isFixed(Agent agent, int i) {
+    if (agent instanceof Turtle) {
+      return i == Turtle.VAR_WHO || i == Turtle.VAR_BREED;
+    } else if (agent instanceof Patch) {
+      return i == Patch.VAR_PXCOR || i == Patch.VAR_PYCOR;
+    } else if (agent instanceof Link) {
+      return i == Link.VAR_END1 || i == Link.VAR_END2 || i == Link.VAR_BREED;
+    } else {
+      return false;
+    }
+  }
+
+  private static void writeVariables(SnapshotOutput out, Agent agent)
+      throws IOException {
+    int count = agent.getVariableCount();
+    out.writeInt(count);
+    for (int i = 0; i < count; i++) {
+      writeValue(out, agent.getVariable(i));
+    }
+  }
+
+  private static void writeValue(SnapshotOutput out, Object value)
+      throws IOException {
+    if (value instanceof Double) {
+      out.writeByte(NUMBER);
+      out.writeDouble(((Double) value).doubleValue());
+    } else if (value instanceof Boolean) {
+      out.writeByte(((Boolean) value).booleanValue() ? TRUE : FALSE);
+    } else if (value instanceof String) {
+      out.writeByte(STRING);
+      out.writeString((String) value);
+    } else if (value instanceof LogoList) {
+      LogoList list = (LogoList) value;
+      out.writeByte(LIST);
+      out.writeInt(list.size());
+      for (Iterator<Object> it = list.iterator(); it.hasNext();) {
+        writeValue(out, it.next());
+      }
+    } else if (value instanceof Turtle) {
+      Turtle turtle = (Turtle) value;
+      if (turtle.id == -1) {
+        out.writeByte(NOBODY);
+      } else {
+        out.writeByte(TURTLE);
+        out.writeLong(turtle.id);
+      }
+    } else if (value instanceof Patch) {
+      out.writeByte(PATCH);
+      out.writeLong(((Patch) value).id);
+    } else if (value instanceof Link) {
+      Link link = (Link) value;
+      if (link.id == -1) {
+        out.writeByte(NOBODY);
+      } else {
+        out.writeByte(LINK);
+        out.writeLong(link.end1().id);
+        out.writeLong(link.end2().id);
+        out.writeString(link.getBreed().printName());
+      }
+    } else if (value instanceof AgentSet) {
+      AgentSet agents = (AgentSet) value;
+      if (agents.printName() != null) {
+        out.writeByte(SPECIAL_AGENTSET);
+        out.writeByte(kindNumber(agents.kind()));
+        out.writeString(agents.printName());
+      } else {
+        // collected first, since counting a set of turtles or links goes through them too
+        List<Agent> members = new ArrayList<Agent>();
+        for (AgentIterator it = agents.iterator(); it.hasNext();) {
+          members.add(it.next());
+        }
+        out.writeByte(AGENTSET);
+        out.writeByte(kindNumber(agents.kind()));
+        out.writeInt(members.size());
+        for (Agent member : members) {
+          writeValue(out, member);
+        }
+      }
+    } else if (value == Nobody$.MODULE$) {
+      out.writeByte(NOBODY);
+    } else {
+      out.writeByte(OTHER);
+      out.writeString(Dump.logoObject(value, true, true));
+    }
+  }
+
+  private static int kindNumber(AgentKind kind) {
+    if (kind == AgentKindJ.Turtle()) {
+      return 0;
+    } else if (kind == AgentKindJ.Patch()) {
+      return 1;
+    } else {
+      return 2;
+    }
+  }
+
+  private static AgentKind kind(int number) {
+    switch (number) {
+      case 0:
+        return AgentKindJ.Turtle();
+      case 1:
+        return AgentKindJ.Patch();
+      default:
+        return AgentKindJ.Link();
+    }
+  }
+
+  /// restoring
+
+  /**
+   * Replaces the world with the one in the snapshot.  Values that can't be read back in (tasks,
+   * say) are reported to errorHandler, and their variables are left at their defaults.
+   */
+  public static void restore(World world, ImporterUser importerUser,
+                             ImporterJ.ErrorHandler errorHandler,
+                             ImporterJ.StringReader stringReader, SnapshotInput in)
+      throws IOException {
+    if (world.program().is3D()) {
+      throw new IOException("Snapshots of 3D worlds aren't supported.");
+    }
+    if (in.readInt() != MAGIC) {
+      throw new IOException("This isn't a NetLogo world snapshot.");
+    }
+    if (in.readInt() != FORMAT) {
+      throw new IOException("This snapshot is from a different version of NetLogo.");
+    }
+    if (!in.readString().equals(variableNames(world.program()))) {
+      throw new IOException("This snapshot is of a different model.");
+    }
+    new Restorer(world, errorHandler, stringReader, in).restore(importerUser);
+  }
+
+  private static class Restorer {
+    private final World world;
+    private final ImporterJ.ErrorHandler errorHandler;
+    private final ImporterJ.StringReader stringReader;
+    private final SnapshotInput in;
+
+    Restorer(World world, ImporterJ.ErrorHandler errorHandler,
+             ImporterJ.StringReader stringReader, SnapshotInput in) {
+      this.world = world;
+      this.errorHandler = errorHandler;
+      this.stringReader = stringReader;
+      this.in = in;
+    }
+
+    void restore(ImporterUser importerUser)
+        throws IOException {
+      String randomState = in.readString();
+      int minPxcor = in.readInt();
+      int maxPxcor = in.readInt();
+      int minPycor = in.readInt();
+      int maxPycor = in.readInt();
+      boolean resize = minPxcor != world.minPxcor() || maxPxcor != world.maxPxcor() ||
+          minPycor != world.minPycor() || maxPycor != world.maxPycor();
+      if (resize) {
+        importerUser.setDimensions(new WorldDimensions(minPxcor, maxPxcor, minPycor, maxPycor));
+      }
+      world.clearAll();
+
+      world.tickCounter.ticks_$eq(in.readDouble());
+      world.observer().perspective(Perspective.load(in.readInt()));
+      Object subject = readValue();
+      world.observer().targetAgent(subject instanceof Agent ? (Agent) subject : null);
+      long nextTurtleIndex = in.readLong();
+      int directed = in.readByte();
+      if (directed != 0) {
+        world.links().setDirected(directed == 1);
+      }
+
+      readVariables(world.observer());
+
+      int turtleCount = in.readCount();
+      for (int i = 0; i < turtleCount; i++) {
+        Turtle turtle = world.getOrCreateTurtle(in.readLong());
+        turtle.setBreed(breed(AgentKindJ.Turtle(), in.readString()));
+        readVariables(turtle);
+      }
+
+      int patchCount = in.readCount();
+      if (patchCount != world.patches().count()) {
+        throw new IOException("The snapshot is damaged.");
+      }
+      for (AgentIterator it = world.patches().iterator(); it.hasNext();) {
+        readVariables(it.next());
+      }
+
+      int linkCount = in.readCount();
+      for (int i = 0; i < linkCount; i++) {
+        Turtle end1 = world.getOrCreateTurtle(in.readLong());
+        Turtle end2 = world.getOrCreateTurtle(in.readLong());
+        AgentSet breed = breed(AgentKindJ.Link(), in.readString());
+        readVariables(world.getOrCreateLink(end1, end2, breed));
+      }
+
+      if (in.readBoolean()) {
+        int width = in.readInt();
+        int height = in.readInt();
+        int[] colors = in.readInts();
+        // the drawing is the size of the view, so if the patch size has changed since, it won't fit
+        if (world.trailDrawer != null && width == world.trailDrawer.getWidth() &&
+            height == world.trailDrawer.getHeight()) {
+          world.trailDrawer.setColors(colors);
+        } else {
+          errorHandler.showError("Error Restoring Snapshot",
+              "The view is a different size now, so the drawing will not be restored.", false);
+        }
+      }
+
+      if (in.readInt() != MAGIC) {
+        throw new IOException("The snapshot is damaged.");
+      }
+      world.nextTurtleIndex(nextTurtleIndex);
+      world.mainRNG().load(randomState);
+      if (resize) {
+        importerUser.resizeView();
+      }
+    }
+
+    private void readVariables(Agent agent)
+        throws IOException {
+      int count = in.readCount();
+      if (count != agent.getVariableCount()) {
+        throw new IOException("The snapshot is damaged.");
+      }
+      for (int i = 0; i < count; i++) {
+        Object value = readValue();
+        if (value != null && !isFixed(agent, i)) {
+          try {
+            agent.setVariable(i, value);
+          } catch (AgentException ex) {
+            couldNotSet(agent, i, value);
+          } catch (LogoException ex) {
+            couldNotSet(agent, i, value);
+          }
+        }
+      }
+    }
+
+    private void couldNotSet(Agent agent, int i, Object value) {
+      errorHandler.showError("Error Restoring Snapshot",
+          "could not set " + agent + "'s variable " + i + " to " + Dump.logoObject(value) +
+              "; it will be left at its default.", false);
+    }
+
+    private AgentSet breed(AgentKind kind, String name)
+        throws IOException {
+      AgentSet breed;
+      if (kind == AgentKindJ.Turtle()) {
+        breed = name.equals(world.turtles().printName()) ? world.turtles() : world.getBreed(name);
+      } else if (kind == AgentKindJ.Patch()) {
+        breed = world.patches();
+      } else {
+        breed = name.equals(world.links().printName()) ? world.links() : world.getLinkBreed(name);
+      }
+      if (breed == null) {
+        throw new IOException("The snapshot is damaged.");
+      }
+      return breed;
+    }
+
+    // null means the value couldn't be read back in
+    private Object readValue()
+        throws IOException {
+      int tag = in.readByte();
+      switch (tag) {
+        case NOBODY:
+          return Nobody$.MODULE$;
+        case NUMBER:
+          return Double.valueOf(in.readDouble());
+        case TRUE:
+          return Boolean.TRUE;
+        case FALSE:
+          return Boolean.FALSE;
+        case STRING:
+          return in.readString();
+        case LIST: {
+          int size = in.readCount();
+          LogoListBuilder list = new LogoListBuilder();
+          boolean ok = true;
+          for (int i = 0; i < size; i++) {
+            Object item = readValue();
+            ok = ok && item != null;
+            list.add(item);
+          }
+          return ok ? list.toLogoList() : null;
+        }
+        case TURTLE:
+          return world.getOrCreateTurtle(in.readLong());
+        case PATCH: {
+          long id = in.readLong();
+          if (id < 0 || id >= world.patches().count()) {
+            throw new IOException("The snapshot is damaged.");
+          }
+          return world.getPatch((int) id);
+        }
+        case LINK: {
+          Turtle end1 = world.getOrCreateTurtle(in.readLong());
+          Turtle end2 = world.getOrCreateTurtle(in.readLong());
+          return world.getOrCreateLink(end1, end2, breed(AgentKindJ.Link(), in.readString()));
+        }
+        case SPECIAL_AGENTSET: {
+          AgentKind kind = kind(in.readByte());
+          return breed(kind, in.readString());
+        }
+        case AGENTSET: {
+          AgentKind kind = kind(in.readByte());
+          Agent[] agents = new Agent[in.readCount()];
+          int count = 0;
+          for (int i = 0; i < agents.length; i++) {
+            Object agent = readValue();
+            // members that have died since are just left out
+            if (agent instanceof Agent) {
+              agents[count++] = (Agent) agent;
+            }
+          }
+          return new ArrayAgentSet(kind, Arrays.copyOf(agents, count), world);
+        }
+        case OTHER: {
+          String text = in.readString();
+          try {
+            return stringReader.readFromString(text);
+          } catch (ImporterJ.StringReaderException ex) {
+            errorHandler.showError("Error Restoring Snapshot",
+                "could not read " + text + "; it will be left at its default.", false);
+            return null;
+          }
+        }
+        default:
+          throw new IOException("The snapshot is damaged.");
+      }
+    }
+  }
+
+}
@@ -0,0 +1,19 @@
+// (C) Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.api
+
+import java.util.BitSet
+
+/**
+ * Which agents have changed, in ways a view could show, since the last call to
+ * World.drainAgentChanges.  HubNet view mirroring uses this to look at just those agents, instead
+ * of comparing every agent in the world against what it sent last time.
+ *
+ * If everything is true, there's no telling what changed (it's the first drain, or the world was
+ * cleared or resized since), so every agent has to be looked at.  Otherwise patches holds the ids
+ * of the patches that changed, and turtles the who numbers of the turtles that changed, were born,
+ * or died.  Links can't be looked up by id, so for them there's just a flag saying whether any
+ * link was made, changed, or died.  (A link also moves when either of its ends does, which the
+ * flag doesn't cover; callers have to allow for that themselves.)
+ */
+case class AgentChanges(everything: Boolean, patches: BitSet, turtles: BitSet, links: Boolean)
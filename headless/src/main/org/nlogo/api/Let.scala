@@ -4,4 +4,8 @@ package org.nlogo.api
 
 case class Let(varName: String = null,
                startPos: Int = -1,
-               endPos: Int = -1)
+               endPos: Int = -1) {
+  // where the variable lives in a Context's array of let variables.  filled in by the compiler
+  // (see compiler.LetSlots); lets in a procedure and its tasks share a numbering
+  var index = -1
+}
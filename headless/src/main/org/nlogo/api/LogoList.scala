@@ -16,51 +16,145 @@ object LogoList {
   def fromVector(v: Vector[AnyRef]) =
     new LogoList(v)
   implicit def toIterator(ll:LogoList) = ll.scalaIterator
+
+  // the elements lput onto a list, shared by the lists lput onto it in turn.  see below.
+  private[api] class Appends(val array: Array[AnyRef], private var fill: Int) extends Serializable {
+    // puts obj after the list that sees start until end, unless another list has already lput
+    // onto that one, in which case this returns null.  returns the Appends obj went in, which
+    // is this one, unless it was full.  then the list and obj are copied to the start of a
+    // bigger one, leaving this one to the lists that already share it.
+    def lput(start: Int, end: Int, obj: AnyRef): Appends =
+      synchronized {
+        if (end != fill)
+          null
+        else if (fill < array.length) {
+          array(fill) = obj
+          fill += 1
+          this
+        }
+        else {
+          val n = end - start
+          val bigger = new Array[AnyRef](n * 2)
+          System.arraycopy(array, start, bigger, 0, n)
+          bigger(n) = obj
+          new Appends(bigger, n + 1)
+        }
+      }
+  }
+  private[api] object Appends {
+    def apply(obj: AnyRef) = {
+      val array = new Array[AnyRef](8)
+      array(0) = obj
+      new Appends(array, 1)
+    }
+  }
 }
 
-class LogoList private (private val v: Vector[AnyRef])
-extends java.util.AbstractSequentialList[AnyRef] with Serializable {
+// A LogoList is a Vector, plus, after lput, an Appends holding the elements lput since.  Lists
+// lput onto each other share one Appends, each seeing the part of its array from start to its own
+// end.  Only the list that ends where the Appends is filled to can write the next slot in place,
+// which makes "set xs lput x xs" O(1) amortized and nearly garbage free, where Vector's :+ copies
+// a leaf and a path of nodes every time.  Lput onto any other list folds its appends into its
+// Vector and starts a new Appends.  Nothing below fill is ever written again, so what any list
+// sees never changes.  If a list has an Appends, it's never empty, so a list that's empty is
+// always just its Vector.
+
+class LogoList private (private val v: Vector[AnyRef],
+                        private val appends: LogoList.Appends,
+                        private val start: Int, private val end: Int)
+extends java.util.AbstractList[AnyRef] with java.util.RandomAccess with Serializable {
+
+  private def this(v: Vector[AnyRef]) = this(v, null, 0, 0)
+
+  private def make(v: Vector[AnyRef], appends: LogoList.Appends, start: Int, end: Int) =
+    if (start == end) new LogoList(v)
+    else new LogoList(v, appends, start, end)
+
+  def scalaIterator: scala.Iterator[AnyRef] =
+    if (appends == null) v.iterator
+    else v.iterator ++ appends.array.iterator.slice(start, end)
+
+  // folding the appends into the Vector is O(n), so it's only done for the operations that
+  // need it, and only once per list
+  @transient private var folded: Vector[AnyRef] = null
+  private def vector: Vector[AnyRef] =
+    if (appends == null) v
+    else {
+      if (folded == null)
+        folded =
+          if (v.isEmpty) {
+            val b = new VectorBuilder[AnyRef]
+            var i = start
+            while (i < end) { b += appends.array(i); i += 1 }
+            b.result
+          }
+          else (v /: appends.array.iterator.slice(start, end))(_ :+ _)
+      folded
+    }
+
+  def toVector = vector
 
-  def scalaIterator = v.iterator
-  def toVector = v
+  // serialize just what this list sees, not all of a shared Appends
+  private def writeReplace(): AnyRef =
+    if (appends == null) this else new LogoList(vector)
 
-  /// methods required by AbstractSequentialList
+  /// methods required by AbstractList
 
-  override def get(index: Int) = v(index)
-  override def size = v.size
+  override def get(index: Int) =
+    if (index < v.size) v(index)
+    else if (index < size) appends.array(start + index - v.size)
+    else throw new IndexOutOfBoundsException(index.toString)
+  override def size = v.size + end - start
   override def iterator: java.util.Iterator[AnyRef] =
-    new Iterator(v)
-  override def listIterator(i: Int): java.util.ListIterator[AnyRef] =
-    new Iterator(v.drop(i))
+    new Iterator(scalaIterator)
   override def add(index: Int, obj: AnyRef) = unsupported
 
   /// public methods for prims. input validity checking is caller's job
 
-  def first = v.head
-  def fput(obj: AnyRef) = new LogoList(obj +: v)
-  def lput(obj: AnyRef) = new LogoList(v :+ obj)
-  def reverse = new LogoList(v.reverse)
+  def first =
+    if (v.isEmpty && appends != null) appends.array(start)
+    else v.head
+  def fput(obj: AnyRef) = new LogoList(obj +: v, appends, start, end)
+  def lput(obj: AnyRef) =
+    if (appends == null)
+      new LogoList(v, LogoList.Appends(obj), 0, 1)
+    else appends.lput(start, end, obj) match {
+      case null =>
+        // somebody else already lput onto this list, so start over from the whole thing as a
+        // Vector.  it's kept, so doing that again costs nothing.
+        new LogoList(vector, LogoList.Appends(obj), 0, 1)
+      case a if a eq appends =>
+        new LogoList(v, appends, start, end + 1)
+      case a =>
+        new LogoList(v, a, 0, end - start + 1)
+    }
+  def reverse = new LogoList(vector.reverse)
   def replaceItem(index: Int, obj: AnyRef) =
-    new LogoList(v.updated(index, obj))
-  def logoSublist(start: Int, stop: Int) =
-    new LogoList(v.slice(start, stop))
-  def butFirst = new LogoList(v.tail)
-  def butLast = new LogoList(v.init)
+    if (index < v.size)
+      new LogoList(v.updated(index, obj), appends, start, end)
+    else
+      new LogoList(vector.updated(index, obj))
+  def logoSublist(begin: Int, stop: Int) =
+    if (appends == null || stop <= v.size)
+      new LogoList(v.slice(begin, stop))
+    else if (begin >= v.size)
+      make(Vector(), appends, start + begin - v.size, start + stop - v.size)
+    else
+      make(v.drop(begin), appends, start, start + stop - v.size)
+  def butFirst =
+    if (v.isEmpty && appends != null) make(v, appends, start + 1, end)
+    else new LogoList(v.tail, appends, start, end)
+  def butLast =
+    if (appends == null) new LogoList(v.init)
+    else make(v, appends, start, end - 1)
   def removeItem(index: Int) =
-    new LogoList(v.patch(index, Nil, 1))
+    new LogoList(vector.patch(index, Nil, 1))
 
   /// Iterator class
 
-  private class Iterator(v: Vector[AnyRef]) extends java.util.ListIterator[AnyRef] {
-    private val it = v.iterator
+  private class Iterator(it: scala.Iterator[AnyRef]) extends java.util.Iterator[AnyRef] {
     override def hasNext = it.hasNext
-    override def hasPrevious = unsupported
     override def next = it.next
-    override def add(obj: Object) = unsupported
-    override def set(obj: Object) = unsupported
-    override def previousIndex = unsupported
-    override def nextIndex = unsupported
-    override def previous = unsupported
     override def remove = unsupported
   }
 
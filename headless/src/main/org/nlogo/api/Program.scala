@@ -32,7 +32,12 @@ case class Program private(
   patchesOwn: Seq[String] = Seq(),
   linksOwn: Seq[String] = Seq(),
   breeds: ListMap[String, Breed] = ListMap(),
-  linkBreeds: ListMap[String, Breed] = ListMap()) {
+  linkBreeds: ListMap[String, Breed] = ListMap(),
+  // patches-own variables the compiler has proven only ever hold numbers; filled in after
+  // parsing, and only when Version.usePatchColumns is on
+  numericPatchesOwn: Set[String] = Set(),
+  // likewise for turtles-own and breed-own variables, when Version.useTurtleNumbers is on
+  numericTurtlesOwn: Set[String] = Set()) {
 
   def globals: Seq[String] =
     AgentVariables.getImplicitObserverVariables ++
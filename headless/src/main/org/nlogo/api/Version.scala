@@ -84,6 +84,33 @@ object Version {
         false
     }
 
+  // Keeping numeric patches-own variables in primitive columns (see agent.PatchColumns) is opt-in
+  // for now, since it makes setting such a variable to a non-number a runtime error.
+  def usePatchColumns =
+    flag("org.nlogo.patchColumns")
+
+  // likewise for numeric turtles-own and breed-own variables (see agent.TurtleNumbers)
+  def useTurtleNumbers =
+    flag("org.nlogo.turtleNumbers")
+
+  // whether recompiling the Code tab keeps the procedures that haven't changed; see
+  // compiler.ProcedureReuse
+  def reuseProcedures =
+    guardedProperty(false)(!java.lang.Boolean.getBoolean("org.nlogo.noProcedureReuse"))
+
+  // reads a system property, or gives otherwise if we aren't allowed to
+  def guardedProperty[T](otherwise: T)(read: => T): T =
+    try read
+    // can't check arbitrary properties from applets... - ST 10/4/04, 1/31/05
+    catch {
+      case _: java.security.AccessControlException =>
+        otherwise
+    }
+
+  // an opt-in switch, like -Dorg.nlogo.patchColumns=true.  always off in applets.
+  def flag(name: String) =
+    guardedProperty(false)(java.lang.Boolean.getBoolean(name))
+
   def knownVersion(version: String) =
     knownVersions.exists(removeRev(version.trim).startsWith)
 
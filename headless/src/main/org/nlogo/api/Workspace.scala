@@ -33,6 +33,10 @@ trait Workspace extends ImporterUser with CompilerServices with RandomServices {
   @throws(classOf[IOException])
   def exportWorld(writer: java.io.PrintWriter)
   @throws(classOf[IOException])
+  def saveSnapshot(path: String)
+  @throws(classOf[IOException])
+  def restoreSnapshot(path: String)
+  @throws(classOf[IOException])
   def exportOutput(path: String)
   @throws(classOf[IOException])
   def exportPlot(plotName: String, path: String)
@@ -22,6 +22,7 @@ trait World {
   @throws(classOf[AgentException])
   def getPatchAt(x: Double, y: Double): Patch
   def fastGetPatchAt(x: Int, y: Int): Patch
+  def getTurtle(id: Long): Turtle
   def patchColors: Array[Int]
   def patchesAllBlack: Boolean
   def patchesWithLabels: Int
@@ -69,6 +70,13 @@ trait World {
   def setObserverVariableByName(variableName: String, value: AnyRef)
   def timer: Timer
 
+  /**
+   * Returns which agents have changed since the last call (see AgentChanges).  Nothing is tracked
+   * until the first call, which therefore always says everything changed.  Should be called with
+   * a lock on the world.
+   */
+  def drainAgentChanges(): AgentChanges
+
   /**
    * Returns true if there is at least one partially transparent turtle, patch, link, or 3D stamp
    * present. This determines whether it is necessary to sort the objects by their distance to the
@@ -23,20 +23,26 @@ private object CompilerMain {
     val structureResults = new StructureParser(tokenizer.tokenize(source), // tokenize
                                                displayName, program, oldProcedures, extensionManager)
       .parse(subprogram)  // process declarations
-    val taskNumbers = Iterator.from(1)
+    // procedures that haven't changed since the last compile of the Code tab are kept as they are
+    val reused =
+      if(subprogram) Map[String, Procedure]()
+      else ProcedureReuse.reusable(structureResults, extensionManager)
+    val procedures = structureResults.procedures ++ reused
+    val taskNumbers = Iterator.from(ProcedureReuse.firstTaskNumber(reused.values))
     // the return type is plural because tasks inside a procedure get
     // lambda-lifted and become top level procedures
     def parseProcedure(procedure: Procedure): Seq[ProcedureDefinition] = {
       val rawTokens = structureResults.tokens(procedure)
       val iP =
-        new IdentifierParser(structureResults.program, oldProcedures, structureResults.procedures, false)
+        new IdentifierParser(structureResults.program, oldProcedures, procedures, false)
       val identifiedTokens =
         iP.process(rawTokens.iterator, procedure)  // resolve references
       new ExpressionParser(procedure, taskNumbers)
         .parse(identifiedTokens) // parse
     }
     val defs: Vector[ProcedureDefinition] =
-      Vector() ++ structureResults.procedures.values.flatMap(parseProcedure)
+      Vector() ++ structureResults.procedures.values.filterNot(p => reused.contains(p.name))
+        .flatMap(parseProcedure)
     // StructureParser found the top level Procedures for us.  ExpressionParser
     // finds command tasks and makes Procedures out of them, too.  the remaining
     // phases handle all ProcedureDefinitions from both sources. - ST 2/4/11
@@ -50,7 +56,28 @@ private object CompilerMain {
       procdef.accept(new CarefullyVisitor)  // connect _carefully to _errormessage
       procdef.accept(new Optimizer(program.is3D))   // do various code-improving rewrites
     }
+    // a subprogram runs against the patch columns and turtle numbers the world already has, so it
+    // mustn't change which variables are numeric
+    val newProgram =
+      if(subprogram || structureResults.program.is3D)
+        structureResults.program
+      else
+        structureResults.program.copy(
+          numericPatchesOwn =
+            if(Version.usePatchColumns) NumericPatchVariables.infer(defs, structureResults.program)
+            else Set(),
+          numericTurtlesOwn =
+            if(Version.useTurtleNumbers) NumericTurtleVariables.infer(defs, structureResults.program)
+            else Set())
+    if(newProgram.numericPatchesOwn.nonEmpty)
+      for(procdef <- defs)
+        procdef.accept(new NumericPatchVariableVisitor(newProgram))  // read numeric patch vars unboxed
+    if(newProgram.numericTurtlesOwn.nonEmpty)
+      for(procdef <- defs)
+        procdef.accept(new NumericTurtleVariableVisitor(newProgram))  // read numeric turtle vars unboxed
     new AgentTypeChecker(defs).parse()  // catch agent type inconsistencies
+    new ParallelAskAnalysis(defs, program.is3D).analyze()  // find asks that can run in parallel
+    new LetSlots(defs).assign()  // number let variables
     for(procdef <- defs) {
       procdef.accept(new ArgumentStuffer) // fill args arrays in Commands & Reporters
       new Assembler().assemble(procdef)     // flatten tree to command array
@@ -64,8 +91,14 @@ private object CompilerMain {
     }
     // only return top level procedures.
     // task procedures can be reached via the children field on Procedure.
-    CompilerResults(
-      defs.map(_.procedure).filterNot(_.isTask),
-      structureResults.program)
+    val results =
+      if(reused.isEmpty)
+        CompilerResults(defs.map(_.procedure).filterNot(_.isTask), newProgram)
+      else
+        CompilerResults(structureResults.procedures.values.map(p => procedures(p.name)).toSeq,
+                        newProgram)
+    if(!subprogram)
+      ProcedureReuse.remember(structureResults, results.proceduresMap, extensionManager)
+    results
   }
 }
@@ -0,0 +1,117 @@
+// (C) Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.compiler
+
+import org.nlogo.api.Let
+import org.nlogo.nvm.Procedure
+import org.nlogo.prim._
+import org.nlogo.prim.etc._wait
+
+/**
+ * Gives each let variable that LocalsVisitor didn't turn into a local a fixed slot (Let.index) in
+ * an array of let variables, so the engine finds it without searching (see Context.getLet).  A
+ * procedure and its tasks share a numbering, since a task's variables and the ones it closes over
+ * go in the same array.  Also works out which variables from outside each task its body uses, so
+ * the task only keeps those.
+ *
+ * Besides "let" itself, some primitives (repeat, fd, bk, wait, carefully) keep their state in a let
+ * variable of their own, and task inputs are let variables too.
+ */
+private class LetSlots(defs: Seq[ProcedureDefinition]) {
+
+  private type Uses = collection.mutable.Set[Int]
+
+  // by the top level procedure
+  private val counts = collection.mutable.Map[Procedure, Int]()
+  // the variables each command task's body uses
+  private val uses = collection.mutable.Map[Procedure, Uses]()
+  // each task, with what uses its variables: the procedure it's in, if that's a task, and any
+  // reporter tasks it's inside.  a task uses the variables the tasks inside it use, so they're
+  // passed along.
+  private val commandTasks = collection.mutable.Buffer[(_commandtask, Seq[Uses])]()
+  private val reporterTasks = collection.mutable.Buffer[(_reportertask, Uses)]()
+
+  def assign() {
+    for(procdef <- defs) {
+      val procedure = procdef.procedure
+      uses(procedure) = collection.mutable.Set()
+      procedure.taskFormals.filter(_ != null).foreach(index(procedure, _))
+      procdef.accept(new Finder(procedure))
+    }
+    var changed = true
+    while(changed) {
+      changed = false
+      for((task, enclosing) <- commandTasks; set <- enclosing) {
+        val before = set.size
+        set ++= uses(task.proc)
+        changed ||= set.size != before
+      }
+    }
+    def indexes(used: Uses, formals: Seq[Let]) =
+      (used -- formals.filter(_ != null).map(_.index)).toArray.sorted
+    for((task, _) <- commandTasks)
+      task.captured = indexes(uses(task.proc), task.proc.taskFormals)
+    for((task, used) <- reporterTasks)
+      task.captured = indexes(used, task.formals)
+    for(procdef <- defs)
+      procdef.procedure.letsCount = counts.getOrElse(root(procdef.procedure), 0)
+  }
+
+  private def root(procedure: Procedure): Procedure =
+    if(procedure.parent == null) procedure else root(procedure.parent)
+
+  private def index(procedure: Procedure, let: Let) {
+    if(let.index == -1) {
+      val top = root(procedure)
+      let.index = counts.getOrElse(top, 0)
+      counts(top) = let.index + 1
+    }
+  }
+
+  private class Finder(procedure: Procedure) extends DefaultAstVisitor {
+    // the sets to record uses in, innermost first
+    private var enclosing: List[Uses] =
+      if(procedure.isTask) List(uses(procedure)) else Nil
+    private def use(let: Let) {
+      index(procedure, let)
+      enclosing.foreach(_ += let.index)
+    }
+    override def visitStatement(stmt: Statement) {
+      stmt.command match {
+        case l: _let => use(l.let)
+        case s: _setletvariable => use(s.let)
+        case r: _repeat => use(r.let)
+        case f: _fd => use(f.let)
+        case b: _bk => use(b.let)
+        case w: _wait => use(w.let)
+        case c: _carefully => use(c.let)
+        case _ =>
+      }
+      super.visitStatement(stmt)
+    }
+    override def visitReporterApp(app: ReporterApp) {
+      app.reporter match {
+        case l: _letvariable =>
+          use(l.let)
+          super.visitReporterApp(app)
+        case e: _errormessage =>
+          use(e.let)
+          super.visitReporterApp(app)
+        case t: _reportertask =>
+          t.formals.filter(_ != null).foreach(index(procedure, _))
+          val used: Uses = collection.mutable.Set()
+          reporterTasks += ((t, used))
+          val old = enclosing
+          enclosing ::= used
+          super.visitReporterApp(app)
+          enclosing = old
+        case t: _commandtask =>
+          commandTasks += ((t, enclosing))
+          super.visitReporterApp(app)
+        case _ =>
+          super.visitReporterApp(app)
+      }
+    }
+  }
+
+}
@@ -0,0 +1,75 @@
+// (C) Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.compiler
+
+import org.nlogo.api.{ AgentVariables, Program, Syntax }
+import org.nlogo.prim.{ _patchvariable, _patchvariabledouble, _setpatchvariable }
+
+/**
+ * Finds the patches-own variables that can only ever hold numbers, so the agent package can keep
+ * them in primitive columns (see agent.PatchColumns) instead of boxing every value.
+ *
+ * Every patch variable starts out as 0, so a variable is numeric if every "set" of it in the
+ * program sets it to something of NumberType.  Reading another numeric patch variable counts,
+ * too, so we start by assuming all of them are numeric and knock variables out until nothing
+ * changes.  Code compiled later (the Command Center, "run") isn't covered by this; Patch checks
+ * the type at runtime instead.
+ */
+private object NumericPatchVariables {
+
+  def infer(defs: Seq[ProcedureDefinition], program: Program): Set[String] = {
+    val userVars =
+      AgentVariables.getImplicitPatchVariables(program.is3D).size until program.patchesOwn.size
+    var numeric = userVars.toSet
+    var changed = true
+    while(changed) {
+      val finder = new NonNumericSetFinder(numeric)
+      defs.foreach(_.accept(finder))
+      changed = finder.found.nonEmpty
+      numeric --= finder.found
+    }
+    numeric.map(program.patchesOwn)
+  }
+
+  private class NonNumericSetFinder(numeric: Set[Int]) extends DefaultAstVisitor {
+    val found = collection.mutable.Set[Int]()
+    override def visitStatement(stmt: Statement) {
+      super.visitStatement(stmt)
+      stmt.command match {
+        case s: _setpatchvariable if numeric(s.vn) && !isNumeric(stmt(0)) =>
+          found += s.vn
+        case _ =>
+      }
+    }
+    private def isNumeric(expr: Expression) =
+      expr match {
+        case app: ReporterApp =>
+          app.reporter match {
+            case v: _patchvariable => numeric(v.vn)
+            case _ => app.reportedType == Syntax.NumberType
+          }
+        case _ =>
+          false
+      }
+  }
+
+}
+
+/**
+ * Replaces reads of numeric patch variables with _patchvariabledouble, whose report_2 lets the
+ * generator get at the column without boxing.
+ */
+private class NumericPatchVariableVisitor(program: Program) extends DefaultAstVisitor {
+  private val numeric =
+    program.numericPatchesOwn.map(program.patchesOwn.indexOf(_))
+  override def visitReporterApp(app: ReporterApp) {
+    super.visitReporterApp(app)
+    app.reporter match {
+      case v: _patchvariable if numeric(v.vn) =>
+        val newReporter = new _patchvariabledouble(v.vn)
+        newReporter.token(v.token)
+        app.reporter = newReporter
+      case _ =>
+    }
+  }
+}
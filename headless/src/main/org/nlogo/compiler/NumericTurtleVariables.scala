@@ -0,0 +1,81 @@
+// (C) Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.compiler
+
+import org.nlogo.api.{ AgentVariables, Program, Syntax }
+import org.nlogo.prim.{ _breedvariable, _setbreedvariable, _setturtleorlinkvariable,
+                        _setturtlevariable, _turtlevariable, _turtlevariabledouble }
+
+/**
+ * Finds the turtles-own and breed-own variables that can only ever hold numbers, so the agent
+ * package can keep them unboxed (see agent.TurtleNumbers).  This works like NumericPatchVariables:
+ * every such variable starts out as 0, so it's numeric if every "set" of it sets it to something
+ * of NumberType or to another numeric turtle variable.
+ *
+ * Breed variables are set by name, and so is a variable that's both turtles-own and links-own,
+ * so we go by name throughout.  A name owned by more than one breed is numeric only if it's
+ * numeric for all of them.
+ */
+private object NumericTurtleVariables {
+
+  def infer(defs: Seq[ProcedureDefinition], program: Program): Set[String] = {
+    val userVars =
+      program.turtlesOwn.drop(AgentVariables.getImplicitTurtleVariables(program.is3D).size)
+    var numeric = (userVars ++ program.breeds.values.flatMap(_.owns)).toSet
+    var changed = true
+    while(changed) {
+      val finder = new NonNumericSetFinder(numeric, program)
+      defs.foreach(_.accept(finder))
+      changed = finder.found.nonEmpty
+      numeric --= finder.found
+    }
+    numeric
+  }
+
+  private class NonNumericSetFinder(numeric: Set[String], program: Program) extends DefaultAstVisitor {
+    val found = collection.mutable.Set[String]()
+    override def visitStatement(stmt: Statement) {
+      super.visitStatement(stmt)
+      val name = stmt.command match {
+        case s: _setturtlevariable => program.turtlesOwn(s.vn)
+        case s: _setbreedvariable => s.name
+        case s: _setturtleorlinkvariable => s.varName
+        case _ => null
+      }
+      if(name != null && numeric(name) && !isNumeric(stmt(0)))
+        found += name
+    }
+    private def isNumeric(expr: Expression) =
+      expr match {
+        case app: ReporterApp =>
+          app.reporter match {
+            case v: _turtlevariable => numeric(program.turtlesOwn(v.vn))
+            case v: _breedvariable => numeric(v.name)
+            case _ => app.reportedType == Syntax.NumberType
+          }
+        case _ =>
+          false
+      }
+  }
+
+}
+
+/**
+ * Replaces reads of numeric turtle variables with _turtlevariabledouble, whose report_1 lets the
+ * generator get at the unboxed value.
+ */
+private class NumericTurtleVariableVisitor(program: Program) extends DefaultAstVisitor {
+  // breed variables aren't read with _turtlevariable, so they aren't in here
+  private val numeric =
+    program.numericTurtlesOwn.map(program.turtlesOwn.indexOf(_)).filter(_ != -1)
+  override def visitReporterApp(app: ReporterApp) {
+    super.visitReporterApp(app)
+    app.reporter match {
+      case v: _turtlevariable if numeric(v.vn) =>
+        val newReporter = new _turtlevariabledouble(v.vn)
+        newReporter.token(v.token)
+        app.reporter = newReporter
+      case _ =>
+    }
+  }
+}
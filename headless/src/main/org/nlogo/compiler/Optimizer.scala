@@ -33,7 +33,7 @@ private class Optimizer(is3D: Boolean) extends DefaultAstVisitor {
   private val reporterMungers =
     List[ReporterMunger](PatchAt, With, OneOfWith, Nsum, Nsum4,
          CountWith, OtherWith, WithOther, AnyOther, AnyOtherWith, CountOther, CountOtherWith,
-         AnyWith1, AnyWith2, AnyWith3, AnyWith4, AnyWith5,
+         AnyWith1, AnyWith2, AnyWith3, AnyWith4, AnyWith5, CountLinks, AnyLinks,
          PatchVariableDouble, TurtleVariableDouble, RandomConst)
 
   private class MatchFailedException extends Exception
@@ -147,7 +147,10 @@ private class Optimizer(is3D: Boolean) extends DefaultAstVisitor {
       }
     }
     def replace(theClass: Class[_ <: Instruction], constructorArgs: Any*) {
-      val newGuy = Instantiator.newInstance[Instruction](theClass, constructorArgs: _*)
+      replace(Instantiator.newInstance[Instruction](theClass, constructorArgs: _*))
+    }
+    // for when a constructor arg might be null, which Instantiator can't find the type of
+    def replace(newGuy: Instruction) {
       node match {
         case app: ReporterApp =>
           newGuy.token(app.reporter.token)
@@ -444,6 +447,32 @@ private class Optimizer(is3D: Boolean) extends DefaultAstVisitor {
       }
     }
   }
+  // _count(_mylinks) => _countmylinks, and likewise for _myinlinks and _myoutlinks
+  private object CountLinks extends RewritingReporterMunger {
+    val clazz = classOf[_count]
+    def munge(root: Match) {
+      root.matchArg(0, classOf[_mylinks], classOf[_myinlinks], classOf[_myoutlinks])
+        .reporter match {
+          case r: _mylinks => root.replace(new _countmylinks(r.breedName))
+          case r: _myinlinks => root.replace(new _countmyinlinks(r.breedName))
+          case r: _myoutlinks => root.replace(new _countmyoutlinks(r.breedName))
+        }
+      root.strip()
+    }
+  }
+  // _any(_mylinks) => _anymylinks, and likewise for _myinlinks and _myoutlinks
+  private object AnyLinks extends RewritingReporterMunger {
+    val clazz = classOf[_any]
+    def munge(root: Match) {
+      root.matchArg(0, classOf[_mylinks], classOf[_myinlinks], classOf[_myoutlinks])
+        .reporter match {
+          case r: _mylinks => root.replace(new _anymylinks(r.breedName))
+          case r: _myinlinks => root.replace(new _anymyinlinks(r.breedName))
+          case r: _myoutlinks => root.replace(new _anymyoutlinks(r.breedName))
+        }
+      root.strip()
+    }
+  }
   // _patchvariable => _patchvariabledouble
   private object PatchVariableDouble extends RewritingReporterMunger {
     val clazz = classOf[_patchvariable]
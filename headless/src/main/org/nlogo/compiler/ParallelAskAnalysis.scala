@@ -0,0 +1,145 @@
+// (C) Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.compiler
+
+import org.nlogo.api.AgentVariables
+import org.nlogo.nvm.{ Procedure, Reporter }
+import org.nlogo.prim._
+import org.nlogo.prim.etc._
+
+/**
+ * Finds the asks whose blocks could run for all of the asked agents at once, on several threads
+ * (see nvm.ParallelJob), without changing what they do.  They can if each agent only writes its
+ * own turtles-own, breeds-own or patches-own variables (not built-in ones, which can move the
+ * agent or touch the world), reads nothing another agent is writing, and gets its random numbers
+ * only from primitives that draw from context.job.random, which ParallelJob gives each agent a
+ * stream of its own for.  Rather than trying to prove anything about the rest of the language,
+ * we go by a list of primitives known to be safe; anything else, like "fd", "of", or setting a
+ * global, keeps the ask serial.
+ *
+ * Procedures called from a block count too, so, as in NumericPatchVariables, we start by
+ * assuming every procedure is isolated and knock procedures out until nothing changes.  The
+ * answer is kept on the Procedure, so that code compiled later (the Command Center, "run") can
+ * call it.
+ *
+ * The answer is an agent class string, like Procedure.usableBy, of the kinds of agents the code
+ * could run in parallel for: "-T--" if it writes turtle variables, "--P-" if it writes patch
+ * variables (a turtle setting a patch variable is writing to its patch, which other turtles share),
+ * "-TP-" if it writes neither, and "----" if it can't run in parallel at all.  Links are never
+ * run in parallel.
+ */
+private class ParallelAskAnalysis(defs: Seq[ProcedureDefinition], is3D: Boolean) {
+
+  private val turtleBuiltins = AgentVariables.getImplicitTurtleVariables(is3D).size
+  private val patchBuiltins = AgentVariables.getImplicitPatchVariables(is3D).size
+
+  def analyze() {
+    for(procdef <- defs) {
+      // tasks can't be called from an ask block, only run, which we don't allow
+      procdef.procedure.isolatedFor = if(procdef.procedure.isTask) "----" else "-TP-"
+      procdef.procedure.usesRandom = false
+    }
+    var changed = true
+    while(changed) {
+      changed = false
+      for(procdef <- defs; procedure = procdef.procedure; if !procedure.isTask) {
+        val finder = new EffectFinder(inBlock = false)
+        procdef.statements.accept(finder)
+        if(finder.isolatedFor != procedure.isolatedFor || finder.usesRandom != procedure.usesRandom) {
+          procedure.isolatedFor = finder.isolatedFor
+          procedure.usesRandom = finder.usesRandom
+          changed = true
+        }
+      }
+    }
+    defs.foreach(_.accept(new AskMarker))
+  }
+
+  private class AskMarker extends DefaultAstVisitor {
+    override def visitStatement(stmt: Statement) {
+      stmt.command match {
+        case ask: _ask =>
+          val finder = new EffectFinder(inBlock = true)
+          stmt(1).accept(finder)
+          ask.isolate(finder.isolatedFor, finder.usesRandom)
+        case _ =>
+      }
+      super.visitStatement(stmt)
+    }
+  }
+
+  // inBlock is true directly in an ask block, where the activation is the asking procedure's,
+  // so its locals are shared, and "stop" would stop the asker.  in a called procedure, they're
+  // the callee's own.
+  private class EffectFinder(inBlock: Boolean) extends DefaultAstVisitor {
+    var isolatedFor = "-TP-"
+    var usesRandom = false
+    private def restrict(agentClassString: String) {
+      isolatedFor = isolatedFor.map(c => if(agentClassString.indexOf(c) != -1) c else '-')
+    }
+    private def call(procedure: Procedure) {
+      restrict(procedure.isolatedFor)
+      usesRandom ||= procedure.usesRandom
+    }
+    override def visitStatement(stmt: Statement) {
+      stmt.command match {
+        case s: _setturtlevariable =>
+          restrict(if(s.vn >= turtleBuiltins) "-T--" else "----")
+        case _: _setbreedvariable =>
+          restrict("-T--")
+        case s: _setpatchvariable =>
+          restrict(if(s.vn >= patchBuiltins) "--P-" else "----")
+        case c: _call =>
+          call(c.procedure)
+        case _: _setprocedurevariable | _: _stop | _: _report if !inBlock =>
+        case _: _let | _: _repeat | _: _repeatlocal | _: _if | _: _ifelse | _: _while =>
+        case _ =>
+          restrict("----")
+      }
+      super.visitStatement(stmt)
+    }
+    override def visitReporterApp(app: ReporterApp) {
+      app.reporter match {
+        case c: _callreport =>
+          call(c.procedure)
+        case r if ParallelAskAnalysis.random(r.getClass) =>
+          usesRandom = true
+        case r if !ParallelAskAnalysis.pure(r.getClass) =>
+          restrict("----")
+        case _ =>
+      }
+      super.visitReporterApp(app)
+    }
+  }
+
+}
+
+private object ParallelAskAnalysis {
+
+  // reporters that only read the agent's own variables, or nothing at all
+  val pure: Set[Class[_ <: Reporter]] = Set(
+    classOf[_constboolean], classOf[_constdouble], classOf[_conststring], classOf[_constlist],
+    classOf[_letvariable], classOf[_procedurevariable], classOf[_observervariable],
+    classOf[_turtlevariable], classOf[_turtlevariabledouble], classOf[_breedvariable],
+    classOf[_patchvariable], classOf[_patchvariabledouble], classOf[_ticks],
+    classOf[_and], classOf[_or], classOf[_not], classOf[_xor],
+    classOf[_equal], classOf[_notequal], classOf[_lessthan], classOf[_greaterthan],
+    classOf[_lessorequal], classOf[_greaterorequal],
+    classOf[_plus], classOf[_minus], classOf[_mult], classOf[_div], classOf[_pow],
+    classOf[_unaryminus], classOf[_abs], classOf[_sqrt], classOf[_exp], classOf[_ln],
+    classOf[_log], classOf[_mod], classOf[_remainder], classOf[_int], classOf[_floor],
+    classOf[_ceil], classOf[_round], classOf[_precision], classOf[_sin], classOf[_cos],
+    classOf[_tan], classOf[_asin], classOf[_acos], classOf[_atan], classOf[_subtractheadings],
+    classOf[_dx], classOf[_dy], classOf[_distancexy], classOf[_towardsxy],
+    classOf[_ifelsevalue], classOf[_isnumber], classOf[_isstring], classOf[_islist],
+    classOf[_isboolean], classOf[_list], classOf[_sentence], classOf[_word], classOf[_item],
+    classOf[_length], classOf[_first], classOf[_last], classOf[_butfirst], classOf[_butlast],
+    classOf[_fput], classOf[_lput], classOf[_sum], classOf[_max], classOf[_min],
+    classOf[_mean], classOf[_median], classOf[_variance])
+
+  // reporters whose only effect is drawing from context.job.random
+  val random: Set[Class[_ <: Reporter]] = Set(
+    classOf[_random], classOf[_randomconst], classOf[_randomfloat], classOf[_randomnormal],
+    classOf[_randomexponential], classOf[_randompoisson], classOf[_randomgamma])
+
+}
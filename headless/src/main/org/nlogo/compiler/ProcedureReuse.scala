@@ -0,0 +1,113 @@
+// (C) Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.compiler
+
+import org.nlogo.api.{ ExtensionManager, Program, Token, TokenType, Version }
+import org.nlogo.nvm.Procedure
+import collection.JavaConverters._
+
+/**
+ * Lets a recompile of the Code tab keep the Procedures from the last one that can't have changed,
+ * so that only the rest go through parsing, the visitors, and the generator.  A procedure is kept
+ * if its tokens are the same as last time (positions too, since instructions keep their tokens
+ * for error messages), and so is every procedure it refers to.  Changes that touch the whole
+ * program make everything be compiled again: the declarations, which extensions are loaded,
+ * profiling, and numeric variable inference (NumericPatchVariables, NumericTurtleVariables), which
+ * looks at every procedure.
+ *
+ * What AgentTypeChecker and ParallelAskAnalysis found out about a kept procedure stays good, since
+ * it only depends on the procedure and the ones it calls, which are kept too.  Those passes read
+ * it off the Procedure when they look at the procedures that changed.
+ */
+private object ProcedureReuse {
+
+  // Token equality leaves out positions, and the value of a primitive's token is a new instance
+  // each time, so we compare these instead
+  private case class Shape(tpe: Procedure.Type, args: Seq[String], pos: Int, endPos: Int,
+                           tokens: Seq[(String, TokenType, Int, Int, String)])
+
+  private def shape(procedure: Procedure, tokens: Iterable[Token]) =
+    Shape(procedure.tpe, procedure.args.asScala.toList, procedure.pos, procedure.endPos,
+          tokens.map(t => (t.name, t.tpe, t.startPos, t.endPos, t.fileName)).toList)
+
+  private class Previous(val program: Program, val settings: Seq[Any], val extensions: Seq[AnyRef],
+                         val shapes: Map[String, Shape], val procedures: Compiler.ProceduresMap)
+
+  // by workspace, as given by its ExtensionManager.  the references are soft since the procedures
+  // refer back to the workspace, which would keep the entries from ever going away
+  private val previous =
+    new java.util.WeakHashMap[ExtensionManager, java.lang.ref.SoftReference[Previous]]
+
+  private def settings(extensionManager: ExtensionManager): Seq[Any] =
+    Seq(Version.useGenerator, Version.useOptimizer, Version.usePatchColumns,
+        Version.useTurtleNumbers, extensionManager.profilingEnabled)
+
+  private def extensions(extensionManager: ExtensionManager): Seq[AnyRef] =
+    extensionManager.loadedExtensions.asScala.toList
+
+  private def enabled(program: Program, extensionManager: ExtensionManager) =
+    Version.reuseProcedures && extensionManager != null &&
+      (!(Version.usePatchColumns || Version.useTurtleNumbers) || program.is3D)
+
+  /**
+   * The old Procedures that can stand in for the new ones of the same name.
+   */
+  def reusable(results: StructureParser.Results, extensionManager: ExtensionManager): Map[String, Procedure] =
+    if(!enabled(results.program, extensionManager))
+      Map()
+    else {
+      val old = previous.synchronized {
+        Option(previous.get(extensionManager)).flatMap(ref => Option(ref.get))
+      }
+      old match {
+        case Some(old) if old.program == results.program &&
+                          old.settings == settings(extensionManager) &&
+                          old.extensions.corresponds(extensions(extensionManager))(_ eq _) =>
+          val names = results.procedures.keySet
+          def refersTo(name: String) =
+            results.tokens(results.procedures(name))
+              .collect{case t if t.tpe == TokenType.IDENT => t.name.toUpperCase}.toSet
+          // removed procedures count as changed, so that whatever called them gets compiled again
+          // and fails
+          var changed = old.shapes.keySet -- names ++
+            names.filter{name =>
+              val procedure = results.procedures(name)
+              old.shapes.get(name) != Some(shape(procedure, results.tokens(procedure)))
+            }
+          val unchanged = names -- changed
+          val references = unchanged.map(name => name -> refersTo(name)).toMap
+          var done = false
+          while(!done) {
+            val more = (unchanged -- changed).filter(name => (references(name) & changed).nonEmpty)
+            changed ++= more
+            done = more.isEmpty
+          }
+          (unchanged -- changed).map(name => name -> old.procedures(name)).toMap
+        case _ =>
+          Map()
+      }
+    }
+
+  /**
+   * Called after a successful compile of the Code tab, so the next one can reuse its procedures.
+   */
+  def remember(results: StructureParser.Results, procedures: Compiler.ProceduresMap,
+               extensionManager: ExtensionManager) {
+    if(enabled(results.program, extensionManager)) {
+      // reused procedures have the same shape as their stand-ins from the StructureParser
+      val shapes =
+        results.procedures.map{case (name, procedure) =>
+          name -> shape(procedure, results.tokens(procedure))}
+      val entry = new Previous(results.program, settings(extensionManager),
+                               extensions(extensionManager), shapes, procedures)
+      previous.synchronized {
+        previous.put(extensionManager, new java.lang.ref.SoftReference(entry))
+      }
+    }
+  }
+
+  // so tasks in new procedures don't get the same name as the ones in kept procedures
+  def firstTaskNumber(reused: Iterable[Procedure]): Int =
+    (reused.flatMap(_.children).map(_.name.stripPrefix("__task-").toInt) ++ Seq(0)).max + 1
+
+}
@@ -5,7 +5,7 @@ package org.nlogo.compiler
 import CompilerExceptionThrowers.cAssert
 import org.nlogo.api.{ I18N, Let }
 import org.nlogo.nvm.Procedure
-import org.nlogo.prim.{ _reportertask, _letvariable, _taskvariable }
+import org.nlogo.prim.{ _commandtask, _reportertask, _letvariable, _taskvariable }
 
 private class TaskVisitor extends DefaultAstVisitor {
   private var task = Option.empty[_reportertask]
@@ -17,6 +17,7 @@ private class TaskVisitor extends DefaultAstVisitor {
   override def visitReporterApp(expr: ReporterApp) {
     expr.reporter match {
       case l: _reportertask =>
+        procedure.get.makesTasks = true
         val old = task
         task = Some(l)
         super.visitReporterApp(expr)
@@ -34,6 +35,9 @@ private class TaskVisitor extends DefaultAstVisitor {
             expr.reporter = new _letvariable(formal, formal.varName)
             expr.reporter.token(lv.token)
         }
+      case _: _commandtask =>
+        procedure.get.makesTasks = true
+        super.visitReporterApp(expr)
       case _ =>
         super.visitReporterApp(expr)
     }
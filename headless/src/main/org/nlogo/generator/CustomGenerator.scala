@@ -76,7 +76,7 @@ private class CustomGenerator(profilingEnabled: Boolean) {
   /*  Example code, just to show what bytecode is being generated
    public void perform_N (Object o0, Object o1) {
      Activation newActivation =
-     new Activation(procedure, context.activation, n)
+     context.newActivation(procedure, n)
      newActivation.args[ 0 ] = o0
      newActivation.args[ 1 ] = o1
      ...
@@ -88,19 +88,13 @@ private class CustomGenerator(profilingEnabled: Boolean) {
    */
   private def generateCall(instr: _call, mv: GeneratorAdapter, thisInstrUID: Int) {
     mv.keepField("procedure", instr.procedure, thisInstrUID)
-    mv.visitTypeInsn(NEW, "org/nlogo/nvm/Activation")
-    // stack: Activation
-    mv.visitInsn(DUP)
-    // stack: Activation Activation
-    mv.loadKeptField("procedure", thisInstrUID)
-    // stack: Activation Activation Procedure
     mv.visitVarInsn(ALOAD, 1)
-    // stack: Activation Activation Procedure Context
-    mv.visitFieldInsn(GETFIELD, "org/nlogo/nvm/Context", "activation", "Lorg/nlogo/nvm/Activation;")
-    // stack: Activation Activation Procedure Activation
+    // stack: Context
+    mv.loadKeptField("procedure", thisInstrUID)
+    // stack: Context Procedure
     mv.push(instr.next)
-    // stack: Activation Activation Procedure Activation int
-    mv.visitMethodInsn(INVOKESPECIAL, "org/nlogo/nvm/Activation", "<init>", "(Lorg/nlogo/nvm/Procedure;Lorg/nlogo/nvm/Activation;I)V")
+    // stack: Context Procedure int
+    mv.visitMethodInsn(INVOKEVIRTUAL, "org/nlogo/nvm/Context", "newActivation", "(Lorg/nlogo/nvm/Procedure;I)Lorg/nlogo/nvm/Activation;")
     // operand stack: Activation
     for (i <- 0 until (instr.procedure.args.size - instr.procedure.localsCount)) {
       // newActivation.args[ i ] = args[ i ].report(context)
@@ -147,7 +141,7 @@ private class CustomGenerator(profilingEnabled: Boolean) {
    *
    public void perform_N (Object o0, Object o1) {
      Activation newActivation =
-     new Activation(procedure, context.activation, n)
+     context.newActivation(procedure, n)
      newActivation.args[ 0 ] = o0
      newActivation.args[ 1 ] = o1
      ...
@@ -159,19 +153,13 @@ private class CustomGenerator(profilingEnabled: Boolean) {
    */
   private def generateCallReport(instr: _callreport, mv: GeneratorAdapter, thisInstrUID: Int, ip: Int) {
     mv.keepField("procedure", instr.procedure, thisInstrUID)
-    mv.visitTypeInsn(NEW, "org/nlogo/nvm/Activation")
-    // stack: Activation
-    mv.visitInsn(DUP)
-    // stack: Activation Activation
-    mv.loadKeptField("procedure", thisInstrUID)
-    // stack: Activation Activation Procedure
     mv.visitVarInsn(ALOAD, 1)
-    // stack: Activation Activation Procedure Context
-    mv.visitFieldInsn(GETFIELD, "org/nlogo/nvm/Context", "activation", "Lorg/nlogo/nvm/Activation;")
-    // stack: Activation Activation Procedure Activation
+    // stack: Context
+    mv.loadKeptField("procedure", thisInstrUID)
+    // stack: Context Procedure
     mv.push(ip)
-    // stack: Activation Activation Procedure Activation int
-    mv.visitMethodInsn(INVOKESPECIAL, "org/nlogo/nvm/Activation", "<init>", "(Lorg/nlogo/nvm/Procedure;Lorg/nlogo/nvm/Activation;I)V")
+    // stack: Context Procedure int
+    mv.visitMethodInsn(INVOKEVIRTUAL, "org/nlogo/nvm/Context", "newActivation", "(Lorg/nlogo/nvm/Procedure;I)Lorg/nlogo/nvm/Activation;")
     // operand stack:  Activation
     for (i <- 0 until (instr.procedure.args.size - instr.procedure.localsCount)) {
       // newActivation.args[ i ] = args[ i ].report(context)
@@ -19,7 +19,41 @@ object Generator {
 
 class Generator(source: String, procedure: Procedure, profilingEnabled: Boolean) extends GeneratorInterface {
   var ip = 0 // kinda ugly we need to track this only to use in one place, in generateCallReport - ST 2/10/09
-  def generate() = {
+  def generate() =
+    if (GeneratorCache.enabled)
+      generateCached()
+    else
+      generateCode()
+  private def generateCached() = {
+    import GeneratorCache._
+    val key = GeneratorCache.key(procedure, profilingEnabled)
+    def load(entry: Entry) =
+      if (shared) remember(key, entry) else new Loaded(entry)
+    def fromDisk =
+      for {
+        dir <- directory
+        entry <- read(dir, key)
+        code <- replay(load(entry))
+      } yield code
+    // another JVM might be glad of what this one has in memory
+    def fromMemory =
+      for (loaded <- remembered(key) if shared) yield {
+        for (dir <- directory if !stored(dir, key))
+          write(dir, key, loaded.entry)
+        loaded
+      }
+    fromMemory.flatMap(replay).orElse(fromDisk).getOrElse {
+      recorder = new Recorder(procedure.code)
+      val result = generateCode()
+      for (entry <- recorder.entry(result)) {
+        if (shared)
+          remember(key, entry)
+        directory.foreach(write(_, key, entry))
+      }
+      result
+    }
+  }
+  private def generateCode() = {
     ip = 0
     procedure.code.map { cmd => val result = recurse(cmd); ip += 1; result }
   }
@@ -41,11 +75,82 @@ class Generator(source: String, procedure: Procedure, profilingEnabled: Boolean)
   // something to do with the fact that Femto instantiates Generator using Class.forName().  I don't
   // understand this getContextClassLoader thing, either. - ST 4/16/09
   private val loader = new CustomClassLoader(Thread.currentThread.getContextClassLoader)
+  private var recorder: GeneratorCache.Recorder = null
+  /**
+   * Puts instances of the classes in a GeneratorCache entry where generating would have put new
+   * ones.  Nothing in procedure.code changes until everything in the entry has been found.
+   */
+  private def replay(loaded: GeneratorCache.Loaded): Option[Array[Command]] =
+    try {
+      import GeneratorCache._
+      val entry = loaded.entry
+      val code = procedure.code
+      val results = collection.mutable.ArrayBuffer[Instruction]()
+      def value(v: Value): AnyRef = v match {
+        case Original(path) => resolve(code, path)
+        case Generated(index) => results(index)
+        case FieldOf(path, name) => fieldValue(resolve(code, path), name)
+      }
+      for ((c, clazz) <- entry.classes.zip(loaded.classes)) {
+        val result = clazz.newInstance.asInstanceOf[Instruction]
+        for ((name, v) <- c.kept) {
+          val f = result.getClass.getDeclaredField(name)
+          f.setAccessible(true)
+          f.set(result, value(v))
+        }
+        results += result
+      }
+      val originals = entry.classes.map(c => resolve(code, c.original))
+      val args = entry.args.map{case (instr, as) =>
+        (value(instr).asInstanceOf[Instruction], as.map(value(_).asInstanceOf[Reporter]).toArray)}
+      val chosenMethods = entry.chosenMethods.map{case (path, name) =>
+        val instr = resolve(code, path)
+        (instr, instr.getClass.getMethods.find(GeneratorCache.methodName(_) == name).get)}
+      val newCode = entry.code.map(value(_).asInstanceOf[Command]).toArray
+      for ((instr, as) <- args)
+        instr.args = as
+      for ((instr, method) <- chosenMethods)
+        instr.chosenMethod = method
+      for (((result, original), c) <- results.zip(originals).zip(entry.classes))
+        describe(result, original, c.bytecode)
+      Some(newCode)
+    }
+    catch {
+      // then we generate after all
+      case _: Exception => None
+      case _: LinkageError => None
+    }
+  // fills in what a generated instruction copies from the original it replaces
+  private def describe(result: Instruction, original: Instruction, bytecode: Array[Byte]) {
+    import org.objectweb.asm.ClassReader
+    import org.objectweb.asm.util.TraceClassVisitor
+    result.token(original.token)
+    val sourceStart = original.getSourceStartPosition
+    val sourceEnd = original.getSourceEndPosition
+    result.source =
+      if (sourceStart < 0 || sourceStart > sourceEnd || sourceEnd > source.length) ""
+      else source.substring(sourceStart, sourceEnd)
+    // disassembly is stored as a thunk, so it's not generated unless used
+    def isBoring(line: String) =
+      List("\\s*LINENUMBER.*", "\\s*MAXSTACK.*", "\\s*MAXLOCALS.*").exists(line.matches(_))
+    result.disassembly = new org.nlogo.util.Thunk[String] {
+      def compute = {
+        val sw = new java.io.StringWriter
+        new ClassReader(bytecode).accept(new TraceClassVisitor(new java.io.PrintWriter(sw)), 0)
+        // (?s) = let dot match newlines. match until blank line (don't include init method)
+        """(?s)public final strictfp (?:perform|report).*?\n(.*?)\n\s*\n""".r
+          .findFirstMatchIn(sw.getBuffer.toString).get.subgroups.head
+          .split("\n").filter(!isBoring(_)).mkString("\n")
+      }
+    }
+    result.agentClassString = original.agentClassString
+    result.asInstanceOf[GeneratedInstruction].original = original
+    result.chosenMethod = original.chosenMethod
+  }
   private[generator] class InstructionGenerator[A <: Instruction](original: A) {
     import org.objectweb.asm
     import asm.Opcodes._
-    import asm.{ ClassReader, ClassWriter, Label, Type }
-    import asm.util.TraceClassVisitor
+    import asm.{ ClassWriter, Label, Type }
     val REPORT_PERFORM_ACCESS_CODES = ACC_PUBLIC + ACC_STRICT + ACC_FINAL
     // this is just used for debugging -- we can get rid of it eventually. it's placed at the end of
     // a method, so that we can measure the length of the bytecode of the generated method, to see
@@ -90,11 +195,7 @@ class Generator(source: String, procedure: Procedure, profilingEnabled: Boolean)
       generateBodyMethod()
       generateInitMethod()
       generateKeptFields()
-      val result = finish()
-      result.agentClassString = original.agentClassString
-      result.asInstanceOf[GeneratedInstruction].original = original
-      result.chosenMethod = original.chosenMethod
-      result
+      finish()
     }
     def generateConstructor() {
       val constructor = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null)
@@ -241,25 +342,9 @@ class Generator(source: String, procedure: Procedure, profilingEnabled: Boolean)
       val result = loader.loadBytecodeClass(cName, bytecode).newInstance.asInstanceOf[A]
       setAllKeptFields(result)
       result.args = original.args
-      result.token(original.token)
-      val sourceStart = original.getSourceStartPosition
-      val sourceEnd = original.getSourceEndPosition
-      result.source =
-        if (sourceStart < 0 || sourceStart > sourceEnd || sourceEnd > source.length) ""
-        else source.substring(sourceStart, sourceEnd)
-      // disassembly is stored as a thunk, so it's not generated unless used
-      def isBoring(line: String) =
-        List("\\s*LINENUMBER.*", "\\s*MAXSTACK.*", "\\s*MAXLOCALS.*").exists(line.matches(_))
-      result.disassembly = new org.nlogo.util.Thunk[String] {
-        def compute = {
-          val sw = new java.io.StringWriter
-          new ClassReader(bytecode).accept(new TraceClassVisitor(new java.io.PrintWriter(sw)), 0)
-          // (?s) = let dot match newlines. match until blank line (don't include init method)
-          """(?s)public final strictfp (?:perform|report).*?\n(.*?)\n\s*\n""".r
-            .findFirstMatchIn(sw.getBuffer.toString).get.subgroups.head
-            .split("\n").filter(!isBoring(_)).mkString("\n")
-        }
-      }
+      if (recorder != null)
+        recorder.generatedClass(result, fullClassName, bytecode, original, keptThings)
+      describe(result, original, bytecode)
       if (debugEndOfMethodLabel.getOffset > Generator.METHOD_SIZE_WARNING_THRESHOLD) {
         System.err.println
         System.err.println("WARNING: method size=" + debugEndOfMethodLabel.getOffset +
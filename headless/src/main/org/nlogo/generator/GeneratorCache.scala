@@ -0,0 +1,348 @@
+// (C) Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.generator
+
+import java.io.{ BufferedInputStream, BufferedOutputStream, DataInputStream, DataOutputStream, File,
+                 FileInputStream, FileOutputStream, IOException, OutputStream }
+import java.lang.reflect.{ Field, Modifier }
+import java.security.{ DigestOutputStream, MessageDigest }
+import org.objectweb.asm.Type
+import org.nlogo.api.Version
+import org.nlogo.nvm.{ Command, Instruction, Procedure }
+
+/**
+ * Keeps the classes Generator makes, so compiling the same code again can use them instead of
+ * generating them all over again.  It's opt-in, two ways.  With org.nlogo.shareGeneratedCode set
+ * to true, they're kept in memory: every workspace in the JVM that opens the same model, such as
+ * BehaviorSpace's one per thread, gets instances of the same classes, so the generator only runs
+ * for the first, and the classes are only loaded once.  To share them with other JVMs too, such
+ * as BehaviorSpace worker processes, set the org.nlogo.generatorCache property to a directory to
+ * keep them in on disk.  With neither set, Generator doesn't come in here at all.
+ *
+ * Instructions themselves can't be saved, since they point at Procedures, Tokens, Lets and so on,
+ * so the rest of the compiler still runs, and we only skip generating.  An entry holds the
+ * bytecode of each generated class, plus enough to wire instances of them into the freshly
+ * compiled instruction tree: where each kept field's value comes from, and what every
+ * instruction's args ended up as.  Instructions from the tree are named by their path in
+ * procedure.code before generating: the index in code, then argument indexes.
+ *
+ * The key is a hash of everything the bytecode depends on: the NetLogo version, the generator's and
+ * the primitives' own bytecode, and the shape of the tree, including the primitive and String
+ * fields of each instruction, since MethodRipper turns those into constants.
+ */
+private object GeneratorCache {
+
+  def directory: Option[File] =
+    Version.guardedProperty(Option.empty[File]) {
+      Option(System.getProperty("org.nlogo.generatorCache")).filter(_.nonEmpty).map(new File(_))
+    }
+
+  def shared = Version.flag("org.nlogo.shareGeneratedCode")
+
+  def enabled = shared || directory.isDefined
+
+  // bump this if the file format changes
+  private val FORMAT = "NetLogo generator cache 1"
+
+  sealed abstract class Value
+  case class Original(path: Seq[Int]) extends Value
+  case class Generated(index: Int) extends Value
+  case class FieldOf(path: Seq[Int], name: String) extends Value
+
+  case class GeneratedClass(name: String, bytecode: Array[Byte], original: Seq[Int],
+                            kept: Seq[(String, Value)])
+  case class Entry(classes: Seq[GeneratedClass],
+                   code: Seq[Value],
+                   args: Seq[(Value, Seq[Value])],
+                   chosenMethods: Seq[(Seq[Int], String)])
+
+  /// finding things
+
+  def resolve(code: Array[Command], path: Seq[Int]): Instruction =
+    path.tail.foldLeft(code(path.head): Instruction)(_.args(_))
+
+  def fieldValue(instr: Instruction, name: String): AnyRef = {
+    def getField(c: Class[_]): Field =
+      try c.getDeclaredField(name)
+      catch { case ex: NoSuchFieldException =>
+        if (c.getSuperclass == null) throw ex else getField(c.getSuperclass) }
+    val field = getField(instr.getClass)
+    field.setAccessible(true)
+    field.get(instr)
+  }
+
+  def paths(code: Array[Command]): java.util.IdentityHashMap[Instruction, Seq[Int]] = {
+    val result = new java.util.IdentityHashMap[Instruction, Seq[Int]]
+    def walk(instr: Instruction, path: Vector[Int]) {
+      if (!result.containsKey(instr)) {
+        result.put(instr, path)
+        for (i <- 0 until instr.args.size)
+          walk(instr.args(i), path :+ i)
+      }
+    }
+    for (i <- 0 until code.size)
+      walk(code(i), Vector(i))
+    result
+  }
+
+  /// the key
+
+  def key(procedure: Procedure, profilingEnabled: Boolean): String = {
+    val digest = MessageDigest.getInstance("SHA-1")
+    val out = new DataOutputStream(
+      new DigestOutputStream(new OutputStream { def write(b: Int) { } }, digest))
+    writeString(out, Version.fullVersion)
+    out.write(generatorDigest)
+    out.writeBoolean(profilingEnabled)
+    writeString(out, procedure.displayName)
+    out.writeInt(procedure.code.size)
+    procedure.code.foreach(fingerprint(_, out))
+    out.flush()
+    digest.digest.map("%02x".format(_)).mkString
+  }
+
+  private def fingerprint(instr: Instruction, out: DataOutputStream) {
+    writeString(out, instr.getClass.getName)
+    out.write(classDigest(instr.getClass))
+    writeString(out, instr.displayName)
+    for (field <- fields(instr.getClass))
+      writeString(out, field.getName + "=" + describe(field.get(instr)))
+    out.writeInt(instr.args.size)
+    instr.args.foreach(fingerprint(_, out))
+  }
+
+  // only what could end up in the bytecode.  other objects are kept in fields, so the cached
+  // class will get whatever this compile has.
+  private def describe(value: AnyRef): String =
+    value match {
+      case null => "null"
+      case s: String => "\"" + s
+      case n: java.lang.Number => n.toString
+      case b: java.lang.Boolean => b.toString
+      case c: java.lang.Character => c.toString
+      case p: Procedure => // CustomGenerator uses these for _call and _callreport
+        p.name + "/" + p.args.size + "/" + p.localsCount
+      case _ => value.getClass.getName
+    }
+
+  private val fieldsCache = collection.mutable.HashMap[Class[_], Seq[Field]]()
+  private def fields(c: Class[_]): Seq[Field] =
+    synchronized {
+      fieldsCache.getOrElseUpdate(c, {
+        def all(c: Class[_]): Seq[Field] =
+          if (c == null) Nil
+          else c.getDeclaredFields.toSeq.sortBy(_.getName) ++ all(c.getSuperclass)
+        val result = all(c).filterNot(f => Modifier.isStatic(f.getModifiers) || f.getName == "args")
+        result.foreach(_.setAccessible(true))
+        result
+      })
+    }
+
+  private val digestCache = collection.mutable.HashMap[Class[_], Array[Byte]]()
+  private def classDigest(c: Class[_]): Array[Byte] =
+    synchronized {
+      digestCache.getOrElseUpdate(c,
+        MessageDigest.getInstance("SHA-1").digest(PrimitiveCache.getClassReader(c).b))
+    }
+
+  private lazy val generatorDigest: Array[Byte] = {
+    val classes = List(classOf[Generator], classOf[Generator#InstructionGenerator[_]],
+                       classOf[CustomGenerator], classOf[GeneratorAdapter], classOf[MethodRipper],
+                       MethodSelector.getClass, TypeConverter.getClass,
+                       classOf[PeepholeOptimizer1], classOf[PeepholeOptimizer2],
+                       classOf[PeepholeOptimizer3], classOf[PeepholeOptimizer3B])
+    MessageDigest.getInstance("SHA-1").digest(classes.flatMap(c => classDigest(c).toSeq).toArray)
+  }
+
+  /// recording
+
+  /**
+   * Watches a Generator at work, to describe what it made as an Entry.  If anything turns up that
+   * an Entry can't describe, there's no entry, and the code just doesn't get cached.
+   */
+  class Recorder(code: Array[Command]) {
+    private val originals = paths(code)
+    private val generated = new java.util.IdentityHashMap[Instruction, Integer]
+    private val classes = collection.mutable.ArrayBuffer[GeneratedClass]()
+    private var ok = true
+    private val KeptField = """kept(\d+)_(.*)""".r
+    private def ref(obj: AnyRef): Option[Value] =
+      Option(originals.get(obj)).map(Original)
+        .orElse(Option(generated.get(obj)).map(i => Generated(i.intValue)))
+    def generatedClass(result: Instruction, className: String, bytecode: Array[Byte],
+                       original: Instruction, kept: java.util.Map[String, Object]) {
+      import collection.JavaConverters._
+      def value(fieldName: String, obj: Object): Option[Value] =
+        obj match {
+          case instr: Instruction =>
+            ref(instr)
+          case _ =>
+            fieldName match {
+              case KeptField(uid, name) =>
+                for {
+                  owner <- Option(kept.get(Generator.KEPT_INSTRUCTION_PREFIX + uid))
+                  path <- Option(originals.get(owner))
+                  if fieldValue(owner.asInstanceOf[Instruction], name) eq obj
+                } yield FieldOf(path, name)
+              case _ => None
+            }
+        }
+      val values = for ((name, obj) <- kept.asScala.toSeq) yield (name, value(name, obj))
+      (Option(originals.get(original)), values.forall(_._2.isDefined)) match {
+        case (Some(path), true) =>
+          generated.put(result, classes.size)
+          classes += GeneratedClass(className, bytecode, path, values.map{case (n, v) => (n, v.get)})
+        case _ =>
+          ok = false
+      }
+    }
+    def entry(result: Array[Command]): Option[Entry] = {
+      import collection.JavaConverters._
+      if (!ok) None
+      else {
+        val instructions =
+          originals.keySet.asScala.toSeq.map(i => (i, Original(originals.get(i)))) ++
+          generated.keySet.asScala.toSeq.map(i => (i, Generated(generated.get(i).intValue)))
+        val args = for ((instr, value) <- instructions) yield (value, instr.args.toSeq.map(ref))
+        val code = result.toSeq.map(ref)
+        if (code.exists(_.isEmpty) || args.exists(_._2.exists(_.isEmpty))) None
+        else Some(Entry(
+          classes.toList,
+          code.map(_.get),
+          args.map{case (v, as) => (v, as.map(_.get))},
+          for {
+            (instr, path) <- originals.asScala.toSeq
+            if instr.chosenMethod != null
+          } yield (path, methodName(instr.chosenMethod))))
+      }
+    }
+  }
+
+  def methodName(method: java.lang.reflect.Method) =
+    method.getName + Type.getMethodDescriptor(method)
+
+  /// in memory
+
+  // an entry, and the classes in it once something needs them.  the classes get a loader of their
+  // own, so that if the entry turns out to be unusable, a Generator can still make classes of the
+  // same names.
+  class Loaded(val entry: Entry) {
+    lazy val classes: Seq[Class[_]] = {
+      val loader = new CustomClassLoader(Thread.currentThread.getContextClassLoader)
+      entry.classes.map(c => loader.loadBytecodeClass(c.name.replace('/', '.'), c.bytecode))
+    }
+  }
+
+  // held softly, so we never keep a model's classes around when memory is short
+  private val loaded = collection.mutable.HashMap[String, java.lang.ref.SoftReference[Loaded]]()
+
+  def remembered(key: String): Option[Loaded] =
+    loaded.synchronized {
+      loaded.get(key).flatMap(ref => Option(ref.get))
+    }
+
+  def remember(key: String, entry: Entry): Loaded =
+    loaded.synchronized {
+      loaded.retain((_, ref) => ref.get != null)
+      val result = new Loaded(entry)
+      loaded(key) = new java.lang.ref.SoftReference(result)
+      result
+    }
+
+  /// reading and writing
+
+  private def file(dir: File, key: String) = new File(dir, key + ".gen")
+
+  def stored(dir: File, key: String) = file(dir, key).exists
+
+  def read(dir: File, key: String): Option[Entry] = {
+    val f = file(dir, key)
+    if (!f.exists) None
+    else try {
+      val in = new DataInputStream(new BufferedInputStream(new FileInputStream(f)))
+      try {
+        if (readString(in) != FORMAT) None
+        else {
+          def seq[T](read: => T): Seq[T] = List.fill(in.readInt())(read)
+          def path = seq(in.readInt())
+          def value: Value = in.readByte() match {
+            case 0 => Original(path)
+            case 1 => Generated(in.readInt())
+            case 2 => FieldOf(path, readString(in))
+          }
+          val classes = seq {
+            val name = readString(in)
+            val bytecode = new Array[Byte](in.readInt())
+            in.readFully(bytecode)
+            GeneratedClass(name, bytecode, path, seq((readString(in), value)))
+          }
+          val code = seq(value)
+          val args = seq((value, seq(value)))
+          val chosenMethods = seq((path, readString(in)))
+          Some(Entry(classes, code, args, chosenMethods))
+        }
+      }
+      finally in.close()
+    }
+    catch {
+      // a half-written or otherwise damaged entry is as good as none
+      case _: IOException => None
+      case _: RuntimeException => None
+    }
+  }
+
+  // Many JVMs may be writing the same entry at once, so each writes its own temporary file, then
+  // renames it into place.  Failing to write just means the next compile doesn't find the entry.
+  def write(dir: File, key: String, entry: Entry) {
+    try {
+      dir.mkdirs()
+      val temp = File.createTempFile(key, ".tmp", dir)
+      try {
+        val out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))
+        try {
+          def seq[T](xs: Seq[T])(write: T => Unit) { out.writeInt(xs.size); xs.foreach(write) }
+          def path(p: Seq[Int]) { seq(p)(out.writeInt) }
+          def value(v: Value) {
+            v match {
+              case Original(p) => out.writeByte(0); path(p)
+              case Generated(i) => out.writeByte(1); out.writeInt(i)
+              case FieldOf(p, name) => out.writeByte(2); path(p); writeString(out, name)
+            }
+          }
+          writeString(out, FORMAT)
+          seq(entry.classes){ c =>
+            writeString(out, c.name)
+            out.writeInt(c.bytecode.size)
+            out.write(c.bytecode)
+            path(c.original)
+            seq(c.kept){ case (name, v) => writeString(out, name); value(v) }
+          }
+          seq(entry.code)(value)
+          seq(entry.args){ case (v, as) => value(v); seq(as)(value) }
+          seq(entry.chosenMethods){ case (p, method) => path(p); writeString(out, method) }
+        }
+        finally out.close()
+        temp.renameTo(file(dir, key))
+      }
+      finally if (temp.exists) temp.delete()
+    }
+    catch {
+      case _: IOException =>
+    }
+  }
+
+  // not writeUTF, since that's limited to 64K
+  private def writeString(out: DataOutputStream, s: String) {
+    out.writeInt(s.size)
+    out.writeChars(s)
+  }
+  private def readString(in: DataInputStream): String = {
+    val size = in.readInt()
+    if (size < 0 || size > (1 << 24)) throw new IOException("bad string size: " + size)
+    val chars = new Array[Char](size)
+    for (i <- 0 until size)
+      chars(i) = in.readChar()
+    new String(chars)
+  }
+
+}
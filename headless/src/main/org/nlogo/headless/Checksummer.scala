@@ -5,7 +5,8 @@ package org.nlogo.headless
 import org.nlogo.api.{ RendererInterface, ViewSettings }
 import org.nlogo.workspace.AbstractWorkspaceScala
 import org.nlogo.util.HexString.toHexString
-import java.io.PrintWriter
+import java.io.{ OutputStream, PrintWriter }
+import java.security.MessageDigest
 
 object Checksummer {
   def initModelForChecksumming(workspace: HeadlessWorkspace) {
@@ -23,17 +24,74 @@ object Checksummer {
       raster.getData.getPixels(0, 0, raster.getWidth, raster.getHeight, null: Array[Int])
         .foreach(writer.println)
     }
+  // the world's checksum after each of the given number of runs of the commands (usually "go"),
+  // so that when two versions of the engine part ways, it can be pinned down to the tick
+  def calculateWorldChecksums(workspace: HeadlessWorkspace, commands: String, times: Int): Seq[String] = {
+    val procedure = workspace.compileCommands(commands)
+    for(_ <- 1 to times) yield {
+      workspace.runCompiledCommands(workspace.defaultOwner, procedure)
+      if(workspace.lastLogoException != null) {
+        val ex = workspace.lastLogoException
+        workspace.clearLastLogoException()
+        throw ex
+      }
+      calculateWorldChecksum(workspace)
+    }
+  }
+  // the index of the first checksum in one that isn't in the other, if any
+  def firstDifference(expected: Seq[String], actual: Seq[String]): Option[Int] =
+    (expected zip actual).indexWhere{case (e, a) => e != a} match {
+      case -1 if expected.size == actual.size => None
+      case -1 => Some(expected.size min actual.size)
+      case i => Some(i)
+    }
   // public for testing - ST 7/15/10
   def calculateChecksum(fn: PrintWriter => Unit): String = {
-    val output = {
-      val outputStream = new java.io.ByteArrayOutputStream
-      val writer = new java.io.PrintWriter(outputStream)
-      fn(writer)
-      writer.close()
-      outputStream.close()
-      outputStream.toString.replaceAll("\r\n", "\n")  // avoid platform differences
+    val digester = MessageDigest.getInstance("SHA")
+    val writer = new PrintWriter(new DigestingOutputStream(digester))
+    fn(writer)
+    writer.close()
+    toHexString(digester.digest)
+  }
+  // feeds what's written straight to the digester, so the text (which for a big world is very
+  // big) is never all in memory at once.  "\r\n" goes in as "\n", to avoid platform differences.
+  private class DigestingOutputStream(digester: MessageDigest) extends OutputStream {
+    // a '\r' that was the last byte written, and may or may not have a '\n' after it
+    private var pendingReturn = false
+    override def write(b: Int) {
+      write(Array(b.toByte), 0, 1)
+    }
+    override def write(bytes: Array[Byte], offset: Int, length: Int) {
+      val end = offset + length
+      if(pendingReturn && length > 0) {
+        pendingReturn = false
+        if(bytes(offset) != '\n')
+          digester.update('\r'.toByte)
+      }
+      // bytes from start on haven't been digested yet
+      var start = offset
+      var i = offset
+      while(i < end) {
+        if(bytes(i) == '\r') {
+          if(i + 1 == end) {
+            digester.update(bytes, start, i - start)
+            pendingReturn = true
+            start = end
+          }
+          else if(bytes(i + 1) == '\n') {
+            digester.update(bytes, start, i - start)
+            start = i + 1
+          }
+        }
+        i += 1
+      }
+      digester.update(bytes, start, end - start)
+    }
+    override def close() {
+      if(pendingReturn) {
+        pendingReturn = false
+        digester.update('\r'.toByte)
+      }
     }
-    val digester = java.security.MessageDigest.getInstance("SHA")
-    toHexString(digester.digest(output.getBytes))
   }
 }
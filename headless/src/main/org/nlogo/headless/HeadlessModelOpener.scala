@@ -44,8 +44,8 @@ class HeadlessModelOpener(ws: HeadlessWorkspace) {
     if (!sdmLines.isEmpty) ws.aggregateManager.load(sdmLines.mkString("", "\n", "\n"), ws)
 
     // read procedures, compile them.
+    val code = map(ModelSection.Code).mkString("", "\n", "\n")
     val results = {
-      val code = map(ModelSection.Code).mkString("", "\n", "\n")
       // we could convert right here.
       // we'd still need to convert slider constraints, plots, monitors and buttons.
       // JC - 9/14/10
@@ -56,6 +56,7 @@ class HeadlessModelOpener(ws: HeadlessWorkspace) {
           interfaceGlobals = interfaceGlobals), ws.getExtensionManager)
     }
     ws.procedures = results.proceduresMap
+    ws.codeTabSource = code
     ws.codeBits.clear() //(WTH IS THIS? - JC 10/27/09)
 
     // read preview commands. (if the model doesn't specify preview commands, allow the default ones
@@ -12,7 +12,7 @@ import org.nlogo.api.{ AgentKind, Program, Version, RendererInterface,
                        ModelReader, CompilerException, LogoException, SimpleJobOwner,
                        HubNetInterface, CommandRunnable, ReporterRunnable, UpdateMode }
 import org.nlogo.agent.{ World, World3D }
-import org.nlogo.nvm.{ LabInterface,
+import org.nlogo.nvm.{ LabInterface, InstructionProfiler,
                        Workspace, DefaultCompilerServices, CompilerInterface }
 import org.nlogo.workspace.{ AbstractWorkspace, AbstractWorkspaceScala }
 import org.nlogo.util.Pico
@@ -192,6 +192,7 @@ with org.nlogo.api.ViewSettings {
       source, Program.empty(Version.is3D),
       getExtensionManager)
     procedures = results.proceduresMap
+    codeTabSource = source
     codeBits.clear()
     init()
     world.program(results.program)
@@ -521,6 +522,21 @@ with org.nlogo.api.ViewSettings {
     new HeadlessModelOpener(this).openFromMap(ModelReader.parseModel(modelContents))
   }
 
+  /**
+   * Opens a model that has already been read from the given path and split into sections by
+   * ModelReader.parseModel.  Useful when opening the same model in many workspaces, as when
+   * running a BehaviorSpace experiment on several threads, so the file is only read and parsed
+   * once.
+   *
+   * @param path the path the model was read from
+   * @param map the parsed model
+   */
+  def openFromMap(path: String, map: ModelReader.ModelMap) {
+    setModelPath(path)
+    fileManager.handleModelChange()
+    new HeadlessModelOpener(this).openFromMap(map)
+  }
+
   /**
    * Opens a model stored in a string.
    * Can only be called once per instance of HeadlessWorkspace
@@ -570,6 +586,59 @@ with org.nlogo.api.ViewSettings {
     result
   }
 
+  /**
+   * The Code tab source the procedures were last compiled from, so profiles can give line numbers.
+   */
+  private[headless] var codeTabSource = ""
+
+  /**
+   * Starts profiling the NetLogo code run in this workspace, command by command, replacing any
+   * profile already taken.  See InstructionProfiler.
+   *
+   * @param intervalMillis how often to take a sample
+   * @param counting if true, also count every command run.  This makes models run a good deal
+   *                 slower, so the samples' timings are less trustworthy.
+   */
+  def startProfiling(intervalMillis: Int = 1, counting: Boolean = false): InstructionProfiler = {
+    stopProfiling()
+    val profiler = new InstructionProfiler(world, intervalMillis, counting)
+    setInstructionProfiler(profiler)
+    profiler.start()
+    profiler
+  }
+
+  /**
+   * Stops profiling, keeping what was recorded so it can still be dumped.
+   */
+  def stopProfiling() {
+    if (instructionProfiler != null)
+      instructionProfiler.stop()
+  }
+
+  /**
+   * Writes the profile as a stack file that flame graph tools such as flamegraph.pl can read.
+   */
+  def dumpProfileStacks(writer: java.io.PrintWriter) {
+    profile.dumpStacks(writer, profiledSource)
+  }
+
+  /**
+   * Writes the profile as a tab-separated table of the commands seen, hottest first, with their
+   * source locations.
+   */
+  def dumpProfileTable(writer: java.io.PrintWriter) {
+    profile.dumpInstructions(writer, profiledSource)
+  }
+
+  private def profile =
+    Option(instructionProfiler).getOrElse(
+      throw new IllegalStateException("no profile has been taken"))
+
+  private def profiledSource(file: String): Option[String] =
+    if (file.isEmpty) Some(codeTabSource)
+    else try Some(getSource(file))
+         catch { case _: java.io.IOException => None }
+
   /**
    * Halts all running NetLogo code in this workspace.
    */
@@ -2,7 +2,7 @@
 
 package org.nlogo.headless
 
-import org.nlogo.api.WorldDimensions
+import org.nlogo.api.{ FileIO, ModelReader, ModelSection, WorldDimensions }
 import org.nlogo.api.{ APIVersion, Version }
 import org.nlogo.workspace.AbstractWorkspace
 import org.nlogo.nvm.LabInterface.Settings
@@ -14,13 +14,17 @@ object Main {
     parseArgs(args).foreach(runExperiment)
   }
   def runExperiment(settings: Settings) {
+    // read and parse the model once, not once per workspace
+    val modelMap = ModelReader.parseModel(FileIO.file2String(settings.model))
     def newWorkspace = {
       val w = HeadlessWorkspace.newInstance
-      w.open(settings.model)
+      w.world.diffusionThreads(settings.diffusionThreads)
+      w.world.askThreads(settings.askThreads)
+      w.openFromMap(settings.model, modelMap)
       w
     }
     val lab = HeadlessWorkspace.newLab
-    lab.load(HeadlessModelOpener.protocolSection(settings.model))
+    lab.load(modelMap(ModelSection.BehaviorSpace).mkString("", "\n", "\n"))
     lab.run(settings, newWorkspace _)
   }
   def setHeadlessProperty() {
@@ -42,8 +46,13 @@ object Main {
     var experiment: Option[String] = None
     var tableWriter: Option[java.io.PrintWriter] = None
     var spreadsheetWriter: Option[java.io.PrintWriter] = None
+    var binaryWriter: Option[java.io.OutputStream] = None
     var threads = Runtime.getRuntime.availableProcessors
     var suppressErrors = false
+    var diffusionThreads = 1
+    var askThreads = 1
+    var processes = 0
+    var workerPort: Option[Int] = None
     val it = args.iterator
     def die(msg: String) { System.err.println(msg); System.exit(1) }
     def path2writer(path: String) =
@@ -85,8 +94,18 @@ object Main {
         { requireHasNext(); tableWriter = Some(path2writer(it.next())) }
       else if(arg == "--spreadsheet")
         { requireHasNext(); spreadsheetWriter = Some(path2writer(it.next())) }
+      else if(arg == "--binary")
+        { requireHasNext(); binaryWriter = Some(new java.io.FileOutputStream(it.next().trim)) }
       else if(arg == "--threads")
         { requireHasNext(); threads = it.next().toInt }
+      else if(arg == "--diffusion-threads")
+        { requireHasNext(); diffusionThreads = it.next().toInt }
+      else if(arg == "--ask-threads")
+        { requireHasNext(); askThreads = it.next().toInt }
+      else if(arg == "--processes")
+        { requireHasNext(); processes = it.next().toInt }
+      else if(arg == "--worker-port")  // only used by --processes, to start the workers
+        { requireHasNext(); workerPort = Some(it.next().toInt) }
       else if(arg == "--suppress-errors")
         { suppressErrors = true }
       else
@@ -106,6 +125,7 @@ object Main {
         Some(new WorldDimensions(minPxcor.get.toInt, maxPxcor.get.toInt,
                                  minPycor.get.toInt, maxPycor.get.toInt))
     Some(new Settings(model.get, setupFile, experiment, tableWriter,
-                      spreadsheetWriter, dims, threads, suppressErrors))
+                      spreadsheetWriter, dims, threads, suppressErrors, diffusionThreads,
+                      binaryWriter, processes, workerPort, askThreads))
   }
 }
@@ -0,0 +1,252 @@
+// (C) Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.headless
+
+import org.nlogo.agent.{ AgentSet, Turtle }
+import org.nlogo.api.{ AgentKind, Dump, LogoList, SimpleJobOwner, Version }
+import org.nlogo.nvm.Procedure
+
+// Microbenchmarks for the engine's hot paths, to go with the whole-model timings of
+// HeadlessBenchmarker: when those get slower, these can say where.  Each benchmark times one small
+// operation against the same world (101x101 torus, 5000 turtles), and one CSV row per benchmark
+// is written to standard output, or to a file with --out:
+//
+//   java -cp NetLogo.jar org.nlogo.headless.MicroBenchmarks [--seconds n] [--out file.csv] [regex]
+//
+// Only the benchmarks whose names contain a match for the regex, if given, are run.  Each is
+// warmed up for a while first, then measured in --seconds (default 10) one-second iterations.
+// Times are in nanoseconds per operation.
+
+object MicroBenchmarks {
+
+  case class Result(name: String, iterations: Int, operations: Long,
+                    mean: Double, stddev: Double, min: Double)
+
+  // setup runs once, before warming up.  it returns the operation to time, whose result is
+  // consumed so the JIT can't decide not to compute it
+  case class Benchmark(name: String, setup: HeadlessWorkspace => (() => AnyRef))
+
+  val Declarations = "patches-own [heat] turtles-own [energy]"
+  val Setup =
+    "random-seed 0 " +
+    "ask patches [ set heat random-float 100 set pcolor random 140 ] " +
+    "crt 5000 [ setxy random-xcor random-ycor set energy random 10 ]"
+
+  def main(argv: Array[String]) {
+    Main.setHeadlessProperty()
+    var seconds = 10
+    var out: Option[String] = None
+    var pattern: Option[String] = None
+    def parse(args: List[String]) {
+      args match {
+        case "--seconds" :: n :: more => seconds = n.toInt; parse(more)
+        case "--out" :: path :: more => out = Some(path); parse(more)
+        case regex :: more if !regex.startsWith("--") => pattern = Some(regex); parse(more)
+        case Nil =>
+        case _ => throw new IllegalArgumentException(
+          "expected: [--seconds n] [--out file.csv] [regex]")
+      }
+    }
+    parse(argv.toList)
+    val selected = pattern match {
+      case Some(regex) => benchmarks.filter(b => regex.r.findFirstIn(b.name).isDefined)
+      case None => benchmarks
+    }
+    val writer = new java.io.PrintWriter(
+      out.map(new java.io.FileWriter(_)).getOrElse(new java.io.OutputStreamWriter(System.out)))
+    try {
+      writer.println(Dump.csv.headerRow(Array(
+        "version", "benchmark", "iterations", "operations",
+        "mean ns/op", "stddev ns/op", "min ns/op")))
+      writer.flush()
+      for(benchmark <- selected) {
+        val result = run(benchmark, seconds)
+        writer.println(Dump.csv.dataRow(Array[AnyRef](
+          Version.version, result.name, Int.box(result.iterations), Double.box(result.operations),
+          Double.box(result.mean), Double.box(result.stddev), Double.box(result.min))))
+        writer.flush()
+      }
+    }
+    finally { if(out.isDefined) writer.close() else writer.flush() }
+  }
+
+  /// the harness
+
+  // the JIT can't know that nothing will ever be this, so it has to compute whatever it's
+  // compared against (this is the same trick JMH's Blackhole uses)
+  @volatile private var sentinel: AnyRef = new Object
+  private def consume(result: AnyRef) {
+    if(result eq sentinel)
+      throw new IllegalStateException
+  }
+
+  // each benchmark gets a fresh workspace, so one can't slow down another by what it leaves behind
+  def run(benchmark: Benchmark, seconds: Int): Result = {
+    val workspace = HeadlessWorkspace.newInstance
+    try {
+      workspace.initForTesting(-50, 50, -50, 50, Declarations)
+      workspace.changeTopology(true, true)
+      workspace.command(Setup)
+      val op = benchmark.setup(workspace)
+      def batch(n: Long): Long = {
+        val start = System.nanoTime
+        var i = 0L
+        while(i < n) { consume(op()); i += 1 }
+        System.nanoTime - start
+      }
+      // find how many operations take about a millisecond, so checking the clock is a small
+      // part of what gets timed
+      var batchSize = 1L
+      while(batch(batchSize) < 1000000L)
+        batchSize *= 2
+      def iteration(nanos: Long): (Long, Long) = {
+        var ops, elapsed = 0L
+        while(elapsed < nanos) {
+          elapsed += batch(batchSize)
+          ops += batchSize
+        }
+        (ops, elapsed)
+      }
+      System.gc()
+      iteration(seconds * 1000000000L / 2)  // warm up
+      val iterations = (1 to seconds).map(_ => iteration(1000000000L))
+      val times = iterations.map{case (ops, elapsed) => elapsed.toDouble / ops}
+      val mean = times.sum / times.size
+      Result(benchmark.name, times.size, iterations.map(_._1).sum, mean,
+             math.sqrt(times.map(t => math.pow(t - mean, 2)).sum / times.size), times.min)
+    }
+    finally { workspace.dispose() }
+  }
+
+  /// the benchmarks
+
+  private def count(it: org.nlogo.agent.AgentIterator): AnyRef = {
+    var n = 0
+    while(it.hasNext) { it.next(); n += 1 }
+    Int.box(n)
+  }
+
+  private def iterate(agents: HeadlessWorkspace => AgentSet) =
+    (workspace: HeadlessWorkspace) => {
+      val set = agents(workspace)
+      () => count(set.iterator)
+    }
+
+  private def shuffle(agents: HeadlessWorkspace => AgentSet) =
+    (workspace: HeadlessWorkspace) => {
+      val set = agents(workspace)
+      val rng = workspace.world.mainRNG
+      () => count(set.shufflerator(rng))
+    }
+
+  // cycles through the turtles, so each operation starts somewhere else
+  private def fromEachTurtle(fn: (HeadlessWorkspace, Turtle) => AnyRef) =
+    (workspace: HeadlessWorkspace) => {
+      val turtles = workspace.world.turtles.toArray
+      var i = 0
+      () => {
+        i = (i + 1) % turtles.length
+        fn(workspace, turtles(i).asInstanceOf[Turtle])
+      }
+    }
+
+  private def diffuse(fourNeighbors: Boolean) =
+    (workspace: HeadlessWorkspace) => {
+      val world = workspace.world
+      val vn = world.indexOfVariable(AgentKind.Patch, "HEAT")
+      () => {
+        if(fourNeighbors) world.diffuse4(0.5, vn) else world.diffuse(0.5, vn)
+        world.patches
+      }
+    }
+
+  private def list(fn: LogoList => AnyRef) =
+    (workspace: HeadlessWorkspace) => {
+      val numbers = LogoList.fromIterator((1 to 1000).iterator.map(Double.box(_)))
+      () => fn(numbers)
+    }
+
+  private def random(fn: org.nlogo.util.MersenneTwisterFast => Double) =
+    (workspace: HeadlessWorkspace) => {
+      val rng = workspace.world.mainRNG
+      () => {
+        var sum = 0.0
+        var i = 0
+        while(i < 1000) { sum += fn(rng); i += 1 }
+        Double.box(sum)
+      }
+    }
+
+  // compiles with the bytecode generator on or off (it's read from this property at compile time)
+  private def compiled(source: String, generate: Boolean) =
+    (workspace: HeadlessWorkspace) => {
+      val property = "org.nlogo.noGenerator"
+      val old = System.getProperty(property)
+      System.setProperty(property, (!generate).toString)
+      val procedure: Procedure =
+        try workspace.compileCommands(source)
+        finally {
+          if(old == null) System.clearProperty(property)
+          else System.setProperty(property, old)
+        }
+      val owner = new SimpleJobOwner("MicroBenchmarks", workspace.world.mainRNG)
+      () => Boolean.box(workspace.runCompiledCommands(owner, procedure))
+    }
+
+  private def generatedAndInterpreted(name: String, source: String) =
+    List(Benchmark(name + " (generated)", compiled(source, true)),
+         Benchmark(name + " (interpreted)", compiled(source, false)))
+
+  // lays out a random network on the turtles, two links each, with the given command
+  private def layout(command: String) =
+    (workspace: HeadlessWorkspace) => {
+      workspace.command("ask turtles [ create-links-with n-of 2 other turtles ]")
+      compiled(command, true)(workspace)
+    }
+
+  val benchmarks: List[Benchmark] = List(
+    Benchmark("iterate patches (ArrayAgentSet)", iterate(_.world.patches)),
+    Benchmark("iterate turtles (TurtleAgentSet)", iterate(_.world.turtles)),
+    Benchmark("shufflerator patches (ArrayAgentSet)", shuffle(_.world.patches)),
+    Benchmark("shufflerator turtles (TurtleAgentSet)", shuffle(_.world.turtles)),
+    Benchmark("patches in-radius 5", fromEachTurtle{(workspace, turtle) =>
+      workspace.world.inRadiusOrCone.inRadius(turtle, workspace.world.patches, 5, true)}),
+    Benchmark("turtles in-radius 5", fromEachTurtle{(workspace, turtle) =>
+      workspace.world.inRadiusOrCone.inRadius(turtle, workspace.world.turtles, 5, true)}),
+    Benchmark("turtles in-cone 5 60", fromEachTurtle{(workspace, turtle) =>
+      workspace.world.inRadiusOrCone.inCone(turtle, workspace.world.turtles, 5, 60, true)}),
+    Benchmark("diffuse (Torus)", diffuse(false)),
+    Benchmark("diffuse4 (Torus)", diffuse(true)),
+    Benchmark("LogoList fput", list(_.fput(Double.box(0)))),
+    Benchmark("LogoList lput", list(_.lput(Double.box(0)))),
+    Benchmark("LogoList butFirst", list(_.butFirst)),
+    Benchmark("LogoList lput onto itself x1000", list{_ =>
+      var xs = LogoList.Empty
+      var i = 0
+      while(i < 1000) { xs = xs.lput(Double.box(i)); i += 1 }
+      xs}),
+    Benchmark("LogoList get x1000", list{xs =>
+      var i = 0
+      var last: AnyRef = null
+      while(i < 1000) { last = xs.get(i); i += 1 }
+      last}),
+    Benchmark("MersenneTwisterFast nextDouble x1000", random(_.nextDouble)),
+    Benchmark("MersenneTwisterFast nextInt(100) x1000", random(_.nextInt(100))),
+    Benchmark("export-world", (workspace: HeadlessWorkspace) => () => {
+      val writer = new java.io.StringWriter
+      workspace.exportWorld(new java.io.PrintWriter(writer))
+      writer.getBuffer}),
+    Benchmark("layout-spring (exact)", layout("layout-spring turtles links 0.2 5 1")),
+    Benchmark("__layout-spring-approximate theta 0.5",
+              layout("__layout-spring-approximate turtles links 0.2 5 1 0.5")),
+    Benchmark("__layout-spring-approximate theta 1",
+              layout("__layout-spring-approximate turtles links 0.2 5 1 1"))
+  ) ++
+    generatedAndInterpreted("ask turtles [ fd 1 ]", "ask turtles [ fd 1 ]") ++
+    generatedAndInterpreted("ask patches [ set heat heat * 0.99 ]",
+                            "ask patches [ set heat heat * 0.99 ]") ++
+    generatedAndInterpreted("sum of patches", "let total sum [heat] of patches") ++
+    generatedAndInterpreted("repeat arithmetic",
+                            "let x 0 repeat 1000 [ set x (x + 1) * 0.5 ]")
+
+}
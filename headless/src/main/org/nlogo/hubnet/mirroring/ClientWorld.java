@@ -415,21 +415,30 @@ public strictfp class ClientWorld
       updateServerPerspective(new AgentPerspective(is));
     }
     if ((mask & DiffBuffer.PATCHES) == DiffBuffer.PATCHES) {
-      int numToRead = is.readInt();
+      int numToRead = WireFormat.readCount(is);
+      long previousId = 0;
       for (int i = 0; i < numToRead; i++) {
-        updatePatch(new PatchData(is));
+        PatchData patch = new PatchData(is, previousId);
+        previousId = patch.id();
+        updatePatch(patch);
       }
     }
     if ((mask & DiffBuffer.TURTLES) == DiffBuffer.TURTLES) {
-      int numToRead = is.readInt();
+      int numToRead = WireFormat.readCount(is);
+      long previousId = 0;
       for (int i = 0; i < numToRead; i++) {
-        updateTurtle(new TurtleData(is));
+        TurtleData turtle = new TurtleData(is, previousId);
+        previousId = turtle.id();
+        updateTurtle(turtle);
       }
     }
     if ((mask & DiffBuffer.LINKS) == DiffBuffer.LINKS) {
-      int numToRead = is.readInt();
+      int numToRead = WireFormat.readCount(is);
+      long previousId = 0;
       for (int i = 0; i < numToRead; i++) {
-        updateLink(new LinkData(is));
+        LinkData link = new LinkData(is, previousId);
+        previousId = link.id();
+        updateLink(link);
       }
     }
     if ((mask & DiffBuffer.DRAWING) == DiffBuffer.DRAWING) {
@@ -819,6 +828,10 @@ public strictfp class ClientWorld
     throw new UnsupportedOperationException();
   }
 
+  public org.nlogo.api.Turtle getTurtle(long id) {
+    throw new UnsupportedOperationException();
+  }
+
   public int getVariablesArraySize(org.nlogo.api.Link link, org.nlogo.api.AgentSet breed) {
     throw new UnsupportedOperationException();
   }
@@ -851,6 +864,10 @@ public strictfp class ClientWorld
     throw new UnsupportedOperationException();
   }
 
+  public org.nlogo.api.AgentChanges drainAgentChanges() {
+    throw new UnsupportedOperationException();
+  }
+
   public void setObserverVariableByName(String variableName, Object value) {
     throw new UnsupportedOperationException();
   }
@@ -150,21 +150,27 @@ public strictfp class DiffBuffer {
       perspective.serialize(os);
     }
     if ((mask & PATCHES) == PATCHES) {
-      os.writeInt(patchDiffs.size());
+      WireFormat.writeCount(os, patchDiffs.size());
+      long previousId = 0;
       for (PatchData patch : patchDiffs) {
-        patch.serialize(os);
+        patch.serialize(os, previousId);
+        previousId = patch.id();
       }
     }
     if ((mask & TURTLES) == TURTLES) {
-      os.writeInt(turtleDiffs.size());
+      WireFormat.writeCount(os, turtleDiffs.size());
+      long previousId = 0;
       for (TurtleData turtle : turtleDiffs) {
-        turtle.serialize(os);
+        turtle.serialize(os, previousId);
+        previousId = turtle.id();
       }
     }
     if ((mask & LINKS) == LINKS) {
-      os.writeInt(linkDiffs.size());
+      WireFormat.writeCount(os, linkDiffs.size());
+      long previousId = 0;
       for (LinkData link : linkDiffs) {
-        link.serialize(os);
+        link.serialize(os, previousId);
+        previousId = link.id();
       }
     }
     if ((mask & DRAWING) == DRAWING) {
@@ -129,23 +129,29 @@ public strictfp class LinkData
 
   LinkData(DataInputStream is)
       throws IOException {
-    id = is.readLong();
-    mask = is.readShort();
+    this(is, 0);
+  }
+
+  // previousId is the id of the link read just before this one, if any (see WireFormat)
+  LinkData(DataInputStream is, long previousId)
+      throws IOException {
+    id = WireFormat.readId(is, previousId);
+    mask = WireFormat.readMask(is);
     if ((mask & ENDS) == ENDS) {
-      end1 = is.readLong();
-      end2 = is.readLong();
+      end1 = WireFormat.readSignedVarLong(is);
+      end2 = WireFormat.readId(is, end1);
     }
     if ((mask & X1) == X1) {
-      x1 = is.readDouble();
+      x1 = WireFormat.readNumber(is);
     }
     if ((mask & Y1) == Y1) {
-      y1 = is.readDouble();
+      y1 = WireFormat.readNumber(is);
     }
     if ((mask & X2) == X2) {
-      x2 = is.readDouble();
+      x2 = WireFormat.readNumber(is);
     }
     if ((mask & Y2) == Y2) {
-      y2 = is.readDouble();
+      y2 = WireFormat.readNumber(is);
     }
     if ((mask & SHAPE) == SHAPE) {
       shape = is.readUTF();
@@ -163,19 +169,19 @@ public strictfp class LinkData
       labelColor(is.readInt());
     }
     if ((mask & LINE_THICKNESS) == LINE_THICKNESS) {
-      lineThickness = is.readDouble();
+      lineThickness = WireFormat.readNumber(is);
     }
     if ((mask & DESTINATION_SIZE) == DESTINATION_SIZE) {
-      destSize = is.readDouble();
+      destSize = WireFormat.readNumber(is);
     }
     if ((mask & HEADING) == HEADING) {
-      heading = is.readDouble();
+      heading = WireFormat.readNumber(is);
     }
     if ((mask & SIZE) == SIZE) {
-      size = is.readDouble();
+      size = WireFormat.readNumber(is);
     }
     if ((mask & BREED) == BREED) {
-      breedIndex = is.readInt();
+      breedIndex = (int) WireFormat.readSignedVarLong(is);
       directedLink = is.readBoolean();
     }
   }
@@ -499,23 +505,28 @@ public strictfp class LinkData
 
   void serialize(DataOutputStream os)
       throws IOException {
-    os.writeLong(id);
-    os.writeShort(mask);
+    serialize(os, 0);
+  }
+
+  void serialize(DataOutputStream os, long previousId)
+      throws IOException {
+    WireFormat.writeId(os, id, previousId);
+    WireFormat.writeMask(os, mask);
     if ((mask & ENDS) == ENDS) {
-      os.writeLong(end1);
-      os.writeLong(end2);
+      WireFormat.writeSignedVarLong(os, end1);
+      WireFormat.writeId(os, end2, end1);
     }
     if ((mask & X1) == X1) {
-      os.writeDouble(x1);
+      WireFormat.writeNumber(os, x1);
     }
     if ((mask & Y1) == Y1) {
-      os.writeDouble(y1);
+      WireFormat.writeNumber(os, y1);
     }
     if ((mask & X2) == X2) {
-      os.writeDouble(x2);
+      WireFormat.writeNumber(os, x2);
     }
     if ((mask & Y2) == Y2) {
-      os.writeDouble(y2);
+      WireFormat.writeNumber(os, y2);
     }
     if ((mask & SHAPE) == SHAPE) {
       os.writeUTF(shape);
@@ -533,19 +544,19 @@ public strictfp class LinkData
       os.writeInt(org.nlogo.api.Color.getARGBIntByRGBAList(labelColor));
     }
     if ((mask & LINE_THICKNESS) == LINE_THICKNESS) {
-      os.writeDouble(lineThickness);
+      WireFormat.writeNumber(os, lineThickness);
     }
     if ((mask & DESTINATION_SIZE) == DESTINATION_SIZE) {
-      os.writeDouble(destSize);
+      WireFormat.writeNumber(os, destSize);
     }
     if ((mask & HEADING) == HEADING) {
-      os.writeDouble(heading);
+      WireFormat.writeNumber(os, heading);
     }
     if ((mask & SIZE) == SIZE) {
-      os.writeDouble(size);
+      WireFormat.writeNumber(os, size);
     }
     if ((mask & BREED) == BREED) {
-      os.writeInt(breedIndex);
+      WireFormat.writeSignedVarLong(os, breedIndex);
       os.writeBoolean(directedLink);
     }
   }
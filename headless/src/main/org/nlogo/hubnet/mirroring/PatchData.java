@@ -100,13 +100,24 @@ public final strictfp class PatchData
    */
   PatchData(DataInputStream is)
       throws IOException {
-    id = is.readLong();
-    mask = is.readShort();
+    this(is, 0);
+  }
+
+  /**
+   * Reconstructs a patch data object serialized as part of a DiffBuffer.
+   *
+   * @param is         stream containing serialized patch data.
+   * @param previousId id of the patch read just before this one, if any.
+   */
+  PatchData(DataInputStream is, long previousId)
+      throws IOException {
+    id = WireFormat.readId(is, previousId);
+    mask = WireFormat.readMask(is);
     if ((mask & PXCOR) == PXCOR) {
-      pxcor = is.readInt();
+      pxcor = (int) WireFormat.readSignedVarLong(is);
     }
     if ((mask & PYCOR) == PYCOR) {
-      pycor = is.readInt();
+      pycor = (int) WireFormat.readSignedVarLong(is);
     }
     if ((mask & PCOLOR) == PCOLOR) {
       pcolor(is.readInt());
@@ -315,13 +326,23 @@ public final strictfp class PatchData
    */
   void serialize(DataOutputStream os)
       throws IOException {
-    os.writeLong(id);
-    os.writeShort(mask);
+    serialize(os, 0);
+  }
+
+  /**
+   * Serializes this patch data object as part of a DiffBuffer.
+   *
+   * @param previousId id of the patch written just before this one, if any.
+   */
+  void serialize(DataOutputStream os, long previousId)
+      throws IOException {
+    WireFormat.writeId(os, id, previousId);
+    WireFormat.writeMask(os, mask);
     if ((mask & PXCOR) == PXCOR) {
-      os.writeInt(pxcor);
+      WireFormat.writeSignedVarLong(os, pxcor);
     }
     if ((mask & PYCOR) == PYCOR) {
-      os.writeInt(pycor);
+      WireFormat.writeSignedVarLong(os, pycor);
     }
     if ((mask & PCOLOR) == PCOLOR) {
       os.writeInt(org.nlogo.api.Color.getARGBIntByRGBAList(pcolor));
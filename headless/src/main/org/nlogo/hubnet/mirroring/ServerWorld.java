@@ -3,12 +3,14 @@
 package org.nlogo.hubnet.mirroring;
 
 import org.nlogo.api.Agent;
+import org.nlogo.api.AgentChanges;
 import org.nlogo.api.Link;
 import org.nlogo.api.Patch;
 import org.nlogo.api.Turtle;
 import org.nlogo.api.World;
 import org.nlogo.api.WorldPropertiesInterface;
 
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -18,6 +20,9 @@ import java.util.Map;
  * of the state of the view as of the last client update. To do a new update,
  * we compare this with the actual state of the world, record updates here and
  * compile a list of differences to send to clients. See updateWorld() below.
+ * Apart from the first update, we only compare the agents the world says have
+ * changed since the last one (see World.drainAgentChanges()), so an update
+ * costs about as much as what changed, not as much as the whole world.
  * <p/>
  * This class also supports serialization directly to a byte array, which is
  * used in those cases when we need a full (i.e. non-incremental) view update.
@@ -57,6 +62,13 @@ public strictfp class ServerWorld {
 
   private java.awt.image.BufferedImage drawing = null;
 
+  /**
+   * whether we've compared every agent at least once. until we have, we
+   * can't go by what the world says changed, since that's only what changed
+   * since the last time anyone asked (maybe for a ServerWorld before us).
+   */
+  private boolean scanned = false;
+
   /**
    * creates a new ServerWorld. manager will be used to convert shapes to
    * shape indices.
@@ -83,11 +95,23 @@ public strictfp class ServerWorld {
   public synchronized DiffBuffer updateWorld(World world, boolean resetWorld) {
     DiffBuffer buf = new DiffBuffer();
     synchronized (world) {
+      AgentChanges changes = world.drainAgentChanges();
+      boolean everything = changes.everything() || !scanned;
       updateGeneral(world, buf);
-      updatePatches(world, buf);
-      updateTurtles(world, buf);
-      updateLinks(world, buf);
+      if (everything) {
+        updatePatches(world, buf);
+        updateTurtles(world, buf);
+      } else {
+        updatePatches(world, changes.patches(), buf);
+        updateTurtles(world, changes.turtles(), buf);
+      }
+      // links move with their ends, so if any turtle changed, any link may have
+      if (everything || changes.links() ||
+          (!changes.turtles().isEmpty() && !links.isEmpty())) {
+        updateLinks(world, buf);
+      }
       updateDrawing(world, buf, resetWorld);
+      scanned = true;
     }
     return buf;
   }
@@ -153,6 +177,22 @@ public strictfp class ServerWorld {
     }
   }
 
+  /**
+   * like updatePatches(World, DiffBuffer), but only for the patches whose ids
+   * are in changed.
+   * <p/>
+   * This method MUST be called from the event thread, and the method which
+   * called it must have a lock on the world.
+   */
+  private void updatePatches(World world, BitSet changed, DiffBuffer buf) {
+    for (int id = changed.nextSetBit(0); id >= 0; id = changed.nextSetBit(id + 1)) {
+      PatchData diffs = updatePatch(world.getPatch(id));
+      if (diffs != null) {
+        buf.addPatch(diffs);
+      }
+    }
+  }
+
   /**
    * updates local turtle data to match turtles from world, storing
    * diffs in buf. Will overwrite turtles with a new Map representing
@@ -183,6 +223,28 @@ public strictfp class ServerWorld {
     turtles = newTurtles;
   }
 
+  /**
+   * like updateTurtles(World, DiffBuffer), but only for the turtles whose who
+   * numbers are in changed, which may have been born or died too.
+   * <p/>
+   * This method MUST be called from the event thread, and the method which
+   * called it must have a lock on the world.
+   */
+  private void updateTurtles(World world, BitSet changed, DiffBuffer buf) {
+    for (int who = changed.nextSetBit(0); who >= 0; who = changed.nextSetBit(who + 1)) {
+      Turtle turtle = world.getTurtle(who);
+      if (turtle != null) {
+        TurtleData diffs = updateTurtle(turtle);
+        if (diffs != null) {
+          buf.addTurtle(diffs);
+        }
+      } else if (turtles.remove(Double.valueOf(who)) != null) {
+        // it died, so add a new "dead" TurtleData to the outgoing buffer.
+        buf.addTurtle(new TurtleData(who));
+      }
+    }
+  }
+
   private void updateLinks(World world, DiffBuffer buf) {
     // turtles, on the other hand, can die, so we move each one to a new
     // map as we encounter it...
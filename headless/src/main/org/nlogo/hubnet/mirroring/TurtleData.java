@@ -91,13 +91,19 @@ public strictfp class TurtleData
 
   TurtleData(DataInputStream is)
       throws IOException {
-    who = is.readLong();
-    mask = is.readShort();
+    this(is, 0);
+  }
+
+  // previousWho is the who number of the turtle read just before this one, if any (see WireFormat)
+  TurtleData(DataInputStream is, long previousWho)
+      throws IOException {
+    who = WireFormat.readId(is, previousWho);
+    mask = WireFormat.readMask(is);
     if ((mask & XCOR) == XCOR) {
-      xcor = is.readDouble();
+      xcor = WireFormat.readNumber(is);
     }
     if ((mask & YCOR) == YCOR) {
-      ycor = is.readDouble();
+      ycor = WireFormat.readNumber(is);
     }
     if ((mask & SHAPE) == SHAPE) {
       shape = is.readUTF();
@@ -106,10 +112,10 @@ public strictfp class TurtleData
       color(is.readInt());
     }
     if ((mask & HEADING) == HEADING) {
-      heading = is.readDouble();
+      heading = WireFormat.readNumber(is);
     }
     if ((mask & SIZE) == SIZE) {
-      size = is.readDouble();
+      size = WireFormat.readNumber(is);
     }
     if ((mask & HIDDEN) == HIDDEN) {
       hidden = is.readBoolean();
@@ -120,9 +126,9 @@ public strictfp class TurtleData
     if ((mask & LABEL_COLOR) == LABEL_COLOR) {
       labelColor = org.nlogo.api.Color.getRGBAListByARGB(is.readInt());
     }
-    breedIndex = is.readInt();
+    breedIndex = (int) WireFormat.readSignedVarLong(is);
     if ((mask & LINE_THICKNESS) == LINE_THICKNESS) {
-      lineThickness = is.readDouble();
+      lineThickness = WireFormat.readNumber(is);
     }
   }
 
@@ -391,13 +397,18 @@ public strictfp class TurtleData
 
   void serialize(DataOutputStream os)
       throws IOException {
-    os.writeLong(who);
-    os.writeShort(mask);
+    serialize(os, 0);
+  }
+
+  void serialize(DataOutputStream os, long previousWho)
+      throws IOException {
+    WireFormat.writeId(os, who, previousWho);
+    WireFormat.writeMask(os, mask);
     if ((mask & XCOR) == XCOR) {
-      os.writeDouble(xcor);
+      WireFormat.writeNumber(os, xcor);
     }
     if ((mask & YCOR) == YCOR) {
-      os.writeDouble(ycor);
+      WireFormat.writeNumber(os, ycor);
     }
     if ((mask & SHAPE) == SHAPE) {
       os.writeUTF(shape);
@@ -406,10 +417,10 @@ public strictfp class TurtleData
       os.writeInt(org.nlogo.api.Color.getARGBIntByRGBAList(color));
     }
     if ((mask & HEADING) == HEADING) {
-      os.writeDouble(heading);
+      WireFormat.writeNumber(os, heading);
     }
     if ((mask & SIZE) == SIZE) {
-      os.writeDouble(size);
+      WireFormat.writeNumber(os, size);
     }
     if ((mask & HIDDEN) == HIDDEN) {
       os.writeBoolean(hidden);
@@ -420,9 +431,9 @@ public strictfp class TurtleData
     if ((mask & LABEL_COLOR) == LABEL_COLOR) {
       os.writeInt(org.nlogo.api.Color.getARGBIntByRGBAList(labelColor));
     }
-    os.writeInt(breedIndex);
+    WireFormat.writeSignedVarLong(os, breedIndex);
     if ((mask & LINE_THICKNESS) == LINE_THICKNESS) {
-      os.writeDouble(lineThickness);
+      WireFormat.writeNumber(os, lineThickness);
     }
   }
 
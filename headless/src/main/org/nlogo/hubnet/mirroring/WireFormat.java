@@ -0,0 +1,118 @@
+// (C) Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.hubnet.mirroring;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Compact encodings used by DiffBuffer and the agent data classes, since a view update is mostly
+ * ids, masks, counts and coordinates that are small or whole numbers.
+ * <p>
+ * Varints are 7 bits per byte, low bits first, with the high bit set on every byte but the last.
+ * Signed values are zigzag encoded first (0, -1, 1, -2, ... become 0, 1, 2, 3, ...) so small
+ * negative numbers stay short too.  Agent ids are written as the difference from the id written
+ * just before, which is usually 1 for patches and small for turtles and links.
+ */
+strictfp final class WireFormat {
+
+  // this class is not instantiable
+  private WireFormat() { throw new IllegalStateException(); }
+
+  static void writeVarLong(DataOutputStream os, long value)
+      throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      os.writeByte((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    os.writeByte((int) value);
+  }
+
+  static long readVarLong(DataInputStream is)
+      throws IOException {
+    long result = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      int b = is.readUnsignedByte();
+      result |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return result;
+      }
+    }
+    throw new IOException("malformed varint");
+  }
+
+  static void writeSignedVarLong(DataOutputStream os, long value)
+      throws IOException {
+    writeVarLong(os, (value << 1) ^ (value >> 63));
+  }
+
+  static long readSignedVarLong(DataInputStream is)
+      throws IOException {
+    long raw = readVarLong(is);
+    return (raw >>> 1) ^ -(raw & 1);
+  }
+
+  // counts are never negative
+  static void writeCount(DataOutputStream os, int count)
+      throws IOException {
+    writeVarLong(os, count);
+  }
+
+  static int readCount(DataInputStream is)
+      throws IOException {
+    return (int) readVarLong(is);
+  }
+
+  // the agent masks are shorts, but only use the low bits
+  static void writeMask(DataOutputStream os, short mask)
+      throws IOException {
+    writeVarLong(os, mask & 0xFFFF);
+  }
+
+  static short readMask(DataInputStream is)
+      throws IOException {
+    return (short) readVarLong(is);
+  }
+
+  static void writeId(DataOutputStream os, long id, long previousId)
+      throws IOException {
+    writeSignedVarLong(os, id - previousId);
+  }
+
+  static long readId(DataInputStream is, long previousId)
+      throws IOException {
+    return previousId + readSignedVarLong(is);
+  }
+
+  // beyond this, not every whole number fits in a double anyway
+  private static final double MAX_WHOLE = 1L << 53;
+  private static final long NEGATIVE_ZERO_BITS = Double.doubleToRawLongBits(-0.0);
+
+  /**
+   * Writes a double, in one or two bytes if it's a small whole number (as coordinates, headings,
+   * sizes and so on very often are), or in nine bytes otherwise.  Always exact.
+   */
+  static void writeNumber(DataOutputStream os, double d)
+      throws IOException {
+    if (d == StrictMath.rint(d) && StrictMath.abs(d) < MAX_WHOLE &&
+        Double.doubleToRawLongBits(d) != NEGATIVE_ZERO_BITS) {
+      long whole = (long) d;
+      writeVarLong(os, ((whole << 1) ^ (whole >> 63)) << 1);
+    } else {
+      writeVarLong(os, 1);
+      os.writeDouble(d);
+    }
+  }
+
+  static double readNumber(DataInputStream is)
+      throws IOException {
+    long raw = readVarLong(is);
+    if ((raw & 1) == 1) {
+      return is.readDouble();
+    }
+    raw >>>= 1;
+    return (raw >>> 1) ^ -(raw & 1);
+  }
+
+}
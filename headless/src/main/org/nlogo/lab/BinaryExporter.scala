@@ -0,0 +1,176 @@
+// (C) Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.lab
+
+import java.io.{ ByteArrayOutputStream, DataOutputStream, OutputStream }
+import org.nlogo.api.{ Version, WorldDimensions }
+import org.nlogo.nvm.LabInterface.ProgressListener
+import org.nlogo.nvm.Workspace
+
+// Writes the same results as TableExporter, but in a compact binary format meant for very large
+// experiments.  Nothing is formatted as text on the way out, and nothing is kept in memory past
+// the end of the run it belongs to: each run is written as one chunk, with its measurements
+// stored a column at a time, and the file is flushed after every chunk.  So if the experiment
+// dies partway through, every run that finished is still readable.  BinaryResults reads the
+// format back and can turn it into the same CSV TableExporter makes.
+//
+// The layout (all numbers big-endian, as DataOutputStream writes them):
+//
+//   header:  magic, format version, then strings: NetLogo version, model file name, protocol
+//            name, date; then the four world dimensions as ints; then the variable names and the
+//            metric names, each a count followed by strings
+//   chunks:  ChunkTag, run number, then one value for each variable, then the number of rows,
+//            then the step column (ints), then one column for each metric
+//   end:     EndTag
+//
+// A string is an int byte count followed by UTF-8.  A column is either NumberColumn followed by
+// one double per row, or ValueColumn followed by one value per row; a value is NumberValue and a
+// double, or CellValue and a string holding the value already formatted as a CSV cell (for
+// strings, booleans, lists and so on).
+
+object BinaryExporter {
+  val Magic = 0x4e4c4253  // "NLBS"
+  val FormatVersion = 1
+  val ChunkTag: Byte = 1
+  val EndTag: Byte = 0
+  val NumberColumn: Byte = 0
+  val ValueColumn: Byte = 1
+  val NumberValue: Byte = 0
+  val CellValue: Byte = 1
+}
+
+class BinaryExporter(modelFileName: String,
+                     initialDims: WorldDimensions,
+                     protocol: Protocol,
+                     stream: OutputStream)
+  extends ProgressListener
+{
+  import BinaryExporter._
+
+  private val out = new DataOutputStream(new java.io.BufferedOutputStream(stream))
+
+  // the measurements for one run, in columns.  runs on different threads each get their own, so
+  // chunks never interleave.
+  private class Run(val settings: List[Pair[String, Any]]) {
+    var rows = 0
+    var steps = new Array[Int](16)
+    val columns = Array.fill(protocol.metrics.size)(new Array[AnyRef](16))
+    def add(step: Int, values: List[AnyRef]) {
+      if(rows == steps.length) {
+        steps = java.util.Arrays.copyOf(steps, rows * 2)
+        for(i <- columns.indices)
+          columns(i) = java.util.Arrays.copyOf(columns(i), rows * 2)
+      }
+      steps(rows) = step
+      for((value, i) <- values.zipWithIndex)
+        columns(i)(rows) = value
+      rows += 1
+    }
+  }
+  private val runs = new collection.mutable.HashMap[Int, Run]
+
+  override def experimentStarted() {
+    out.writeInt(Magic)
+    out.writeInt(FormatVersion)
+    writeString(out, Version.version)
+    writeString(out, modelFileName)
+    writeString(out, protocol.name)
+    writeString(out,
+      new java.text.SimpleDateFormat("MM/dd/yyyy HH:mm:ss:SSS Z")
+        .format(new java.util.Date))
+    import initialDims._
+    List(minPxcor, maxPxcor, minPycor, maxPycor).foreach(out.writeInt)
+    writeStrings(out, protocol.valueSets.map(_.variableName))
+    writeStrings(out, protocol.metrics)
+    out.flush()
+  }
+  override def runStarted(w: Workspace, runNumber: Int, runSettings: List[Pair[String, Any]]) {
+    runs.synchronized { runs(runNumber) = new Run(runSettings) }
+  }
+  override def measurementsTaken(w: Workspace, runNumber: Int, step: Int, values: List[AnyRef]) {
+    if(!values.isEmpty)
+      run(runNumber).add(step, values)
+  }
+  override def runCompleted(w: Workspace, runNumber: Int, steps: Int) {
+    val run = runs.synchronized { runs.remove(runNumber).get }
+    if(protocol.metrics.isEmpty)
+      run.add(steps, Nil)  // record how long the run lasted, if nothing else
+    // build the chunk off to the side, so other runs only wait for the copy
+    val bytes = new ByteArrayOutputStream
+    writeChunk(new DataOutputStream(bytes), runNumber, run)
+    out.synchronized {
+      bytes.writeTo(out)
+      out.flush()
+    }
+  }
+  override def experimentAborted() {
+    finish()
+  }
+  override def experimentCompleted() {
+    finish()
+  }
+
+  private def run(runNumber: Int) =
+    runs.synchronized { runs(runNumber) }
+
+  private def finish() {
+    // runs that never completed, because of an error, still get whatever they measured
+    val unfinished = runs.synchronized {
+      val result = runs.toList.sortBy(_._1)
+      runs.clear()
+      result
+    }
+    out.synchronized {
+      for((runNumber, run) <- unfinished)
+        writeChunk(out, runNumber, run)
+      out.writeByte(EndTag)
+      out.close()
+    }
+  }
+
+  private def writeChunk(data: DataOutputStream, runNumber: Int, run: Run) {
+    data.writeByte(ChunkTag)
+    data.writeInt(runNumber)
+    run.settings.foreach(setting => writeValue(data, setting._2))
+    data.writeInt(run.rows)
+    for(i <- 0 until run.rows)
+      data.writeInt(run.steps(i))
+    for(column <- run.columns) {
+      if((0 until run.rows).forall(column(_).isInstanceOf[java.lang.Double])) {
+        data.writeByte(NumberColumn)
+        for(i <- 0 until run.rows)
+          data.writeDouble(column(i).asInstanceOf[java.lang.Double].doubleValue)
+      }
+      else {
+        data.writeByte(ValueColumn)
+        for(i <- 0 until run.rows)
+          writeValue(data, column(i))
+      }
+    }
+    data.flush()
+  }
+
+  private def writeValue(data: DataOutputStream, value: Any) {
+    value match {
+      case d: java.lang.Double =>
+        data.writeByte(NumberValue)
+        data.writeDouble(d.doubleValue)
+      case _ =>
+        data.writeByte(CellValue)
+        writeString(data, Exporter.cell(value))
+    }
+  }
+
+  private def writeStrings(data: DataOutputStream, strings: Seq[String]) {
+    data.writeInt(strings.size)
+    strings.foreach(writeString(data, _))
+  }
+
+  // not writeUTF, which can't handle more than 64K
+  private def writeString(data: DataOutputStream, s: String) {
+    val bytes = s.getBytes("UTF-8")
+    data.writeInt(bytes.length)
+    data.write(bytes)
+  }
+
+}
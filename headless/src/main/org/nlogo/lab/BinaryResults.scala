@@ -0,0 +1,129 @@
+// (C) Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.lab
+
+import java.io.{ DataInputStream, EOFException, InputStream, PrintWriter }
+import org.nlogo.api.Dump
+
+// Reads the files BinaryExporter writes.  toCsv turns one into the same CSV a TableExporter
+// would have written for the experiment (except that rows are grouped by run, instead of in the
+// order the runs happened to take their measurements).  From the command line:
+//
+//   java -cp NetLogo.jar org.nlogo.lab.BinaryResults results.bin results.csv
+//
+// or leave off the second argument to write to standard output.
+
+object BinaryResults {
+
+  import BinaryExporter._
+
+  case class Header(netLogoVersion: String, modelFileName: String, protocolName: String,
+                    date: String, dims: List[Int],
+                    variableNames: List[String], metricNames: List[String])
+
+  // one row per measurement; the settings are the run's variable values, in the same order as
+  // Header.variableNames.  every value is either a java.lang.Double or a preformatted CSV cell.
+  case class Run(runNumber: Int, settings: List[AnyRef], steps: Array[Int],
+                 columns: List[Array[AnyRef]])
+
+  def main(args: Array[String]) {
+    if(args.size < 1 || args.size > 2) {
+      System.err.println("usage: BinaryResults <binary results file> [<csv file>]")
+      System.exit(1)
+    }
+    val in = new java.io.FileInputStream(args(0))
+    val out =
+      if(args.size == 2) new PrintWriter(new java.io.FileWriter(args(1)))
+      else new PrintWriter(System.out)
+    try toCsv(in, out)
+    finally { in.close(); out.flush(); if(args.size == 2) out.close() }
+  }
+
+  def toCsv(in: InputStream, out: PrintWriter) {
+    read(in)(
+      header => {
+        import header._
+        out.println(Dump.csv.header("BehaviorSpace results (" + netLogoVersion + ")"))
+        out.println(Dump.csv.header(modelFileName))
+        out.println(Dump.csv.header(protocolName))
+        out.println(Dump.csv.header(date))
+        out.println(Dump.csv.headerRow(Array("min-pxcor", "max-pxcor", "min-pycor", "max-pycor")))
+        out.println(dims.map(Dump.csv.number(_)).mkString(","))
+        val headers = "[run number]" :: variableNames ::: "[step]" :: metricNames
+        out.println(headers.map(Dump.csv.header).mkString(","))
+      },
+      run =>
+        for(row <- run.steps.indices) {
+          val entries =
+            (run.runNumber: java.lang.Integer) :: run.settings :::
+            (run.steps(row): java.lang.Integer) :: run.columns.map(_(row))
+          out.println(entries.map(cell).mkString(","))
+        })
+    out.flush()
+  }
+
+  private def cell(value: AnyRef): String =
+    value match {
+      case s: String => s  // already formatted
+      case _ => Dump.csv.data(value)
+    }
+
+  // Calls runFn for each run as it is read, so a file of any size can be read in constant
+  // memory (per run).  A file that ends partway through a chunk, as when the experiment was
+  // killed, is read up to the last whole run.
+  def read(in: InputStream)(headerFn: Header => Unit, runFn: Run => Unit) {
+    val data = new DataInputStream(new java.io.BufferedInputStream(in))
+    if(data.readInt() != Magic)
+      throw new IllegalArgumentException("not a BehaviorSpace binary results file")
+    val version = data.readInt()
+    if(version != FormatVersion)
+      throw new IllegalArgumentException("unknown BehaviorSpace binary results version: " + version)
+    val header = Header(readString(data), readString(data), readString(data), readString(data),
+                        List.fill(4)(data.readInt()), readStrings(data), readStrings(data))
+    headerFn(header)
+    def readChunk(): Option[Run] =
+      try {
+        data.readByte() match {
+          case EndTag => None
+          case ChunkTag =>
+            val runNumber = data.readInt()
+            val settings = List.fill(header.variableNames.size)(readValue(data))
+            val rows = data.readInt()
+            val steps = Array.fill(rows)(data.readInt())
+            val columns = List.fill(header.metricNames.size)(readColumn(data, rows))
+            Some(Run(runNumber, settings, steps, columns))
+          case tag =>
+            throw new IllegalArgumentException("bad chunk tag: " + tag)
+        }
+      }
+      catch { case _: EOFException => None }
+    Iterator.continually(readChunk()).takeWhile(_.isDefined).foreach(run => runFn(run.get))
+  }
+
+  private def readColumn(data: DataInputStream, rows: Int): Array[AnyRef] =
+    data.readByte() match {
+      case NumberColumn =>
+        Array.fill[AnyRef](rows)(Double.box(data.readDouble()))
+      case ValueColumn =>
+        Array.fill[AnyRef](rows)(readValue(data))
+      case tag =>
+        throw new IllegalArgumentException("bad column tag: " + tag)
+    }
+
+  private def readValue(data: DataInputStream): AnyRef =
+    data.readByte() match {
+      case NumberValue => Double.box(data.readDouble())
+      case CellValue => readString(data)
+      case tag => throw new IllegalArgumentException("bad value tag: " + tag)
+    }
+
+  private def readStrings(data: DataInputStream): List[String] =
+    List.fill(data.readInt())(readString(data))
+
+  private def readString(data: DataInputStream): String = {
+    val bytes = new Array[Byte](data.readInt())
+    data.readFully(bytes)
+    new String(bytes, "UTF-8")
+  }
+
+}
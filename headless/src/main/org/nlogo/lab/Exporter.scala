@@ -7,6 +7,19 @@ import org.nlogo.api.Version
 import org.nlogo.api.WorldDimensions
 import org.nlogo.nvm.LabInterface.ProgressListener
 
+object Exporter {
+  // a value that was measured in a worker process (see Remote), where it was dumped the way
+  // Dump.csv.data would have, since not every NetLogo value can be sent between processes
+  case class Dumped(text: String)
+  // what the exporters should use instead of Dump.csv.data, so Dumped values come out the same
+  // as if they'd been measured here
+  def cell(value: Any): String =
+    value match {
+      case Dumped(text) => Dump.csv.encode(text)
+      case _ => Dump.csv.data(value)
+    }
+}
+
 // abstract superclass of SpreadsheetExporter and TableExporter.
 // subclasses must implement ProgressListener's methods.
 
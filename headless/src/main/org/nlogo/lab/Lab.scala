@@ -29,47 +29,111 @@ class Lab(loader: ProtocolLoader)
     new Worker(loader.loadOne(setupFile, protocolName))
   def run(settings: LabInterface.Settings, fn: ()=>Workspace) {
     import settings._
-    // pool of workspaces, same size as thread pool
-    val workspaces = (1 to threads).map(_ => fn.apply).toList
-    val queue = new collection.mutable.Queue[Workspace]
-    workspaces.foreach(queue.enqueue(_))
-    try {
-      queue.foreach(w => dims.foreach(w.setDimensions _))
-      def modelDims = queue.head.world.getDimensions
-      val worker =
-        (setupFile, experiment) match {
-          case (Some(file), Some(name)) => newWorker(name, file)
-          case (Some(file), None) => newWorker(file)
-          case (None, Some(name)) => newWorker(name)
-          case (None, None) => throw new IllegalArgumentException
-        }
-      tableWriter.foreach(
-        worker.addTableWriter(model, dims.getOrElse(modelDims), _))
-      spreadsheetWriter.foreach(
-        worker.addSpreadsheetWriter(model, dims.getOrElse(modelDims), _))
-      worker.addListener(
-        new LabInterface.ProgressListener {
-          override def runCompleted(w: Workspace, runNumber: Int, step: Int) {
-            queue.synchronized { queue.enqueue(w) }
+    def newWorker() =
+      (setupFile, experiment) match {
+        case (Some(file), Some(name)) => newWorker(name, file)
+        case (Some(file), None) => newWorker(file)
+        case (None, Some(name)) => newWorker(name)
+        case (None, None) => throw new IllegalArgumentException
+      }
+    if(workerPort.isDefined)
+      Remote.serve(newWorker(), workerPort.get, fn)
+    else {
+      // pool of workspaces, no bigger than the thread pool.  only the first one is made up front;
+      // the rest are made by the runner threads the first time each needs one, so opening and
+      // compiling the model happens in parallel instead of once per thread before anything starts.
+      // with worker processes, the first one is only for checking that the model opens.
+      val first = fn.apply
+      val workspaces = collection.mutable.ListBuffer[Workspace](first)
+      val queue = new collection.mutable.Queue[Workspace]
+      queue.enqueue(first)
+      try {
+        dims.foreach(first.setDimensions _)
+        def modelDims = first.world.getDimensions
+        val worker = newWorker()
+        tableWriter.foreach(
+          worker.addTableWriter(model, dims.getOrElse(modelDims), _))
+        spreadsheetWriter.foreach(
+          worker.addSpreadsheetWriter(model, dims.getOrElse(modelDims), _))
+        binaryWriter.foreach(
+          worker.addBinaryWriter(model, dims.getOrElse(modelDims), _))
+        worker.addListener(
+          new LabInterface.ProgressListener {
+            override def runCompleted(w: Workspace, runNumber: Int, step: Int) {
+              if(w != null)
+                queue.synchronized { queue.enqueue(w) }
+            }
+            override def runtimeError(w: Workspace, runNumber: Int, t: Throwable) {
+              if (!suppressErrors)
+                t match {
+                  case ee: EngineException =>
+                    val msg = ee.context.buildRuntimeErrorMessage(ee.instruction, ee)
+                    System.err.println("Run #" + runNumber + ", RUNTIME ERROR: " + msg)
+                    ee.printStackTrace(System.err)
+                  case _: LogoException =>
+                    System.err.println("Run #" + runNumber + ", RUNTIME ERROR: " + t.getMessage)
+                    t.printStackTrace(System.err)
+                  case _ =>
+                    System.err.println("Run #" + runNumber + ", JAVA EXCEPTION: " + t.getMessage)
+                    t.printStackTrace(System.err)
+                }
+            } } )
+        if(processes > 0)
+          new Coordinator(worker, processes, launchWorker(settings, _)).run()
+        else {
+          def newWorkspace = {
+            val w = fn.apply
+            workspaces.synchronized { workspaces += w }
+            dims.foreach(w.setDimensions _)
+            w
           }
-          override def runtimeError(w: Workspace, runNumber: Int, t: Throwable) {
-            if (!suppressErrors)
-              t match {
-                case ee: EngineException =>
-                  val msg = ee.context.buildRuntimeErrorMessage(ee.instruction, ee)
-                  System.err.println("Run #" + runNumber + ", RUNTIME ERROR: " + msg)
-                  ee.printStackTrace(System.err)
-                case _: LogoException =>
-                  System.err.println("Run #" + runNumber + ", RUNTIME ERROR: " + t.getMessage)
-                  t.printStackTrace(System.err)
-                case _ =>
-                  System.err.println("Run #" + runNumber + ", JAVA EXCEPTION: " + t.getMessage)
-                  t.printStackTrace(System.err)
-              }
-          } } )
-      def nextWorkspace = queue.synchronized { queue.dequeue() }
-      worker.run(workspaces.head, nextWorkspace _, threads)
+          def nextWorkspace =
+            queue.synchronized { if (queue.isEmpty) None else Some(queue.dequeue()) }
+              .getOrElse(newWorkspace)
+          worker.run(first, nextWorkspace _, threads)
+        }
+      }
+      finally { workspaces.synchronized { workspaces.foreach(_.dispose()) } }
+    }
+  }
+  // starts a JVM like this one, running headless.Main as a worker process (see Remote)
+  private def launchWorker(settings: LabInterface.Settings, port: Int): Process = {
+    import settings._
+    import collection.JavaConverters._
+    val javaCommand =
+      new java.io.File(new java.io.File(System.getProperty("java.home"), "bin"), "java").getPath
+    // pass along heap size, system properties and so on, but not agents (debuggers, profilers)
+    val jvmArgs =
+      java.lang.management.ManagementFactory.getRuntimeMXBean.getInputArguments.asScala.toList
+        .filter(arg => arg.startsWith("-X") || arg.startsWith("-D"))
+    val args =
+      List("--model", model) :::
+      setupFile.toList.flatMap(file => List("--setup-file", file.getPath)) :::
+      experiment.toList.flatMap(name => List("--experiment", name)) :::
+      dims.toList.flatMap(d => List("--min-pxcor", d.minPxcor, "--max-pxcor", d.maxPxcor,
+                                    "--min-pycor", d.minPycor, "--max-pycor", d.maxPycor)
+                                 .map(_.toString)) :::
+      List("--diffusion-threads", diffusionThreads.toString, "--ask-threads", askThreads.toString,
+           "--worker-port", port.toString)
+    val command =
+      javaCommand :: jvmArgs ::: List("-cp", System.getProperty("java.class.path"),
+                                       "org.nlogo.headless.Main") ::: args
+    val process = new ProcessBuilder(command.asJava).redirectErrorStream(true).start()
+    // the worker's output (from print and so on) goes to ours
+    val output = new Thread("BehaviorSpace worker output") {
+      override def run() {
+        val in = process.getInputStream
+        val buffer = new Array[Byte](4096)
+        var n = in.read(buffer)
+        while(n != -1) {
+          System.out.write(buffer, 0, n)
+          System.out.flush()
+          n = in.read(buffer)
+        }
+      }
     }
-    finally { workspaces.foreach(_.dispose()) }
+    output.setDaemon(true)
+    output.start()
+    process
   }
 }
@@ -0,0 +1,274 @@
+// (C) Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.lab
+
+import java.io.{ BufferedInputStream, BufferedOutputStream, ObjectInputStream, ObjectOutputStream }
+import java.net.{ InetAddress, ServerSocket, Socket }
+import org.nlogo.api.{ Dump, LogoException }
+import org.nlogo.nvm.{ EngineException, LabInterface, Workspace }
+import LabInterface.ProgressListener
+
+// Support for running an experiment's runs in separate worker processes (each its own JVM, with
+// its own heap and garbage collector) instead of on threads in this one.  Lab starts the worker
+// processes and a Coordinator, which hands out run numbers over local sockets.  Each worker opens
+// the model, does the runs it's given (see Worker.runOne), and sends back what happened; the
+// coordinator passes it all along to the usual listeners (exporters and so on) once each run is
+// over.  If a worker process dies or stops talking, the run it was doing is started over in a
+// new process, up to maxAttempts times in all.  If a worker process can't be started at all,
+// or never connects, maxAttempts times in a row, the experiment stops with an error.
+
+object Remote {
+
+  // from the coordinator to a worker
+  case class Assign(runNumber: Int)
+  case object Finished
+
+  // from a worker to the coordinator.  every run ends with either Completed, or Aborted if an
+  // error stopped it partway through
+  case class Started(runNumber: Int, settings: List[Pair[String, AnyRef]])
+  case class Measured(runNumber: Int, step: Int, values: List[AnyRef])
+  case class RuntimeError(runNumber: Int, message: String)
+  case class Completed(runNumber: Int, steps: Int)
+  case class Aborted(runNumber: Int)
+
+  // what the coordinator's listeners get for errors that happened in a worker
+  class RemoteException(message: String) extends LogoException(message)
+
+  // numbers go as they are; anything else is dumped here, since agents, tasks, extension
+  // objects and so on can't leave the process they belong to
+  def portable(value: Any): AnyRef =
+    value match {
+      case d: java.lang.Double => d
+      case d: Exporter.Dumped => d
+      case i: java.lang.Integer => Exporter.Dumped(i.toString)
+      case x => Exporter.Dumped(Dump.logoObject(x.asInstanceOf[AnyRef], true, true))
+    }
+
+  def errorMessage(t: Throwable) =
+    t match {
+      case ee: EngineException => ee.context.buildRuntimeErrorMessage(ee.instruction, ee)
+      case _: LogoException => t.getMessage
+      case _ => t.toString
+    }
+
+  /**
+   * The worker process's side.  Connects to the coordinator on the given port, then does each
+   * run it's assigned in the given workspace until the coordinator says it's finished.
+   */
+  def serve(worker: Worker, port: Int, fn: () => Workspace) {
+    val socket = new Socket(InetAddress.getByName(null), port)
+    try {
+      val out = new ObjectOutputStream(new BufferedOutputStream(socket.getOutputStream))
+      // the stream header has to get there before the other side's ObjectInputStream can start
+      out.flush()
+      val in = new ObjectInputStream(new BufferedInputStream(socket.getInputStream))
+      // open the model only after connecting, so the coordinator isn't waiting on us to
+      // connect while we compile
+      val workspace = fn()
+      var completed = false
+      worker.addListener(new ProgressListener {
+        override def runStarted(w: Workspace, runNumber: Int, settings: List[Pair[String, Any]]) {
+          out.writeObject(Started(runNumber, settings.map{case (name, value) => (name, portable(value))}))
+        }
+        override def measurementsTaken(w: Workspace, runNumber: Int, step: Int, values: List[AnyRef]) {
+          out.writeObject(Measured(runNumber, step, values.map(portable)))
+        }
+        override def runtimeError(w: Workspace, runNumber: Int, t: Throwable) {
+          out.writeObject(RuntimeError(runNumber, errorMessage(t)))
+        }
+        override def runCompleted(w: Workspace, runNumber: Int, steps: Int) {
+          completed = true
+          out.writeObject(Completed(runNumber, steps))
+        }
+      })
+      try {
+        var done = false
+        while(!done)
+          in.readObject() match {
+            case Assign(runNumber) =>
+              completed = false
+              worker.runOne(workspace, runNumber)
+              if(!completed)
+                out.writeObject(Aborted(runNumber))
+              out.flush()
+              // otherwise the stream hangs onto everything it has ever sent
+              out.reset()
+            case Finished =>
+              done = true
+          }
+      }
+      finally { workspace.dispose() }
+    }
+    finally { socket.close() }
+  }
+
+}
+
+/**
+ * The coordinating process's side.  launch(port) must start a worker process that will connect
+ * to the port and call Remote.serve.  Keeps that many worker processes going until every run of
+ * the worker's protocol is done (or given up on), passing their results along to the worker's
+ * listeners.
+ */
+class Coordinator(worker: Worker, processes: Int, launch: Int => Process,
+                  maxAttempts: Int = 3, acceptTimeout: Int = 120000)
+{
+  import Remote._
+
+  // run numbers still to do, with how many times each has been tried already
+  private val pending = collection.mutable.Queue[(Int, Int)]()
+  private var inProgress = 0
+
+  // None once every run is done.  while runs are in progress elsewhere we have to wait, since
+  // if their worker dies they'll need doing again.
+  private def take(): Option[(Int, Int)] =
+    pending.synchronized {
+      while(pending.isEmpty && inProgress > 0)
+        pending.wait()
+      if(pending.isEmpty) None
+      else {
+        inProgress += 1
+        Some(pending.dequeue())
+      }
+    }
+
+  private def finished() {
+    pending.synchronized {
+      inProgress -= 1
+      pending.notifyAll()
+    }
+  }
+
+  private def failed(runNumber: Int, attempts: Int, e: Exception) {
+    if(attempts >= maxAttempts)
+      replay(List((listener: ProgressListener) =>
+        listener.runtimeError(null, runNumber, new RemoteException(
+          "gave up after the worker process failed " + attempts + " times: " + e))))
+    pending.synchronized {
+      if(attempts < maxAttempts && launchError.isEmpty)
+        pending.enqueue((runNumber, attempts))
+      inProgress -= 1
+      pending.notifyAll()
+    }
+  }
+
+  private def replay(events: Seq[ProgressListener => Unit]) {
+    worker.listeners.synchronized {
+      for(event <- events; listener <- worker.listeners)
+        event(listener)
+    }
+  }
+
+  // collects what a worker sends about one run; the listeners only hear about it once it's
+  // over, so nothing from a run that has to be redone gets to them twice
+  private def receive(in: ObjectInputStream): Seq[ProgressListener => Unit] = {
+    val events = new collection.mutable.ListBuffer[ProgressListener => Unit]
+    while(true)
+      in.readObject() match {
+        case Started(runNumber, settings) =>
+          events += ((l: ProgressListener) => l.runStarted(null, runNumber, settings))
+        case Measured(runNumber, step, values) =>
+          events += ((l: ProgressListener) => l.measurementsTaken(null, runNumber, step, values))
+        case RuntimeError(runNumber, message) =>
+          events += ((l: ProgressListener) => l.runtimeError(null, runNumber, new RemoteException(message)))
+        case Completed(runNumber, steps) =>
+          events += ((l: ProgressListener) => l.runCompleted(null, runNumber, steps))
+          return events
+        case Aborted(_) =>
+          return events
+      }
+    events
+  }
+
+  // set by the first slot that can't get a worker process going; after that no more runs are
+  // handed out, and run() stops the experiment with this as its error
+  @volatile private var launchError: Option[Exception] = None
+
+  private def giveUp(e: Exception) {
+    pending.synchronized {
+      if(launchError.isEmpty)
+        launchError = Some(e)
+      pending.clear()
+      pending.notifyAll()
+    }
+  }
+
+  private def slot(server: ServerSocket) {
+    // times in a row a worker process has failed to start or to connect.  a run that fails
+    // counts against that run (see failed), but if we never get as far as a run, nothing else
+    // would ever stop us from launching again
+    var launchFailures = 0
+    var more = true
+    while(more) {
+      var process: Process = null
+      var current: Option[(Int, Int)] = None
+      var socket: Socket = null
+      try {
+        process = launch(server.getLocalPort)
+        socket = server.accept()
+        val out = new ObjectOutputStream(new BufferedOutputStream(socket.getOutputStream))
+        out.flush()
+        val in = new ObjectInputStream(new BufferedInputStream(socket.getInputStream))
+        launchFailures = 0
+        current = take()
+        while(current.isDefined) {
+          out.writeObject(Assign(current.get._1))
+          out.flush()
+          replay(receive(in))
+          finished()
+          current = take()
+        }
+        out.writeObject(Finished)
+        out.flush()
+        more = false
+        process.waitFor()
+      }
+      catch {
+        // usually an IOException because the process died, but whatever went wrong, we
+        // mustn't leave the run counted as in progress, or the other slots will wait forever
+        case e: Exception =>
+          current match {
+            case Some((runNumber, attempts)) =>
+              failed(runNumber, attempts + 1, e)
+            case None =>
+              launchFailures += 1
+              if(launchFailures >= maxAttempts)
+                giveUp(e)
+          }
+          more = pending.synchronized {
+            launchError.isEmpty && (pending.nonEmpty || inProgress > 0) }
+      }
+      finally {
+        if(socket != null)
+          socket.close()
+        if(process != null)
+          process.destroy()
+      }
+    }
+  }
+
+  def run() {
+    for(runNumber <- 1 to worker.protocol.countRuns)
+      pending.enqueue((runNumber, 0))
+    val server = new ServerSocket(0, processes, InetAddress.getByName(null))
+    server.setSoTimeout(acceptTimeout)
+    try {
+      worker.listeners.foreach(_.experimentStarted())
+      val threads =
+        for(i <- 1 to processes)
+        yield new Thread("BehaviorSpace coordinator " + i) {
+          override def run() { slot(server) }
+        }
+      threads.foreach(_.start())
+      threads.foreach(_.join())
+      for(e <- launchError) {
+        worker.listeners.foreach(_.experimentAborted())
+        throw new RemoteException(
+          "gave up after failing to start a worker process " + maxAttempts + " times: " + e)
+      }
+      worker.listeners.foreach(_.experimentCompleted())
+    }
+    finally { server.close() }
+  }
+
+}
@@ -46,6 +46,6 @@ class TableExporter(modelFileName: String,
   }
   def writeTableRow(runNumber: Int, step: Int, values: List[AnyRef]) {
     val entries = runNumber :: settings(runNumber).map(_._2) ::: step :: values
-    out.println(entries.map(Dump.csv.data).mkString(","))
+    out.println(entries.map(Exporter.cell).mkString(","))
   }
 }
@@ -3,7 +3,7 @@
 package org.nlogo.lab
 
 import java.util.concurrent.{Callable, Executors, TimeUnit}
-import org.nlogo.agent.Observer
+import org.nlogo.agent.{Observer, World}
 import org.nlogo.api.{Dump,LogoException,
                       WorldDimensions, WorldDimensionException, SimpleJobOwner}
 import org.nlogo.nvm.{LabInterface, Workspace}
@@ -23,6 +23,17 @@ class Worker(val protocol: Protocol)
   def addTableWriter(modelFileName: String, initialDims: WorldDimensions, w: java.io.PrintWriter) {
     addListener(new TableExporter(modelFileName, initialDims, protocol, w))
   }
+  def addBinaryWriter(modelFileName: String, initialDims: WorldDimensions, out: java.io.OutputStream) {
+    addListener(new BinaryExporter(modelFileName, initialDims, protocol, out))
+  }
+  // if set, each run starts from a copy of this world instead of from whatever state its
+  // workspace was left in, so an expensive warm-up only has to happen once.  the settings are
+  // applied and the setup commands run after copying, same as usual (but note that changing the
+  // world's size clears it)
+  var startingWorld: Option[World] = None
+  def startFrom(world: World) {
+    startingWorld = Some(world)
+  }
   var runners: Seq[Runner] = null
   // we only want to compile stuff once per workspace, so use this
   // (should use a Scala collection not a Java one, but oh well, too lazy today - ST 8/13/09)
@@ -55,6 +66,12 @@ class Worker(val protocol: Protocol)
       runners = null
     }
   }
+  // does just the one run, with the same settings it would get as part of the whole experiment;
+  // for worker processes (see Remote)
+  def runOne(workspace: Workspace, runNumber: Int) {
+    val settings = protocol.elements.drop(runNumber - 1).next()
+    new Runner(runNumber, settings, () => workspace).call()
+  }
   // result discarded -- we just want to see if compilation succeeds.
   // used in TestCompileAll, also used before the start of the
   // experiment in the GUI so if something doesn't compile we can fail early.
@@ -163,6 +180,8 @@ class Worker(val protocol: Protocol)
         }
       }
       ws.behaviorSpaceRunNumber(runNumber)
+      for(world <- startingWorld)
+        ws.world.asInstanceOf[World].forkFrom(world)
       setVariables(settings)
       eachListener(_.runStarted(ws, runNumber, settings))
       ws.runCompiledCommands(owner(ws.world.mainRNG), setupProcedure)
@@ -4,9 +4,16 @@ package org.nlogo.nvm
 
 object Activation {
   private val NoArgs = Array[AnyRef]()
+  private val NoLets = Array[LetBinding]()
 }
 
-class Activation(val procedure: Procedure, val parent: Activation, val returnAddress: Int) {
+class Activation(private[this] var _procedure: Procedure,
+                 private[this] var _parent: Activation,
+                 private[this] var _returnAddress: Int) {
+
+  def procedure = _procedure
+  def parent = _parent
+  def returnAddress = _returnAddress
 
   // "var" so ReporterTask can swap in the definition-site args - ST 2/5/11
   var args: Array[AnyRef] = {
@@ -17,6 +24,44 @@ class Activation(val procedure: Procedure, val parent: Activation, val returnAdd
       Activation.NoArgs
   }
 
+  // the let variables, by Let.index.  each call gets its own, as with args, but Contexts running
+  // an ask block keep their own copies; see Context.currentLets.  "var" so CommandTask can swap
+  // in the variables it closed over
+  var lets: Array[LetBinding] = {
+    val size = procedure.letsCount
+    if (size > 0)
+      new Array[LetBinding](size)
+    else
+      Activation.NoLets
+  }
+
+  // Activations made by Context.newActivation go back to the Context when the procedure returns,
+  // to be used again for the next call.  the arrays may be bigger than the procedure needs then,
+  // which is harmless since they're only indexed by variable number.  Activations made elsewhere
+  // (by Jobs, tasks, run, etc.) have their args swapped or watched by other code, so aren't reused.
+  private[nvm] var reusable = false
+  private[nvm] var nextSpare: Activation = null
+
+  private[nvm] def reuse(procedure: Procedure, parent: Activation, returnAddress: Int) {
+    _procedure = procedure
+    _parent = parent
+    _returnAddress = returnAddress
+    if (args.length < procedure.size)
+      args = new Array[AnyRef](procedure.size)
+    if (lets.length < procedure.letsCount)
+      lets = new Array[LetBinding](procedure.letsCount)
+  }
+
+  // tasks made by the procedure keep its args, so they're left to the tasks
+  private[nvm] def clear() {
+    if (procedure.makesTasks)
+      args = Activation.NoArgs
+    else
+      java.util.Arrays.fill(args, null)
+    java.util.Arrays.fill(lets.asInstanceOf[Array[AnyRef]], null)
+    _parent = null
+  }
+
   def setUpArgsForRunOrRunresult() {
     // if there's a reason we copy instead of using the original, I don't remember it - ST 2/6/11
     System.arraycopy(parent.args, 0, args, 0, parent.procedure.args.size)
@@ -31,6 +31,8 @@ extends Job(owner, agentset, topLevelProcedure, address, parentContext, random)
       if (parentContext == null)
         new Activation(topLevelProcedure, null, 0)
       else parentContext.activation)
+    if (parentContext != null)
+      context.inheritLets(parentContext)
     if (count == -1) { // this whole -1 as a special value business is a bit kludgey - ST
       if (contexts == null)
         initialize()
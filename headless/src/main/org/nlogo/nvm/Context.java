@@ -3,6 +3,7 @@
 package org.nlogo.nvm;
 
 import org.nlogo.agent.Agent;
+import org.nlogo.agent.AgentBit;
 import org.nlogo.agent.AgentSet;
 import org.nlogo.api.Let;
 import org.nlogo.api.LogoException;
@@ -21,9 +22,19 @@ public final strictfp class Context {
   public boolean waiting = false; // are we waiting on a child job?
   private boolean inReporterProcedure = false;
 
-  @SuppressWarnings("unchecked") // Java doesn't know about variance
-  public scala.collection.immutable.List<LetBinding> letBindings =
-      (scala.collection.immutable.List<LetBinding>) ((Object) scala.collection.immutable.Nil$.MODULE$);
+  // Let variables normally live in the Activation, by Let.index, so each procedure call has its
+  // own.  But the Contexts running an ask block all share the asking Context's activation, so each
+  // keeps a copy of the asker's variables, to bind the block's own lets in; see inheritLets().
+  // ReporterTask swaps its variables in here too, since its body runs in the caller's activation.
+  public Activation letsActivation = null;
+  public LetBinding[] lets = null;
+
+  // Activations of procedures that have returned, most recent first, for newActivation() to reuse;
+  // calls and returns nest, so the list is never longer than the deepest the calls have gone
+  private Activation spareActivations = null;
+
+  // a Context for _with, _of, etc. to evaluate their reporter block in, see childContext()
+  private Context spareChild = null;
 
   /**
    * It is necessary for each Context to have its own stopping flag
@@ -55,18 +66,54 @@ public final strictfp class Context {
   // with _with. - ST 6/12/06
   public Context(Context context, AgentSet agents) {
     job = context.job;
-    activation = context.activation;
-    letBindings = context.letBindings;
-    myself = context.agent;
-    agentBit = agents.agentBit();
+    inherit(context, agents.agentBit());
   }
 
   public Context(Context context, Agent agent) {
     job = context.job;
+    inherit(context, agent.agentBit());
+  }
+
+  private void inherit(Context context, int agentBit) {
     activation = context.activation;
-    letBindings = context.letBindings;
+    letsActivation = context.letsActivation;
+    lets = context.lets;
     myself = context.agent;
-    agentBit = agent.agentBit();
+    agent = null;
+    this.agentBit = agentBit;
+    ip = 0;
+    finished = false;
+    stopping = false;
+    waiting = false;
+  }
+
+  // Same as the constructors above, but reuses the Context the last caller gave back with
+  // releaseChild(), if there is one.  Reporters like _with and _of call this every time they run,
+  // so this saves making lots of short lived Contexts.  A child that isn't given back (because of
+  // an error, say) is simply left for the garbage collector.
+  public Context childContext(AgentSet agents) {
+    return childContext(agents.agentBit());
+  }
+
+  public Context childContext(Agent agent) {
+    return childContext(agent.agentBit());
+  }
+
+  private Context childContext(int agentBit) {
+    Context child = spareChild;
+    if (child == null) {
+      child = new Context(job, null, 0, null);
+    } else {
+      // taken until given back, so a nested _with can't get the same one
+      spareChild = null;
+    }
+    child.inherit(this, agentBit);
+    return child;
+  }
+
+  public void releaseChild(Context child) {
+    child.agent = null;
+    spareChild = child;
   }
 
   public boolean makeChildrenExclusive() {
@@ -169,13 +216,53 @@ public final strictfp class Context {
     }
   }
 
+  // for _ask, which passes along what compiler.ParallelAskAnalysis found out about its block.
+  // if it can, the job runs on World.askThreads() threads; see ParallelJob
+  public void runExclusiveJob(AgentSet agentset, int address, String isolatedFor,
+                              boolean usesRandom)
+      throws LogoException {
+    if (agentset.world().askThreads() > 1
+        && (AgentBit.fromAgentClassString(isolatedFor) & agentset.agentBit()) != 0) {
+      new ParallelJob
+          (job.owner, agentset, activation.procedure(), address, this, job.random, usesRandom)
+          .run();
+    } else {
+      runExclusiveJob(agentset, address);
+    }
+  }
+
   public Job makeConcurrentJob(AgentSet agentset) {
     return new ConcurrentJob(job.owner, agentset, null, ip + 1, this, job.random);
   }
 
+  // for _call and _callreport.  the Activation is given back in returnFromProcedure() or at the
+  // end of callReporterProcedure()
+  public Activation newActivation(Procedure procedure, int returnAddress) {
+    Activation result = spareActivations;
+    if (result == null) {
+      result = new Activation(procedure, activation, returnAddress);
+      result.reusable_$eq(true);
+    } else {
+      spareActivations = result.nextSpare();
+      result.nextSpare_$eq(null);
+      result.reuse(procedure, activation, returnAddress);
+    }
+    return result;
+  }
+
+  private void release(Activation returning) {
+    if (returning.reusable()) {
+      returning.clear();
+      returning.nextSpare_$eq(spareActivations);
+      spareActivations = returning;
+    }
+  }
+
   public void returnFromProcedure() {
-    ip = activation.returnAddress();
-    activation = activation.parent();
+    Activation returning = activation;
+    ip = returning.returnAddress();
+    activation = returning.parent();
+    release(returning);
   }
 
   public void stop() {
@@ -253,8 +340,12 @@ public final strictfp class Context {
     } finally {
       inReporterProcedure = oldInReporterProcedure;
     }
-    ip = activation.returnAddress();
-    activation = activation.parent();
+    Activation returning = activation;
+    ip = returning.returnAddress();
+    activation = returning.parent();
+    if (returning == newActivation) {
+      release(returning);
+    }
     Object result = job.result;
     job.result = null;
     return result;
@@ -262,54 +353,40 @@ public final strictfp class Context {
 
   /// stuff for "let"
 
+  public LetBinding[] currentLets() {
+    return activation == letsActivation ? lets : activation.lets();
+  }
+
+  // for Jobs whose Contexts run code in the parent Context's activation, such as an ask block.
+  // the bindings are shared, so "set" in the block is seen outside it, but lets bound in the block
+  // only go in our copy.
+  public void inheritLets(Context parent) {
+    letsActivation = parent.activation;
+    LetBinding[] parentLets = parent.currentLets();
+    lets = parentLets.length == 0 ? parentLets : parentLets.clone();
+  }
+
   public void let(Let let, Object value) {
-    letBindings = letBindings.$colon$colon(new LetBinding(let, value));
+    currentLets()[let.index()] = new LetBinding(let, value);
   }
 
   public Object getLet(Let let) {
-    scala.collection.immutable.List<LetBinding> rest = letBindings;
-    while ((Object) rest != scala.collection.immutable.Nil$.MODULE$) // NOPMD
-    {
-      LetBinding binding = rest.head();
-      if (let == binding.let()) {
-        return binding.value();
-      }
-      rest = rest.tail();
-    }
-    return job.parentContext.getLet(let);
+    return currentLets()[let.index()].value();
   }
 
   public void setLet(Let let, Object value) {
-    scala.collection.immutable.List<LetBinding> rest = letBindings;
-    while ((Object) rest != scala.collection.immutable.Nil$.MODULE$) // NOPMD
-    {
-      LetBinding binding = rest.head();
-      if (let == binding.let()) {
-        binding.value_$eq(value);
-        return;
-      }
-      rest = rest.tail();
-    }
-    job.parentContext.setLet(let, value);
+    currentLets()[let.index()].value_$eq(value);
   }
 
-
-  public scala.collection.immutable.List<LetBinding> allLets() {
-    // fast path
-    if(job.parentContext == null) {
-      return letBindings;
-    }
-    // slow path
-    else {
-      scala.collection.mutable.ListBuffer<LetBinding> buf =
-        new scala.collection.mutable.ListBuffer<LetBinding>();
-      Context walk = this;
-      while(walk != null && activation == walk.activation) {
-        buf.$plus$plus$eq(walk.letBindings);
-        walk = walk.job.parentContext;
-      }
-      return buf.toList();
+  // tasks close over just the let variables they use (see compiler.LetSlots), so a task doesn't
+  // keep the values of every other variable alive
+  public LetBinding[] captureLets(int[] indexes) {
+    LetBinding[] current = currentLets();
+    LetBinding[] result = new LetBinding[current.length];
+    for (int i = 0; i < indexes.length; i++) {
+      result[indexes[i]] = current[indexes[i]];
     }
+    return result;
   }
 
   ///
@@ -357,7 +434,7 @@ public final strictfp class Context {
 
   private void comeUpForAir(Command command)
       throws HaltException {
-    if (command.switches && job.owner.ownsPrimaryJobs()) {
+    if (command.switches && job.owner.ownsPrimaryJobs() && !job.onAskThread()) {
       command.workspace.breathe();
     }
     if (Thread.currentThread().isInterrupted()) {
@@ -365,5 +442,9 @@ public final strictfp class Context {
       finished = true;
       throw new HaltException(true);
     }
+    InstructionProfiler profiler = command.workspace.instructionProfiler();
+    if (profiler != null) {
+      profiler.surfaced(this, command);
+    }
   }
 }
@@ -25,6 +25,8 @@ extends Job(owner, agentset, topLevelProcedure, address, parentContext, random)
     val it = agentset.shufflerator(random)
     val context = new Context(this, null, 0, null)
     context.agentBit = agentset.agentBit
+    if (parentContext != null)
+      context.inheritLets(parentContext)
     while (it.hasNext) {
       context.agent = it.next()
       context.activation =
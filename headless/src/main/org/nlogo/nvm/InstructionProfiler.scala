@@ -0,0 +1,199 @@
+// (C) Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.nvm
+
+import org.nlogo.agent.World
+import collection.mutable
+
+/**
+ * Finds out which instructions a running model spends its time in.  Tracer only times procedure
+ * calls; this attributes time and invocation counts to individual commands, and to where they
+ * are in the source.
+ *
+ * It gets in through World.comeUpForAir, which the engine checks after every command anyway, so
+ * when no profiler is running there is nothing to pay for.  A timer thread raises the flag every
+ * intervalMillis; the next time the engine comes up for air, Context calls surfaced(), and the
+ * procedures it's in, down to the command it just ran, are recorded as one sample.  Each sample
+ * stands for about one interval of run time.  With counting on, the flag is kept raised, so the
+ * engine comes up after every command and each one is counted as well.  That gives exact
+ * invocation counts, but slows things down a good deal, so it's off by default.
+ *
+ * The engine only comes up for air between commands, so reporters are never seen on their own;
+ * the time spent evaluating them is charged to the command they're arguments of.
+ *
+ * dumpStacks writes the samples in the "folded" format flamegraph.pl and most other flame graph
+ * tools read: one stack per line, outermost procedure first, with the number of samples at the
+ * end.  dumpInstructions writes a table of every command seen, hottest first.  Both take a
+ * function that returns the source text of a file ("" for the Code tab), if it's available, so
+ * source positions can be given as line numbers.
+ */
+class InstructionProfiler(world: World, val intervalMillis: Int = 1, val counting: Boolean = false) {
+
+  require(intervalMillis > 0)
+
+  // a sample's key is the procedures that were running, outermost first, and the command
+  // that had just run
+  private val stacks = mutable.HashMap[(List[Procedure], Command), MutableLong]()
+  private val invocations = mutable.HashMap[Command, MutableLong]()
+
+  @volatile private var sampleDue = false
+  // whether the flag is up because we raised it.  if it was up already, someone else wants it.
+  @volatile private var raised = false
+  // whether the jobs we've seen are primary jobs, whose flag the GUI looks after
+  @volatile private var primary = false
+  @volatile private var timer: Thread = null
+
+  def running = timer != null
+
+  def start() {
+    synchronized {
+      if (timer == null) {
+        timer = new Thread("InstructionProfiler") {
+          override def run() {
+            try {
+              while (true) {
+                Thread.sleep(intervalMillis)
+                sampleDue = true
+                if (!world.comeUpForAir) {
+                  raised = true
+                  world.comeUpForAir = true
+                }
+              }
+            }
+            catch { case _: InterruptedException => }
+          }
+        }
+        timer.setDaemon(true)
+        timer.start()
+        if (counting)
+          world.comeUpForAir = true
+      }
+    }
+  }
+
+  def stop() {
+    synchronized {
+      if (timer != null) {
+        timer.interrupt()
+        // so it can't raise the flag again after we lower it
+        timer.join()
+        timer = null
+        sampleDue = false
+        // otherwise, with the flag still up, every command would go on surfacing for nothing
+        if ((raised || counting) && !primary)
+          world.comeUpForAir = false
+        raised = false
+      }
+    }
+  }
+
+  def reset() {
+    synchronized {
+      stacks.clear()
+      invocations.clear()
+    }
+  }
+
+  // called on the job thread, from Context.comeUpForAir
+  def surfaced(context: Context, command: Command) {
+    if (timer == null)
+      return
+    primary = context.job.owner.ownsPrimaryJobs
+    if (counting) {
+      synchronized { invocations.getOrElseUpdate(command, MutableLong(0)).value += 1 }
+      // breathe() may have lowered it
+      world.comeUpForAir = true
+    }
+    if (sampleDue) {
+      sampleDue = false
+      val procedures =
+        Iterator.iterate(context.activation)(_.parent).takeWhile(_ != null)
+          .map(_.procedure).toList.reverse
+      synchronized { stacks.getOrElseUpdate((procedures, command), MutableLong(0)).value += 1 }
+      // lower the flag again if it's only up for us.  for primary jobs, the GUI's Lifeguard raises
+      // it too, and breathe() lowers it when the GUI is done with it, so we leave it to them.  a
+      // halt, from JobManager or ParallelJob, interrupts the thread before raising it.
+      if (raised && !counting) {
+        raised = false
+        if (!context.job.owner.ownsPrimaryJobs && !Thread.currentThread.isInterrupted)
+          world.comeUpForAir = false
+      }
+    }
+  }
+
+  /// results
+
+  case class Row(command: Command, procedure: Procedure, samples: Long, invocations: Long) {
+    def millis = samples * intervalMillis
+  }
+
+  def rows: Seq[Row] =
+    synchronized {
+      val samples = mutable.HashMap[Command, (Procedure, Long)]()
+      for (((procedures, command), n) <- stacks) {
+        val (procedure, sofar) = samples.getOrElse(command, (procedures.last, 0L))
+        samples(command) = (procedure, sofar + n.value)
+      }
+      val commands = samples.keySet ++ invocations.keySet
+      commands.toSeq.map{c =>
+        val (procedure, n) = samples.getOrElse(c, (null, 0L))
+        Row(c, procedure, n, invocations.get(c).map(_.value).getOrElse(0L))
+      }.sortBy(r => (-r.samples, -r.invocations))
+    }
+
+  def dumpStacks(writer: java.io.PrintWriter, source: String => Option[String]) {
+    val lines = new Lines(source)
+    val folded = synchronized {
+      for (((procedures, command), n) <- stacks.toSeq)
+      yield (procedures.map(p => frame(p.displayName)) :+
+               frame(command.displayName + " " + lines.location(procedures.last, command)))
+               .mkString(";") -> n.value
+    }
+    // the same stack can come from different procedure objects (recompiling makes new ones), so
+    // stacks are merged after they're turned into text
+    for ((stack, n) <- folded.groupBy(_._1).mapValues(_.map(_._2).sum).toSeq.sortBy(_._1))
+      writer.println(stack + " " + n)
+    writer.flush()
+  }
+
+  def dumpInstructions(writer: java.io.PrintWriter, source: String => Option[String]) {
+    val lines = new Lines(source)
+    writer.println("samples\tms\tinvocations\tinstruction\tprocedure\tlocation")
+    for (row <- rows)
+      writer.println(
+        List(row.samples, row.millis, if (counting) row.invocations else "",
+             row.command.displayName,
+             Option(row.procedure).map(_.displayName).getOrElse(""),
+             lines.location(row.procedure, row.command))
+          .mkString("\t"))
+    writer.flush()
+  }
+
+  // semicolons separate frames in the folded format, and the last space separates the count
+  private def frame(s: String) =
+    s.replace(';', ',').replace('\n', ' ')
+
+  // turns source positions into line numbers, reading each file's source at most once
+  private class Lines(source: String => Option[String]) {
+    private val cache = mutable.HashMap[String, Option[String]]()
+    def location(procedure: Procedure, command: Command): String = {
+      val position = command.getSourceStartPosition
+      val file = Option(command.token).flatMap(t => Option(t.fileName)).getOrElse("")
+      // in command center, button, and plot code, positions are within that snippet of code,
+      // not within any file
+      val topLevel = procedure != null && Iterator.iterate(procedure)(_.parent)
+        .takeWhile(_ != null).exists(_.topLevel)
+      val text =
+        if (topLevel || position < 0) None
+        else cache.getOrElseUpdate(file, source(file))
+      val where = if (file.isEmpty) "" else file + ":"
+      text match {
+        case Some(s) if position <= s.size =>
+          where + "line " + (1 + s.substring(0, position).count(_ == '\n'))
+        case _ =>
+          where + "position " + position
+      }
+    }
+  }
+
+}
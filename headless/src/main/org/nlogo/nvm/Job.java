@@ -42,6 +42,12 @@ public abstract strictfp class Job {
 
   public abstract void step() throws LogoException;
 
+  // true for the jobs ParallelJob runs on World.askExecutor(), which leave breathing to
+  // the job thread
+  boolean onAskThread() {
+    return false;
+  }
+
   public void finish() {
     state = DONE;
     if (parentContext != null) {
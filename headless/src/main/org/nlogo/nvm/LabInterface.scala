@@ -9,7 +9,10 @@ object LabInterface {
     def addListener(l: ProgressListener)
     def addTableWriter(modelFileName: String, initialDims: WorldDimensions, w: java.io.PrintWriter)
     def addSpreadsheetWriter(modelFileName: String, initialDims: WorldDimensions, w: java.io.PrintWriter)
+    def addBinaryWriter(modelFileName: String, initialDims: WorldDimensions, out: java.io.OutputStream)
     def run(testWorkspace: Workspace, fn: ()=>Workspace, threads: Int)
+    // each run starts from a copy of this world (see World.fork)
+    def startFrom(world: org.nlogo.agent.World)
     def compile(w: Workspace) // only for testing purposes
   }
   trait ProgressListener {
@@ -29,7 +32,12 @@ object LabInterface {
                       spreadsheetWriter: Option[java.io.PrintWriter],
                       dims: Option[WorldDimensions],
                       threads: Int,
-                      suppressErrors: Boolean)
+                      suppressErrors: Boolean,
+                      diffusionThreads: Int = 1,
+                      binaryWriter: Option[java.io.OutputStream] = None,
+                      processes: Int = 0,
+                      workerPort: Option[Int] = None,
+                      askThreads: Int = 1)
 }
 trait LabInterface {
   import LabInterface._
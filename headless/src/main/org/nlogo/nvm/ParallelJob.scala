@@ -0,0 +1,165 @@
+// (C) Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.nvm
+
+import java.util.concurrent.{ CountDownLatch, TimeUnit }
+import org.nlogo.agent.{ Agent, AgentSet }
+import org.nlogo.api.{ JobOwner, LogoException }
+import org.nlogo.util.MersenneTwisterFast
+
+/**
+ * Runs an ask whose block compiler.ParallelAskAnalysis found only writes the asked agents' own
+ * variables, splitting the agents among World.askThreads threads.
+ *
+ * The agents are still put in shufflerator order first, so the job's random numbers are used up
+ * just as they would be serially.  If the block draws no random numbers of its own, the results
+ * are exactly those of a serial run.  If it does, each agent gets a random number generator of
+ * its own, seeded from one number drawn from the job's generator and the agent's id, so the
+ * results are the same for any number of threads, though not the same as a serial run.
+ *
+ * If some agents get errors, the error from the agent first in shuffled order is the one
+ * that's thrown, as it would have been serially, though agents after it may have run too.
+ */
+class ParallelJob(owner: JobOwner, agentset: AgentSet, topLevelProcedure: Procedure,
+                  address: Int, parentContext: Context, random: MersenneTwisterFast,
+                  splitRandom: Boolean)
+extends Job(owner, agentset, topLevelProcedure, address, parentContext, random) {
+
+  // below this many agents it's not worth handing them to other threads
+  private val MinParallelAgents = 64
+
+  override def exclusive = true
+
+  // we are not suspendable. we run to the end and that's it
+  override def step() { throw new UnsupportedOperationException() }
+
+  @throws(classOf[LogoException])
+  def run() {
+    val agents = {
+      val buffer = new collection.mutable.ArrayBuffer[Agent]
+      val it = agentset.shufflerator(random)
+      while (it.hasNext)
+        buffer += it.next()
+      buffer.toArray
+    }
+    val seed = if (splitRandom) random.nextLong() else 0L
+    val world = agentset.world
+    val failure =
+      if (world.askExecutor == null || agents.size < MinParallelAgents)
+        new Chunk(agents, 0, agents.size, seed, false).run()
+      else {
+        // a few chunks per thread, so one slow chunk doesn't hold up the rest
+        val count = math.min(agents.size, world.askThreads() * 4)
+        val chunks =
+          for (i <- 0 until count)
+          yield new Chunk(agents, (agents.size.toLong * i / count).toInt,
+                          (agents.size.toLong * (i + 1) / count).toInt, seed, true)
+        runOnAskThreads(chunks)
+        chunks.map(_.failure).find(_ != null).orNull
+      }
+    if (failure != null)
+      throw failure
+  }
+
+  // We wait for every chunk even if interrupted, since chunks that are still running are still
+  // touching agents.  Meanwhile we keep the chunks' threads interrupted and comeUpForAir raised,
+  // as JobManager does for the job thread, so the chunks halt soon.  Then we halt too.
+  private def runOnAskThreads(chunks: Seq[Chunk]) {
+    val executor = agentset.world.askExecutor
+    val done = new CountDownLatch(chunks.size)
+    val running = collection.mutable.Set[Thread]()
+    var halting = false
+    for (chunk <- chunks)
+      executor.execute(new Runnable {
+        def run() {
+          val started = running.synchronized {
+            if (!halting)
+              running += Thread.currentThread
+            !halting
+          }
+          try if (started) chunk.run()
+          finally {
+            running.synchronized {
+              running -= Thread.currentThread
+              // don't leave the pool's thread interrupted
+              Thread.interrupted()
+            }
+            done.countDown()
+          }
+        }})
+    var interrupted = false
+    var finished = false
+    // what the flag was before we raised it, so we can put it back
+    var wasUp: Option[Boolean] = None
+    while (!finished) {
+      try finished = done.await(10, TimeUnit.MILLISECONDS)
+      catch { case _: InterruptedException => interrupted = true }
+      if (interrupted && !finished) {
+        running.synchronized {
+          halting = true
+          running.foreach(_.interrupt())
+        }
+        if (wasUp.isEmpty)
+          wasUp = Some(agentset.world.comeUpForAir)
+        agentset.world.comeUpForAir = true
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread.interrupt()
+      for (up <- wasUp)
+        agentset.world.comeUpForAir = up
+      throw new HaltException(true)
+    }
+  }
+
+  // Each chunk runs in a Context and Job of its own, since those hold state that threads
+  // mustn't share, like let bindings, reporter procedure results, and random numbers.
+  private class Chunk(agents: Array[Agent], start: Int, end: Int, seed: Long, onAskThread: Boolean) {
+    var failure: Throwable = null
+    def run(): Throwable = {
+      val job = new ChunkJob(owner, agentset, topLevelProcedure, address, parentContext,
+                             if (splitRandom) new MersenneTwisterFast(0) else random, onAskThread)
+      val context = new Context(job, null, 0, null)
+      context.agentBit = agentset.agentBit
+      if (parentContext != null)
+        context.inheritLets(parentContext)
+      val seedArray = Array((seed >>> 32).toInt, seed.toInt, 0, 0)
+      var i = start
+      try {
+        while (i < end) {
+          val agent = agents(i)
+          if (splitRandom) {
+            seedArray(2) = (agent.id >>> 32).toInt
+            seedArray(3) = agent.id.toInt
+            job.random.setSeed(seedArray)
+          }
+          context.agent = agent
+          context.activation =
+            // if the Job was created by Evaluator, then we may have no parent context
+            if (parentContext == null)
+              new Activation(topLevelProcedure, null, address)
+            else
+              parentContext.activation
+          context.ip = address
+          context.finished = false
+          context.runExclusive()
+          i += 1
+        }
+      }
+      catch {
+        case t: Throwable => failure = t
+      }
+      failure
+    }
+  }
+
+}
+
+private class ChunkJob(owner: JobOwner, agentset: AgentSet, topLevelProcedure: Procedure,
+                       address: Int, parentContext: Context, random: MersenneTwisterFast,
+                       askThread: Boolean)
+extends Job(owner, agentset, topLevelProcedure, address, parentContext, random) {
+  override def exclusive = true
+  override def step() { throw new UnsupportedOperationException() }
+  override def onAskThread = askThread
+}
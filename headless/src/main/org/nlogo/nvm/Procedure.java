@@ -28,7 +28,15 @@ public strictfp class Procedure {
   public int endPos;
   public List<String> args = new ArrayList<String>();
   public String usableBy = "OTPL";
+  // which kinds of agent could run this procedure on several threads at once, and whether
+  // it draws random numbers; see compiler.ParallelAskAnalysis
+  public String isolatedFor = "----";
+  public boolean usesRandom = false;
   public int localsCount = 0;
+  // how many slots the let variables of this procedure and its tasks need; see Let.index
+  public int letsCount = 0;
+  // whether the code makes tasks, which keep the Activation's args; see Activation.clear()
+  public boolean makesTasks = false;
   public boolean topLevel = false;
   private SourceOwner owner;
   public final Procedure parent;
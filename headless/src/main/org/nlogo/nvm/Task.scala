@@ -14,11 +14,13 @@ import org.nlogo.api
 // actuals, they are ignored. - JC, ST 11/4/10, 2/6/11
 //
 // tasks may close over two kinds of variables, let variables and procedure parameters (aka
-// "locals"), so we have storage for both of those in the task.
+// "locals"), so we have storage for both of those in the task.  lets is indexed by Let.index, and
+// holds only the let variables the task uses; each run gets a copy of it, to bind the formals and
+// the task's own lets in.
 
 sealed trait Task {
   val formals: Array[api.Let]  // don't mutate please! Array for efficiency
-  val lets: List[LetBinding]
+  val lets: Array[LetBinding]  // don't mutate either
   val locals: Array[AnyRef]
   def bindArgs(c: Context, args: Array[AnyRef]) {
     var i = 0
@@ -28,6 +30,8 @@ sealed trait Task {
       i += 1
     }
   }
+  def freshLets =
+    if (lets.isEmpty) lets else lets.clone
   def missingInputs(n: Int) = {
     val plural =
       if(formals.size == 1) ""
@@ -39,21 +43,27 @@ sealed trait Task {
 // Reporter tasks are pretty simple.  The body is simply a Reporter.  To run it, we swap closed-over
 // variables into the context, bind actuals to formals, call report(), then unswap.
 
-case class ReporterTask(body: Reporter, formals: Array[api.Let], lets: List[LetBinding], locals: Array[AnyRef])
+case class ReporterTask(body: Reporter, formals: Array[api.Let], lets: Array[LetBinding], locals: Array[AnyRef])
 extends Task with org.nlogo.api.ReporterTask {
   override def toString = "(reporter task)"
   def report(context: api.Context, args: Array[AnyRef]): AnyRef =
     report(context.asInstanceOf[ExtensionContext].nvmContext, args)
   def report(context: Context, args: Array[AnyRef]): AnyRef = {
-    val oldLets = context.letBindings
+    val oldLetsActivation = context.letsActivation
+    val oldLets = context.lets
     val oldLocals = context.activation.args
     context.activation.args = locals
-    context.letBindings = lets
-    bindArgs(context, args)
-    val result = body.report(context)
-    context.letBindings = oldLets
-    context.activation.args = oldLocals
-    result
+    context.letsActivation = context.activation
+    context.lets = freshLets
+    try {
+      bindArgs(context, args)
+      body.report(context)
+    }
+    finally {
+      context.letsActivation = oldLetsActivation
+      context.lets = oldLets
+      context.activation.args = oldLocals
+    }
   }
 }
 
@@ -62,21 +72,20 @@ extends Task with org.nlogo.api.ReporterTask {
 // the way out (including a dead-agent check).  We may throw NonLocalExit if _report or _stop is
 // called.
 
-case class CommandTask(procedure: Procedure, formals: Array[api.Let], lets: List[LetBinding], locals: Array[AnyRef])
+case class CommandTask(procedure: Procedure, formals: Array[api.Let], lets: Array[LetBinding], locals: Array[AnyRef])
 extends Task with org.nlogo.api.CommandTask {
   override def toString = procedure.displayName
   def perform(context: api.Context, args: Array[AnyRef]) {
     perform(context.asInstanceOf[ExtensionContext].nvmContext, args)
   }
   def perform(context: Context, args: Array[AnyRef]) {
-    val oldLets = context.letBindings
-    context.letBindings = lets
-    bindArgs(context, args)
     val oldActivation = context.activation
     // the return address doesn't matter here since we're not actually using
     // _call and _return, we're just executing the body - ST 2/4/11
     context.activation = new Activation(procedure, context.activation, 0)
     context.activation.args = locals
+    context.activation.lets = freshLets
+    bindArgs(context, args)
     context.ip = 0
     try context.runExclusive()
     catch {
@@ -90,7 +99,6 @@ extends Task with org.nlogo.api.CommandTask {
     finally {
       context.finished = context.agent.id == -1
       context.activation = oldActivation
-      context.letBindings = oldLets
     }
     // note that it's up to the caller to restore context.ip and catch NonLocalExit.  (it would be
     // nice if that handling could be encapsulated here instead, but I couldn't figure out how to do
@@ -18,6 +18,7 @@ trait Workspace extends api.Workspace with JobManagerOwner {
   def lastRunTimes: JWeakHashMap[Job, JWeakHashMap[Agent, JWeakHashMap[Command, MutableLong]]]  // for _every
   def completedActivations: JWeakHashMap[Activation, java.lang.Boolean]  // for _thunkdidfinish
   def profilingTracer: Tracer
+  def instructionProfiler: InstructionProfiler  // null unless one's running
   def updatePlots(c: Context)
   def setupPlots(c: Context)
   def resetTicks(c: Context)
@@ -0,0 +1,29 @@
+// (C) Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.prim
+
+import org.nlogo.agent.Turtle
+import org.nlogo.api.Syntax
+import org.nlogo.nvm.{ Reporter, Context }
+
+// any? my-out-links, without making the linkset (see Optimizer)
+class _anymyoutlinks(breedName: String) extends Reporter {
+
+  override def syntax =
+    Syntax.reporterSyntax(Syntax.BooleanType, "-T--")
+
+  override def toString =
+    super.toString + ":" + breedName
+
+  override def report(context: Context) =
+    Boolean.box(report_1(context))
+
+  def report_1(context: Context): Boolean = {
+    val breed =
+      if (breedName == null) world.links
+      else world.getLinkBreed(breedName)
+    mustNotBeUndirected(breed, context)
+    world.linkManager.countLinksFrom(context.agent.asInstanceOf[Turtle], breed) > 0
+  }
+
+}
@@ -18,7 +18,7 @@ class _anyotherwith extends Reporter {
     Boolean.box(report_1(context, argEvalAgentSet(context, 0), args(1)))
 
   def report_1(context: Context, sourceSet: AgentSet, reporterBlock: Reporter): Boolean = {
-    val freshContext = new Context(context, sourceSet)
+    val freshContext = context.childContext(sourceSet)
     reporterBlock.checkAgentSetClass(sourceSet, context)
     val iter = sourceSet.iterator
     while(iter.hasNext) {
@@ -26,8 +26,10 @@ class _anyotherwith extends Reporter {
       if (tester ne context.agent)
         freshContext.evaluateReporter(tester, reporterBlock) match {
           case b: java.lang.Boolean =>
-            if (b.booleanValue)
+            if (b.booleanValue) {
+              context.releaseChild(freshContext)
               return true
+            }
           case x =>
             throw new EngineException(
               context, this, I18N.errors.getN(
@@ -35,6 +37,7 @@ class _anyotherwith extends Reporter {
                 displayName, Dump.logoObject(tester), Dump.logoObject(x)))
         }
     }
+    context.releaseChild(freshContext)
     false
   }
 
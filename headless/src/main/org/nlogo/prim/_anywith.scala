@@ -18,15 +18,17 @@ class _anywith extends Reporter {
       report_1(context, argEvalAgentSet(context, 0), args(1)))
 
   def report_1(context: Context, sourceSet: AgentSet, arg1: Reporter): Boolean = {
-    val freshContext = new Context(context, sourceSet)
+    val freshContext = context.childContext(sourceSet)
     arg1.checkAgentSetClass(sourceSet, context)
     val iter = sourceSet.iterator
     while(iter.hasNext) {
       val tester = iter.next()
       freshContext.evaluateReporter(tester, arg1) match {
         case b: java.lang.Boolean =>
-          if (b)
+          if (b) {
+            context.releaseChild(freshContext)
             return true
+          }
         case x =>
           throw new EngineException(
             context, this, I18N.errors.getN(
@@ -34,6 +36,7 @@ class _anywith extends Reporter {
               Dump.logoObject(tester), Dump.logoObject(x)))
       }
     }
+    context.releaseChild(freshContext)
     false
   }
 
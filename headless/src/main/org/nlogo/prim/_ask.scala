@@ -18,6 +18,18 @@ class _ask extends Command with CustomAssembled {
   override def toString =
     super.toString + ":+" + offset
 
+  // which kinds of agent the block could run for on several threads at once, and whether it
+  // draws random numbers; filled in by compiler.ParallelAskAnalysis.  MethodRipper won't let
+  // perform_X() call accessors, so these are private[this]
+  private[this] var _isolatedFor = "----"
+  private[this] var _usesRandom = false
+  def isolatedFor = _isolatedFor
+  def usesRandom = _usesRandom
+  def isolate(isolatedFor: String, usesRandom: Boolean) {
+    _isolatedFor = isolatedFor
+    _usesRandom = usesRandom
+  }
+
   override def perform(context: Context) {
     perform_1(context, args(0).report(context))
   }
@@ -48,7 +60,7 @@ class _ask extends Command with CustomAssembled {
         throw new ArgumentTypeException(
           context, this, 0, Syntax.AgentsetType | Syntax.AgentType, target)
     }
-    context.runExclusiveJob(agents, next)
+    context.runExclusiveJob(agents, next, _isolatedFor, _usesRandom)
     context.ip = offset
   }
 
@@ -63,7 +75,7 @@ class _ask extends Command with CustomAssembled {
           context, this, I18N.errors.get(
             "org.nlogo.prim.$common.onlyObserverCanAskAllPatches"))
     }
-    context.runExclusiveJob(agents, next)
+    context.runExclusiveJob(agents, next, _isolatedFor, _usesRandom)
     context.ip = offset
   }
 
@@ -74,7 +86,7 @@ class _ask extends Command with CustomAssembled {
           "org.nlogo.$common.thatAgentIsDead", agent.classDisplayName))
     val agents = new ArrayAgentSet(agent.kind, 1, false, world)
     agents.add(agent)
-    context.runExclusiveJob(agents, next)
+    context.runExclusiveJob(agents, next, _isolatedFor, _usesRandom)
     context.ip = offset
   }
 
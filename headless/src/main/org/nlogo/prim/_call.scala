@@ -3,7 +3,7 @@
 package org.nlogo.prim
 
 import org.nlogo.api.Syntax
-import org.nlogo.nvm.{ Command, CustomGenerated, Context, Activation, Procedure }
+import org.nlogo.nvm.{ Command, CustomGenerated, Context, Procedure }
 
 // Note that _call is "CustomGenerated".  That means that the bytecode generator generates custom
 // bytecode for _call, instead of using the perform() method below.  The body of the perform()
@@ -19,7 +19,7 @@ extends Command with CustomGenerated {
     super.toString + ":" + procedure.name
 
   override def perform(context: Context) {
-    val newActivation = new Activation(procedure, context.activation, next)
+    val newActivation = context.newActivation(procedure, next)
     var i = 0
     val limit = procedure.args.size - procedure.localsCount
     while(i < limit) {
@@ -3,8 +3,7 @@
 package org.nlogo.prim
 
 import org.nlogo.api.Syntax
-import org.nlogo.nvm.{ Reporter, CustomGenerated, Context, Procedure,
-                       Activation, EngineException }
+import org.nlogo.nvm.{ Reporter, CustomGenerated, Context, Procedure, EngineException }
 
 // Note that _callreport is "CustomGenerated".  That means that the bytecode generator generates
 // custom bytecode for _callreport, instead of using the report() method below.  The body of the
@@ -19,7 +18,7 @@ class _callreport(val procedure: Procedure) extends Reporter with CustomGenerate
     super.toString + ":" + procedure.name
 
   override def report(context: Context) = {
-    val newActivation = new Activation(procedure, context.activation, context.ip)
+    val newActivation = context.newActivation(procedure, context.ip)
     val limit = procedure.args.size - procedure.localsCount
     var i = 0
     while(i < limit) {
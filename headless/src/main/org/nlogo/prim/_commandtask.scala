@@ -5,7 +5,10 @@ package org.nlogo.prim
 import org.nlogo.api.Syntax
 import org.nlogo.nvm.{ CommandTask, Context, Procedure, Reporter }
 
-class _commandtask(proc: Procedure) extends Reporter {
+class _commandtask(val proc: Procedure) extends Reporter {
+
+  // the Let.index of each let variable from outside the task that the body uses
+  var captured = Array[Int]()
 
   override def syntax =
     Syntax.reporterSyntax(Syntax.CommandTaskType)
@@ -16,7 +19,7 @@ class _commandtask(proc: Procedure) extends Reporter {
   override def report(c: Context): AnyRef =
     CommandTask(procedure = proc,
                 formals = proc.taskFormals.reverse.dropWhile(_ == null).reverse.toArray,
-                lets = c.allLets,
+                lets = c.captureLets(captured),
                 locals = c.activation.args)
 
 }
@@ -18,7 +18,7 @@ class _countotherwith extends Reporter {
       report_1(context, argEvalAgentSet(context, 0), args(1)))
 
   def report_1(context: Context, sourceSet: AgentSet, reporterBlock: Reporter): Double = {
-    val freshContext = new Context(context, sourceSet)
+    val freshContext = context.childContext(sourceSet)
     var result = 0;
     reporterBlock.checkAgentSetClass(sourceSet, context)
     val iter = sourceSet.iterator
@@ -36,6 +36,7 @@ class _countotherwith extends Reporter {
                 displayName, Dump.logoObject(tester), Dump.logoObject(x)))
         }
     }
+    context.releaseChild(freshContext)
     result
   }
 
@@ -19,7 +19,7 @@ class _countwith extends Reporter {
 
   def report_1(context: Context, sourceSet: AgentSet, block: Reporter): Double = {
     block.checkAgentSetClass(sourceSet, context)
-    val freshContext = new Context(context, sourceSet)
+    val freshContext = context.childContext(sourceSet)
     var result = 0;
     val iter = sourceSet.iterator
     while(iter.hasNext) {
@@ -35,6 +35,7 @@ class _countwith extends Reporter {
               displayName, Dump.logoObject(tester), Dump.logoObject(x)))
       }
     }
+    context.releaseChild(freshContext)
     result
   }
 
@@ -6,7 +6,7 @@ import org.nlogo.agent.{ AgentSet, Turtle }
 import org.nlogo.api.Syntax
 import org.nlogo.nvm.{ Reporter, Context }
 
-class _myinlinks(breedName: String) extends Reporter {
+class _myinlinks(val breedName: String) extends Reporter {
 
   def this() = this(null)
 
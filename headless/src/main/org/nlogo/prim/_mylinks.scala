@@ -6,7 +6,7 @@ import org.nlogo.agent.{ AgentSet, Turtle }
 import org.nlogo.api.Syntax
 import org.nlogo.nvm.{ Reporter, Context }
 
-class _mylinks(breedName: String) extends Reporter {
+class _mylinks(val breedName: String) extends Reporter {
 
   def this() = this(null)
 
@@ -27,15 +27,18 @@ class _of extends Reporter {
             I18N.errors.getN("org.nlogo.$common.thatAgentIsDead",
                              agent.classDisplayName))
         args(0).checkAgentClass(agent, context)
-        new Context(context, agent)
-          .evaluateReporter(agent, args(0))
+        val freshContext = context.childContext(agent)
+        val result = freshContext.evaluateReporter(agent, args(0))
+        context.releaseChild(freshContext)
+        result
       case sourceSet: AgentSet =>
         val builder = new LogoListBuilder
-        val freshContext = new Context(context, sourceSet)
+        val freshContext = context.childContext(sourceSet)
         args(0).checkAgentSetClass(sourceSet, context)
         var iter = sourceSet.shufflerator(context.job.random)
         while(iter.hasNext)
           builder.add(freshContext.evaluateReporter(iter.next(), args(0)))
+        context.releaseChild(freshContext)
         builder.toLogoList
       case x =>
         throw new org.nlogo.nvm.ArgumentTypeException(
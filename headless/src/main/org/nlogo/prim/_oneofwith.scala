@@ -17,15 +17,17 @@ class _oneofwith extends Reporter {
     report_1(context, argEvalAgentSet(context, 0), args(1))
 
   def report_1(context: Context, sourceSet: AgentSet, arg1: Reporter): AnyRef = {
-    val freshContext = new Context(context, sourceSet)
+    val freshContext = context.childContext(sourceSet)
     arg1.checkAgentSetClass(sourceSet, context)
     val iter = sourceSet.shufflerator(context.job.random)
     while(iter.hasNext) {
       val tester = iter.next()
       freshContext.evaluateReporter(tester, arg1) match {
         case b: java.lang.Boolean =>
-          if (b)
+          if (b) {
+            context.releaseChild(freshContext)
             return tester
+          }
         case x =>
           throw new EngineException(
             context, this, I18N.errors.getN(
@@ -33,6 +35,7 @@ class _oneofwith extends Reporter {
               Dump.logoObject(tester), Dump.logoObject(x)))
       }
     }
+    context.releaseChild(freshContext)
     Nobody
   }
 
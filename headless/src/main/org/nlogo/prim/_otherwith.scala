@@ -18,7 +18,7 @@ class _otherwith extends Reporter {
     report_1(context, argEvalAgentSet(context, 0), args(1))
 
   def report_1(context: Context, sourceSet: AgentSet, reporterBlock: Reporter): AgentSet = {
-    val freshContext = new Context(context, sourceSet)
+    val freshContext = context.childContext(sourceSet)
     val result = collection.mutable.ArrayBuffer[Agent]()
     reporterBlock.checkAgentSetClass(sourceSet, context)
     val iter = sourceSet.iterator
@@ -36,6 +36,7 @@ class _otherwith extends Reporter {
                 displayName, Dump.logoObject(tester), Dump.logoObject(x)))
         }
     }
+    context.releaseChild(freshContext)
     new ArrayAgentSet(sourceSet.kind, result.toArray, world)
   }
 
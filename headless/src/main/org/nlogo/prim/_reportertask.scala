@@ -8,6 +8,8 @@ import org.nlogo.nvm.{ ReporterTask, Context, Reporter }
 class _reportertask extends Reporter {
 
   val formals = collection.mutable.ArrayBuffer[Let]()
+  // the Let.index of each let variable from outside the task that the body uses
+  var captured = Array[Int]()
 
   override def syntax = Syntax.reporterSyntax(
     Array(Syntax.WildcardType),
@@ -16,7 +18,7 @@ class _reportertask extends Reporter {
   override def report(c: Context): AnyRef =
     ReporterTask(body = args(0),
                  formals = formals.reverse.dropWhile(_==null).reverse.toArray,
-                 lets = c.allLets,
+                 lets = c.captureLets(captured),
                  locals = c.activation.args)
 
   def getFormal(n: Int): Let = {
@@ -5,7 +5,7 @@ package org.nlogo.prim
 import org.nlogo.api.{ Syntax, AgentException }
 import org.nlogo.nvm.{ Command, Context, EngineException }
 
-class _setbreedvariable(name: String) extends Command {
+class _setbreedvariable(private[this] val _name: String) extends Command {
 
   def this(original: _breedvariable) = this(original.name)
 
@@ -16,9 +16,11 @@ class _setbreedvariable(name: String) extends Command {
   override def toString =
     super.toString + ":" + name
 
+  def name = _name
+
   override def perform(context: Context) {
     val value = args(0).report(context)
-    try context.agent.setBreedVariable(name, value)
+    try context.agent.setBreedVariable(_name, value)
     catch { case ex: AgentException =>
       throw new EngineException(context, this, ex.getMessage) }
     context.ip = next
@@ -32,4 +32,12 @@ class _setturtlevariable(_vn: Int) extends Command {
     context.ip = next
   }
 
+  // lets the generator set numeric turtle variables without boxing
+  def perform_2(context: Context, value: Double) {
+    try context.agent.setTurtleVariable(_vn, value)
+    catch { case ex: AgentException =>
+      throw new EngineException(context, this, ex.getMessage) }
+    context.ip = next
+  }
+
 }
@@ -22,7 +22,7 @@ class _with extends Reporter {
     report_1(context, argEvalAgentSet(context, 0), args(1))
 
   def report_1(context: Context, sourceSet: AgentSet, reporterBlock: Reporter): AgentSet = {
-    val freshContext = new Context(context, sourceSet)
+    val freshContext = context.childContext(sourceSet)
     val result = collection.mutable.ArrayBuffer[Agent]()
     reporterBlock.checkAgentSetClass(sourceSet, context)
     val iter = sourceSet.iterator
@@ -39,6 +39,7 @@ class _with extends Reporter {
               displayName, Dump.logoObject(tester), Dump.logoObject(x)))
       }
     }
+    context.releaseChild(freshContext)
     new ArrayAgentSet(sourceSet.kind, result.toArray, world)
   }
 
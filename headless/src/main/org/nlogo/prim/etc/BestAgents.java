@@ -0,0 +1,119 @@
+// (C) Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.prim.etc;
+
+import org.nlogo.agent.Agent;
+
+// Picks out the n agents with the smallest values (or the largest, for
+// max-n-of) from those offered, for _minnof and _maxnof.  Those used to
+// put every agent's value in a TreeMap, which is O(count log count) and
+// makes a list node per agent, even when asking for the 5 nearest of
+// 100,000.  This keeps just the best n seen so far, in a heap with the
+// worst of them on top, which is O(count log n), and allocates nothing
+// per agent.
+//
+// Ties go to whichever agent was offered first.  Since agents are offered
+// in shufflerator order, that's the same as the TreeMap's lists gave, so
+// results don't change.
+
+strictfp final class BestAgents {
+
+  private final int n;
+  private final boolean largest;
+  private final double[] values;
+  private final int[] arrivals;
+  private final Agent[] agents;
+  private int size = 0;
+  private int offered = 0;
+
+  BestAgents(int n, boolean largest) {
+    this.n = n;
+    this.largest = largest;
+    values = new double[n];
+    arrivals = new int[n];
+    agents = new Agent[n];
+  }
+
+  void offer(Agent agent, double value) {
+    int arrival = offered++;
+    if (size < n) {
+      int i = size++;
+      put(i, agent, value, arrival);
+      siftUp(i);
+    } else if (n > 0 && compare(value, arrival, values[0], arrivals[0]) < 0) {
+      put(0, agent, value, arrival);
+      siftDown(0, size);
+    }
+  }
+
+  // best first.  this empties the heap.
+  Agent[] result() {
+    for (int end = size - 1; end > 0; end--) {
+      swap(0, end);
+      siftDown(0, end);
+    }
+    Agent[] result = new Agent[size];
+    System.arraycopy(agents, 0, result, 0, size);
+    size = 0;
+    return result;
+  }
+
+  // negative if the first comes out ahead of the second.  TreeMap used
+  // Double.compareTo for min-n-of, so this uses the same ordering.
+  private int compare(double value1, int arrival1, double value2, int arrival2) {
+    int c = largest
+        ? Double.compare(value2, value1)
+        : Double.compare(value1, value2);
+    if (c != 0) {
+      return c;
+    }
+    return arrival1 < arrival2 ? -1 : (arrival1 > arrival2 ? 1 : 0);
+  }
+
+  private int compare(int i, int j) {
+    return compare(values[i], arrivals[i], values[j], arrivals[j]);
+  }
+
+  private void put(int i, Agent agent, double value, int arrival) {
+    agents[i] = agent;
+    values[i] = value;
+    arrivals[i] = arrival;
+  }
+
+  private void swap(int i, int j) {
+    Agent agent = agents[i];
+    double value = values[i];
+    int arrival = arrivals[i];
+    put(i, agents[j], values[j], arrivals[j]);
+    put(j, agent, value, arrival);
+  }
+
+  private void siftUp(int i) {
+    while (i > 0) {
+      int parent = (i - 1) / 2;
+      if (compare(i, parent) <= 0) {
+        return;
+      }
+      swap(i, parent);
+      i = parent;
+    }
+  }
+
+  private void siftDown(int i, int end) {
+    while (true) {
+      int child = 2 * i + 1;
+      if (child >= end) {
+        return;
+      }
+      if (child + 1 < end && compare(child + 1, child) > 0) {
+        child++;
+      }
+      if (compare(child, i) <= 0) {
+        return;
+      }
+      swap(i, child);
+      i = child;
+    }
+  }
+
+}
@@ -33,7 +33,7 @@ public final strictfp class _all
 
   public boolean report_1(final Context context, AgentSet sourceSet, Reporter reporterBlock)
       throws LogoException {
-    Context freshContext = new Context(context, sourceSet);
+    Context freshContext = context.childContext(sourceSet);
     reporterBlock.checkAgentSetClass(sourceSet, context);
     for (AgentIterator iter = sourceSet.iterator(); iter.hasNext();) {
       Agent tester = iter.next();
@@ -44,9 +44,11 @@ public final strictfp class _all
                 displayName(), Dump.logoObject(tester), Dump.logoObject(value)));
       }
       if (!((Boolean) value).booleanValue()) {
+        context.releaseChild(freshContext);
         return false;
       }
     }
+    context.releaseChild(freshContext);
     return true;
   }
 }
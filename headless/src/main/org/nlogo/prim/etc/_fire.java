@@ -4,9 +4,11 @@ package org.nlogo.prim.etc;
 
 import org.nlogo.agent.Patch;
 import org.nlogo.agent.World;
+import org.nlogo.api.AgentException;
 import org.nlogo.api.Syntax;
 import org.nlogo.nvm.Command;
 import org.nlogo.nvm.Context;
+import org.nlogo.nvm.EngineException;
 
 // Note: this is for the old patch-based Fire Benchmark model, not the
 // new turtle-based Fire model. - ST 11/5/03
@@ -52,8 +54,24 @@ public final strictfp class _fire
     return Syntax.commandSyntax("O---", true);
   }
 
+  // the variables are read and set through Patch, not Agent.variables, since
+  // numeric ones may be kept in patch columns
   @Override
   public void perform(final Context context) {
+    try {
+      if (!burn()) {
+        context.finished = true;
+        return;
+      }
+    } catch (AgentException ex) {
+      throw new EngineException(context, this, ex.getMessage());
+    }
+    context.ip = next;
+  }
+
+  // returns false if nothing is burning
+  private boolean burn()
+      throws AgentException {
     int BURNED_TREES_VAR = world.program().interfaceGlobals().size() + 1;
     int patchCount = world.patches().count();
     boolean any = false;
@@ -66,8 +84,7 @@ public final strictfp class _fire
       }
     }
     if (!any) {
-      context.finished = true;
-      return;
+      return false;
     }
     for (int i = 0; i < patchCount; i++) {
       Patch patch = world.getPatch(i);
@@ -75,20 +92,20 @@ public final strictfp class _fire
       if (patch.pcolorDouble() == GREEN) {
         // set counts (nsum4 fire)
         double counts =
-            ((Double) patch.getPatchNorth().variables[FIRE_VAR]).doubleValue() +
-                ((Double) patch.getPatchSouth().variables[FIRE_VAR]).doubleValue() +
-                ((Double) patch.getPatchEast().variables[FIRE_VAR]).doubleValue() +
-                ((Double) patch.getPatchWest().variables[FIRE_VAR]).doubleValue();
-        patch.variables[COUNTS_VAR] = Double.valueOf(counts);
+            patch.getPatchNorth().getPatchVariableDouble(FIRE_VAR) +
+                patch.getPatchSouth().getPatchVariableDouble(FIRE_VAR) +
+                patch.getPatchEast().getPatchVariableDouble(FIRE_VAR) +
+                patch.getPatchWest().getPatchVariableDouble(FIRE_VAR);
+        patch.setPatchVariable(COUNTS_VAR, counts);
       }
     }
     for (int i = 0; i < patchCount; i++) {
       Patch patch = world.getPatch(i);
       double pcolor = patch.pcolorDouble();
       if (pcolor == GREEN) {
-        if (((Double) patch.variables[COUNTS_VAR]).doubleValue() > 0) {
+        if (patch.getPatchVariableDouble(COUNTS_VAR) > 0) {
           // set fire 1
-          patch.variables[FIRE_VAR] = World.ONE;
+          patch.setPatchVariable(FIRE_VAR, World.ONE);
           // set pcolor red
           patch.pcolorDoubleUnchecked(BOXED_RED);
           // set burned-trees burned-trees + 1
@@ -105,6 +122,6 @@ public final strictfp class _fire
         }
       }
     }
-    context.ip = next;
+    return true;
   }
 }
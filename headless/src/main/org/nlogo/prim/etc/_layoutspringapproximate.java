@@ -0,0 +1,39 @@
+// (C) Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.prim.etc;
+
+import org.nlogo.agent.AgentSet;
+import org.nlogo.api.AgentKindJ;
+import org.nlogo.api.LogoException;
+import org.nlogo.api.Syntax;
+import org.nlogo.nvm.Command;
+import org.nlogo.nvm.Context;
+
+// like layout-spring, but with the repulsion approximated, for big networks.  the last input
+// is the Barnes-Hut theta; 0 gives the same result as layout-spring
+public final strictfp class _layoutspringapproximate
+    extends Command {
+  @Override
+  public Syntax syntax() {
+    return Syntax.commandSyntax
+        (new int[]{Syntax.TurtlesetType(), Syntax.LinksetType(),
+            Syntax.NumberType(), Syntax.NumberType(), Syntax.NumberType(),
+            Syntax.NumberType()},
+            true);
+  }
+
+  @Override
+  public void perform(final Context context)
+      throws LogoException {
+    AgentSet nodeset = argEvalAgentSet(context, 0, AgentKindJ.Turtle());
+    AgentSet linkset = argEvalAgentSet(context, 1, AgentKindJ.Link());
+    double springConstant = argEvalDoubleValue(context, 2);
+    double springLength = argEvalDoubleValue(context, 3);
+    double repulsionConstant = argEvalDoubleValue(context, 4);
+    double theta = argEvalDoubleValue(context, 5);
+    org.nlogo.agent.Layouts.spring
+        (nodeset, linkset, springConstant, springLength, repulsionConstant, theta,
+            context.job.random);
+    context.ip = next;
+  }
+}
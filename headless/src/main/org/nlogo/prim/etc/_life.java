@@ -5,8 +5,10 @@ package org.nlogo.prim.etc;
 import org.nlogo.agent.AgentIterator;
 import org.nlogo.agent.AgentSet;
 import org.nlogo.agent.Patch;
+import org.nlogo.api.AgentException;
 import org.nlogo.api.Syntax;
 import org.nlogo.nvm.Command;
+import org.nlogo.nvm.EngineException;
 
 /*
 to go
@@ -31,8 +33,21 @@ public final strictfp class _life
     return Syntax.commandSyntax("O---", true);
   }
 
+  // the variables are read and set through Patch, not Agent.variables, since
+  // numeric ones may be kept in patch columns
   @Override
   public void perform(final org.nlogo.nvm.Context context) {
+    try {
+      step();
+    } catch (AgentException ex) {
+      throw new EngineException(context, this, ex.getMessage());
+    }
+    world.tickCounter.tick(1);
+    context.ip = next;
+  }
+
+  private void step()
+      throws AgentException {
     int patchCount = world.patches().count();
     double fgcolor =
         ((Double) world.observer().variables
@@ -46,26 +61,24 @@ public final strictfp class _life
       Patch patch = world.getPatch(i);
       int liveNeighbors = 0;
       for (AgentIterator iter = patch.getNeighbors().iterator(); iter.hasNext();) {
-        if (((Boolean) (((Patch) iter.next()).variables[LIVING_VAR]))
+        if (((Boolean) ((Patch) iter.next()).getPatchVariable(LIVING_VAR))
             .booleanValue()) {
           liveNeighbors++;
         }
       }
-      patch.variables[LIVE_NEIGHBORS_VAR] = Double.valueOf(liveNeighbors);
+      patch.setPatchVariable(LIVE_NEIGHBORS_VAR, liveNeighbors);
     }
     for (int i = 0; i < patchCount; i++) {
       Patch patch = world.getPatch(i);
       int liveNeighbors =
-          ((Double) patch.variables[LIVE_NEIGHBORS_VAR]).intValue();
+          (int) patch.getPatchVariableDouble(LIVE_NEIGHBORS_VAR);
       if (liveNeighbors == 3) {
-        patch.variables[LIVING_VAR] = Boolean.TRUE;
+        patch.setPatchVariable(LIVING_VAR, Boolean.TRUE);
         patch.pcolor(fgcolor);
       } else if (liveNeighbors != 2) {
-        patch.variables[LIVING_VAR] = Boolean.FALSE;
+        patch.setPatchVariable(LIVING_VAR, Boolean.FALSE);
         patch.pcolor(bgcolor);
       }
     }
-    world.tickCounter.tick(1);
-    context.ip = next;
   }
 }
@@ -17,7 +17,7 @@ class _sorton extends Reporter {
   override def report(context: Context) = {
     val reporterBlock = args(0)
     val agents = argEvalAgentSet(context, 1)
-    val freshContext = new Context(context, agents)
+    val freshContext = context.childContext(agents)
     reporterBlock.checkAgentSetClass(agents, context)
     val pairs = new Array[(Agent, AnyRef)](agents.count)
     val it = agents.shufflerator(context.job.random)
@@ -27,6 +27,7 @@ class _sorton extends Reporter {
       pairs(i) = (a, freshContext.evaluateReporter(a, reporterBlock))
       i += 1
     }
+    context.releaseChild(freshContext)
     implicit val o = ordering(context)
     // It's vital here that we use a stable sort, because we need it to preserve the order of tied
     // pairs, since that order is known to be random.  That's how we get randomly broken ties.
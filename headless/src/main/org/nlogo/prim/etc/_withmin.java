@@ -32,7 +32,7 @@ public final strictfp class _withmin
   public Object report(final Context context) throws LogoException {
     AgentSet sourceSet = argEvalAgentSet(context, 0);
     double winningValue = Double.MAX_VALUE;
-    Context freshContext = new Context(context, sourceSet);
+    Context freshContext = context.childContext(sourceSet);
     List<Agent> result = new ArrayList<Agent>();
     args[1].checkAgentSetClass(sourceSet, context);
     for (AgentIterator iter = sourceSet.iterator(); iter.hasNext();) {
@@ -50,6 +50,7 @@ public final strictfp class _withmin
         result.add(tester);
       }
     }
+    context.releaseChild(freshContext);
     return new org.nlogo.agent.ArrayAgentSet
         (sourceSet.kind(),
             result.toArray(new Agent[result.size()]),
@@ -45,6 +45,16 @@ public abstract strictfp class AbstractWorkspace
     this.tracer = tracer;
   }
 
+  private org.nlogo.nvm.InstructionProfiler instructionProfiler = null;
+
+  public org.nlogo.nvm.InstructionProfiler instructionProfiler() {
+    return instructionProfiler;
+  }
+
+  public void setInstructionProfiler(org.nlogo.nvm.InstructionProfiler instructionProfiler) {
+    this.instructionProfiler = instructionProfiler;
+  }
+
   public final org.nlogo.nvm.JobManagerInterface jobManager;
   private final HubNetManagerFactory hubNetManagerFactory;
   protected HubNetInterface hubNetManager;
@@ -110,6 +120,9 @@ public abstract strictfp class AbstractWorkspace
   public void dispose()
       throws InterruptedException {
     jobManager.die();
+    // shuts down the diffusion and ask threads, if any
+    world().diffusionThreads(1);
+    world().askThreads(1);
     getExtensionManager().reset();
     if (hubNetManager != null) {
       hubNetManager.disconnect();
@@ -503,7 +516,7 @@ public abstract strictfp class AbstractWorkspace
             stringReader(), new java.io.BufferedReader(reader));
   }
 
-  private final ImporterJ.StringReader stringReader() {
+  final ImporterJ.StringReader stringReader() {
     return new ImporterJ.StringReader() {
       public Object readFromString(String s)
           throws Importer.StringReaderException {
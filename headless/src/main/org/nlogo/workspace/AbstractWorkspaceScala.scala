@@ -2,7 +2,8 @@
 
 package org.nlogo.workspace
 
-import org.nlogo.agent.{ World, Agent, Observer, AbstractExporter, AgentSet, ArrayAgentSet }
+import org.nlogo.agent.{ World, Agent, Observer, AbstractExporter, AgentSet, ArrayAgentSet,
+                         SnapshotInput, SnapshotOutput, WorldSnapshot }
 import org.nlogo.api.{ AgentKind, PlotInterface, Dump, CommandLogoThunk, ReporterLogoThunk,
                        CompilerException, JobOwner, SimpleJobOwner, Token }
 import org.nlogo.nvm.{ CompilerInterface, FileManager, Instruction, EngineException, Context,
@@ -10,7 +11,7 @@ import org.nlogo.nvm.{ CompilerInterface, FileManager, Instruction, EngineExcept
 import org.nlogo.plot.{ PlotExporter, PlotManager }
 import org.nlogo.workspace.AbstractWorkspace.HubNetManagerFactory
 
-import java.io.{ IOException, PrintWriter }
+import java.io.{ FileOutputStream, IOException, PrintWriter, RandomAccessFile }
 import java.util.WeakHashMap
 
 import AbstractWorkspaceTraits._
@@ -150,7 +151,7 @@ object AbstractWorkspaceTraits {
 
   }
 
-  trait Exporting extends Plotting { this: AbstractWorkspace =>
+  trait Exporting extends Plotting { this: AbstractWorkspaceScala =>
 
     def exportDrawingToCSV(writer:PrintWriter)
     def exportOutputAreaToCSV(writer:PrintWriter)
@@ -175,6 +176,34 @@ object AbstractWorkspaceTraits {
       extensionManager.exportWorld(writer)
     }
 
+    // like exportWorld and importWorld, but binary, for checkpointing long runs.  doesn't
+    // include the output area or extension data.
+
+    @throws(classOf[IOException])
+    def saveSnapshot(filename: String) {
+      val channel = new FileOutputStream(filename).getChannel
+      try {
+        val out = new SnapshotOutput(channel)
+        WorldSnapshot.save(world, out)
+        PlotSnapshot.save(plotManager, out)
+        out.flush()
+      }
+      finally channel.close()
+    }
+
+    @throws(classOf[IOException])
+    def restoreSnapshot(filename: String) {
+      // clear first in case extensions are hanging on to old data, as importWorld does
+      clearAll()
+      val channel = new RandomAccessFile(filename, "r").getChannel
+      try {
+        val in = new SnapshotInput(channel)
+        WorldSnapshot.restore(world, this, importerErrorHandler, stringReader, in)
+        PlotSnapshot.restore(plotManager, importerErrorHandler, in)
+      }
+      finally channel.close()
+    }
+
     def exportPlotsToCSV(writer: PrintWriter) {
       writer.println(Dump.csv.encode("PLOTS"))
       writer.println(
@@ -0,0 +1,104 @@
+// (C) Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.workspace
+
+import org.nlogo.agent.{ ImporterJ, SnapshotInput, SnapshotOutput }
+import org.nlogo.plot.PlotManager
+
+// The plots part of a world snapshot (see agent.WorldSnapshot), which can't live in agent since
+// agent doesn't know about plots.  It has what PlotExporter writes, in binary.  Plots and pens
+// are matched up by name, like import-world does it.
+
+object PlotSnapshot {
+
+  def save(plotManager: PlotManager, out: SnapshotOutput) {
+    out.writeString(plotManager.currentPlot.map(_.name).getOrElse(""))
+    val names = plotManager.getPlotNames
+    out.writeInt(names.size)
+    for (plot <- names.map(plotManager.getPlot)) {
+      out.writeString(plot.name)
+      out.writeDouble(plot.xMin)
+      out.writeDouble(plot.xMax)
+      out.writeDouble(plot.yMin)
+      out.writeDouble(plot.yMax)
+      out.writeBoolean(plot.autoPlotOn)
+      out.writeBoolean(plot.legendIsOpen)
+      out.writeString(plot.currentPen.map(_.name).getOrElse(""))
+      out.writeInt(plot.pens.size)
+      for (pen <- plot.pens) {
+        out.writeString(pen.name)
+        out.writeBoolean(pen.isDown)
+        out.writeInt(pen.mode)
+        out.writeDouble(pen.interval)
+        out.writeInt(pen.color)
+        out.writeDouble(pen.x)
+        out.writeInt(pen.points.size)
+        for (point <- pen.points) {
+          out.writeDouble(point.x)
+          out.writeDouble(point.y)
+          out.writeInt(point.color)
+          out.writeBoolean(point.isDown)
+        }
+      }
+    }
+  }
+
+  // assumes the plots have already been cleared
+  def restore(plotManager: PlotManager, errorHandler: ImporterJ.ErrorHandler, in: SnapshotInput) {
+    val currentPlotName = in.readString()
+    for (_ <- 0 until in.readCount()) {
+      val name = in.readString()
+      val plot = Option(plotManager.getPlot(name))
+      if (plot.isEmpty)
+        errorHandler.showError("Error Restoring Snapshot",
+          "The plot \"" + name + "\" does not exist.", false)
+      val xMin = in.readDouble()
+      val xMax = in.readDouble()
+      val yMin = in.readDouble()
+      val yMax = in.readDouble()
+      val autoPlotOn = in.readBoolean()
+      val legendIsOpen = in.readBoolean()
+      val currentPenName = in.readString()
+      for (p <- plot) {
+        p.xMin = xMin
+        p.xMax = xMax
+        p.yMin = yMin
+        p.yMax = yMax
+        p.autoPlotOn = autoPlotOn
+        p.legendIsOpen = legendIsOpen
+      }
+      for (_ <- 0 until in.readCount()) {
+        val penName = in.readString()
+        val penMaybe = plot.flatMap(_.getPen(penName))
+        if (plot.isDefined && penMaybe.isEmpty)
+          errorHandler.showError("Error Restoring Snapshot",
+            "The pen \"" + penName + "\" does not exist.", false)
+        val isDown = in.readBoolean()
+        val mode = in.readInt()
+        val interval = in.readDouble()
+        val color = in.readInt()
+        val x = in.readDouble()
+        for (pen <- penMaybe) {
+          pen.isDown = isDown
+          pen.mode = mode
+          pen.interval = interval
+          pen.color = color
+          pen.x = x
+        }
+        // the points are read even if there's nowhere to put them, to get past them
+        for (_ <- 0 until in.readCount()) {
+          val px = in.readDouble()
+          val py = in.readDouble()
+          val pointColor = in.readInt()
+          val pointIsDown = in.readBoolean()
+          penMaybe.foreach(_.plot(px, py, pointColor, pointIsDown))
+        }
+      }
+      for (p <- plot; pen <- p.getPen(currentPenName))
+        p.currentPen = pen
+      plot.foreach(_.makeDirty())
+    }
+    plotManager.currentPlot = Option(plotManager.getPlot(currentPlotName))
+  }
+
+}
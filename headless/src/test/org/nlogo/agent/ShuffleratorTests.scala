@@ -0,0 +1,88 @@
+// (C) Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.agent
+
+import org.scalatest.FunSuite
+import org.nlogo.api
+import org.nlogo.api.WorldDimensions
+import org.nlogo.util.MersenneTwisterFast
+
+class ShuffleratorTests extends FunSuite {
+
+  def makeWorld() =
+    new World() {
+      createPatches(new WorldDimensions(-5, 5, -5, 5))
+      realloc()
+    }
+  def drain(iter: AgentIterator) = {
+    val result = collection.mutable.Buffer[Agent]()
+    while (iter.hasNext)
+      result += iter.next()
+    result.toList
+  }
+  // the shuffle as it was done before there were reusable buffers
+  def reference(agents: Seq[Agent], rng: MersenneTwisterFast) = {
+    val copy = agents.toArray
+    val result = collection.mutable.Buffer[Agent]()
+    for (i <- copy.indices) {
+      if (i < copy.length - 1) {
+        val r = i + rng.nextInt(copy.length - i)
+        result += copy(r)
+        copy(r) = copy(i)
+      }
+      else
+        result += copy(i)
+    }
+    result.toList
+  }
+
+  test("same order, and same random numbers drawn, as before") {
+    val world = makeWorld()
+    (1 to 50).foreach(_ => new Turtle(world, world.turtles, 0.0, 0.0))
+    for (set <- List[AgentSet](world.patches, world.turtles)) {
+      val rng1 = new MersenneTwisterFast(0)
+      val rng2 = new MersenneTwisterFast(0)
+      for (_ <- 1 to 3)
+        expect(reference(set.toArray, rng2))(drain(set.shufflerator(rng1)))
+      expect(rng2.nextInt(1000))(rng1.nextInt(1000))
+    }
+  }
+
+  test("nested shuffles don't share a buffer") {
+    val world = makeWorld()
+    val rng = new MersenneTwisterFast(0)
+    val outer = world.patches.shufflerator(rng)
+    var seen = 0
+    while (outer.hasNext) {
+      outer.next()
+      expect(world.patches.count)(drain(world.patches.shufflerator(rng)).toSet.size)
+      seen += 1
+    }
+    expect(world.patches.count)(seen)
+  }
+
+  test("skips dead agents, still drawing a number for each") {
+    val world = makeWorld()
+    val turtles = (1 to 10).map(_ => new Turtle(world, world.turtles, 0.0, 0.0))
+    val set = new ArrayAgentSet(api.AgentKind.Turtle, turtles.toArray[Agent], world)
+    val rng1 = new MersenneTwisterFast(0)
+    val rng2 = new MersenneTwisterFast(0)
+    val expected = reference(turtles, rng2)
+    turtles.filter(_.id % 2 == 0).foreach(_.die())
+    expect(expected.filter(_.id != -1))(drain(set.shufflerator(rng1)))
+    expect(rng2.nextInt(1000))(rng1.nextInt(1000))
+  }
+
+  test("buffers are emptied and reused") {
+    val world = makeWorld()
+    val rng = new MersenneTwisterFast(0)
+    // bigger than any other test borrows, so no other spare will do
+    val buffer = Shufflerator.borrow(100000)
+    val patches = world.patches.toArray
+    System.arraycopy(patches, 0, buffer, 0, patches.length)
+    expect(patches.length)(drain(new Shufflerator(buffer, patches.length, rng)).size)
+    assert(buffer.forall(_ == null))
+    assert(Shufflerator.borrow(100000) eq buffer)
+  }
+
+}
@@ -0,0 +1,96 @@
+// (C) Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.agent
+
+import org.scalatest.FunSuite
+import org.nlogo.api.WorldDimensions
+
+class TurtleAgentSetTests extends FunSuite {
+
+  def makeWorld() =
+    new World() {
+      createPatches(new WorldDimensions(-2, 2, -2, 2))
+      realloc()
+    }
+  def makeTurtles(world: World, n: Int) =
+    (0 until n).map(_ => new Turtle(world, world.turtles, 0.0, 0.0))
+  def ids(agents: AgentSet) = {
+    val result = collection.mutable.Buffer[Long]()
+    val iter = agents.iterator
+    while (iter.hasNext)
+      result += iter.next().id
+    result.toList
+  }
+
+  test("comes out in who number order, whatever order it went in") {
+    val world = makeWorld()
+    val turtles = makeTurtles(world, 100)
+    val set = new TurtleAgentSet("TEST", world)
+    new scala.util.Random(0).shuffle(turtles).foreach(set.add)
+    expect((0L until 100L).toList)(ids(set))
+    expect((0L until 100L).toList)(set.toArray.map(_.id).toList)
+    for (t <- turtles)
+      assert(set.agent(t.id) eq t)
+  }
+
+  test("removing and adding back") {
+    val world = makeWorld()
+    val turtles = makeTurtles(world, 100)
+    val set = new TurtleAgentSet("TEST", world)
+    turtles.foreach(set.add)
+    val (evens, odds) = turtles.partition(_.id % 2 == 0)
+    evens.foreach(t => set.remove(t.agentKey))
+    expect(50)(set.count)
+    expect(odds.map(_.id).toList)(ids(set))
+    assert(evens.forall(t => set.agent(t.id) == null && !set.contains(t)))
+    assert(odds.forall(t => set.contains(t)))
+    expect(7L)(set.randomOne(50, 3).id)
+    expect(List(1L, 9L))(set.randomTwo(50, 0, 3).map(_.id).toList)
+    evens.reverse.foreach(set.add)
+    expect(100)(set.count)
+    expect((0L until 100L).toList)(ids(set))
+    turtles.foreach(t => set.remove(t.agentKey))
+    assert(set.isEmpty)
+    expect(Nil)(ids(set))
+  }
+
+  test("iterators don't see turtles removed after they were made") {
+    val world = makeWorld()
+    val turtles = makeTurtles(world, 10)
+    val set = new TurtleAgentSet("TEST", world)
+    turtles.foreach(set.add)
+    val iter = set.iterator
+    expect(0L)(iter.next().id)
+    set.remove(turtles(1).agentKey)
+    expect(2L)(iter.next().id)
+  }
+
+  test("iterators don't see turtles removed after the set was compacted") {
+    val world = makeWorld()
+    val turtles = makeTurtles(world, 100)
+    val set = new TurtleAgentSet("TEST", world)
+    turtles.foreach(set.add)
+    val iter = set.iterator
+    expect(0L)(iter.next().id)
+    // enough to make the set compact itself, and then some more
+    turtles.filter(_.id % 10 != 0).foreach(t => set.remove(t.agentKey))
+    val rest = collection.mutable.Buffer[Long]()
+    while (iter.hasNext)
+      rest += iter.next().id
+    expect((10L until 100L by 10).toList)(rest.toList)
+  }
+
+  test("dying") {
+    val world = makeWorld()
+    val turtles = makeTurtles(world, 1000)
+    turtles.filter(_.id % 10 != 0).foreach(_.die())
+    expect(100)(world.turtles.count)
+    expect((0L until 1000L by 10).toList)(ids(world.turtles))
+    assert(world.getTurtle(5) == null)
+    assert(world.getTurtle(50) eq turtles(50))
+    val more = makeTurtles(world, 5)
+    expect((1000L until 1005L).toList)(more.map(_.id).toList)
+    expect(105)(world.turtles.count)
+  }
+
+}
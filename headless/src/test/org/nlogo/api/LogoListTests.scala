@@ -10,4 +10,61 @@ class LogoListTests extends FunSuite {
       LogoList().iterator.next
     }
   }
+  def d(x: Int): AnyRef = Double.box(x)
+  def list(xs: Int*) = LogoList(xs.map(d): _*)
+  def lputs(start: LogoList, xs: Range) =
+    xs.foldLeft(start)((l, x) => l.lput(d(x)))
+  test("lput onto lput") {
+    val l = lputs(LogoList.Empty, 1 to 100)
+    expect(list(1 to 100: _*))(l)
+    expect(100)(l.size)
+    expect(d(1))(l.first)
+    expect(d(50))(l.get(49))
+    expect((1 to 100).map(d).toList)(l.scalaIterator.toList)
+    expect(l.toVector)(Vector(1 to 100: _*).map(d))
+  }
+  test("lists lput onto don't change") {
+    val base = lputs(list(0), 1 to 10)
+    val a = base.lput(d(11))
+    val b = base.lput(d(12))
+    val c = a.lput(d(13))
+    expect(list(0 to 10: _*))(base)
+    expect(list((0 to 10) :+ 11: _*))(a)
+    expect(list((0 to 10) :+ 12: _*))(b)
+    expect(list((0 to 10) :+ 11 :+ 13: _*))(c)
+    expect(list((0 to 10) :+ 12 :+ 14: _*))(b.lput(d(14)))
+    expect(list((0 to 10) :+ 11 :+ 15: _*))(a.lput(d(15)))
+  }
+  test("other operations on lists that have been lput onto") {
+    val l = lputs(list(1, 2), 3 to 6)
+    expect(list(0, 1, 2, 3, 4, 5, 6))(l.fput(d(0)))
+    expect(list(2, 3, 4, 5, 6))(l.butFirst)
+    expect(list(1, 2, 3, 4, 5))(l.butLast)
+    expect(list(6, 5, 4, 3, 2, 1))(l.reverse)
+    expect(list(1, 2, 3, 0, 5, 6))(l.replaceItem(3, d(0)))
+    expect(list(1, 0, 3, 4, 5, 6))(l.replaceItem(1, d(0)))
+    expect(list(1, 2, 4, 5, 6))(l.removeItem(2))
+    expect(list(2, 3, 4))(l.logoSublist(1, 4))
+    expect(list(4, 5))(l.logoSublist(3, 5))
+    expect(list(1))(l.logoSublist(0, 1))
+    expect(LogoList.Empty)(l.logoSublist(4, 4))
+    // a sliding window, the way a time series is usually kept
+    val window = (7 to 1000).foldLeft(l)((w, x) => w.butFirst.lput(d(x)))
+    expect(list(995 to 1000: _*))(window)
+    expect(list(996 to 1000: _*))(window.butLast.butFirst.lput(d(1000)))
+    expect(list((995 to 999) :+ 7: _*))(window.butLast.lput(d(7)))
+  }
+  test("out of bounds") {
+    val l = lputs(LogoList.Empty, 1 to 3)
+    intercept[IndexOutOfBoundsException] { l.get(3) }
+  }
+  test("serializing") {
+    val l = lputs(list(1), 2 to 5).butFirst
+    val bytes = new java.io.ByteArrayOutputStream
+    new java.io.ObjectOutputStream(bytes).writeObject(l)
+    val read = new java.io.ObjectInputStream(new java.io.ByteArrayInputStream(bytes.toByteArray))
+      .readObject().asInstanceOf[LogoList]
+    expect(l)(read)
+    expect(list(2, 3, 4, 5, 6))(read.lput(d(6)))
+  }
 }
@@ -0,0 +1,50 @@
+// (C) Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.compiler
+
+import org.scalatest.FunSuite
+import org.nlogo.api.{ DummyExtensionManager, Program }
+import org.nlogo.nvm
+
+class NumericPatchVariablesTests extends FunSuite {
+  implicit val tokenizer = Compiler.Tokenizer2D
+  def numeric(source: String): Set[String] = {
+    val results = new StructureParser(tokenizer.tokenize(source), None, Program.empty(),
+                                      nvm.CompilerInterface.NoProcedures,
+                                      new DummyExtensionManager)
+      .parse(false)
+    val defs =
+      for(procedure <- results.procedures.values.toSeq)
+      yield {
+        val tokens =
+          new IdentifierParser(results.program, nvm.CompilerInterface.NoProcedures,
+                               results.procedures, false)
+            .process(results.tokens(procedure).iterator, procedure)
+        val procdef = new ExpressionParser(procedure).parse(tokens).head
+        procdef.accept(new SetVisitor)
+        procdef
+      }
+    NumericPatchVariables.infer(defs, results.program)
+  }
+  test("never set") {
+    expect(Set("A"))(numeric("patches-own [a]"))
+  }
+  test("set to number") {
+    expect(Set("A"))(numeric("patches-own [a] to foo ask patches [ set a a + 1 ] end"))
+  }
+  test("set to string") {
+    expect(Set())(numeric("patches-own [a] to foo ask patches [ set a \"x\" ] end"))
+  }
+  test("set to wildcard") {
+    expect(Set())(numeric("patches-own [a] to foo ask patches [ set a one-of [1 2] ] end"))
+  }
+  test("set from numeric patch variable") {
+    expect(Set("A", "B"))(numeric("patches-own [a b] to foo ask patches [ set a b ] end"))
+  }
+  test("set from non-numeric patch variable") {
+    expect(Set())(numeric("patches-own [a b] to foo ask patches [ set a b set b [] ] end"))
+  }
+  test("builtins never included") {
+    expect(Set())(numeric("to foo ask patches [ set pcolor red ] end"))
+  }
+}
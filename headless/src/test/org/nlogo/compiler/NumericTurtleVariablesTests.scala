@@ -0,0 +1,68 @@
+// (C) Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.compiler
+
+import org.scalatest.FunSuite
+import org.nlogo.api.{ DummyExtensionManager, Program }
+import org.nlogo.nvm
+
+class NumericTurtleVariablesTests extends FunSuite {
+  implicit val tokenizer = Compiler.Tokenizer2D
+  def numeric(source: String): Set[String] = {
+    val results = new StructureParser(tokenizer.tokenize(source), None, Program.empty(),
+                                      nvm.CompilerInterface.NoProcedures,
+                                      new DummyExtensionManager)
+      .parse(false)
+    val defs =
+      for(procedure <- results.procedures.values.toSeq)
+      yield {
+        val tokens =
+          new IdentifierParser(results.program, nvm.CompilerInterface.NoProcedures,
+                               results.procedures, false)
+            .process(results.tokens(procedure).iterator, procedure)
+        val procdef = new ExpressionParser(procedure).parse(tokens).head
+        procdef.accept(new SetVisitor)
+        procdef
+      }
+    NumericTurtleVariables.infer(defs, results.program)
+  }
+  test("never set") {
+    expect(Set("A"))(numeric("turtles-own [a]"))
+  }
+  test("set to number") {
+    expect(Set("A"))(numeric("turtles-own [a] to foo ask turtles [ set a a + 1 ] end"))
+  }
+  test("set to string") {
+    expect(Set())(numeric("turtles-own [a] to foo ask turtles [ set a \"x\" ] end"))
+  }
+  test("set to wildcard") {
+    expect(Set())(numeric("turtles-own [a] to foo ask turtles [ set a one-of [1 2] ] end"))
+  }
+  test("set from numeric turtle variable") {
+    expect(Set("A", "B"))(numeric("turtles-own [a b] to foo ask turtles [ set a b ] end"))
+  }
+  test("set from non-numeric turtle variable") {
+    expect(Set())(numeric("turtles-own [a b] to foo ask turtles [ set a b set b [] ] end"))
+  }
+  test("breed variables") {
+    expect(Set("A", "B"))(numeric(
+      "breed [mice mouse] mice-own [a b] to foo ask mice [ set a b * 2 ] end"))
+  }
+  test("breed variable set to string") {
+    expect(Set("B"))(numeric(
+      "breed [mice mouse] mice-own [a b] to foo ask mice [ set a \"x\" set b 1 ] end"))
+  }
+  test("breed variable set from turtle variable") {
+    expect(Set())(numeric(
+      "turtles-own [a] breed [mice mouse] mice-own [b] " +
+      "to foo ask mice [ set b a set a nobody ] end"))
+  }
+  test("same name in two breeds") {
+    expect(Set())(numeric(
+      "breed [mice mouse] breed [cats cat] mice-own [a] cats-own [a] " +
+      "to foo ask mice [ set a 1 ] ask cats [ set a \"x\" ] end"))
+  }
+  test("builtins never included") {
+    expect(Set())(numeric("to foo ask turtles [ set color red set heading 0 ] end"))
+  }
+}
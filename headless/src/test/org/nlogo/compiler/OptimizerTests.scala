@@ -207,4 +207,16 @@ class OptimizerTests extends FunSuite {
     expect("_countotherwith[_turtles[], [_constboolean:true[]]]")(
       compileReporter("count other turtles with [true]"))
   }
+  test("countMyLinks") {
+    expect("_countmylinks:null[]")(
+      compileReporter("count my-links"))
+  }
+  test("countMyOutLinks") {
+    expect("_countmyoutlinks:null[]")(
+      compileReporter("count my-out-links"))
+  }
+  test("anyMyInLinks") {
+    expect("_anymyinlinks:null[]")(
+      compileReporter("any? my-in-links"))
+  }
 }
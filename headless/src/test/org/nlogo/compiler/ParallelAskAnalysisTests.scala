@@ -0,0 +1,88 @@
+// (C) Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.compiler
+
+import org.scalatest.FunSuite
+import org.nlogo.api.{ DummyExtensionManager, Program }
+import org.nlogo.nvm
+import org.nlogo.prim._ask
+
+class ParallelAskAnalysisTests extends FunSuite {
+  implicit val tokenizer = Compiler.Tokenizer2D
+  // the asks in procedure GO, in order, as (isolatedFor, usesRandom)
+  def asks(source: String): List[(String, Boolean)] = {
+    val results = new StructureParser(tokenizer.tokenize(source), None, Program.empty(),
+                                      nvm.CompilerInterface.NoProcedures,
+                                      new DummyExtensionManager)
+      .parse(false)
+    val defs =
+      for(procedure <- results.procedures.values.toSeq)
+      yield {
+        val tokens =
+          new IdentifierParser(results.program, nvm.CompilerInterface.NoProcedures,
+                               results.procedures, false)
+            .process(results.tokens(procedure).iterator, procedure)
+        val procdef = new ExpressionParser(procedure).parse(tokens).head
+        procdef.accept(new LocalsVisitor)
+        procdef.accept(new SetVisitor)
+        procdef
+      }
+    new ParallelAskAnalysis(defs, false).analyze()
+    val found = collection.mutable.Buffer[(String, Boolean)]()
+    defs.find(_.procedure.name == "GO").get.accept(new DefaultAstVisitor {
+      override def visitStatement(stmt: Statement) {
+        stmt.command match {
+          case ask: _ask => found += ((ask.isolatedFor, ask.usesRandom))
+          case _ =>
+        }
+        super.visitStatement(stmt)
+      }})
+    found.toList
+  }
+  test("own turtle variables") {
+    expect(List(("-T--", false)))(
+      asks("turtles-own [a b] to go ask turtles [ set a a * 2 + b ] end"))
+  }
+  test("own patch variables") {
+    expect(List(("--P-", false)))(
+      asks("patches-own [p] to go ask patches [ if p > 1 [ set p p - 1 ] ] end"))
+  }
+  test("turtles setting patch variables share their patches") {
+    expect(List(("--P-", false)))(
+      asks("patches-own [p] to go ask turtles [ set p 0 ] end"))
+  }
+  test("built-in variables") {
+    expect(List(("----", false), ("----", false)))(
+      asks("to go ask turtles [ set xcor 1 ] ask patches [ set pcolor red ] end"))
+  }
+  test("random numbers") {
+    expect(List(("-T--", true)))(
+      asks("turtles-own [a] to go ask turtles [ set a random-float 10 ] end"))
+  }
+  test("other agents") {
+    expect(List(("----", false), ("----", false)))(
+      asks("turtles-own [a] to go ask turtles [ set a [a] of one-of turtles ] " +
+           "ask turtles [ fd 1 ] end"))
+  }
+  test("globals and procedure variables") {
+    expect(List(("----", false), ("----", false), ("-T--", false)))(
+      asks("globals [g] turtles-own [a] to go let x 0 ask turtles [ set g a ] " +
+           "ask turtles [ set x a ] ask turtles [ let y x set a y + g ] end"))
+  }
+  test("called procedures") {
+    expect(List(("-T--", true), ("----", false)))(
+      asks("turtles-own [a] to go ask turtles [ grow ] ask turtles [ move ] end " +
+           "to grow let x 1 repeat 3 [ set x x + 1 ] if x > 2 [ stop ] set a x + bump end " +
+           "to-report bump report random 5 end " +
+           "to move grow fd 1 end"))
+  }
+  test("recursion") {
+    expect(List(("-T--", false)))(
+      asks("turtles-own [a] to go ask turtles [ f 3 ] end " +
+           "to f [n] if n > 0 [ set a a + n f n - 1 ] end"))
+  }
+  test("stop directly in the block") {
+    expect(List(("----", false)))(
+      asks("turtles-own [a] to go ask turtles [ if a > 0 [ stop ] set a 1 ] end"))
+  }
+}
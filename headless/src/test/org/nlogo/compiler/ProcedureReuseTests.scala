@@ -0,0 +1,63 @@
+// (C) Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.compiler
+
+import org.scalatest.FunSuite
+import org.nlogo.api.{ DummyExtensionManager, Program }
+
+class ProcedureReuseTests extends FunSuite {
+
+  val before =
+    "to go foo bar end\n" +
+    "to foo show 1 end\n" +
+    "to bar show 2 end\n" +
+    "to-report baz report 3 end"
+
+  // the same as before, except for BAR's body
+  val after =
+    "to go foo bar end\n" +
+    "to foo show 1 end\n" +
+    "to bar show 4 end\n" +
+    "to-report baz report 3 end"
+
+  def compile(source: String, extensionManager: DummyExtensionManager, program: Program = Program.empty()) =
+    Compiler.compileProgram(source, program, extensionManager).proceduresMap
+
+  test("unchanged procedures are kept") {
+    val extensionManager = new DummyExtensionManager
+    val first = compile(before, extensionManager)
+    val second = compile(after, extensionManager)
+    expect(first.keys.toList)(second.keys.toList)
+    assert(first("FOO") eq second("FOO"))
+    assert(first("BAZ") eq second("BAZ"))
+    assert(first("BAR") ne second("BAR"))
+  }
+
+  test("callers of changed procedures are compiled again") {
+    val extensionManager = new DummyExtensionManager
+    val first = compile(before, extensionManager)
+    val second = compile(after, extensionManager)
+    assert(first("GO") ne second("GO"))
+  }
+
+  test("moved procedures are compiled again") {
+    val extensionManager = new DummyExtensionManager
+    val first = compile(before, extensionManager)
+    val second = compile("\n" + before, extensionManager)
+    assert(first("BAZ") ne second("BAZ"))
+  }
+
+  test("declaration changes compile everything") {
+    val extensionManager = new DummyExtensionManager
+    val first = compile(before, extensionManager)
+    val second = compile(before, extensionManager, Program.empty().copy(interfaceGlobals = Seq("x")))
+    assert(first("FOO") ne second("FOO"))
+  }
+
+  test("other workspaces don't share") {
+    val first = compile(before, new DummyExtensionManager)
+    val second = compile(before, new DummyExtensionManager)
+    assert(first("FOO") ne second("FOO"))
+  }
+
+}
@@ -399,6 +399,7 @@ class TestAllSyntaxes extends FunSuite {
                     |_layoutcircle list or turtle agentset/number,OTPL,null,0,2,2 *
                     |_layoutradial turtle agentset/link agentset/turtle,OTPL,null,0,3,3 *
                     |_layoutspring turtle agentset/link agentset/number/number/number,OTPL,null,0,5,5 *
+                    |_layoutspringapproximate turtle agentset/link agentset/number/number/number/number,OTPL,null,0,6,6 *
                     |_layouttutte turtle agentset/link agentset/number,OTPL,null,0,3,3 *
                     |_left number,-T--,null,0,1,1 *
                     |_let anything/anything,OTPL,null,0,2,2
@@ -0,0 +1,75 @@
+// (C) Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.generator
+
+import org.scalatest.FunSuite
+import org.nlogo.api.{ DummyExtensionManager, Program, Version }
+import org.nlogo.compiler.Compiler
+
+class GeneratorCacheTests extends FunSuite {
+
+  val source =
+    "globals [g] turtles-own [a] " +
+    "to go ask turtles [ set a a + f 2 ] if g > 1 [ set g g - 1 stop ] setup end " +
+    "to setup let t task [ ?1 * g ] set g (runresult t 3) + length (list 1 2 g) end " +
+    "to-report f [x] report ifelse-value (x > a) [ x ] [ sum [a] of turtles-here ] end"
+
+  def compile(source: String) =
+    Compiler.compileProgram(source, Program.empty(), new DummyExtensionManager)
+      .procedures.map(_.dump).mkString("\n")
+
+  def withCache(body: java.io.File => Unit) {
+    val dir = java.io.File.createTempFile("generator", "cache")
+    dir.delete()
+    dir.mkdir()
+    val old = System.getProperty("org.nlogo.generatorCache")
+    System.setProperty("org.nlogo.generatorCache", dir.getPath)
+    try body(dir)
+    finally {
+      if (old == null)
+        System.clearProperty("org.nlogo.generatorCache")
+      else
+        System.setProperty("org.nlogo.generatorCache", old)
+      dir.listFiles.foreach(_.delete())
+      dir.delete()
+    }
+  }
+
+  def entries(dir: java.io.File) =
+    dir.listFiles.map(_.getName).filter(_.endsWith(".gen")).toSet
+
+  if(Version.useGenerator)
+    test("cached code is the same as generated code") {
+      val generated = compile(source)
+      withCache { dir =>
+        expect(generated)(compile(source))
+        assert(entries(dir).nonEmpty)
+        expect(generated)(compile(source))
+      }
+    }
+
+  if(Version.useGenerator)
+    test("constants go into the key") {
+      withCache { dir =>
+        compile("to go if true [ fd 1 ] end")
+        val before = entries(dir)
+        compile("to go if true [ fd 1 fd 1 ] end")
+        assert(entries(dir) != before)
+      }
+    }
+
+  if(Version.useGenerator)
+    test("damaged entries are ignored") {
+      val generated = compile(source)
+      withCache { dir =>
+        compile(source)
+        for (name <- entries(dir)) {
+          val out = new java.io.FileOutputStream(new java.io.File(dir, name))
+          out.write(Array[Byte](0, 0, 0, 3, 1, 2))
+          out.close()
+        }
+        expect(generated)(compile(source))
+      }
+    }
+
+}
@@ -0,0 +1,57 @@
+// (C) Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.generator
+
+import org.scalatest.FunSuite
+import org.nlogo.api.{ DummyExtensionManager, Program, Version }
+import org.nlogo.compiler.Compiler
+
+class SharedGeneratedCodeTests extends FunSuite {
+
+  val source =
+    "globals [g] turtles-own [a] " +
+    "to go ask turtles [ set a a + f 2 ] if g > 1 [ set g g - 1 stop ] end " +
+    "to-report f [x] report ifelse-value (x > a) [ x ] [ sum [a] of turtles-here ] end"
+
+  def compile(source: String) =
+    Compiler.compileProgram(source, Program.empty(), new DummyExtensionManager)
+      .procedures.map(_.dump).mkString("\n")
+
+  def classes(source: String) =
+    Compiler.compileProgram(source, Program.empty(), new DummyExtensionManager)
+      .procedures.flatMap(_.code.map(_.getClass)).toList
+
+  def withSharing(body: => Unit) {
+    val old = System.getProperty("org.nlogo.shareGeneratedCode")
+    System.setProperty("org.nlogo.shareGeneratedCode", "true")
+    try body
+    finally {
+      if (old == null)
+        System.clearProperty("org.nlogo.shareGeneratedCode")
+      else
+        System.setProperty("org.nlogo.shareGeneratedCode", old)
+    }
+  }
+
+  // each compile that generates defines classes of its own, so if two compiles have the same
+  // classes, nothing was generated the second time
+
+  if(Version.useGenerator)
+    test("compiles in the same JVM share classes") {
+      val generated = compile(source)
+      withSharing {
+        val shared = classes(source)
+        assert(shared.exists(_.getClassLoader.isInstanceOf[CustomClassLoader]))
+        expect(shared)(classes(source))
+        expect(generated)(compile(source))
+      }
+    }
+
+  if(Version.useGenerator)
+    test("nothing is shared unless asked for") {
+      val first = classes(source)
+      assert(first.exists(_.getClassLoader.isInstanceOf[CustomClassLoader]))
+      assert(first != classes(source))
+    }
+
+}
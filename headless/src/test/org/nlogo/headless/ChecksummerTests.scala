@@ -57,4 +57,46 @@ class ChecksummerTests extends FunSuite {
     expect("376368FF0F759FD60F473E56EA58D5E7D8305E0F")(
       Checksummer.calculateChecksum(tester _))
   }
+  // the way checksums used to be calculated, all in memory, to check that streaming gets
+  // the same answers
+  def inMemoryChecksum(text: String) =
+    org.nlogo.util.HexString.toHexString(
+      java.security.MessageDigest.getInstance("SHA").digest(
+        text.replaceAll("\r\n", "\n").getBytes))
+  test("carriage returns") {
+    def tester(fn: PrintWriter) {
+      fn.print("FOO\r\nhi there\r\n")
+    }
+    expect("41ECD0D21169ED248C8499E22CF3CF636F5DADC1")(
+      Checksummer.calculateChecksum(tester _))
+    for(text <- List("\r", "a\rb", "\r\r\n", "a\r\r\r\nb\r"))
+      expect(inMemoryChecksum(text))(
+        Checksummer.calculateChecksum(_.print(text)))
+  }
+  test("long text") {
+    // long enough to be written in several pieces, some of which will split a "\r\n"
+    val text = (1 to 5000).map("line " + _ + "\r\n").mkString
+    expect(inMemoryChecksum(text))(
+      Checksummer.calculateChecksum(_.print(text)))
+  }
+  test("checksums per tick") {
+    val workspace = HeadlessWorkspace.newInstance
+    try {
+      workspace.initForTesting(5, "to go crt 1 [ fd random 3 ] tick end")
+      workspace.command("random-seed 0 reset-ticks")
+      val sums = Checksummer.calculateWorldChecksums(workspace, "go", 3)
+      expect(3)(sums.distinct.size)
+      expect(Checksummer.calculateWorldChecksum(workspace))(
+        sums.last)
+    }
+    finally workspace.dispose()
+  }
+  test("first difference") {
+    expect(None)(
+      Checksummer.firstDifference(Seq("A", "B"), Seq("A", "B")))
+    expect(Some(1))(
+      Checksummer.firstDifference(Seq("A", "B", "C"), Seq("A", "D", "C")))
+    expect(Some(2))(
+      Checksummer.firstDifference(Seq("A", "B"), Seq("A", "B", "C")))
+  }
 }
@@ -0,0 +1,87 @@
+// (C) Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.headless
+
+import org.scalatest.FunSuite
+import org.nlogo.api.Version
+import java.io.{ PrintWriter, StringWriter }
+
+class InstructionProfilerTests extends FunSuite {
+
+  val source =
+    "to go\n" +
+    "  repeat 200 [ crt 1 [ fd 1 ] ]\n" +
+    "  grow\n" +
+    "end\n" +
+    "\n" +
+    "to grow\n" +
+    "  ask turtles [ set size size + 1 ]\n" +
+    "end\n"
+
+  def withWorkspace(f: HeadlessWorkspace => Unit) {
+    if (!Version.is3D) {
+      val workspace = HeadlessWorkspace.newInstance
+      try {
+        workspace.initForTesting(5, source)
+        f(workspace)
+      }
+      finally workspace.dispose()
+    }
+  }
+
+  def dump(fn: PrintWriter => Unit) = {
+    val writer = new StringWriter
+    fn(new PrintWriter(writer))
+    writer.toString.split("\n").toList
+  }
+
+  test("counting") {
+    withWorkspace { workspace =>
+      val profiler = workspace.startProfiling(counting = true)
+      workspace.command("go")
+      workspace.stopProfiling()
+      // or every command after this one would go on checking it
+      expect(false)(workspace.world.comeUpForAir)
+      def invocations(name: String) =
+        profiler.rows.filter(_.command.displayName == name).map(_.invocations).sum
+      expect(200)(invocations("FD"))
+      expect(200)(invocations("SET"))
+      expect(1)(invocations("ASK"))
+      val table = dump(workspace.dumpProfileTable)
+      expect("samples\tms\tinvocations\tinstruction\tprocedure\tlocation")(table.head)
+      val fd = table.find(_.contains("\tFD\t")).get
+      assert(fd.endsWith("\tprocedure GO\tline 2"), fd)
+      val set = table.find(_.contains("\tSET\t")).get
+      assert(set.endsWith("\tprocedure GROW\tline 7"), set)
+    }
+  }
+
+  test("sampling") {
+    withWorkspace { workspace =>
+      val profiler = workspace.startProfiling()
+      var tries = 0
+      while (profiler.rows.isEmpty && tries < 1000) {
+        workspace.command("go")
+        tries += 1
+      }
+      workspace.stopProfiling()
+      expect(false)(workspace.world.comeUpForAir)
+      assert(profiler.rows.nonEmpty)
+      assert(profiler.rows.forall(_.invocations == 0))
+      val stacks = dump(workspace.dumpProfileStacks)
+      for (stack <- stacks)
+        assert(stack.matches("""[^;]+(;[^;]+)* \d+"""), stack)
+      expect(profiler.rows.map(_.samples).sum)(
+        stacks.map(_.split(" ").last.toLong).sum)
+    }
+  }
+
+  test("dumping without a profile") {
+    withWorkspace { workspace =>
+      intercept[IllegalStateException] {
+        workspace.dumpProfileStacks(new PrintWriter(new StringWriter))
+      }
+    }
+  }
+
+}
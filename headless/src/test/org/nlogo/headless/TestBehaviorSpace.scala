@@ -4,6 +4,7 @@ package org.nlogo.headless
 
 import org.scalatest.{ FunSuite, OneInstancePerTest, BeforeAndAfterEach }
 import org.nlogo.api.{ FileIO, Version }
+import org.nlogo.lab.BinaryResults
 import org.nlogo.nvm.{ LabInterface, Workspace }
 import org.nlogo.workspace.AbstractWorkspace
 import org.nlogo.util.SlowTest
@@ -102,7 +103,19 @@ with OneInstancePerTest with BeforeAndAfterEach {
     def spreadsheet(worker: LabInterface.Worker, writer: java.io.StringWriter) {
       worker.addSpreadsheetWriter(filename, dims, new java.io.PrintWriter(writer))
     }
-    runHelper(List(("-table.csv", table _), ("-spreadsheet.csv", spreadsheet _))
+    // written in binary and then converted, the results should come out the same as the table
+    def binary(worker: LabInterface.Worker, writer: java.io.StringWriter) {
+      val bytes = new java.io.ByteArrayOutputStream {
+        override def close() {
+          super.close()
+          BinaryResults.toCsv(new java.io.ByteArrayInputStream(toByteArray),
+                              new java.io.PrintWriter(writer))
+        }
+      }
+      worker.addBinaryWriter(filename, dims, bytes)
+    }
+    runHelper(List(("-table.csv", table _), ("-spreadsheet.csv", spreadsheet _),
+                   ("-table.csv", binary _))
       .filter {
         case (suffix, _) =>
           suffix == "-table.csv" && wantTable ||
@@ -146,6 +159,22 @@ with OneInstancePerTest with BeforeAndAfterEach {
     expect(Double.box(20))(
       workspace.report("foo"))
   }
+  if(!Version.is3D)
+    test("StartingFromAFork") {
+      val warm = newWorkspace()
+      warm.initForTesting(0, "globals [foo]")
+      warm.command("set foo 100")
+      val workspace = newWorkspace()
+      workspace.initForTesting(0, "globals [foo]")
+      val worker = newWorker("testCarryover")
+      worker.startFrom(warm.world.fork())
+      worker.run(workspace, () => workspace, 1)
+      // every run started over from 100, instead of carrying on from the last one
+      expect(Double.box(105))(
+        workspace.report("foo"))
+      expect(Double.box(100))(
+        warm.report("foo"))
+    }
   test("ResizingWorld1") {
     runExperiment(0, "", "testResizingWorld1")
   }
@@ -545,6 +545,141 @@ with BeforeAndAfterEach with OneInstancePerTest with SlowTest {
     roundTripHelper(setup="set t \"" + x + "\"", model="globals [t]")
   }
 
+  /// snapshots
+
+  // like roundTripHelper, but saving and restoring a snapshot, with export-world just there to
+  // compare the before and after
+  def snapshotRoundTripHelper(setup: String,
+                              model: String = "",
+                              worldSize: Int = 0) {
+    val filename = getUniqueFilename()
+    workspace.initForTesting(worldSize, model)
+    testCommand("random-seed 378234")
+    testCommand(setup)
+    testCommand("export-world \"" + filename + "\"")
+    val export1 = org.nlogo.api.FileIO.file2String(filename)
+    assert(delete(filename))
+    workspace.saveSnapshot(filename)
+    testCommand("repeat 500 [ __ignore random 100 ]")
+    testCommand("ca")
+    testCommand("crt 5")
+    workspace.restoreSnapshot(filename)
+    assert(delete(filename))
+    testCommand("export-world \"" + filename + "\"")
+    val export2 = org.nlogo.api.FileIO.file2String(filename)
+    assert(delete(filename))
+    expect(dropLines(export1, 3))(
+      dropLines(export2, 3))
+  }
+
+  if(!Version.is3D)
+    test("SnapshotRoundTripEmpty") {
+      snapshotRoundTripHelper("")
+    }
+
+  if(!Version.is3D)
+    test("SnapshotRoundTripTicks") {
+      snapshotRoundTripHelper("reset-ticks tick tick")
+    }
+
+  if(!Version.is3D)
+    test("SnapshotRoundTripComplex") {
+      snapshotRoundTripHelper("setup true", COMPLEX_SOURCE, worldSize = 3)
+    }
+
+  if(!Version.is3D)
+    test("SnapshotRoundTripLinks") {
+      snapshotRoundTripHelper(
+        "create-ordered-mice 4 [ create-shipments-to other mice fd 2 ]\n" +
+        "ask turtle 2 [ die ]\n" +
+        "ask one-of shipments [ set label sort shipments ]\n" +
+        "ask turtle 0 [ set label out-shipment-neighbors ]",
+        "breed [mice mouse] directed-link-breed [shipments shipment]")
+    }
+
+  if(!Version.is3D)
+    test("SnapshotRestoresWhoNumbersAndRandomState") {
+      val filename = getUniqueFilename()
+      workspace.initForTesting(5)
+      testCommand("random-seed 2843 crt 10 ask turtle 9 [ die ]")
+      workspace.saveSnapshot(filename)
+      val expected = workspace.report("list random 1000 [who] of one-of turtles")
+      testCommand("crt 1 ask turtles [ fd 1 ]")
+      workspace.restoreSnapshot(filename)
+      assert(delete(filename))
+      testReporter("list random 1000 [who] of one-of turtles",
+        org.nlogo.api.Dump.logoObject(expected, true, false))
+      testCommand("crt 1")
+      testReporter("max [who] of turtles", "10")
+    }
+
+  if(!Version.is3D)
+    test("SnapshotOfDifferentModel") {
+      val filename = getUniqueFilename()
+      workspace.initForTesting(5, "globals [x]")
+      workspace.saveSnapshot(filename)
+      workspace.initForTesting(5, "globals [y]")
+      val ex = intercept[java.io.IOException] {
+        workspace.restoreSnapshot(filename)
+      }
+      assert(delete(filename))
+      expect("This snapshot is of a different model.")(ex.getMessage)
+    }
+
+  /// forking
+
+  // like snapshotRoundTripHelper, but with World.fork and forkFrom
+  def forkRoundTripHelper(setup: String,
+                          model: String = "",
+                          worldSize: Int = 0) {
+    val filename = getUniqueFilename()
+    workspace.initForTesting(worldSize, model)
+    testCommand("random-seed 378234")
+    testCommand(setup)
+    testCommand("export-world \"" + filename + "\"")
+    val export1 = org.nlogo.api.FileIO.file2String(filename)
+    assert(delete(filename))
+    val fork = workspace.world.fork()
+    testCommand("repeat 500 [ __ignore random 100 ]")
+    testCommand("ca")
+    testCommand("crt 5")
+    workspace.world.forkFrom(fork)
+    testCommand("export-world \"" + filename + "\"")
+    val export2 = org.nlogo.api.FileIO.file2String(filename)
+    assert(delete(filename))
+    expect(dropLines(export1, 3))(
+      dropLines(export2, 3))
+  }
+
+  if(!Version.is3D)
+    test("ForkRoundTripComplex") {
+      forkRoundTripHelper("setup true", COMPLEX_SOURCE, worldSize = 3)
+    }
+
+  if(!Version.is3D)
+    test("ForkRoundTripLinks") {
+      forkRoundTripHelper(
+        "create-ordered-mice 4 [ create-shipments-to other mice fd 2 ]\n" +
+        "ask turtle 2 [ die ]\n" +
+        "ask one-of shipments [ set label sort shipments ]\n" +
+        "ask turtle 0 [ set label out-shipment-neighbors ]",
+        "breed [mice mouse] directed-link-breed [shipments shipment]")
+    }
+
+  if(!Version.is3D)
+    test("ForkIsIndependent") {
+      workspace.initForTesting(5, "globals [x]")
+      testCommand("random-seed 2843 crt 10 set x turtles")
+      val fork = workspace.world.fork()
+      testCommand("ask turtles [ die ] set x 0")
+      expect(10)(fork.turtles.count)
+      expect(true)(fork.getObserverVariableByName("X") eq fork.turtles)
+      workspace.world.forkFrom(fork)
+      testReporter("x = turtles", "true")
+      testCommand("ask turtle 0 [ die ]")
+      expect(10)(fork.turtles.count)
+    }
+
   /// 3D tests
 
   if(Version.is3D)
@@ -0,0 +1,56 @@
+// (C) Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.headless
+
+import org.nlogo.api.LogoException
+
+// an isolated ask must give exactly the same results as serially, unless it draws random
+// numbers, in which case it must give the same results for any number of threads
+
+class TestParallelAsk extends TestUsingWorkspace {
+  def setup(workspace: HeadlessWorkspace, threads: Int) {
+    workspace.world.askThreads(threads)
+    workspace.command("clear-all random-seed 4242")
+    workspace.command("crt 500 [ set tvar random-float 100 setxy random-xcor random-ycor ]")
+    workspace.command("ask patches [ set pvar random 10 ]")
+  }
+  def results(workspace: HeadlessWorkspace) =
+    workspace.report("list (map [[tvar] of ?] sort turtles) (map [[pvar] of ?] sort patches) " +
+                     "random 1000000")
+  def run(workspace: HeadlessWorkspace, threads: Int, commands: String*) = {
+    setup(workspace, threads)
+    commands.foreach(workspace.command)
+    results(workspace)
+  }
+  val deterministic = List(
+    "ask turtles [ set tvar tvar * 2 + xcor - pvar ]",
+    "ask patches [ repeat 3 [ if pvar > 0 [ set pvar pvar - 1 ] ] ]",
+    // not isolated, so serial whatever the setting
+    "ask turtles [ set tvar tvar + count turtles-here ]")
+  for(command <- deterministic)
+    testUsingWorkspace(command, radius = 10) { workspace =>
+      val serial = run(workspace, 1, command)
+      for(threads <- List(2, 3, 16))
+        expect(serial)(run(workspace, threads, command))
+    }
+  testUsingWorkspace("per-agent random numbers", radius = 10) { workspace =>
+    val command = "ask turtles [ set tvar tvar + random-normal 0 1 + random 10 ]"
+    val parallel = run(workspace, 2, command, command)
+    for(threads <- List(3, 4, 16))
+      expect(parallel)(run(workspace, threads, command, command))
+  }
+  testUsingWorkspace("the error from the first agent in shuffled order", radius = 10) { workspace =>
+    def error(threads: Int) = {
+      setup(workspace, threads)
+      workspace.command("ask turtles [ set tvar who ]")
+      try {
+        workspace.command("ask turtles [ set tvar 1 / (tvar - 100) + 1 / (tvar - 300) ]")
+        None
+      }
+      catch { case ex: LogoException => Some(ex.getMessage) }
+    }
+    val serial = error(1)
+    assert(serial.isDefined)
+    expect(serial)(error(4))
+  }
+}
@@ -0,0 +1,82 @@
+// (C) Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.headless
+
+import org.nlogo.agent.World
+import org.nlogo.util.WorldType
+
+// parallel diffusion must give exactly the same results as serial diffusion, and both must give
+// exactly the same results as diffusing did before it was split into bands of rows
+
+class TestParallelDiffusion extends TestUsingWorkspace {
+  def randomize(workspace: HeadlessWorkspace) {
+    workspace.command("random-seed 4242")
+    workspace.command("ask patches [ set pvar random-float 100 ]")
+  }
+  def values(workspace: HeadlessWorkspace): AnyRef =
+    workspace.report("map [[pvar] of ?] sort patches")
+  def diffused(workspace: HeadlessWorkspace, threads: Int, command: String): AnyRef = {
+    workspace.world.diffusionThreads(threads)
+    randomize(workspace)
+    workspace.command(command)
+    workspace.command(command)
+    values(workspace)
+  }
+  // diffuse and diffuse4 the way the topologies did them before the bands.  Torus gathered from
+  // each patch's neighbors.  The others spread each patch out to its neighbors, in row order, so
+  // each patch's new value was summed in the row order of where the parts came from.
+  def baseline(world: World, vn: Int, param: Double, four: Boolean) {
+    val (minx, miny) = (world.minPxcor, world.minPycor)
+    val (xx, yy) = (world.worldWidth, world.worldHeight)
+    val old = Array.tabulate(xx, yy)((x, y) =>
+      world.fastGetPatchAt(x + minx, y + miny).getPatchVariableDouble(vn))
+    val result = Array.ofDim[Double](xx, yy)
+    val offsets =
+      if(four) List((-1, 0), (0, 1), (1, 0), (0, -1))
+      else List((-1, -1), (-1, 0), (-1, 1), (0, -1), (0, 1), (1, -1), (1, 0), (1, 1))
+    def neighbors(x: Int, y: Int) =
+      for {
+        (dx, dy) <- offsets
+        nx = if(world.wrappingAllowedInX) (x + dx + xx) % xx else x + dx
+        ny = if(world.wrappingAllowedInY) (y + dy + yy) % yy else y + dy
+        if nx >= 0 && nx < xx && ny >= 0 && ny < yy
+      } yield (nx, ny)
+    if(world.wrappingAllowedInX && world.wrappingAllowedInY)
+      for(y <- 0 until yy; x <- 0 until xx) {
+        val sum = neighbors(x, y).map{case (nx, ny) => old(nx)(ny)}.reduceLeft(_ + _)
+        result(x)(y) =
+          if(four) old(x)(y) * (1 - param) + sum * param / 4
+          else old(x)(y) * (1.0 - param) + (sum / 8) * param
+      }
+    else
+      for(y <- 0 until yy; x <- 0 until xx) {
+        val ns = neighbors(x, y)
+        val diffuseVal = (old(x)(y) / (if(four) 4 else 8)) * param
+        result(x)(y) += old(x)(y) - (ns.size * diffuseVal)
+        for((nx, ny) <- ns)
+          result(nx)(ny) += diffuseVal
+      }
+    for(y <- 0 until yy; x <- 0 until xx)
+      if(result(x)(y) != old(x)(y))
+        world.fastGetPatchAt(x + minx, y + miny).setPatchVariable(vn, result(x)(y))
+  }
+  for(worldType <- WorldType.all; (command, param, four) <- List(("diffuse pvar 0.7", 0.7, false),
+                                                                 ("diffuse4 pvar 0.3", 0.3, true)))
+    testUsingWorkspace(worldType + ": " + command, radius = 7, worldType = worldType) { workspace =>
+      val serial = diffused(workspace, 1, command)
+      randomize(workspace)
+      val vn = workspace.world.patchesOwnIndexOf("PVAR")
+      baseline(workspace.world, vn, param, four)
+      baseline(workspace.world, vn, param, four)
+      expect(values(workspace))(serial)
+      for(threads <- List(2, 3, 4, 16))
+        expect(serial)(diffused(workspace, threads, command))
+    }
+  // once HubNet is mirroring the view, the write-back runs serially, but the results don't change
+  testUsingWorkspace("with changes tracked", radius = 7) { workspace =>
+    val serial = diffused(workspace, 1, "diffuse pvar 0.7")
+    workspace.world.drainAgentChanges()
+    for(threads <- List(2, 4))
+      expect(serial)(diffused(workspace, threads, "diffuse pvar 0.7"))
+  }
+}
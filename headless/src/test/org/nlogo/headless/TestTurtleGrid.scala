@@ -0,0 +1,34 @@
+// (C) Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.headless
+
+import org.nlogo.util.WorldType
+
+// with the turtle grid on, in-radius and in-cone must find the same turtles as without it
+// (though not necessarily in the same order, so we compare sorted who numbers)
+
+class TestTurtleGrid extends TestUsingWorkspace {
+  val queries = List(
+    "turtles in-radius 0.5", "turtles in-radius 2.3", "mice in-radius 4", "turtles in-radius 30",
+    "(turtle-set frogs mice) in-radius 3", "turtles in-cone 3 60", "frogs in-cone 5 300",
+    "turtles in-cone 25 90")
+  def found(workspace: HeadlessWorkspace, cellSize: Double): AnyRef = {
+    workspace.world.turtleGridCellSize(cellSize)
+    workspace.command("random-seed 77 clear-turtles")
+    workspace.command("create-turtles 100 [ setxy random-xcor random-ycor ]")
+    workspace.command("create-mice 50 [ setxy random-xcor random-ycor ]")
+    workspace.command("create-frogs 50 [ setxy random-xcor random-ycor ]")
+    // move them around and churn them so the grid has to keep up
+    workspace.command("ask turtles [ rt random 360 fd random-float 4 ]")
+    workspace.command("ask n-of 30 turtles [ die ] ask n-of 20 turtles [ hatch 1 [ set xcor xcor + 1.7 ] ]")
+    workspace.command("ask turtles [ move-to one-of patches ] ask turtles [ set heading random 360 jump 0.4 ]")
+    workspace.report(queries.map(q => "[sort [who] of " + q + "] of sort turtles")
+                       .mkString("(list ", " ", ")"))
+  }
+  for(worldType <- WorldType.all)
+    testUsingWorkspace(worldType.toString, radius = 8, worldType = worldType) { workspace =>
+      val scanned = found(workspace, 0)
+      for(cellSize <- List(0.7, 1, 2.5, 4, 100))
+        expect(scanned)(found(workspace, cellSize))
+    }
+}
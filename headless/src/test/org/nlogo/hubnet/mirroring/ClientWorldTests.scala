@@ -139,12 +139,12 @@ class ClientWorldTests extends FunSuite {
     // initialize stream...
     os.writeShort(DiffBuffer.PATCHES | DiffBuffer.TURTLES)
     // two patches to stream...
-    os.writeInt(2)
+    WireFormat.writeCount(os, 2)
     new PatchData(10, PatchData.COMPLETE, 0, 0, BLACK, "label", WHITE).serialize(os)
     // non-existent... will be ignored.
-    new PatchData(30, PatchData.COMPLETE, 0, 0, GRAY, "label", WHITE).serialize(os)
+    new PatchData(30, PatchData.COMPLETE, 0, 0, GRAY, "label", WHITE).serialize(os, 10)
     // one turtle to stream...
-    os.writeInt(1)
+    WireFormat.writeCount(os, 1)
     new TurtleData(10, TurtleData.COMPLETE, 0, 0, "default",
       WHITE, 90, 1, true,
       "label", BLACK, 0, 0).serialize(os)
@@ -164,16 +164,16 @@ class ClientWorldTests extends FunSuite {
     // initialize stream...
     os.writeShort(DiffBuffer.PATCHES | DiffBuffer.TURTLES)
     // no patches...
-    os.writeInt(0)
+    WireFormat.writeCount(os, 0)
     // two turtles...
-    os.writeInt(2)
+    WireFormat.writeCount(os, 2)
     new TurtleData(10, (TurtleData.XCOR | TurtleData.YCOR).toShort, 1, 2, "default",
       WHITE, 0, 0, true,
       null, BLACK, 0, 0).serialize(os)
     // non-existent turtle... will be ignored.
     new TurtleData(12, (TurtleData.XCOR | TurtleData.YCOR).toShort, 1, 2, "default",
       WHITE, 0, 0, true,
-      null, BLACK, 0, 0).serialize(os)
+      null, BLACK, 0, 0).serialize(os, 10)
 
     buf.updateFrom(
       new DataInputStream(new ByteArrayInputStream(bos.toByteArray())))
@@ -186,12 +186,12 @@ class ClientWorldTests extends FunSuite {
     // initialize stream...
     os.writeShort(DiffBuffer.PATCHES | DiffBuffer.TURTLES)
     // no patches...
-    os.writeInt(0)
+    WireFormat.writeCount(os, 0)
     /// two turtles...
-    os.writeInt(2)
+    WireFormat.writeCount(os, 2)
     new TurtleData(10).serialize(os)
     // non-existent turtle... will be ignored.
-    new TurtleData(20).serialize(os)
+    new TurtleData(20).serialize(os, 10)
 
     buf.updateFrom(new DataInputStream(new ByteArrayInputStream(bos.toByteArray())))
 
@@ -4,7 +4,7 @@ package org.nlogo.hubnet.mirroring
 
 import org.scalatest.FunSuite
 
-import java.io.{ ByteArrayInputStream, DataInputStream }
+import java.io.{ ByteArrayInputStream, ByteArrayOutputStream, DataInputStream, DataOutputStream }
 
 class DiffBufferTests extends FunSuite {
   test("empty -> byte array") {
@@ -13,4 +13,31 @@ class DiffBufferTests extends FunSuite {
     expect(DiffBuffer.EMPTY)(is.readShort)
     expect(0)(is.available)
   }
+  test("numbers round trip, whole ones compactly") {
+    val numbers = List(0.0, -0.0, 1.0, -1.0, 16.0, -16.5, 359.0, 0.1, 1e300, -12345678.0,
+                       9007199254740992.0, Double.NaN, Double.PositiveInfinity, Double.MinValue)
+    val bos = new ByteArrayOutputStream
+    val os = new DataOutputStream(bos)
+    numbers.foreach(WireFormat.writeNumber(os, _))
+    val is = new DataInputStream(new ByteArrayInputStream(bos.toByteArray))
+    for(n <- numbers)
+      expect(java.lang.Double.doubleToRawLongBits(n))(
+        java.lang.Double.doubleToRawLongBits(WireFormat.readNumber(is)))
+    expect(0)(is.available)
+    bos.reset()
+    WireFormat.writeNumber(os, -16)
+    WireFormat.writeNumber(os, 359)
+    expect(3)(bos.size)
+  }
+  test("ids and counts round trip") {
+    val ids = List(0L, 1L, 2L, 100L, 3L, Long.MaxValue, -1L, 70000L)
+    val bos = new ByteArrayOutputStream
+    val os = new DataOutputStream(bos)
+    WireFormat.writeCount(os, ids.size)
+    ids.foldLeft(0L){(previous, id) => WireFormat.writeId(os, id, previous); id}
+    val is = new DataInputStream(new ByteArrayInputStream(bos.toByteArray))
+    expect(ids.size)(WireFormat.readCount(is))
+    expect(ids)(ids.scanLeft(0L)((previous, _) => WireFormat.readId(is, previous)).tail)
+    expect(0)(is.available)
+  }
 }
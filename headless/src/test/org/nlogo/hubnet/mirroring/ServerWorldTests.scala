@@ -0,0 +1,46 @@
+// (C) Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.hubnet.mirroring
+
+import org.nlogo.api.WorldPropertiesInterface
+import org.nlogo.headless.{ HeadlessWorkspace, TestUsingWorkspace }
+import java.io.{ ByteArrayInputStream, DataInputStream }
+import collection.JavaConverters._
+
+// a client kept up to date with incremental updates, which only look at the agents the world
+// says changed, must end up seeing the same thing as a new client sent a full update
+
+class ServerWorldTests extends TestUsingWorkspace {
+  val props = new WorldPropertiesInterface { def fontSize = 10 }
+  def send(server: ServerWorld, client: ClientWorld, workspace: HeadlessWorkspace) {
+    val bytes = server.updateWorld(workspace.world, false).toByteArray
+    client.updateFrom(new DataInputStream(new ByteArrayInputStream(bytes)))
+  }
+  def contents(client: ClientWorld) =
+    (client.patches.map(_.stringRep).toList,
+     client.getTurtles.asScala.map(_.stringRep).toList,
+     client.getLinks.asScala.map(_.stringRep).toList)
+  testUsingWorkspace("incremental updates match full ones") { workspace =>
+    val server = new ServerWorld(props)
+    val client = new ClientWorld(false)
+    val steps = List(
+      "crt 20 [ fd 2 ] ask patch 1 1 [ set pcolor red ]",
+      "ask turtle 3 [ set color blue set label \"hi\" ] ask patches with [ pxcor = 2 ] [ set plabel pycor ]",
+      "ask turtles with [ who mod 3 = 0 ] [ create-links-with other turtles with [ who mod 5 = 0 ] ]",
+      "ask turtle 5 [ fd 1 set size 2 ] ask turtle 9 [ die ]",
+      "ask turtle 0 [ hatch 2 [ set heading 45 ] ] ask link 0 5 [ set thickness 0.5 ]",
+      "ask turtle 10 [ set hidden? true ] ask link 3 10 [ die ]",
+      "ask patch -2 3 [ set pcolor [10 20 30] set plabel-color green ]",
+      "ask patch 0 0 [ set pcolor pcolor ]",
+      "clear-turtles ask patches [ set pcolor pxcor ]",
+      "crt 5 [ setxy random-xcor random-ycor ] ask turtle 2 [ create-link-to turtle 4 ]",
+      "clear-all crt 3")
+    for(step <- steps) {
+      workspace.command(step)
+      send(server, client, workspace)
+      val fresh = new ClientWorld(false)
+      send(new ServerWorld(props), fresh, workspace)
+      expect(contents(fresh))(contents(client))
+    }
+  }
+}
@@ -0,0 +1,186 @@
+// (C) Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.lab
+
+import org.scalatest.FunSuite
+import java.io.{ ByteArrayInputStream, ByteArrayOutputStream, File, IOException,
+                 ObjectInputStream, ObjectOutputStream }
+import java.net.{ InetAddress, Socket }
+import org.nlogo.api.LogoException
+import org.nlogo.nvm.{ CompilerInterface, DefaultCompilerServices, LabInterface, Workspace }
+import org.nlogo.util.{ Femto, SlowTest }
+import LabInterface.ProgressListener
+
+// The worker processes here are threads in this JVM, talking to the Coordinator over real
+// sockets, so the protocol gets tested without starting any JVMs.
+
+class TestRemote extends FunSuite with SlowTest {
+
+  val loader = new ProtocolLoader(
+    new DefaultCompilerServices(
+      Femto.scalaSingleton(classOf[CompilerInterface],
+        "org.nlogo.compiler.Compiler")))
+
+  // three runs of two steps each, measuring behaviorspace-run-number
+  def newWorker() =
+    new Worker(loader.loadOne(new File("test/lab/protocols.xml"), "runNumber"))
+
+  // lab isn't allowed to depend on headless (see Depend), so we go through reflection
+  def newWorkspace(): Workspace = {
+    Class.forName("org.nlogo.workspace.AbstractWorkspace")
+      .getMethod("isApplet", classOf[Boolean]).invoke(null, Boolean.box(false))
+    val companion = Class.forName("org.nlogo.headless.HeadlessWorkspace$")
+    val workspace = companion.getMethod("newInstance")
+      .invoke(companion.getField("MODULE$").get(null)).asInstanceOf[Workspace]
+    workspace.getClass.getMethod("initForTesting", classOf[Int])
+      .invoke(workspace, Int.box(0))
+    workspace
+  }
+
+  // stands in for a worker JVM
+  class ThreadProcess(body: => Unit) extends Process {
+    private val thread = new Thread("TestRemote worker") {
+      override def run() {
+        try body
+        catch { case _: IOException => }  // the coordinator hung up on us
+      }
+    }
+    thread.start()
+    def getOutputStream = new ByteArrayOutputStream
+    def getInputStream = new ByteArrayInputStream(Array[Byte]())
+    def getErrorStream = new ByteArrayInputStream(Array[Byte]())
+    def waitFor() = { thread.join(); 0 }
+    def exitValue = if(thread.isAlive) throw new IllegalThreadStateException else 0
+    def destroy() { }
+  }
+
+  def serve(port: Int) =
+    new ThreadProcess(Remote.serve(newWorker(), port, newWorkspace _))
+
+  // connects, takes a run, says it started it, and dies
+  def crash(port: Int) =
+    new ThreadProcess({
+      val socket = new Socket(InetAddress.getByName(null), port)
+      try {
+        val out = new ObjectOutputStream(socket.getOutputStream)
+        out.flush()
+        val in = new ObjectInputStream(socket.getInputStream)
+        in.readObject() match {
+          case Remote.Assign(runNumber) =>
+            out.writeObject(Remote.Started(runNumber, Nil))
+            out.flush()
+        }
+      }
+      finally { socket.close() }
+    })
+
+  class Recorder extends ProgressListener {
+    val events = new collection.mutable.ListBuffer[String]
+    override def experimentStarted() { events += "started" }
+    override def experimentAborted() { events += "aborted" }
+    override def experimentCompleted() { events += "completed" }
+    override def runStarted(w: Workspace, runNumber: Int, settings: List[Pair[String, Any]]) {
+      events += "run " + runNumber }
+    override def measurementsTaken(w: Workspace, runNumber: Int, step: Int, values: List[AnyRef]) {
+      events += "measured " + runNumber + " " + step + " " + values.mkString(" ") }
+    override def runCompleted(w: Workspace, runNumber: Int, steps: Int) {
+      events += "done " + runNumber + " " + steps }
+    override def runtimeError(w: Workspace, runNumber: Int, t: Throwable) {
+      events += "error " + runNumber + ": " + t.getMessage }
+  }
+
+  def runsOf(recorder: Recorder) =
+    recorder.events.filterNot(Set("started", "completed", "aborted")).toList
+
+  val expected =
+    (for(runNumber <- 1 to 3)
+     yield List("run " + runNumber,
+                "measured " + runNumber + " 0 " + runNumber + ".0",
+                "measured " + runNumber + " 1 " + runNumber + ".0",
+                "measured " + runNumber + " 2 " + runNumber + ".0",
+                "done " + runNumber + " 2"))
+    .flatten.toList
+
+  test("one worker process") {
+    val worker = newWorker()
+    val recorder = new Recorder
+    worker.addListener(recorder)
+    new Coordinator(worker, 1, serve _).run()
+    expect("started")(recorder.events.head)
+    expect("completed")(recorder.events.last)
+    expect(expected)(runsOf(recorder))
+  }
+
+  test("two worker processes") {
+    val worker = newWorker()
+    val recorder = new Recorder
+    worker.addListener(recorder)
+    new Coordinator(worker, 2, serve _).run()
+    expect("completed")(recorder.events.last)
+    // each run's events arrive together, but the runs may finish in any order
+    expect(expected.sorted)(runsOf(recorder).sorted)
+  }
+
+  test("worker process dies partway through a run") {
+    val worker = newWorker()
+    val recorder = new Recorder
+    worker.addListener(recorder)
+    var launches = 0
+    def launch(port: Int) = {
+      launches += 1
+      if(launches == 1) crash(port) else serve(port)
+    }
+    new Coordinator(worker, 1, launch _).run()
+    expect(2)(launches)
+    expect("completed")(recorder.events.last)
+    // the run it was doing is done over from the start, and the listeners only hear about
+    // it once
+    expect(expected.sorted)(runsOf(recorder).sorted)
+  }
+
+  test("worker processes keep dying") {
+    val worker = newWorker()
+    val recorder = new Recorder
+    worker.addListener(recorder)
+    new Coordinator(worker, 1, crash _, maxAttempts = 2).run()
+    expect("completed")(recorder.events.last)
+    expect(List("error 1", "error 2", "error 3"))(
+      runsOf(recorder).map(_.takeWhile(_ != ':')))
+    assert(runsOf(recorder).forall(_.contains("gave up after the worker process failed 2 times")))
+  }
+
+  test("worker process can't be started") {
+    val worker = newWorker()
+    val recorder = new Recorder
+    worker.addListener(recorder)
+    var launches = 0
+    def launch(port: Int): Process = {
+      launches += 1
+      throw new IOException("no such file")
+    }
+    val ex = intercept[LogoException] {
+      new Coordinator(worker, 1, launch _).run()
+    }
+    expect(3)(launches)
+    expect("gave up after failing to start a worker process 3 times: java.io.IOException: no such file")(
+      ex.getMessage)
+    expect(List("started", "aborted"))(recorder.events.toList)
+  }
+
+  test("worker process never connects") {
+    val worker = newWorker()
+    val recorder = new Recorder
+    worker.addListener(recorder)
+    var launches = 0
+    def launch(port: Int) = {
+      launches += 1
+      new ThreadProcess(())
+    }
+    intercept[LogoException] {
+      new Coordinator(worker, 1, launch _, acceptTimeout = 200).run()
+    }
+    expect(3)(launches)
+    expect(List("started", "aborted"))(recorder.events.toList)
+  }
+
+}
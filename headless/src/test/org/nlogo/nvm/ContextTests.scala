@@ -3,12 +3,14 @@
 package org.nlogo.nvm
 
 import org.scalatest.FunSuite
-import org.nlogo.api.Let
+import org.nlogo.api.{ Let, Token, TokenType }
 
 class ContextTests extends FunSuite {
   test("let 1") {
     val c = new Context(null, null, 0, null)
+    c.lets = new Array[LetBinding](1)
     val let = Let()
+    let.index = 0
     c.let(let, "foo")
     assert(c.getLet(let) === "foo")
     c.setLet(let, "bar")
@@ -16,7 +18,10 @@ class ContextTests extends FunSuite {
   }
   test("let 2") {
     val c = new Context(null, null, 0, null)
+    c.lets = new Array[LetBinding](2)
     val (let1, let2) = (Let(), Let())
+    let1.index = 0
+    let2.index = 1
     c.let(let1, "foo")
     assert(c.getLet(let1) === "foo")
     c.let(let2, "bar")
@@ -27,4 +32,49 @@ class ContextTests extends FunSuite {
     assert(c.getLet(let1) === "one")
     assert(c.getLet(let2) === "two")
   }
+  test("ask block binds its own lets") {
+    val parent = new Context(null, null, 0, null)
+    parent.lets = new Array[LetBinding](2)
+    val (let1, let2) = (Let(), Let())
+    let1.index = 0
+    let2.index = 1
+    parent.let(let1, "foo")
+    val child = new Context(null, null, 0, null)
+    child.inheritLets(parent)
+    child.setLet(let1, "bar")
+    child.let(let2, "baz")
+    assert(parent.getLet(let1) === "bar")
+    assert(parent.lets(1) === null)
+    assert(child.getLet(let2) === "baz")
+  }
+  def procedure(size: Int, makesTasks: Boolean = false) = {
+    val p = new Procedure(Procedure.Type.COMMAND, Token.eof, "FOO", None, null)
+    p.size = size
+    p.makesTasks = makesTasks
+    p
+  }
+  test("activations are reused after returning") {
+    val c = new Context(null, null, 0, null)
+    val a = c.newActivation(procedure(2), 5)
+    a.args(0) = "foo"
+    c.activation = a
+    c.returnFromProcedure()
+    expect(5)(c.ip)
+    expect(null)(c.activation)
+    val b = c.newActivation(procedure(1), 7)
+    assert(a eq b)
+    expect(7)(b.returnAddress)
+    expect(null)(b.args(0))
+  }
+  test("tasks keep their procedure's args") {
+    val c = new Context(null, null, 0, null)
+    val a = c.newActivation(procedure(1, makesTasks = true), 0)
+    val args = a.args
+    args(0) = "foo"
+    c.activation = a
+    c.returnFromProcedure()
+    val b = c.newActivation(procedure(1), 0)
+    assert(b.args ne args)
+    expect("foo")(args(0))
+  }
 }
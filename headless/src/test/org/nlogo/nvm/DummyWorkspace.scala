@@ -30,6 +30,8 @@ class DummyWorkspace extends DummyCompilerServices with Workspace {
   override def exportInterface(path: String) = unsupported
   override def exportWorld(path: String) = unsupported
   override def exportWorld(writer: java.io.PrintWriter) = unsupported
+  override def saveSnapshot(path: String) = unsupported
+  override def restoreSnapshot(path: String) = unsupported
   override def exportOutput(path: String) = unsupported
   override def exportPlot(plotName: String, path: String) = unsupported
   override def exportAllPlots(path: String) = unsupported
@@ -110,6 +112,7 @@ class DummyWorkspace extends DummyCompilerServices with Workspace {
 
   override def profilingEnabled = false
   override def profilingTracer = unsupported
+  override def instructionProfiler = null
 
   override def tick(c:Context, i:Instruction) = unsupported
   override def resetTicks(c:Context) = unsupported